@@ -0,0 +1,70 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * HoeffdingAdaptiveTreeVotesBenchmark.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers.trees;
+
+import moa.streams.generators.RandomRBFGeneratorDrift;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Compares the prediction time of the single-pass votes of the
+ * HoeffdingAdaptiveTree with the votes computed from the leaves returned by
+ * filterInstanceToLeaves. A benchmark to run by hand, not a test.
+ *
+ * Usage: HoeffdingAdaptiveTreeVotesBenchmark [numInstances]
+ */
+public class HoeffdingAdaptiveTreeVotesBenchmark {
+
+  public static void main(String[] args) {
+    int numInstances = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+
+    RandomRBFGeneratorDrift stream = new RandomRBFGeneratorDrift();
+    stream.speedChangeOption.setValue(0.001);
+    stream.prepareForUse();
+    Instance[] instances = new Instance[numInstances];
+    for (int i = 0; i < numInstances; i++) {
+      instances[i] = stream.nextInstance().getData();
+    }
+
+    HoeffdingAdaptiveTree tree = new HoeffdingAdaptiveTree();
+    tree.setModelContext(stream.getHeader());
+    tree.prepareForUse();
+    long start = System.nanoTime();
+    for (Instance inst : instances) {
+      tree.trainOnInstance(inst);
+    }
+    System.out.println("Training: " + (System.nanoTime() - start) / 1000000 + " ms");
+
+    double checksum = 0;
+    for (int run = 0; run < 3; run++) {
+      start = System.nanoTime();
+      for (Instance inst : instances) {
+        checksum += tree.getVotesForInstanceOfFoundNodes(inst).length;
+      }
+      System.out.println("Votes of found nodes: " + (System.nanoTime() - start) / 1000000 + " ms");
+      start = System.nanoTime();
+      for (Instance inst : instances) {
+        checksum += tree.getVotesForInstance(inst).length;
+      }
+      System.out.println("Single-pass votes:    " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+    System.out.println("(checksum " + checksum + ")");
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * QuantileSketchBenchmark.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+package moa.core;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import com.bigml.histogram.Histogram;
+import com.bigml.histogram.MixedInsertException;
+
+/**
+ * Compares the QuantileSketch with the histograms of the bigml histogram
+ * library that OnlineQRF used before, for the workload of an OnlineQRF
+ * prediction: merging one leaf histogram per tree and estimating two
+ * quantiles. This benchmark is not built with MOA: it needs the bigml
+ * histogram library (bigml:histogram:4.1.3 from clojars.org) on the
+ * classpath.
+ *
+ * Usage: QuantileSketchBenchmark [numTrees] [numBins] [numPredictions]
+ */
+public class QuantileSketchBenchmark {
+
+    public static void main(String[] args) throws MixedInsertException {
+        int numTrees = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        int numBins = (args.length > 1) ? Integer.parseInt(args[1]) : 100;
+        int numPredictions = (args.length > 2) ? Integer.parseInt(args[2]) : 10000;
+        int valuesPerLeaf = 10 * numBins;
+
+        Random random = new Random(1);
+        QuantileSketch[] sketches = new QuantileSketch[numTrees];
+        Histogram[] histograms = new Histogram[numTrees];
+        for (int i = 0; i < numTrees; i++) {
+            sketches[i] = new QuantileSketch(numBins);
+            histograms[i] = new Histogram(numBins);
+        }
+        long start = System.nanoTime();
+        for (int j = 0; j < valuesPerLeaf; j++) {
+            for (int i = 0; i < numTrees; i++) {
+                sketches[i].insert(i + random.nextGaussian());
+            }
+        }
+        System.out.println("QuantileSketch insert: " + (System.nanoTime() - start) / 1000000 + " ms");
+        random = new Random(1);
+        start = System.nanoTime();
+        for (int j = 0; j < valuesPerLeaf; j++) {
+            for (int i = 0; i < numTrees; i++) {
+                histograms[i].insert(i + random.nextGaussian());
+            }
+        }
+        System.out.println("Histogram insert:      " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        double[] probabilities = new double[]{0.05, 0.95};
+        double[] quantiles = new double[2];
+        QuantileSketch.Merger merger = new QuantileSketch.Merger();
+        double checksum = 0;
+        for (int run = 0; run < 3; run++) {
+            start = System.nanoTime();
+            for (int p = 0; p < numPredictions; p++) {
+                merger.quantiles(sketches, numTrees, probabilities, quantiles);
+                checksum += quantiles[0] + quantiles[1];
+            }
+            System.out.println("QuantileSketch merge and quantiles: "
+                    + (System.nanoTime() - start) / 1000000 + " ms"
+                    + " (" + quantiles[0] + ", " + quantiles[1] + ")");
+            start = System.nanoTime();
+            HashMap<Double, Double> percentiles = null;
+            for (int p = 0; p < numPredictions; p++) {
+                // Merge into a new histogram, merging into a leaf histogram would modify it
+                Histogram merged = new Histogram(numBins);
+                for (Histogram histogram : histograms) {
+                    merged.merge(histogram);
+                }
+                percentiles = merged.percentiles(probabilities[0], probabilities[1]);
+                checksum += percentiles.get(probabilities[0]) + percentiles.get(probabilities[1]);
+            }
+            System.out.println("Histogram merge and percentiles:    "
+                    + (System.nanoTime() - start) / 1000000 + " ms"
+                    + " (" + percentiles.get(probabilities[0]) + ", "
+                    + percentiles.get(probabilities[1]) + ")");
+        }
+        System.out.println("(checksum " + checksum + ")");
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+
+package com.yahoo.labs.samoa.instances;
+
+import java.util.Arrays;
+
+/**
+ * Dense instance data for instances with mostly nominal attributes, that
+ * stores each value in one byte. Whole values from 0 to MAX_CODE, like the
+ * indices of nominal values, and missing values are stored as their code.
+ * Other values are kept exactly in a separate sparse array, indexed by
+ * attribute, so numeric attributes cost the same as in SparseInstanceData.
+ */
+public class ByteDenseInstanceData implements InstanceData {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The largest value stored as a code. */
+    public static final int MAX_CODE = 253;
+
+    protected static final int MISSING = 254;
+
+    protected static final int OTHER = 255;
+
+    /** The codes of the attribute values. */
+    protected byte[] codes;
+
+    /** The sorted indices of the attributes whose code is OTHER. */
+    protected int[] otherIndices;
+
+    /** The values of the attributes whose code is OTHER. */
+    protected double[] otherValues;
+
+    /**
+     * Instantiates a new byte dense instance data.
+     *
+     * @param array the attribute values
+     */
+    public ByteDenseInstanceData(double[] array) {
+        this.codes = new byte[array.length];
+        int numOthers = 0;
+        for (int i = 0; i < array.length; i++) {
+            int code = code(array[i]);
+            this.codes[i] = (byte) code;
+            if (code == OTHER) {
+                numOthers++;
+            }
+        }
+        this.otherIndices = new int[numOthers];
+        this.otherValues = new double[numOthers];
+        numOthers = 0;
+        for (int i = 0; i < array.length; i++) {
+            if ((this.codes[i] & 0xFF) == OTHER) {
+                this.otherIndices[numOthers] = i;
+                this.otherValues[numOthers] = array[i];
+                numOthers++;
+            }
+        }
+    }
+
+    protected ByteDenseInstanceData(byte[] codes, int[] otherIndices, double[] otherValues) {
+        this.codes = codes;
+        this.otherIndices = otherIndices;
+        this.otherValues = otherValues;
+    }
+
+    protected static int code(double d) {
+        if (Double.isNaN(d)) {
+            return MISSING;
+        }
+        int code = (int) d;
+        // The sign test keeps -0.0 exact
+        if (code >= 0 && code <= MAX_CODE && code == d
+                && Double.doubleToRawLongBits(d) >= 0) {
+            return code;
+        }
+        return OTHER;
+    }
+
+    @Override
+    public int numAttributes() {
+        return this.codes.length;
+    }
+
+    @Override
+    public double value(int indexAttribute) {
+        int code = this.codes[indexAttribute] & 0xFF;
+        if (code <= MAX_CODE) {
+            return code;
+        } else if (code == MISSING) {
+            return Double.NaN;
+        }
+        return this.otherValues[Arrays.binarySearch(this.otherIndices, indexAttribute)];
+    }
+
+    @Override
+    public boolean isMissing(int indexAttribute) {
+        return (this.codes[indexAttribute] & 0xFF) == MISSING;
+    }
+
+    @Override
+    public int numValues() {
+        return numAttributes();
+    }
+
+    @Override
+    public int index(int indexAttribute) {
+        return indexAttribute;
+    }
+
+    @Override
+    public double valueSparse(int indexAttribute) {
+        return value(indexAttribute);
+    }
+
+    @Override
+    public boolean isMissingSparse(int indexAttribute) {
+        return isMissing(indexAttribute);
+    }
+
+    @Override
+    public double[] toDoubleArray() {
+        double[] array = new double[this.codes.length];
+        for (int i = 0; i < array.length; i++) {
+            int code = this.codes[i] & 0xFF;
+            array[i] = code <= MAX_CODE ? code : Double.NaN;
+        }
+        for (int i = 0; i < this.otherIndices.length; i++) {
+            array[this.otherIndices[i]] = this.otherValues[i];
+        }
+        return array;
+    }
+
+    @Override
+    public void setValue(int attributeIndex, double d) {
+        int code = code(d);
+        int location = Arrays.binarySearch(this.otherIndices, attributeIndex);
+        if (code == OTHER) {
+            if (location >= 0) {
+                this.otherValues[location] = d;
+            } else {
+                insertOther(-location - 1, attributeIndex, d);
+            }
+        } else if (location >= 0) {
+            removeOther(location);
+        }
+        this.codes[attributeIndex] = (byte) code;
+    }
+
+    protected void insertOther(int position, int attributeIndex, double value) {
+        int[] tempIndices = new int[this.otherIndices.length + 1];
+        double[] tempValues = new double[this.otherValues.length + 1];
+        System.arraycopy(this.otherIndices, 0, tempIndices, 0, position);
+        System.arraycopy(this.otherValues, 0, tempValues, 0, position);
+        tempIndices[position] = attributeIndex;
+        tempValues[position] = value;
+        System.arraycopy(this.otherIndices, position, tempIndices, position + 1,
+                this.otherIndices.length - position);
+        System.arraycopy(this.otherValues, position, tempValues, position + 1,
+                this.otherValues.length - position);
+        this.otherIndices = tempIndices;
+        this.otherValues = tempValues;
+    }
+
+    protected void removeOther(int position) {
+        int[] tempIndices = new int[this.otherIndices.length - 1];
+        double[] tempValues = new double[this.otherValues.length - 1];
+        System.arraycopy(this.otherIndices, 0, tempIndices, 0, position);
+        System.arraycopy(this.otherValues, 0, tempValues, 0, position);
+        System.arraycopy(this.otherIndices, position + 1, tempIndices, position,
+                this.otherIndices.length - (position + 1));
+        System.arraycopy(this.otherValues, position + 1, tempValues, position,
+                this.otherValues.length - (position + 1));
+        this.otherIndices = tempIndices;
+        this.otherValues = tempValues;
+    }
+
+    @Override
+    public void deleteAttributeAt(int index) {
+        int location = Arrays.binarySearch(this.otherIndices, index);
+        if (location >= 0) {
+            removeOther(location);
+        } else {
+            location = -location - 1;
+        }
+        for (int i = location; i < this.otherIndices.length; i++) {
+            this.otherIndices[i]--;
+        }
+        byte[] newCodes = new byte[this.codes.length - 1];
+        System.arraycopy(this.codes, 0, newCodes, 0, index);
+        System.arraycopy(this.codes, index + 1, newCodes, index,
+                this.codes.length - (index + 1));
+        this.codes = newCodes;
+    }
+
+    @Override
+    public void insertAttributeAt(int index) {
+        if ((index < 0) || (index > numAttributes())) {
+            throw new IllegalArgumentException("Can't insert attribute: index out "
+                    + "of range");
+        }
+        int location = Arrays.binarySearch(this.otherIndices, index);
+        if (location < 0) {
+            location = -location - 1;
+        }
+        for (int i = location; i < this.otherIndices.length; i++) {
+            this.otherIndices[i]++;
+        }
+        byte[] newCodes = new byte[this.codes.length + 1];
+        System.arraycopy(this.codes, 0, newCodes, 0, index);
+        newCodes[index] = (byte) MISSING;
+        System.arraycopy(this.codes, index, newCodes, index + 1,
+                this.codes.length - index);
+        this.codes = newCodes;
+    }
+
+    @Override
+    public InstanceData copy() {
+        return new ByteDenseInstanceData(this.codes.clone(),
+                this.otherIndices.clone(), this.otherValues.clone());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+
+package com.yahoo.labs.samoa.instances;
+
+/**
+ * Dense instance data that stores the attribute values in single precision,
+ * using half the memory of DenseInstanceData. Values are rounded to the
+ * nearest float when they are set; missing values stay missing.
+ */
+public class FloatDenseInstanceData implements InstanceData {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The attribute values. */
+    protected float[] attributeValues;
+
+    /**
+     * Instantiates a new float dense instance data.
+     *
+     * @param array the array
+     */
+    public FloatDenseInstanceData(float[] array) {
+        this.attributeValues = array;
+    }
+
+    /**
+     * Instantiates a new float dense instance data, rounding the values.
+     *
+     * @param array the array
+     */
+    public FloatDenseInstanceData(double[] array) {
+        this.attributeValues = new float[array.length];
+        for (int i = 0; i < array.length; i++) {
+            this.attributeValues[i] = (float) array[i];
+        }
+    }
+
+    @Override
+    public int numAttributes() {
+        return this.attributeValues.length;
+    }
+
+    @Override
+    public double value(int indexAttribute) {
+        return this.attributeValues[indexAttribute];
+    }
+
+    @Override
+    public boolean isMissing(int indexAttribute) {
+        return Float.isNaN(this.attributeValues[indexAttribute]);
+    }
+
+    @Override
+    public int numValues() {
+        return numAttributes();
+    }
+
+    @Override
+    public int index(int indexAttribute) {
+        return indexAttribute;
+    }
+
+    @Override
+    public double valueSparse(int indexAttribute) {
+        return value(indexAttribute);
+    }
+
+    @Override
+    public boolean isMissingSparse(int indexAttribute) {
+        return isMissing(indexAttribute);
+    }
+
+    @Override
+    public double[] toDoubleArray() {
+        double[] array = new double[this.attributeValues.length];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = this.attributeValues[i];
+        }
+        return array;
+    }
+
+    @Override
+    public void setValue(int attributeIndex, double d) {
+        this.attributeValues[attributeIndex] = (float) d;
+    }
+
+    @Override
+    public void deleteAttributeAt(int index) {
+        float[] newValues = new float[this.attributeValues.length - 1];
+        System.arraycopy(this.attributeValues, 0, newValues, 0, index);
+        System.arraycopy(this.attributeValues, index + 1, newValues, index,
+                this.attributeValues.length - (index + 1));
+        this.attributeValues = newValues;
+    }
+
+    @Override
+    public void insertAttributeAt(int index) {
+        if ((index < 0) || (index > numAttributes())) {
+            throw new IllegalArgumentException("Can't insert attribute: index out "
+                    + "of range");
+        }
+        float[] newValues = new float[this.attributeValues.length + 1];
+        System.arraycopy(this.attributeValues, 0, newValues, 0, index);
+        newValues[index] = Float.NaN; //Missing Value
+        System.arraycopy(this.attributeValues, index, newValues, index + 1,
+                this.attributeValues.length - index);
+        this.attributeValues = newValues;
+    }
+
+    @Override
+    public InstanceData copy() {
+        return new FloatDenseInstanceData(this.attributeValues.clone());
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+
+package com.yahoo.labs.samoa.instances;
+
+import java.util.Arrays;
+
+/**
+ * Sparse instance data that stores the non-zero attribute values in single
+ * precision, using two thirds of the memory of SparseInstanceData. Values
+ * are rounded to the nearest float when they are set.
+ */
+public class FloatSparseInstanceData implements InstanceData {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The values, in the order of their attribute indices. */
+    protected float[] attributeValues;
+
+    /** The sorted indices of the attributes with a value. */
+    protected int[] indexValues;
+
+    protected int numberAttributes;
+
+    /**
+     * Instantiates a new float sparse instance data.
+     *
+     * @param attributeValues the attribute values
+     * @param indexValues the sorted attribute indices of the values
+     * @param numberAttributes the number of attributes
+     */
+    public FloatSparseInstanceData(float[] attributeValues, int[] indexValues, int numberAttributes) {
+        this.attributeValues = attributeValues;
+        this.indexValues = indexValues;
+        this.numberAttributes = numberAttributes;
+    }
+
+    /**
+     * Instantiates a new float sparse instance data, rounding the values.
+     *
+     * @param attributeValues the attribute values
+     * @param indexValues the sorted attribute indices of the values
+     * @param numberAttributes the number of attributes
+     */
+    public FloatSparseInstanceData(double[] attributeValues, int[] indexValues, int numberAttributes) {
+        this.attributeValues = new float[attributeValues.length];
+        for (int i = 0; i < attributeValues.length; i++) {
+            this.attributeValues[i] = (float) attributeValues[i];
+        }
+        this.indexValues = indexValues;
+        this.numberAttributes = numberAttributes;
+    }
+
+    @Override
+    public int numAttributes() {
+        return this.numberAttributes;
+    }
+
+    @Override
+    public double value(int indexAttribute) {
+        int location = Arrays.binarySearch(this.indexValues, indexAttribute);
+        return location >= 0 ? this.attributeValues[location] : 0.0;
+    }
+
+    @Override
+    public boolean isMissing(int indexAttribute) {
+        return Double.isNaN(this.value(indexAttribute));
+    }
+
+    @Override
+    public int numValues() {
+        return this.attributeValues.length;
+    }
+
+    @Override
+    public int index(int indexAttribute) {
+        return this.indexValues[indexAttribute];
+    }
+
+    @Override
+    public double valueSparse(int indexAttribute) {
+        return this.attributeValues[indexAttribute];
+    }
+
+    @Override
+    public boolean isMissingSparse(int indexAttribute) {
+        return Float.isNaN(this.attributeValues[indexAttribute]);
+    }
+
+    @Override
+    public double[] toDoubleArray() {
+        double[] array = new double[numAttributes()];
+        for (int i = 0; i < this.indexValues.length; i++) {
+            array[this.indexValues[i]] = this.attributeValues[i];
+        }
+        return array;
+    }
+
+    @Override
+    public void setValue(int attributeIndex, double d) {
+        int location = Arrays.binarySearch(this.indexValues, attributeIndex);
+        if (location >= 0) {
+            this.attributeValues[location] = (float) d;
+        } else if (d != 0.0) {
+            insertValue(-location - 1, attributeIndex, (float) d);
+        }
+    }
+
+    /**
+     * Inserts a value at a position of the sparse arrays.
+     */
+    protected void insertValue(int position, int attributeIndex, float value) {
+        int[] tempIndices = new int[this.indexValues.length + 1];
+        float[] tempValues = new float[this.attributeValues.length + 1];
+        System.arraycopy(this.indexValues, 0, tempIndices, 0, position);
+        System.arraycopy(this.attributeValues, 0, tempValues, 0, position);
+        tempIndices[position] = attributeIndex;
+        tempValues[position] = value;
+        System.arraycopy(this.indexValues, position, tempIndices, position + 1,
+                this.indexValues.length - position);
+        System.arraycopy(this.attributeValues, position, tempValues, position + 1,
+                this.attributeValues.length - position);
+        this.indexValues = tempIndices;
+        this.attributeValues = tempValues;
+    }
+
+    @Override
+    public void deleteAttributeAt(int position) {
+        int location = Arrays.binarySearch(this.indexValues, position);
+        this.numberAttributes--;
+        int[] tempIndices;
+        float[] tempValues;
+        int next;
+        if (location >= 0) {
+            tempIndices = new int[this.indexValues.length - 1];
+            tempValues = new float[this.attributeValues.length - 1];
+            System.arraycopy(this.indexValues, 0, tempIndices, 0, location);
+            System.arraycopy(this.attributeValues, 0, tempValues, 0, location);
+            next = location + 1;
+        } else {
+            location = -location - 1;
+            tempIndices = new int[this.indexValues.length];
+            tempValues = new float[this.attributeValues.length];
+            System.arraycopy(this.indexValues, 0, tempIndices, 0, location);
+            System.arraycopy(this.attributeValues, 0, tempValues, 0, location);
+            next = location;
+        }
+        for (int i = next; i < this.indexValues.length; i++) {
+            tempIndices[location] = this.indexValues[i] - 1;
+            tempValues[location] = this.attributeValues[i];
+            location++;
+        }
+        this.indexValues = tempIndices;
+        this.attributeValues = tempValues;
+    }
+
+    @Override
+    public void insertAttributeAt(int position) {
+        if ((position < 0) || (position > numAttributes())) {
+            throw new IllegalArgumentException("Can't insert attribute: index out "
+                    + "of range");
+        }
+        int location = Arrays.binarySearch(this.indexValues, position);
+        if (location < 0) {
+            location = -location - 1;
+        }
+        this.numberAttributes++;
+        insertValue(location, position, Float.NaN); //Missing Value
+        for (int i = location + 1; i < this.indexValues.length; i++) {
+            this.indexValues[i]++;
+        }
+    }
+
+    @Override
+    public InstanceData copy() {
+        return new FloatSparseInstanceData(this.attributeValues.clone(),
+                this.indexValues.clone(), this.numberAttributes);
+    }
+}
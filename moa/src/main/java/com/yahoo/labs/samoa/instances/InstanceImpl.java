@@ -87,6 +87,19 @@ public class InstanceImpl implements MultiLabelInstance {
         this.instanceData = instanceData;
     }
 
+    /**
+     * Instantiates a new instance that shares the header of another instance.
+     *
+     * @param inst the instance whose header is shared
+     * @param weight the weight
+     * @param instanceData the instance data
+     */
+    public InstanceImpl(InstanceImpl inst, double weight, InstanceData instanceData) {
+        this.weight = weight;
+        this.instanceData = instanceData;
+        this.instanceHeader = inst.instanceHeader;
+    }
+
     /**
      * Instantiates a new instance.
      *
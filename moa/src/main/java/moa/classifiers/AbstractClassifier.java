@@ -32,6 +32,7 @@ import com.yahoo.labs.samoa.instances.InstancesHeader;
 
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.Profiler;
 import moa.core.StringUtils;
 import moa.gui.AWTRenderer;
 import moa.learners.Learner;
@@ -75,6 +76,9 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
     /** Random Generator used in randomizable learners  */
     public Random classifierRandom;
 
+    /** Profiling counter of the training calls, see Profiler */
+    protected transient Profiler.Counter trainProfilingCounter;
+
     /**
      * Creates an classifier and setups the random seed option
      * if the classifier is randomizable.
@@ -176,10 +180,25 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
         }
         if (isTraining) {
             this.trainingWeightSeenByModel += inst.weight();
-            trainOnInstanceImpl(inst);
+            if (Profiler.ENABLED) {
+                Profiler.Counter counter = getTrainProfilingCounter();
+                long startTime = counter.start();
+                trainOnInstanceImpl(inst);
+                counter.stop(startTime);
+            } else {
+                trainOnInstanceImpl(inst);
+            }
         }
     }
 
+    protected Profiler.Counter getTrainProfilingCounter() {
+        if (this.trainProfilingCounter == null) {
+            this.trainProfilingCounter = new Profiler.Counter(
+                    getClass().getSimpleName() + " trainOnInstance");
+        }
+        return this.trainProfilingCounter;
+    }
+
     @Override
     public Measurement[] getModelMeasurements() {
         List<Measurement> measurementList = new LinkedList<Measurement>();
@@ -191,6 +210,9 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
         if (modelMeasurements != null) {
             measurementList.addAll(Arrays.asList(modelMeasurements));
         }
+        if (Profiler.ENABLED) {
+            measurementList.addAll(Arrays.asList(getTrainProfilingCounter().getMeasurements()));
+        }
         // add average of sub-model measurements
         Learner[] subModels = getSublearners();
         if ((subModels != null) && (subModels.length > 0)) {
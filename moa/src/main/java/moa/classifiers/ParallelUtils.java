@@ -0,0 +1,96 @@
+/*
+ *    ParallelUtils.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import moa.core.ResourceMeter;
+
+/**
+ * Executors and job running shared by the learners that implement Parallel.
+ */
+public class ParallelUtils {
+
+    /**
+     * Returns the number of jobs of a numberOfJobs option, where -1 means one
+     * job per processor.
+     */
+    public static int numberOfJobs(int numberOfJobsOption) {
+        return numberOfJobsOption == -1
+                ? Runtime.getRuntime().availableProcessors() : numberOfJobsOption;
+    }
+
+    /**
+     * Creates an executor for a numberOfJobs option, or returns null if there
+     * is at most one job. The threads are daemons measured by the resource
+     * meter of the creating task, because the evaluation tasks do not shut
+     * down the executors of the learners.
+     */
+    public static ExecutorService newExecutor(int numberOfJobsOption) {
+        int numberOfJobs = numberOfJobs(numberOfJobsOption);
+        if (numberOfJobs <= 1) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(numberOfJobs, ResourceMeter.threadFactory());
+    }
+
+    /**
+     * Runs the jobs on the executor and waits for them, or runs them one
+     * after the other on the calling thread when the executor is null or
+     * there is only one job. An exception thrown by a job is rethrown.
+     *
+     * @param executor The executor, or null.
+     * @param jobs The jobs to run.
+     */
+    public static <T> void runJobs(ExecutorService executor, List<? extends Callable<T>> jobs) {
+        if (executor == null || jobs.size() < 2) {
+            for (Callable<T> job : jobs) {
+                try {
+                    job.call();
+                } catch (RuntimeException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+            return;
+        }
+        try {
+            for (Future<T> future : executor.invokeAll(jobs)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running parallel jobs.", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
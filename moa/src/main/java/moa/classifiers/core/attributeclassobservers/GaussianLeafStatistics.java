@@ -0,0 +1,251 @@
+/*
+ *    GaussianLeafStatistics.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.attributeclassobservers;
+
+import java.util.Arrays;
+
+import moa.AbstractMOAObject;
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.GaussianEstimator;
+import moa.core.Statistics;
+import moa.core.Utils;
+
+/**
+ * Class for observing the class data distribution of all the numeric
+ * attributes of a leaf using gaussian estimators. Gives the same estimates and
+ * split suggestions as one GaussianNumericAttributeClassObserver per attribute,
+ * but keeps the weight, mean, variance sum, minimum and maximum of every
+ * attribute and class in a few primitive arrays, instead of an observer object
+ * per attribute and an estimator object per attribute and class.
+ *
+ * Only the numeric attributes get statistics, each in a slot of its own. The
+ * statistics of slot s and class c are at index c * numSlots + s, so that new
+ * classes are added at the end of the arrays.
+ */
+public class GaussianLeafStatistics extends AbstractMOAObject {
+
+    private static final long serialVersionUID = 1L;
+
+    protected int numBins;
+
+    // Slot of each attribute, -1 for the attributes without statistics
+    protected int[] attributeSlots;
+
+    protected int numSlots;
+
+    protected int numClasses;
+
+    protected double[] weightSum;
+
+    protected double[] mean;
+
+    protected double[] varianceSum;
+
+    // NaN while the class has not been observed for the attribute
+    protected double[] minValueObserved;
+
+    protected double[] maxValueObserved;
+
+    // Highest class observed plus one, per slot
+    protected int[] numClassesObserved;
+
+    /**
+     * Creates statistics for the attributes with a slot.
+     *
+     * @param attributeSlots the slot of each attribute, from 0 to numSlots - 1,
+     * or -1 for the attributes without statistics
+     * @param numSlots the number of slots
+     * @param numBins the number of split points to evaluate
+     */
+    public GaussianLeafStatistics(int[] attributeSlots, int numSlots, int numBins) {
+        this.attributeSlots = attributeSlots;
+        this.numSlots = numSlots;
+        this.numBins = numBins;
+        this.numClasses = 0;
+        this.weightSum = new double[0];
+        this.mean = new double[0];
+        this.varianceSum = new double[0];
+        this.minValueObserved = new double[0];
+        this.maxValueObserved = new double[0];
+        this.numClassesObserved = new int[numSlots];
+    }
+
+    public int numAttributes() {
+        return this.attributeSlots.length;
+    }
+
+    /**
+     * Returns true if the attribute has statistics in this object.
+     */
+    public boolean contains(int attIndex) {
+        return attIndex < this.attributeSlots.length && this.attributeSlots[attIndex] >= 0;
+    }
+
+    protected void ensureClasses(int classes) {
+        if (classes > this.numClasses) {
+            int length = classes * this.numSlots;
+            this.weightSum = Arrays.copyOf(this.weightSum, length);
+            this.mean = Arrays.copyOf(this.mean, length);
+            this.varianceSum = Arrays.copyOf(this.varianceSum, length);
+            this.minValueObserved = Arrays.copyOf(this.minValueObserved, length);
+            this.maxValueObserved = Arrays.copyOf(this.maxValueObserved, length);
+            Arrays.fill(this.minValueObserved, this.numClasses * this.numSlots, length, Double.NaN);
+            this.numClasses = classes;
+        }
+    }
+
+    public void observeAttributeClass(int attIndex, double attVal, int classVal, double weight) {
+        if (Utils.isMissingValue(attVal)) {
+            return;
+        }
+        ensureClasses(classVal + 1);
+        int slot = this.attributeSlots[attIndex];
+        int index = classVal * this.numSlots + slot;
+        if (Double.isNaN(this.minValueObserved[index])) {
+            this.minValueObserved[index] = attVal;
+            this.maxValueObserved[index] = attVal;
+            if (classVal >= this.numClassesObserved[slot]) {
+                this.numClassesObserved[slot] = classVal + 1;
+            }
+        } else {
+            if (attVal < this.minValueObserved[index]) {
+                this.minValueObserved[index] = attVal;
+            }
+            if (attVal > this.maxValueObserved[index]) {
+                this.maxValueObserved[index] = attVal;
+            }
+        }
+        // same update as GaussianEstimator.addObservation
+        if (Double.isInfinite(attVal)) {
+            return;
+        }
+        if (this.weightSum[index] > 0.0) {
+            this.weightSum[index] += weight;
+            double lastMean = this.mean[index];
+            this.mean[index] += weight * (attVal - lastMean) / this.weightSum[index];
+            this.varianceSum[index] += weight * (attVal - lastMean) * (attVal - this.mean[index]);
+        } else {
+            this.mean[index] = attVal;
+            this.weightSum[index] = weight;
+        }
+    }
+
+    public double probabilityOfAttributeValueGivenClass(int attIndex, double attVal,
+            int classVal) {
+        if (classVal >= this.numClasses) {
+            return 0.0;
+        }
+        int index = classVal * this.numSlots + this.attributeSlots[attIndex];
+        if (Double.isNaN(this.minValueObserved[index])) {
+            return 0.0;
+        }
+        return GaussianEstimator.probabilityDensity(this.weightSum[index],
+                this.mean[index], this.varianceSum[index], attVal);
+    }
+
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly) {
+        int slot = this.attributeSlots[attIndex];
+        int classes = this.numClassesObserved[slot];
+        double minValue = Double.POSITIVE_INFINITY;
+        double maxValue = Double.NEGATIVE_INFINITY;
+        for (int c = 0, index = slot; c < classes; c++, index += this.numSlots) {
+            if (!Double.isNaN(this.minValueObserved[index])) {
+                if (this.minValueObserved[index] < minValue) {
+                    minValue = this.minValueObserved[index];
+                }
+                if (this.maxValueObserved[index] > maxValue) {
+                    maxValue = this.maxValueObserved[index];
+                }
+            }
+        }
+        AttributeSplitSuggestion bestSuggestion = null;
+        if (minValue < Double.POSITIVE_INFINITY) {
+            // the split values grow with i, so equal values are consecutive
+            double range = maxValue - minValue;
+            double lastSplitValue = Double.NaN;
+            for (int i = 0; i < this.numBins; i++) {
+                double splitValue = range / (this.numBins + 1.0) * (i + 1)
+                        + minValue;
+                if ((splitValue > minValue) && (splitValue < maxValue)
+                        && (splitValue != lastSplitValue)) {
+                    lastSplitValue = splitValue;
+                    double[][] postSplitDists = getClassDistsResultingFromBinarySplit(attIndex, splitValue);
+                    double merit = criterion.getMeritOfSplit(preSplitDist,
+                            postSplitDists);
+                    if ((bestSuggestion == null) || (merit > bestSuggestion.merit)) {
+                        bestSuggestion = new AttributeSplitSuggestion(
+                                new NumericAttributeBinaryTest(attIndex, splitValue,
+                                true), postSplitDists, merit);
+                    }
+                }
+            }
+        }
+        return bestSuggestion;
+    }
+
+    // assume all values equal to splitValue go to lhs
+    public double[][] getClassDistsResultingFromBinarySplit(int attIndex, double splitValue) {
+        int slot = this.attributeSlots[attIndex];
+        int classes = this.numClassesObserved[slot];
+        double[] lhsDist = new double[classes];
+        double[] rhsDist = new double[classes];
+        int lhsLength = 0;
+        int rhsLength = 0;
+        for (int c = 0, index = slot; c < classes; c++, index += this.numSlots) {
+            if (!Double.isNaN(this.minValueObserved[index])) {
+                double weight = this.weightSum[index];
+                if (splitValue < this.minValueObserved[index]) {
+                    rhsDist[c] += weight;
+                    rhsLength = c + 1;
+                } else if (splitValue >= this.maxValueObserved[index]) {
+                    lhsDist[c] += weight;
+                    lhsLength = c + 1;
+                } else {
+                    // same estimate as GaussianEstimator.estimatedWeight_LessThan_EqualTo_GreaterThan_Value
+                    double mean = this.mean[index];
+                    double equalToWeight = GaussianEstimator.probabilityDensity(weight,
+                            mean, this.varianceSum[index], splitValue) * weight;
+                    double stdDev = Math.sqrt(GaussianEstimator.getVariance(weight, this.varianceSum[index]));
+                    double lessThanWeight = stdDev > 0.0 ? Statistics.normalProbability((splitValue - mean) / stdDev)
+                            * weight - equalToWeight
+                            : (splitValue < mean ? weight - equalToWeight : 0.0);
+                    double greaterThanWeight = weight - equalToWeight
+                            - lessThanWeight;
+                    if (greaterThanWeight < 0.0) {
+                        greaterThanWeight = 0.0;
+                    }
+                    lhsDist[c] += lessThanWeight + equalToWeight;
+                    rhsDist[c] += greaterThanWeight;
+                    lhsLength = c + 1;
+                    rhsLength = c + 1;
+                }
+            }
+        }
+        return new double[][]{Arrays.copyOf(lhsDist, lhsLength), Arrays.copyOf(rhsDist, rhsLength)};
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        // TODO Auto-generated method stub
+    }
+}
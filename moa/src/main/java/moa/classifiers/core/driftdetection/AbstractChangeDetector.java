@@ -18,6 +18,7 @@
  */
 package moa.classifiers.core.driftdetection;
 
+import moa.core.Profiler;
 import moa.options.AbstractOptionHandler;
 
 /**
@@ -79,6 +80,68 @@ public abstract class AbstractChangeDetector extends AbstractOptionHandler
      */
     public abstract void input(double inputValue);
 
+    /**
+     * Adds the first numValues values of an array to the change detector, one
+     * after the other, with the same output as calling input for each of them.
+     * Change detectors can override this method to avoid looking up their
+     * options and calling input for every value.
+     *
+     * @param inputValues the numbers to insert into the change detector
+     * @param numValues the number of values to insert
+     * @param batch the batch where the output is recorded
+     */
+    public void input(double[] inputValues, int numValues, ChangeDetectionBatch batch) {
+        batch.clear(numValues);
+        for (int i = 0; i < numValues; i++) {
+            input(inputValues[i]);
+            batch.addOutput(i, this.isChangeDetected, this.isWarningZone, this.delay, this.estimation);
+        }
+    }
+
+    /**
+     * Profiling counter of the inputs of all the change detectors that are
+     * called through profiledInput.
+     */
+    protected static final Profiler.Counter inputProfilingCounter = Profiler.getCounter("change detector input");
+
+    /**
+     * Adds a numeric value to a change detector, counting and timing the call
+     * when profiling is enabled (see Profiler).
+     *
+     * @param changeDetector the change detector
+     * @param inputValue the number to insert into the change detector
+     */
+    public static void profiledInput(ChangeDetector changeDetector, double inputValue) {
+        if (Profiler.ENABLED) {
+            long startTime = inputProfilingCounter.start();
+            changeDetector.input(inputValue);
+            inputProfilingCounter.stop(startTime);
+        } else {
+            changeDetector.input(inputValue);
+        }
+    }
+
+    /**
+     * Adds the first numValues values of an array to a change detector,
+     * counting them as numValues calls when profiling is enabled (see
+     * Profiler).
+     *
+     * @param changeDetector the change detector
+     * @param inputValues the numbers to insert into the change detector
+     * @param numValues the number of values to insert
+     * @param batch the batch where the output is recorded
+     */
+    public static void profiledInput(ChangeDetector changeDetector, double[] inputValues,
+            int numValues, ChangeDetectionBatch batch) {
+        if (Profiler.ENABLED) {
+            long startTime = inputProfilingCounter.start(numValues);
+            changeDetector.input(inputValues, numValues, batch);
+            inputProfilingCounter.stop(startTime, numValues);
+        } else {
+            changeDetector.input(inputValues, numValues, batch);
+        }
+    }
+
     /**
      * Gets whether there is change detected.
      *
@@ -0,0 +1,152 @@
+/*
+ *    ChangeDetectionBatch.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package moa.classifiers.core.driftdetection;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Output of a change detector over a batch of values, filled by
+ * ChangeDetector.input(double[], int, ChangeDetectionBatch): the indices of
+ * the values after which change was detected, with the delay of each
+ * detection, and the indices of the values after which the detector was in
+ * the warning zone. Optionally, the estimation and the delay after every
+ * value are recorded too, so the output of the detector after any value, as
+ * returned by ChangeDetector.getOutput, can be rebuilt.
+ *
+ * The arrays are reused from batch to batch, so a detector can scan a long
+ * series without allocating memory once they are large enough.
+ */
+public class ChangeDetectionBatch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected int[] changeIndices = new int[16];
+
+    protected double[] changeDelays = new double[16];
+
+    protected int numChanges;
+
+    protected int[] warningIndices = new int[16];
+
+    protected int numWarnings;
+
+    protected boolean recordOutputs;
+
+    protected double[] estimations;
+
+    protected double[] delays;
+
+    public ChangeDetectionBatch() {
+        this(false);
+    }
+
+    /**
+     * @param recordOutputs whether to record the estimation and the delay
+     * after every value
+     */
+    public ChangeDetectionBatch(boolean recordOutputs) {
+        this.recordOutputs = recordOutputs;
+    }
+
+    /**
+     * Empties the batch before a detector inputs numValues values.
+     */
+    public void clear(int numValues) {
+        this.numChanges = 0;
+        this.numWarnings = 0;
+        if (this.recordOutputs && (this.estimations == null || this.estimations.length < numValues)) {
+            this.estimations = new double[numValues];
+            this.delays = new double[numValues];
+        }
+    }
+
+    public void addChange(int index, double delay) {
+        if (this.numChanges == this.changeIndices.length) {
+            this.changeIndices = Arrays.copyOf(this.changeIndices, 2 * this.numChanges);
+            this.changeDelays = Arrays.copyOf(this.changeDelays, 2 * this.numChanges);
+        }
+        this.changeIndices[this.numChanges] = index;
+        this.changeDelays[this.numChanges] = delay;
+        this.numChanges++;
+    }
+
+    public void addWarning(int index) {
+        if (this.numWarnings == this.warningIndices.length) {
+            this.warningIndices = Arrays.copyOf(this.warningIndices, 2 * this.numWarnings);
+        }
+        this.warningIndices[this.numWarnings++] = index;
+    }
+
+    /**
+     * Records the state of a detector after the value of the given index.
+     */
+    public void addOutput(int index, boolean isChangeDetected,
+            boolean isWarningZone, double delay, double estimation) {
+        if (isChangeDetected) {
+            addChange(index, delay);
+        }
+        if (isWarningZone) {
+            addWarning(index);
+        }
+        if (this.recordOutputs) {
+            this.estimations[index] = estimation;
+            this.delays[index] = delay;
+        }
+    }
+
+    public boolean isRecordingOutputs() {
+        return this.recordOutputs;
+    }
+
+    public int getNumChanges() {
+        return this.numChanges;
+    }
+
+    public int getChangeIndex(int i) {
+        return this.changeIndices[i];
+    }
+
+    public double getChangeDelay(int i) {
+        return this.changeDelays[i];
+    }
+
+    public int getNumWarnings() {
+        return this.numWarnings;
+    }
+
+    public int getWarningIndex(int i) {
+        return this.warningIndices[i];
+    }
+
+    /**
+     * Gets the estimation after the value of the given index, if outputs are
+     * recorded.
+     */
+    public double getEstimation(int index) {
+        return this.estimations[index];
+    }
+
+    /**
+     * Gets the delay after the value of the given index, if outputs are
+     * recorded.
+     */
+    public double getDelay(int index) {
+        return this.delays[index];
+    }
+}
@@ -45,6 +45,19 @@ public interface ChangeDetector extends OptionHandler {
      */
     public void input(double inputValue);
 
+    /**
+     * Adds the first numValues values of an array to the change detector, one
+     * after the other, with the same output as calling input for each of them.
+     * The indices of the values after which change was detected or the
+     * detector was in the warning zone are recorded in the batch, which is
+     * emptied first.
+     *
+     * @param inputValues the numbers to insert into the change detector
+     * @param numValues the number of values to insert
+     * @param batch the batch where the output is recorded
+     */
+    public void input(double[] inputValues, int numValues, ChangeDetectionBatch batch);
+
     /**
      * Gets whether there is change detected.
      *
@@ -0,0 +1,688 @@
+/*
+ *    ChangeDetectorPool.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package moa.classifiers.core.driftdetection;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Pool of change detectors monitoring many independent series, one per key.
+ * Each value is added to the detector of its key with input(key, value), and
+ * the detector of a key is created when its first value arrives. Keys that
+ * receive no value for a while can be evicted, and a listener is told when
+ * change or a warning is detected for a key.
+ *
+ * Instead of one ChangeDetector object graph per key, the pools for DDM,
+ * PageHinkleyDM and CusumDM keep the state of every key in primitive arrays
+ * indexed by a dense index of the key, and the pool for ADWIN keeps a bare
+ * ADWIN per key. Use newPool to create the pool for a configured change
+ * detector; detectors without a specific pool are copied for every key.
+ */
+public abstract class ChangeDetectorPool implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Receives the detections of a pool.
+     */
+    public interface Listener {
+
+        /**
+         * Called when change is detected in the series of a key.
+         */
+        void changeDetected(long key);
+
+        /**
+         * Called when the series of a key enters the warning zone.
+         */
+        void warningDetected(long key);
+    }
+
+    protected static final int NONE = 0;
+
+    protected static final int WARNING = 1;
+
+    protected static final int CHANGE = 2;
+
+    private static final int FREE = -1;
+
+    // Hash table: key and dense index per slot, FREE index for empty slots
+    protected long[] tableKeys;
+
+    protected int[] tableIndices;
+
+    protected int size;
+
+    // Per index: key, whether it is used and the input count of its last value
+    protected long[] indexKeys;
+
+    protected boolean[] indexUsed;
+
+    protected long[] lastInputs;
+
+    protected int indexBound;
+
+    // Indices released by eviction, reused before growing indexBound
+    protected int[] freeIndices;
+
+    protected int numFree;
+
+    protected long numInputs;
+
+    protected long maxIdleInputs;
+
+    protected long nextEviction;
+
+    protected transient Listener listener;
+
+    public ChangeDetectorPool() {
+        this.tableKeys = new long[16];
+        this.tableIndices = new int[16];
+        Arrays.fill(this.tableIndices, FREE);
+        this.indexKeys = new long[16];
+        this.indexUsed = new boolean[16];
+        this.lastInputs = new long[16];
+        this.freeIndices = new int[16];
+    }
+
+    /**
+     * Creates a pool of detectors configured as the given change detector,
+     * which is only read.
+     */
+    public static ChangeDetectorPool newPool(ChangeDetector changeDetector) {
+        if (changeDetector.getClass() == DDM.class) {
+            return new DDMPool(((DDM) changeDetector).minNumInstancesOption.getValue());
+        }
+        if (changeDetector.getClass() == PageHinkleyDM.class) {
+            PageHinkleyDM pageHinkley = (PageHinkleyDM) changeDetector;
+            return new PageHinkleyDMPool(pageHinkley.minNumInstancesOption.getValue(),
+                    pageHinkley.deltaOption.getValue(), pageHinkley.lambdaOption.getValue(),
+                    pageHinkley.alphaOption.getValue());
+        }
+        if (changeDetector.getClass() == CusumDM.class) {
+            CusumDM cusum = (CusumDM) changeDetector;
+            return new CusumDMPool(cusum.minNumInstancesOption.getValue(),
+                    cusum.deltaOption.getValue(), cusum.lambdaOption.getValue());
+        }
+        if (changeDetector.getClass() == ADWINChangeDetector.class) {
+            return new ADWINPool(((ADWINChangeDetector) changeDetector).deltaAdwinOption.getValue());
+        }
+        return new CopyPool(changeDetector);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the number of inputs to the pool after which a key that received
+     * none of them is evicted, or 0 to keep every key. Idle keys are looked
+     * for every maxIdleInputs inputs, so a key is evicted after at most twice
+     * that number of inputs.
+     */
+    public void setMaxIdleInputs(long maxIdleInputs) {
+        this.maxIdleInputs = maxIdleInputs;
+        this.nextEviction = this.numInputs + maxIdleInputs;
+    }
+
+    /**
+     * Adds a value to the series of a key.
+     *
+     * @return true if change was detected for the key
+     */
+    public boolean input(long key, double value) {
+        int index = getOrAdd(key);
+        this.lastInputs[index] = this.numInputs++;
+        int output = inputAt(index, value);
+        if (output != NONE && this.listener != null) {
+            if (output == CHANGE) {
+                this.listener.changeDetected(key);
+            } else {
+                this.listener.warningDetected(key);
+            }
+        }
+        if (this.maxIdleInputs > 0 && this.numInputs >= this.nextEviction) {
+            evictIdleKeys(this.maxIdleInputs);
+            this.nextEviction = this.numInputs + this.maxIdleInputs;
+        }
+        return output == CHANGE;
+    }
+
+    /**
+     * Adds the first numValues values of an array to the series of the keys
+     * at the same positions, in order.
+     *
+     * @return the number of changes detected
+     */
+    public int input(long[] keys, double[] values, int numValues) {
+        int numChanges = 0;
+        for (int i = 0; i < numValues; i++) {
+            if (input(keys[i], values[i])) {
+                numChanges++;
+            }
+        }
+        return numChanges;
+    }
+
+    /**
+     * Evicts the keys that received no value in the last maxIdleInputs
+     * inputs to the pool.
+     *
+     * @return the number of keys evicted
+     */
+    public int evictIdleKeys(long maxIdleInputs) {
+        int numEvicted = 0;
+        for (int index = 0; index < this.indexBound; index++) {
+            if (this.indexUsed[index] && this.numInputs - this.lastInputs[index] > maxIdleInputs) {
+                remove(this.indexKeys[index]);
+                numEvicted++;
+            }
+        }
+        return numEvicted;
+    }
+
+    /**
+     * Removes the detector of a key.
+     *
+     * @return false if the key has no detector
+     */
+    public boolean remove(long key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return false;
+        }
+        int index = this.tableIndices[slot];
+        // Backward shift deletion: move up the entries of the probe sequence
+        // that would not be found anymore once the slot is emptied
+        int mask = this.tableKeys.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (this.tableIndices[next] == FREE) {
+                break;
+            }
+            int ideal = hash(this.tableKeys[next]) & mask;
+            boolean reachable = (slot <= next)
+                    ? (slot < ideal && ideal <= next)
+                    : (slot < ideal || ideal <= next);
+            if (!reachable) {
+                this.tableKeys[slot] = this.tableKeys[next];
+                this.tableIndices[slot] = this.tableIndices[next];
+                slot = next;
+            }
+        }
+        this.tableIndices[slot] = FREE;
+        this.size--;
+        this.indexUsed[index] = false;
+        release(index);
+        if (this.numFree == this.freeIndices.length) {
+            this.freeIndices = Arrays.copyOf(this.freeIndices, 2 * this.numFree);
+        }
+        this.freeIndices[this.numFree++] = index;
+        return true;
+    }
+
+    public boolean contains(long key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * Gets the estimation of the detector of a key, or NaN if the key has no
+     * detector.
+     */
+    public double getEstimation(long key) {
+        int slot = findSlot(key);
+        return slot >= 0 ? getEstimationAt(this.tableIndices[slot]) : Double.NaN;
+    }
+
+    /**
+     * Returns the number of keys with a detector.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public long getNumInputs() {
+        return this.numInputs;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int findSlot(long key) {
+        int mask = this.tableKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.tableIndices[slot] != FREE) {
+            if (this.tableKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1 - slot;
+    }
+
+    private int getOrAdd(long key) {
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            return this.tableIndices[slot];
+        }
+        if ((this.size + 1) * 4 > this.tableKeys.length * 3) {
+            rehash(2 * this.tableKeys.length);
+            slot = findSlot(key);
+        }
+        slot = -1 - slot;
+        int index;
+        if (this.numFree > 0) {
+            index = this.freeIndices[--this.numFree];
+        } else {
+            index = this.indexBound++;
+            if (index == this.indexKeys.length) {
+                int capacity = index + (index >> 1);
+                this.indexKeys = Arrays.copyOf(this.indexKeys, capacity);
+                this.indexUsed = Arrays.copyOf(this.indexUsed, capacity);
+                this.lastInputs = Arrays.copyOf(this.lastInputs, capacity);
+            }
+            ensureCapacity(this.indexKeys.length);
+        }
+        this.tableKeys[slot] = key;
+        this.tableIndices[slot] = index;
+        this.indexKeys[index] = key;
+        this.indexUsed[index] = true;
+        this.size++;
+        reset(index);
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = this.tableKeys;
+        int[] oldIndices = this.tableIndices;
+        this.tableKeys = new long[capacity];
+        this.tableIndices = new int[capacity];
+        Arrays.fill(this.tableIndices, FREE);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldIndices[i] != FREE) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (this.tableIndices[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                this.tableKeys[slot] = oldKeys[i];
+                this.tableIndices[slot] = oldIndices[i];
+            }
+        }
+    }
+
+    /**
+     * Makes the state arrays hold at least capacity indices.
+     */
+    protected abstract void ensureCapacity(int capacity);
+
+    /**
+     * Starts a new detector at an index.
+     */
+    protected abstract void reset(int index);
+
+    /**
+     * Frees the detector at an index that is no longer used.
+     */
+    protected void release(int index) {
+    }
+
+    /**
+     * Adds a value to the detector at an index.
+     *
+     * @return CHANGE, WARNING if the detector enters the warning zone, or NONE
+     */
+    protected abstract int inputAt(int index, double value);
+
+    protected abstract double getEstimationAt(int index);
+
+    /**
+     * Pool of DDM detectors, with the same output as a DDM for each key.
+     */
+    public static class DDMPool extends ChangeDetectorPool {
+
+        private static final long serialVersionUID = 1L;
+
+        protected int minNumInstances;
+
+        protected int[] n = new int[0];
+
+        protected double[] p = new double[0];
+
+        protected double[] s = new double[0];
+
+        protected double[] psmin = new double[0];
+
+        protected double[] pmin = new double[0];
+
+        protected double[] smin = new double[0];
+
+        protected boolean[] isChangeDetected = new boolean[0];
+
+        protected boolean[] isWarningZone = new boolean[0];
+
+        public DDMPool(int minNumInstances) {
+            this.minNumInstances = minNumInstances;
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (this.n.length < capacity) {
+                this.n = Arrays.copyOf(this.n, capacity);
+                this.p = Arrays.copyOf(this.p, capacity);
+                this.s = Arrays.copyOf(this.s, capacity);
+                this.psmin = Arrays.copyOf(this.psmin, capacity);
+                this.pmin = Arrays.copyOf(this.pmin, capacity);
+                this.smin = Arrays.copyOf(this.smin, capacity);
+                this.isChangeDetected = Arrays.copyOf(this.isChangeDetected, capacity);
+                this.isWarningZone = Arrays.copyOf(this.isWarningZone, capacity);
+            }
+        }
+
+        @Override
+        protected void reset(int index) {
+            this.n[index] = 1;
+            this.p[index] = 1;
+            this.s[index] = 0;
+            this.psmin[index] = Double.MAX_VALUE;
+            this.pmin[index] = Double.MAX_VALUE;
+            this.smin[index] = Double.MAX_VALUE;
+            this.isChangeDetected[index] = false;
+            this.isWarningZone[index] = false;
+        }
+
+        @Override
+        protected int inputAt(int index, double prediction) {
+            if (this.isChangeDetected[index]) {
+                reset(index);
+            }
+            double p = this.p[index] + (prediction - this.p[index]) / (double) this.n[index];
+            double s = Math.sqrt(p * (1 - p) / (double) this.n[index]);
+            int n = ++this.n[index];
+            this.p[index] = p;
+            this.s[index] = s;
+            boolean wasWarningZone = this.isWarningZone[index];
+            this.isWarningZone[index] = false;
+            if (n < this.minNumInstances) {
+                return NONE;
+            }
+            if (p + s <= this.psmin[index]) {
+                this.pmin[index] = p;
+                this.smin[index] = s;
+                this.psmin[index] = p + s;
+            }
+            if (n > this.minNumInstances && p + s > this.pmin[index] + 3 * this.smin[index]) {
+                this.isChangeDetected[index] = true;
+                return CHANGE;
+            } else if (p + s > this.pmin[index] + 2 * this.smin[index]) {
+                this.isWarningZone[index] = true;
+                return wasWarningZone ? NONE : WARNING;
+            }
+            return NONE;
+        }
+
+        @Override
+        protected double getEstimationAt(int index) {
+            return this.p[index];
+        }
+    }
+
+    /**
+     * Pool of PageHinkleyDM detectors, with the same output as a
+     * PageHinkleyDM for each key.
+     */
+    public static class PageHinkleyDMPool extends ChangeDetectorPool {
+
+        private static final long serialVersionUID = 1L;
+
+        protected int minNumInstances;
+
+        protected double delta;
+
+        protected double lambda;
+
+        protected double alpha;
+
+        protected int[] n = new int[0];
+
+        protected double[] mean = new double[0];
+
+        protected double[] sum = new double[0];
+
+        protected boolean[] isChangeDetected = new boolean[0];
+
+        public PageHinkleyDMPool(int minNumInstances, double delta, double lambda, double alpha) {
+            this.minNumInstances = minNumInstances;
+            this.delta = delta;
+            this.lambda = lambda;
+            this.alpha = alpha;
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (this.n.length < capacity) {
+                this.n = Arrays.copyOf(this.n, capacity);
+                this.mean = Arrays.copyOf(this.mean, capacity);
+                this.sum = Arrays.copyOf(this.sum, capacity);
+                this.isChangeDetected = Arrays.copyOf(this.isChangeDetected, capacity);
+            }
+        }
+
+        @Override
+        protected void reset(int index) {
+            this.n[index] = 1;
+            this.mean[index] = 0.0;
+            this.sum[index] = 0.0;
+            this.isChangeDetected[index] = false;
+        }
+
+        @Override
+        protected int inputAt(int index, double x) {
+            if (this.isChangeDetected[index]) {
+                reset(index);
+            }
+            double mean = this.mean[index] + (x - this.mean[index]) / (double) this.n[index];
+            double sum = this.alpha * this.sum[index] + (x - mean - this.delta);
+            this.mean[index] = mean;
+            this.sum[index] = sum;
+            if (++this.n[index] >= this.minNumInstances && sum > this.lambda) {
+                this.isChangeDetected[index] = true;
+                return CHANGE;
+            }
+            return NONE;
+        }
+
+        @Override
+        protected double getEstimationAt(int index) {
+            return this.mean[index];
+        }
+    }
+
+    /**
+     * Pool of CusumDM detectors, with the same output as a CusumDM for each
+     * key.
+     */
+    public static class CusumDMPool extends ChangeDetectorPool {
+
+        private static final long serialVersionUID = 1L;
+
+        protected int minNumInstances;
+
+        protected double delta;
+
+        protected double lambda;
+
+        protected int[] n = new int[0];
+
+        protected double[] mean = new double[0];
+
+        protected double[] sum = new double[0];
+
+        protected boolean[] isChangeDetected = new boolean[0];
+
+        public CusumDMPool(int minNumInstances, double delta, double lambda) {
+            this.minNumInstances = minNumInstances;
+            this.delta = delta;
+            this.lambda = lambda;
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (this.n.length < capacity) {
+                this.n = Arrays.copyOf(this.n, capacity);
+                this.mean = Arrays.copyOf(this.mean, capacity);
+                this.sum = Arrays.copyOf(this.sum, capacity);
+                this.isChangeDetected = Arrays.copyOf(this.isChangeDetected, capacity);
+            }
+        }
+
+        @Override
+        protected void reset(int index) {
+            this.n[index] = 1;
+            this.mean[index] = 0.0;
+            this.sum[index] = 0.0;
+            this.isChangeDetected[index] = false;
+        }
+
+        @Override
+        protected int inputAt(int index, double x) {
+            if (this.isChangeDetected[index]) {
+                reset(index);
+            }
+            double mean = this.mean[index] + (x - this.mean[index]) / (double) this.n[index];
+            double sum = Math.max(0, this.sum[index] + x - mean - this.delta);
+            this.mean[index] = mean;
+            this.sum[index] = sum;
+            if (++this.n[index] >= this.minNumInstances && sum > this.lambda) {
+                this.isChangeDetected[index] = true;
+                return CHANGE;
+            }
+            return NONE;
+        }
+
+        @Override
+        protected double getEstimationAt(int index) {
+            return this.mean[index];
+        }
+    }
+
+    /**
+     * Pool of ADWIN windows, which detect change for a key when
+     * ADWINChangeDetector would: when the window shrinks and its average
+     * increases. The buckets of a window vary in number, so each key keeps an
+     * ADWIN object, without the options and fields of a detector.
+     */
+    public static class ADWINPool extends ChangeDetectorPool {
+
+        private static final long serialVersionUID = 1L;
+
+        protected double delta;
+
+        protected ADWIN[] windows = new ADWIN[0];
+
+        public ADWINPool(double delta) {
+            this.delta = delta;
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (this.windows.length < capacity) {
+                this.windows = Arrays.copyOf(this.windows, capacity);
+            }
+        }
+
+        @Override
+        protected void reset(int index) {
+            this.windows[index] = new ADWIN(this.delta);
+        }
+
+        @Override
+        protected void release(int index) {
+            this.windows[index] = null;
+        }
+
+        @Override
+        protected int inputAt(int index, double value) {
+            ADWIN window = this.windows[index];
+            double estimation = window.getEstimation();
+            if (window.setInput(value) && window.getEstimation() > estimation) {
+                return CHANGE;
+            }
+            return NONE;
+        }
+
+        @Override
+        protected double getEstimationAt(int index) {
+            return this.windows[index].getEstimation();
+        }
+    }
+
+    /**
+     * Pool that keeps a copy of a change detector for every key, for the
+     * detectors without a specific pool.
+     */
+    public static class CopyPool extends ChangeDetectorPool {
+
+        private static final long serialVersionUID = 1L;
+
+        protected ChangeDetector prototype;
+
+        protected ChangeDetector[] detectors = new ChangeDetector[0];
+
+        public CopyPool(ChangeDetector prototype) {
+            this.prototype = prototype.copy();
+            this.prototype.resetLearning();
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (this.detectors.length < capacity) {
+                this.detectors = Arrays.copyOf(this.detectors, capacity);
+            }
+        }
+
+        @Override
+        protected void reset(int index) {
+            this.detectors[index] = this.prototype.copy();
+        }
+
+        @Override
+        protected void release(int index) {
+            this.detectors[index] = null;
+        }
+
+        @Override
+        protected int inputAt(int index, double value) {
+            ChangeDetector detector = this.detectors[index];
+            boolean wasWarningZone = detector.getWarningZone();
+            detector.input(value);
+            if (detector.getChange()) {
+                return CHANGE;
+            }
+            return detector.getWarningZone() && !wasWarningZone ? WARNING : NONE;
+        }
+
+        @Override
+        protected double getEstimationAt(int index) {
+            return this.detectors[index].getEstimation();
+        }
+    }
+}
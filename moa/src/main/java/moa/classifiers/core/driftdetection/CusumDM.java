@@ -73,6 +73,20 @@ public class CusumDM extends AbstractChangeDetector {
 
     @Override
     public void input(double x) {
+        input(x, this.minNumInstancesOption.getValue());
+    }
+
+    @Override
+    public void input(double[] x, int numValues, ChangeDetectionBatch batch) {
+        batch.clear(numValues);
+        int minNumInstances = this.minNumInstancesOption.getValue();
+        for (int i = 0; i < numValues; i++) {
+            input(x[i], minNumInstances);
+            batch.addOutput(i, this.isChangeDetected, this.isWarningZone, this.delay, this.estimation);
+        }
+    }
+
+    private void input(double x, int minNumInstances) {
         // It monitors the error rate
         if (this.isChangeDetected == true || this.isInitialized == false) {
             resetLearning();
@@ -93,7 +107,7 @@ public class CusumDM extends AbstractChangeDetector {
         this.isWarningZone = false;
         this.delay = 0;
 
-        if (m_n < this.minNumInstancesOption.getValue()) {
+        if (m_n < minNumInstances) {
             return;
         }
 
@@ -69,6 +69,20 @@ public class DDM extends AbstractChangeDetector {
 
     @Override
     public void input(double prediction) {
+        input(prediction, this.minNumInstancesOption.getValue());
+    }
+
+    @Override
+    public void input(double[] predictions, int numValues, ChangeDetectionBatch batch) {
+        batch.clear(numValues);
+        int minNumInstances = this.minNumInstancesOption.getValue();
+        for (int i = 0; i < numValues; i++) {
+            input(predictions[i], minNumInstances);
+            batch.addOutput(i, this.isChangeDetected, this.isWarningZone, this.delay, this.estimation);
+        }
+    }
+
+    private void input(double prediction, int minNumInstances) {
         // prediction must be 1 or 0
         // It monitors the error rate
         if (this.isChangeDetected == true || this.isInitialized == false) {
@@ -86,7 +100,7 @@ public class DDM extends AbstractChangeDetector {
         this.isWarningZone = false;
         this.delay = 0;
 
-        if (m_n < this.minNumInstancesOption.getValue()) {
+        if (m_n < minNumInstances) {
             return;
         }
 
@@ -96,7 +110,7 @@ public class DDM extends AbstractChangeDetector {
             m_psmin = m_p + m_s;
         }
 
-        if (m_n > this.minNumInstancesOption.getValue() && m_p + m_s > m_pmin + 3 * m_smin) {
+        if (m_n > minNumInstances && m_p + m_s > m_pmin + 3 * m_smin) {
             //System.out.println(m_p + ",D");
             this.isChangeDetected = true;
             //resetLearning();
@@ -76,6 +76,28 @@ public class HDDM_A_Test extends AbstractChangeDetector {
 
     @Override
     public void input(double value) {
+        input(value, Math.log(1.0 / driftConfidenceOption.getValue()),
+                Math.log(2.0 / driftConfidenceOption.getValue()),
+                Math.log(2.0 / warningConfidenceOption.getValue()),
+                this.oneSidedTestOption.getChosenIndex() == 1);
+    }
+
+    @Override
+    public void input(double[] values, int numValues, ChangeDetectionBatch batch) {
+        batch.clear(numValues);
+        // The bounds only depend on the options through these logarithms
+        double logOneOverDrift = Math.log(1.0 / driftConfidenceOption.getValue());
+        double logTwoOverDrift = Math.log(2.0 / driftConfidenceOption.getValue());
+        double logTwoOverWarning = Math.log(2.0 / warningConfidenceOption.getValue());
+        boolean twoSided = this.oneSidedTestOption.getChosenIndex() == 1;
+        for (int i = 0; i < numValues; i++) {
+            input(values[i], logOneOverDrift, logTwoOverDrift, logTwoOverWarning, twoSided);
+            batch.addOutput(i, this.isChangeDetected, this.isWarningZone, this.delay, this.estimation);
+        }
+    }
+
+    private void input(double value, double logOneOverDrift, double logTwoOverDrift,
+            double logTwoOverWarning, boolean twoSided) {
         total_n++;
         total_c += value;
         if (n_min == 0) {
@@ -87,34 +109,33 @@ public class HDDM_A_Test extends AbstractChangeDetector {
             c_max = total_c;
         }
 
-        double cota = Math.sqrt(1.0 / (2 * n_min) * Math.log(1.0 / driftConfidenceOption.getValue())),
-                cota1 = Math.sqrt(1.0 / (2 * total_n) * Math.log(1.0 / driftConfidenceOption.getValue()));
+        double cota = Math.sqrt(1.0 / (2 * n_min) * logOneOverDrift),
+                cota1 = Math.sqrt(1.0 / (2 * total_n) * logOneOverDrift);
         if (c_min / n_min + cota >= total_c / total_n + cota1) {
             c_min = total_c;
             n_min = total_n;
         }
 
-        cota = Math.sqrt(1.0 / (2 * n_max) * Math.log(1.0 / driftConfidenceOption.getValue()));
+        cota = Math.sqrt(1.0 / (2 * n_max) * logOneOverDrift);
         if (c_max / n_max - cota <= total_c / total_n - cota1) {
             c_max = total_c;
             n_max = total_n;
         }
-        if (meanIncr(c_min, n_min, total_c, total_n, driftConfidenceOption.getValue())) {
+        if (meanIncr(c_min, n_min, total_c, total_n, logTwoOverDrift)) {
             nEstimacion = total_n - n_min;
             cEstimacion = total_c - c_min;
             n_min = n_max = total_n = 0;
             c_min = c_max = total_c = 0;
             this.isChangeDetected = true;
             this.isWarningZone = false;
-        } else if (meanIncr(c_min, n_min, total_c, total_n, warningConfidenceOption.getValue())) {
+        } else if (meanIncr(c_min, n_min, total_c, total_n, logTwoOverWarning)) {
             this.isChangeDetected = false;
             this.isWarningZone = true;
         } else {
             this.isChangeDetected = false;
             this.isWarningZone = false;
         }
-        if (this.oneSidedTestOption.getChosenIndex() == 1 
-                && meanDecr(c_max, n_max, total_c, total_n)) {
+        if (twoSided && meanDecr(c_max, n_max, total_c, total_n, logTwoOverDrift)) {
             nEstimacion = total_n - n_max;
             cEstimacion = total_c - c_max;
             n_min = n_max = total_n = 0;
@@ -123,21 +144,24 @@ public class HDDM_A_Test extends AbstractChangeDetector {
         updateEstimations();
     }
 
-    private boolean meanIncr(double c_min, int n_min, double total_c, int total_n, double confianzaCambio) {
+    /**
+     * @param logTwoOverConfianza the logarithm of 2 divided by the confidence
+     */
+    private boolean meanIncr(double c_min, int n_min, double total_c, int total_n, double logTwoOverConfianza) {
         if (n_min == total_n) {
             return false;
         }
         double m = (double) (total_n - n_min) / n_min * (1.0 / total_n);
-        double cota = Math.sqrt(m / 2 * Math.log(2.0 / confianzaCambio));
+        double cota = Math.sqrt(m / 2 * logTwoOverConfianza);
         return total_c / total_n - c_min / n_min >= cota;
     }
 
-    private boolean meanDecr(double c_max, int n_max, double total_c, int total_n) {
+    private boolean meanDecr(double c_max, int n_max, double total_c, int total_n, double logTwoOverConfianza) {
         if (n_max == total_n) {
             return false;
         }
         double m = (double) (total_n - n_max) / n_max * (1.0 / total_n);
-        double cota = Math.sqrt(m / 2 * Math.log(2.0 / driftConfidenceOption.getValue()));
+        double cota = Math.sqrt(m / 2 * logTwoOverConfianza);
         return c_max / n_max - total_c / total_n >= cota;
     }
 
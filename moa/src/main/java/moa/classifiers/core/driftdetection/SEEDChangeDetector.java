@@ -59,6 +59,30 @@ public class SEEDChangeDetector extends AbstractChangeDetector
 	this.delay = 0.0;
 	this.estimation = 0.0;
     }
+
+    @Override
+    public void input(double[] inputValues, int numValues, ChangeDetectionBatch batch)
+    {
+	batch.clear(numValues);
+	if(this.seed == null)
+	{
+	    resetLearning();
+	}
+	SEED seed = this.seed;
+	boolean isChangeDetected = this.isChangeDetected;
+	for (int i = 0; i < numValues; i++)
+	{
+	    isChangeDetected = seed.setInput(inputValues[i]);
+	    batch.addOutput(i, isChangeDetected, false, 0.0, 0.0);
+	}
+	this.isChangeDetected = isChangeDetected;
+	if (numValues > 0)
+	{
+	    this.isWarningZone = false;
+	    this.delay = 0.0;
+	    this.estimation = 0.0;
+	}
+    }
     
     @Override
     public void resetLearning()
@@ -27,6 +27,7 @@ import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.meta.WEKAClassifier;
 import moa.core.Measurement;
 import moa.core.Utils;
+import moa.classifiers.core.driftdetection.AbstractChangeDetector;
 import moa.classifiers.core.driftdetection.ChangeDetector;
 import moa.options.ClassOption;
 
@@ -109,7 +110,7 @@ public class DriftDetectionMethodClassifier extends AbstractClassifier implement
             prediction = false;
         }
         //this.ddmLevel = this.driftDetectionMethod.computeNextVal(prediction);
-        this.driftDetectionMethod.input(prediction ? 0.0 : 1.0);
+        AbstractChangeDetector.profiledInput(this.driftDetectionMethod, prediction ? 0.0 : 1.0);
         this.ddmLevel = DDM_INCONTROL_LEVEL;
         if (this.driftDetectionMethod.getChange()) {
          this.ddmLevel =  DDM_OUTCONTROL_LEVEL;
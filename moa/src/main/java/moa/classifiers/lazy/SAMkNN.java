@@ -15,25 +15,29 @@
  *    
  */
 package moa.classifiers.lazy;
+import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
-import com.yahoo.labs.samoa.instances.InstanceImpl;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.MultiClassClassifier;
+import moa.classifiers.Parallel;
+import moa.classifiers.ParallelUtils;
 import moa.core.Measurement;
 import com.yahoo.labs.samoa.instances.Instance;
-import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.FlagOption;
 import moa.clusterers.kmeanspm.CoresetKMeans;
+import moa.clusterers.kmeanspm.KMeansEngine;
 /**
  * Self Adjusting Memory (SAM) coupled with the k Nearest Neighbor classifier (kNN) .<p>
  *
  * Valid options are:<p>
  *
- * -k number of neighbours <br> -w max instances <br> -m minimum number of instances in the STM <br> -p LTM size relative to max instances <br> -r Recalculation of the STM error <br>
+ * -k number of neighbours <br> -w max instances <br> -m minimum number of instances in the STM <br> -p LTM size relative to max instances <br> -r Recalculation of the STM error <br> -j number of jobs for the distance computations <br>
  *
  * @author Viktor Losing (vlosing@techfak.uni-bielefeld.de)
  * Paper:
@@ -53,7 +57,7 @@ import moa.clusterers.kmeanspm.CoresetKMeans;
  * month={Dec}
  * }"
  */
-public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
+public class SAMkNN extends AbstractClassifier implements MultiClassClassifier, Parallel {
     private static final long serialVersionUID = 1L;
 
     public IntOption kOption = new IntOption( "k", 'k', "The number of neighbors", 5, 1, Integer.MAX_VALUE);
@@ -69,15 +73,23 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 
     public FlagOption recalculateSTMErrorOption = new FlagOption("recalculateError", 'r',
             "Recalculates the error rate of the STM for size adaption (Costly operation). Otherwise, an approximation is used.");
+
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for the distance computations of large memories (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
 	private int maxClassValue = 0;
 
+	// Minimum number of values of a memory (samples times attributes) for splitting distance computations between jobs
+	private static final long PARALLEL_MIN_VALUES = 1 << 16;
+
     @Override
     public String getPurposeString() {
         return "SAMkNN: special.";
     }
 
-    private Instances stm;
-	private Instances ltm;
+    private SampleMemory stm;
+	private SampleMemory ltm;
+	private int numAttributes;
+	private int classIndex;
 	private int maxLTMSize;
 	private int maxSTMSize;
 	private List<Integer> stmHistory;
@@ -88,26 +100,39 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 	private Map<Integer, List<Integer>> predictionHistories;
 	private Random random;
 
+	// Scratch buffers, reused between calls to avoid allocations per sample
+	private transient double[] queryBuffer;
+	private transient double[] distancesSTMBuffer;
+	private transient double[] distancesLTMBuffer;
+	private transient double[] distancesCMBuffer;
+	private transient double[] cleanAgainstBuffer;
+	private transient double[] cleanDistancesBuffer;
+
+	private int numberOfJobs;
+	private transient ExecutorService executor;
+
     protected void init(){
     	this.maxLTMSize = (int)(relativeLTMSizeOption.getValue() * limitOption.getValue());
     	this.maxSTMSize = limitOption.getValue() - this.maxLTMSize;
     	this.stmHistory = new ArrayList<>();
     	this.ltmHistory = new ArrayList<>();
     	this.cmHistory = new ArrayList<>();
-    	//store calculated STM distances in a matrix to avoid recalculation, are reused in the STM adaption phase
-		this.distanceMatrixSTM = new double[limitOption.getValue()+1][limitOption.getValue()+1];
+    	//store calculated STM distances in a matrix to avoid recalculation, are reused in the STM adaption phase.
+		//Only the lower triangle is used, the rows are allocated when first needed
+		this.distanceMatrixSTM = new double[limitOption.getValue()+1][];
 		this.predictionHistories = new HashMap<>();
-		this.random = new Random();
+		// Seeded, so that the clustering of the LTM is reproducible
+		this.random = new Random(1);
 
     }
 
 	@Override
 	public void setModelContext(InstancesHeader context) {
 		try {
-			this.stm = new Instances(context,0);
-			this.stm.setClassIndex(context.classIndex());
-			this.ltm = new Instances(context,0); 
-			this.ltm.setClassIndex(context.classIndex());
+			this.numAttributes = context.numAttributes();
+			this.classIndex = context.classIndex();
+			this.stm = new SampleMemory(this.numAttributes - 1);
+			this.ltm = new SampleMemory(this.numAttributes - 1);
 			this.init();
 		} catch(Exception e) {
 			System.err.println("Error: no Model Context available.");
@@ -125,45 +150,56 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 		this.cmHistory = null;
 		this.distanceMatrixSTM = null;
 		this.predictionHistories = null;
+		this.queryBuffer = null;
+		this.distancesSTMBuffer = null;
+		this.distancesLTMBuffer = null;
+		this.distancesCMBuffer = null;
+		this.cleanAgainstBuffer = null;
+		this.cleanDistancesBuffer = null;
+
+		// Multi-threading
+		this.shutdownExecutor();
+		this.executor = null;
+		this.numberOfJobs = ParallelUtils.numberOfJobs(this.numberOfJobsOption.getValue());
+		this.executor = ParallelUtils.newExecutor(this.numberOfJobs);
     }
 
     @Override
     public void trainOnInstanceImpl(Instance inst) {
+		if (this.stm == null) {
+			// The memories were released by resetLearning
+			this.setModelContext(new InstancesHeader(inst.dataset()));
+		}
         //this.trainStepCount++;
 		if (inst.classValue() > maxClassValue)
 			maxClassValue = (int)inst.classValue();
 		this.stm.add(inst);
 		memorySizeCheck();
-		clean(this.stm, this.ltm, true);
-		double distancesSTM[] = this.get1ToNDistances(inst, this.stm);
-		for (int i =0; i < this.stm.numInstances();i++){
-			this.distanceMatrixSTM[this.stm.numInstances()-1][i] = distancesSTM[i];
-		}
-		int oldWindowSize = this.stm.numInstances();
+		//the distances of the new sample are computed once, they are used for cleaning the LTM and kept in the distance matrix
+		double distancesSTM[] = this.getDistanceMatrixRow(this.stm.size()-1);
+		this.computeDistances(this.toQuery(inst), 0, this.stm, distancesSTM);
+		clean(this.ltm, true);
+		int oldWindowSize = this.stm.size();
 		int newWindowSize = this.getNewSTMSize(recalculateSTMErrorOption.isSet());
 
 		if (newWindowSize < oldWindowSize) {
 			int diff = oldWindowSize - newWindowSize;
-			Instances discardedSTMInstances = new Instances(this.stm, 0);
+			SampleMemory discardedSTMSamples = new SampleMemory(this.stm.numAttributes);
 
-			for (int i = diff; i>0;i--){
-				discardedSTMInstances.add(this.stm.get(0).copy());
-				this.stm.delete(0);
-			}
-			for (int i = 0; i < this.stm.numInstances(); i++){
-				for (int j = 0; j < this.stm.numInstances(); j++){
-					this.distanceMatrixSTM[i][j] = this.distanceMatrixSTM[diff+i][diff+j];
-				}
+			for (int i = 0; i < diff; i++){
+				discardedSTMSamples.add(this.stm, i);
 			}
+			this.stm.removeFirst(diff);
+			this.shiftDistanceMatrix(diff);
 			for (int i = 0; i < diff; i++) {
 				this.stmHistory.remove(0);
 				this.ltmHistory.remove(0);
 				this.cmHistory.remove(0);
 			}
 
-			this.clean(this.stm, discardedSTMInstances, false);
-			for (int i = 0; i < discardedSTMInstances.numInstances(); i++){
-				this.ltm.add(discardedSTMInstances.get(i).copy());
+			this.clean(discardedSTMSamples, false);
+			for (int i = 0; i < discardedSTMSamples.size(); i++){
+				this.ltm.add(discardedSTMSamples, i);
 			}
 			memorySizeCheck();
 		}
@@ -173,6 +209,9 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
      */
     @Override
     public double[] getVotesForInstance(Instance inst) {
+		if (this.stm == null) {
+			this.setModelContext(new InstancesHeader(inst.dataset()));
+		}
 
 		double vSTM[];
 		double vLTM[];
@@ -184,16 +223,21 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
         int predClassLTM = 0;
         int predClassCM = 0;
 		try {
-			if (this.stm.numInstances()>0) {
-				distancesSTM = get1ToNDistances(inst, this.stm);
-				int nnIndicesSTM[] = nArgMin(Math.min(distancesSTM.length, this.kOption.getValue()), distancesSTM);
+			int numSTM = this.stm.size();
+			if (numSTM>0) {
+				int numLTM = this.ltm.size();
+				double query[] = this.toQuery(inst);
+				distancesSTM = this.distancesSTMBuffer = ensureCapacity(this.distancesSTMBuffer, numSTM);
+				this.computeDistances(query, 0, this.stm, distancesSTM);
+				int nnIndicesSTM[] = nArgMin(Math.min(numSTM, this.kOption.getValue()), distancesSTM, 0, numSTM-1);
 				vSTM = getDistanceWeightedVotes(distancesSTM, nnIndicesSTM, this.stm);
                 predClassSTM = this.getClassFromVotes(vSTM);
-                distancesLTM = get1ToNDistances(inst, this.ltm);
+                distancesLTM = this.distancesLTMBuffer = ensureCapacity(this.distancesLTMBuffer, numLTM);
+                this.computeDistances(query, 0, this.ltm, distancesLTM);
                 vCM = getCMVotes(distancesSTM, this.stm, distancesLTM, this.ltm);
                 predClassCM = this.getClassFromVotes(vCM);
-				if (this.ltm.numInstances() >= 0) {
-                    int nnIndicesLTM[] = nArgMin(Math.min(distancesLTM.length, this.kOption.getValue()), distancesLTM);
+				if (numLTM >= 0) {
+                    int nnIndicesLTM[] = nArgMin(Math.min(numLTM, this.kOption.getValue()), distancesLTM, 0, numLTM-1);
                     vLTM = getDistanceWeightedVotes(distancesLTM, nnIndicesLTM, this.ltm);
                     predClassLTM = this.getClassFromVotes(vLTM);
                 }else{
@@ -234,6 +278,12 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
         return false;
     }
 
+    @Override
+    public void shutdownExecutor() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
 
 	private int historySum(List<Integer> history){
 		int sum = 0;
@@ -244,94 +294,134 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 	}
 
 	private List<double[]> kMeans(List<double[]> points, int k){
-		List<double[]> centroids = CoresetKMeans
-				.generatekMeansPlusPlusCentroids(k,
-						points, this.random);
-		CoresetKMeans.kMeans(centroids, points);
+		KMeansEngine engine = KMeansEngine.fromWeightedPoints(points);
+		engine.setExecutor(this.executor);
+		engine.setPruning(true);
+		List<double[]> centroids = CoresetKMeans.generatekMeansPlusPlusCentroids(k, engine, this.random);
+		CoresetKMeans.kMeans(centroids, engine);
 		return centroids;
 	}
 	/**
 	 * Performs classwise kMeans++ clustering for given samples with corresponding labels. The number of samples is halved per class.
 	 */
 	private void clusterDown(){
-		int classIndex = this.ltm.classIndex();
 		for (int c = 0; c <= this.maxClassValue; c++){
 			List<double[]> classSamples = new ArrayList<>();
-			for (int i = this.ltm.numInstances()-1; i >-1 ; i--) {
-				if (this.ltm.get(i).classValue() == c) {
-					classSamples.add(this.ltm.get(i).toDoubleArray());
-					this.ltm.delete(i);
+			for (int i = this.ltm.size()-1; i >-1 ; i--) {
+				if (this.ltm.label(i) == c) {
+					classSamples.add(this.toKMeansPoint(this.ltm, i));
 				}
 			}
 			if (classSamples.size() > 0) {
-				//used kMeans++ implementation expects the weight of each sample at the first index,
-				// make sure that the first value gets the uniform weight 1, overwrite class value
-				for (double[] sample : classSamples) {
-					if (classIndex != 0) {
-						sample[classIndex] = sample[0];
-					}
-					sample[0] = 1;
-				}
-
+				this.ltm.removeLabel(c);
 				List<double[]> centroids = this.kMeans(classSamples, Math.max(classSamples.size() / 2, 1));
 
 				for (double[] centroid : centroids) {
-
-					double[] attributes = new double[this.ltm.numAttributes()];
-					//returned centroids do not contain the weight anymore, but simply the data
-					System.arraycopy(centroid, 0, attributes, 1, this.ltm.numAttributes() - 1);
-					//switch back if necessary
-					if (classIndex != 0) {
-						attributes[0] = attributes[classIndex];
-					}
-					attributes[classIndex] = c;
-					Instance inst = new InstanceImpl(1, attributes);
-					inst.setDataset(this.ltm);
-					this.ltm.add(inst);
+					this.ltm.add(this.fromKMeansCentroid(centroid), c);
 				}
 			}
 
 		}
 	}
 
+	/**
+	 * Returns the attribute values of a sample in the layout expected by the used kMeans++ implementation:
+	 * the weight of the sample at the first index, the value of the first attribute in place of the class value.
+	 */
+	private double[] toKMeansPoint(SampleMemory samples, int index){
+		double[] point = new double[this.numAttributes];
+		int offset = index * samples.numAttributes;
+		//make sure that the first value gets the uniform weight 1
+		point[0] = 1;
+		for (int a = 1; a < this.numAttributes; a++) {
+			int attIndex = (a == this.classIndex) ? 0 : a;
+			point[a] = samples.values[offset + (attIndex < this.classIndex ? attIndex : attIndex - 1)];
+		}
+		return point;
+	}
+
+	/**
+	 * Returns the input attribute values of a centroid computed from samples created by toKMeansPoint.
+	 */
+	private double[] fromKMeansCentroid(double[] centroid){
+		//returned centroids do not contain the weight anymore, but simply the data
+		double[] row = new double[this.numAttributes - 1];
+		for (int i = 0; i < row.length; i++) {
+			int attIndex = (i < this.classIndex) ? i : i + 1;
+			row[i] = (attIndex == 0) ? centroid[this.classIndex - 1] : centroid[attIndex - 1];
+		}
+		return row;
+	}
+
     /**
      * Makes sure that the STM and LTM combined doe not surpass the maximum size.
      */
 	private void memorySizeCheck(){
-		if (this.stm.numInstances() + this.ltm.numInstances() > this.maxSTMSize + this.maxLTMSize){
-			if (this.ltm.numInstances() > this.maxLTMSize){
+		if (this.stm.size() + this.ltm.size() > this.maxSTMSize + this.maxLTMSize){
+			if (this.ltm.size() > this.maxLTMSize){
 				this.clusterDown();
 			}else{ //shift values from STM directly to LTM since STM is full
-				int numShifts = this.maxLTMSize - this.ltm.numInstances() + 1;
+				int numShifts = this.maxLTMSize - this.ltm.size() + 1;
 				for (int i = 0; i < numShifts; i++){
-					this.ltm.add(this.stm.get(0).copy());
-					this.stm.delete(0);
+					this.ltm.add(this.stm, i);
 					this.stmHistory.remove(0);
 					this.ltmHistory.remove(0);
 					this.cmHistory.remove(0);
 				}
+				this.stm.removeFirst(numShifts);
 				this.clusterDown();
 				this.predictionHistories.clear();
-				for (int i = 0; i < this.stm.numInstances(); i++){
-					for (int j = 0; j < this.stm.numInstances(); j++){
-						this.distanceMatrixSTM[i][j] = this.distanceMatrixSTM[numShifts+i][numShifts+j];
-					}
-				}
+				this.shiftDistanceMatrix(numShifts);
 			}
 		}
 	}
 
-	private void cleanSingle(Instances cleanAgainst, int cleanAgainstindex, Instances toClean){
-		Instances cleanAgainstTmp = new Instances(cleanAgainst);
-		cleanAgainstTmp.delete(cleanAgainstindex);
-		double distancesSTM[] = get1ToNDistances(cleanAgainst.get(cleanAgainstindex), cleanAgainstTmp);
-		int nnIndicesSTM[] = nArgMin(Math.min(this.kOption.getValue(), distancesSTM.length), distancesSTM);
+	/**
+	 * Returns the row of the STM distance matrix of the given STM index, with room for the distances to all previous samples.
+	 */
+	private double[] getDistanceMatrixRow(int index){
+		double[] row = this.distanceMatrixSTM[index];
+		if (row == null || row.length <= index) {
+			row = new double[Math.min(index + 1 + (index >> 2), this.distanceMatrixSTM.length)];
+			this.distanceMatrixSTM[index] = row;
+		}
+		return row;
+	}
 
-		double distancesLTM[] = get1ToNDistances(cleanAgainst.get(cleanAgainstindex), toClean);
-		int nnIndicesLTM[] = nArgMin(Math.min(this.kOption.getValue(), distancesLTM.length), distancesLTM);
+	/**
+	 * Removes the first samples from the STM distance matrix, after they were removed from the STM.
+	 * The rows are moved rather than copied, and only their lower triangle part is shifted.
+	 */
+	private void shiftDistanceMatrix(int numShifts){
+		int numSamples = this.stm.size();
+		double[][] removedRows = Arrays.copyOf(this.distanceMatrixSTM, numShifts);
+		for (int i = 0; i < numSamples; i++){
+			double[] row = this.distanceMatrixSTM[numShifts+i];
+			if (row != null && row.length > numShifts+i) {
+				System.arraycopy(row, numShifts, row, 0, i+1);
+			}
+			this.distanceMatrixSTM[i] = row;
+		}
+		System.arraycopy(removedRows, 0, this.distanceMatrixSTM, numSamples, numShifts);
+	}
+
+	/**
+	 * Removes the samples of toClean that contradict the STM sample at the given index.
+	 * The distances of this sample to the other STM samples are given in STM order, without the sample itself.
+	 */
+	private void cleanSingle(int cleanAgainstIndex, double[] distancesSTM, SampleMemory toClean){
+		int numOthers = this.stm.size() - 1;
+		double cleanAgainstLabel = this.stm.label(cleanAgainstIndex);
+		int nnIndicesSTM[] = nArgMin(Math.min(this.kOption.getValue(), numOthers), distancesSTM, 0, numOthers-1);
+
+		int numToClean = toClean.size();
+		double distancesLTM[] = this.cleanDistancesBuffer = ensureCapacity(this.cleanDistancesBuffer, numToClean);
+		this.computeDistances(this.stm.values, cleanAgainstIndex * this.stm.numAttributes, toClean, distancesLTM);
+		int nnIndicesLTM[] = nArgMin(Math.min(this.kOption.getValue(), numToClean), distancesLTM, 0, numToClean-1);
 		double distThreshold = 0;
 		for (int nnIdx: nnIndicesSTM){
-			if (cleanAgainstTmp.get(nnIdx).classValue() == cleanAgainst.get(cleanAgainstindex).classValue()){
+			int stmIdx = (nnIdx < cleanAgainstIndex) ? nnIdx : nnIdx + 1;
+			if (this.stm.label(stmIdx) == cleanAgainstLabel){
 				if (distancesSTM[nnIdx] > distThreshold){
 					distThreshold = distancesSTM[nnIdx];
 				}
@@ -339,7 +429,7 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 		}
 		List<Integer> delIndices = new ArrayList<>();
         for (int nnIdx: nnIndicesLTM){
-			if (toClean.get(nnIdx).classValue() != cleanAgainst.get(cleanAgainstindex).classValue()) {
+			if (toClean.label(nnIdx) != cleanAgainstLabel) {
 				if (distancesLTM[nnIdx] <= distThreshold){
 					delIndices.add(nnIdx);
 				}
@@ -351,14 +441,23 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 	}
     /**
      * Removes distance-based all instances from the input samples that contradict those in the STM.
+     * The distances between the STM samples are taken from the STM distance matrix.
      */
-	private void clean(Instances cleanAgainst, Instances toClean, boolean onlyLast) {
-		if (cleanAgainst.numInstances() > this.kOption.getValue() && toClean.numInstances() > 0){
+	private void clean(SampleMemory toClean, boolean onlyLast) {
+		int numSamples = this.stm.size();
+		if (numSamples > this.kOption.getValue() && toClean.size() > 0){
 			if (onlyLast){
-				cleanSingle(cleanAgainst, (cleanAgainst.numInstances()-1), toClean);
+				cleanSingle(numSamples-1, this.distanceMatrixSTM[numSamples-1], toClean);
 			}else{
-				for (int i=0; i < cleanAgainst.numInstances(); i++){
-					cleanSingle(cleanAgainst, i, toClean);
+				double distancesSTM[] = this.cleanAgainstBuffer = ensureCapacity(this.cleanAgainstBuffer, numSamples);
+				for (int i=0; i < numSamples; i++){
+					for (int j = 0; j < i; j++){
+						distancesSTM[j] = this.distanceMatrixSTM[i][j];
+					}
+					for (int j = i+1; j < numSamples; j++){
+						distancesSTM[j-1] = this.distanceMatrixSTM[j][i];
+					}
+					cleanSingle(i, distancesSTM, toClean);
 				}
 			}
 		}
@@ -366,22 +465,22 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
     /**
      * Returns the distance weighted votes.
      */
-	private double [] getDistanceWeightedVotes(double distances[], int[] nnIndices, Instances instances){
+	private double [] getDistanceWeightedVotes(double distances[], int[] nnIndices, SampleMemory samples){
 
 		double v[] = new double[this.maxClassValue +1];
         for (int nnIdx : nnIndices) {
-            v[(int)instances.instance(nnIdx).classValue()] += 1./Math.max(distances[nnIdx], 0.000000001);
+            v[(int)samples.label(nnIdx)] += 1./Math.max(distances[nnIdx], 0.000000001);
         }
 		return v;
 	}
 
-	private double [] getDistanceWeightedVotesCM(double distances[], int[] nnIndices, Instances stm, Instances ltm){
+	private double [] getDistanceWeightedVotesCM(double distances[], int[] nnIndices, SampleMemory stm, SampleMemory ltm){
 		double v[] = new double[this.maxClassValue +1];
         for (int nnIdx : nnIndices) {
-			if (nnIdx < stm.numInstances()) {
-				v[(int) stm.instance(nnIdx).classValue()] += 1. / Math.max(distances[nnIdx], 0.000000001);
+			if (nnIdx < stm.size()) {
+				v[(int) stm.label(nnIdx)] += 1. / Math.max(distances[nnIdx], 0.000000001);
 			} else{
-				v[(int) ltm.instance((nnIdx-stm.numInstances())).classValue()] += 1. / Math.max(distances[nnIdx], 0.000000001);
+				v[(int) ltm.label(nnIdx-stm.size())] += 1. / Math.max(distances[nnIdx], 0.000000001);
 			}
 		}
 		return v;
@@ -390,11 +489,12 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
     /**
      * Returns the distance weighted votes for the combined memory (CM).
      */
-	private double [] getCMVotes(double distancesSTM[], Instances stm, double distancesLTM[], Instances ltm){
-		double[] distancesCM = new double[distancesSTM.length + distancesLTM.length];
-		System.arraycopy(distancesSTM, 0, distancesCM, 0, distancesSTM.length);
-		System.arraycopy(distancesLTM, 0, distancesCM, distancesSTM.length, distancesLTM.length);
-		int nnIndicesCM[] = nArgMin(Math.min(distancesCM.length, this.kOption.getValue()), distancesCM);
+	private double [] getCMVotes(double distancesSTM[], SampleMemory stm, double distancesLTM[], SampleMemory ltm){
+		int numCM = stm.size() + ltm.size();
+		double[] distancesCM = this.distancesCMBuffer = ensureCapacity(this.distancesCMBuffer, numCM);
+		System.arraycopy(distancesSTM, 0, distancesCM, 0, stm.size());
+		System.arraycopy(distancesLTM, 0, distancesCM, stm.size(), ltm.size());
+		int nnIndicesCM[] = nArgMin(Math.min(numCM, this.kOption.getValue()), distancesCM, 0, numCM-1);
 		return getDistanceWeightedVotesCM(distancesCM, nnIndicesCM, stm, ltm);
 	}
 
@@ -413,35 +513,47 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 		return maxVoteClass;
 	}
 
-	private int getLabelFct(double distances[], Instances instances, int startIdx, int endIdx){
+	private int getLabelFct(double distances[], SampleMemory samples, int startIdx, int endIdx){
 		int nnIndices[] = nArgMin(Math.min(this.kOption.getValue(), distances.length), distances, startIdx, endIdx);
-		double votes[] = getDistanceWeightedVotes(distances, nnIndices, instances);
+		double votes[] = getDistanceWeightedVotes(distances, nnIndices, samples);
 		return this.getClassFromVotes(votes);
 	}
 
     /**
-     * Returns the Euclidean distance.
+     * Returns the input attribute values of a sample in a reused buffer.
      */
-	private double getDistance(Instance sample, Instance sample2)
-    {
-        double sum=0;
-        for (int i=0; i<sample.numInputAttributes(); i++)
-        {
-            double diff = sample.valueInputAttribute(i)-sample2.valueInputAttribute(i);
-            sum += diff*diff;
-        }
-        return Math.sqrt(sum);
-    }
+	private double[] toQuery(Instance sample){
+		int numInputAttributes = this.numAttributes - 1;
+		double query[] = this.queryBuffer = ensureCapacity(this.queryBuffer, numInputAttributes);
+		for (int i = 0; i < numInputAttributes; i++){
+			query[i] = sample.valueInputAttribute(i);
+		}
+		return query;
+	}
 
     /**
-     * Returns the Euclidean distance between one sample and a collection of samples in an 1D-array.
+     * Computes the Euclidean distances between one sample, given as row of input attribute values starting at queryOffset, and all samples of a memory.
+     * Large memories are split between the jobs of the executor.
      */
-	private double[] get1ToNDistances(Instance sample, Instances samples){
-		double distances[] = new double[samples.numInstances()];
-		for (int i=0; i<samples.numInstances(); i++){
-			distances[i] = this.getDistance(sample, samples.get(i));
+	private void computeDistances(double[] query, int queryOffset, SampleMemory samples, double[] distances){
+		int numSamples = samples.size();
+		if (this.executor != null && (long) numSamples * samples.numAttributes >= PARALLEL_MIN_VALUES) {
+			int chunkSize = (numSamples + this.numberOfJobs - 1) / this.numberOfJobs;
+			List<DistanceRunnable> jobs = new ArrayList<>(this.numberOfJobs);
+			for (int from = 0; from < numSamples; from += chunkSize) {
+				jobs.add(new DistanceRunnable(query, queryOffset, samples, from, Math.min(numSamples, from + chunkSize), distances));
+			}
+			ParallelUtils.runJobs(this.executor, jobs);
+		} else {
+			samples.distances(query, queryOffset, 0, numSamples, distances);
+		}
+	}
+
+	private static double[] ensureCapacity(double[] buffer, int size){
+		if (buffer == null || buffer.length < size) {
+			return new double[Math.max(size, buffer == null ? 16 : buffer.length + (buffer.length >> 1))];
 		}
-		return distances;
+		return buffer;
 	}
 
     /**
@@ -469,10 +581,6 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 		return indices;
 	}
 
-	private int[] nArgMin(int n, double[] values){
-		return nArgMin(n, values, 0, values.length-1);
-	}
-
     /**
      * Removes predictions of the largest window size and shifts the remaining ones accordingly.
      */
@@ -491,19 +599,19 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
     /**
      * Creates a prediction history incrementally by using the previous predictions.
      */
-	private List<Integer> getIncrementalTestTrainPredHistory(Instances instances, int startIdx, List<Integer> predictionHistory){
-		for (int i= startIdx + this.kOption.getValue() + predictionHistory.size(); i < instances.numInstances(); i++){
-			predictionHistory.add((this.getLabelFct(distanceMatrixSTM[i], instances, startIdx,  i-1)==instances.get(i).classValue()) ? 1 : 0);
+	private List<Integer> getIncrementalTestTrainPredHistory(SampleMemory samples, int startIdx, List<Integer> predictionHistory){
+		for (int i= startIdx + this.kOption.getValue() + predictionHistory.size(); i < samples.size(); i++){
+			predictionHistory.add((this.getLabelFct(distanceMatrixSTM[i], samples, startIdx,  i-1)==samples.label(i)) ? 1 : 0);
 		}
 		return predictionHistory;
 	}
     /**
      * Creates a prediction history from the scratch.
      */
-	private List<Integer> getTestTrainPredHistory(Instances instances, int startIdx){
+	private List<Integer> getTestTrainPredHistory(SampleMemory samples, int startIdx){
 		List<Integer> predictionHistory = new ArrayList<>();
-		for (int i= startIdx + this.kOption.getValue(); i < instances.numInstances(); i++){
-			predictionHistory.add((this.getLabelFct(distanceMatrixSTM[i], instances, startIdx, i-1)==instances.get(i).classValue()) ? 1 : 0);
+		for (int i= startIdx + this.kOption.getValue(); i < samples.size(); i++){
+			predictionHistory.add((this.getLabelFct(distanceMatrixSTM[i], samples, startIdx, i-1)==samples.label(i)) ? 1 : 0);
 		}
 		return predictionHistory;
 	}
@@ -512,7 +620,7 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
      */
 	private int getMinErrorRateWindowSize() {
 
-		int numSamples = this.stm.numInstances();
+		int numSamples = this.stm.size();
 		if (numSamples < 2 * this.minSTMSizeOption.getValue()) {
 			return numSamples;
 		} else {
@@ -563,7 +671,7 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
      * Returns the window size with the minimum Interleaved test-train error, using bisection (without recalculation using an incremental approximation).
      */
 	private int getMinErrorRateWindowSizeIncremental() {
-		int numSamples = this.stm.numInstances();
+		int numSamples = this.stm.size();
 		if (numSamples < 2 * this.minSTMSizeOption.getValue()) {
 			return numSamples;
 		} else {
@@ -617,4 +725,142 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 		else
 			return this.getMinErrorRateWindowSizeIncremental();
 	}
+	/**
+	 * Samples stored as consecutive rows of input attribute values in one primitive array, together with their labels.
+	 * Rows are appended at the end and removed by shifting the following ones.
+	 */
+	protected static class SampleMemory implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		protected final int numAttributes;
+		protected double[] values;
+		protected double[] labels;
+		protected int size;
+
+		public SampleMemory(int numAttributes) {
+			this.numAttributes = numAttributes;
+			this.labels = new double[16];
+			this.values = new double[16 * numAttributes];
+		}
+
+		public int size() {
+			return this.size;
+		}
+
+		public double label(int index) {
+			return this.labels[index];
+		}
+
+		private int newRow() {
+			if (this.size == this.labels.length) {
+				int capacity = this.labels.length + (this.labels.length >> 1);
+				this.labels = Arrays.copyOf(this.labels, capacity);
+				this.values = Arrays.copyOf(this.values, capacity * this.numAttributes);
+			}
+			return this.size++;
+		}
+
+		public void add(Instance inst) {
+			int row = newRow();
+			int offset = row * this.numAttributes;
+			for (int i = 0; i < this.numAttributes; i++) {
+				this.values[offset + i] = inst.valueInputAttribute(i);
+			}
+			this.labels[row] = inst.classValue();
+		}
+
+		public void add(double[] attributes, double label) {
+			int row = newRow();
+			System.arraycopy(attributes, 0, this.values, row * this.numAttributes, this.numAttributes);
+			this.labels[row] = label;
+		}
+
+		/**
+		 * Appends a copy of a sample of another memory.
+		 */
+		public void add(SampleMemory samples, int index) {
+			int row = newRow();
+			System.arraycopy(samples.values, index * this.numAttributes, this.values, row * this.numAttributes, this.numAttributes);
+			this.labels[row] = samples.labels[index];
+		}
+
+		public void delete(int index) {
+			System.arraycopy(this.values, (index + 1) * this.numAttributes, this.values, index * this.numAttributes, (this.size - index - 1) * this.numAttributes);
+			System.arraycopy(this.labels, index + 1, this.labels, index, this.size - index - 1);
+			this.size--;
+		}
+
+		public void removeFirst(int n) {
+			System.arraycopy(this.values, n * this.numAttributes, this.values, 0, (this.size - n) * this.numAttributes);
+			System.arraycopy(this.labels, n, this.labels, 0, this.size - n);
+			this.size -= n;
+		}
+
+		/**
+		 * Removes all samples with the given label, keeping the order of the others.
+		 */
+		public void removeLabel(double label) {
+			int kept = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (this.labels[i] != label) {
+					if (kept != i) {
+						System.arraycopy(this.values, i * this.numAttributes, this.values, kept * this.numAttributes, this.numAttributes);
+						this.labels[kept] = this.labels[i];
+					}
+					kept++;
+				}
+			}
+			this.size = kept;
+		}
+
+		/**
+		 * Computes the Euclidean distances between a row of values starting at queryOffset and the samples from (inclusive) to to (exclusive).
+		 * The distance to sample i is stored at distances[i].
+		 */
+		public void distances(double[] query, int queryOffset, int from, int to, double[] distances) {
+			double[] values = this.values;
+			int numAttributes = this.numAttributes;
+			for (int r = from; r < to; r++) {
+				int offset = r * numAttributes;
+				double sum = 0;
+				for (int i = 0; i < numAttributes; i++) {
+					double diff = query[queryOffset + i] - values[offset + i];
+					sum += diff * diff;
+				}
+				distances[r] = Math.sqrt(sum);
+			}
+		}
+	}
+
+	/**
+	 * Computes the distances to a range of samples of a memory, to split large memories between jobs.
+	 */
+	protected static class DistanceRunnable implements Runnable, Callable<Integer> {
+		final private double[] query;
+		final private int queryOffset;
+		final private SampleMemory samples;
+		final private int from;
+		final private int to;
+		final private double[] distances;
+
+		public DistanceRunnable(double[] query, int queryOffset, SampleMemory samples, int from, int to, double[] distances) {
+			this.query = query;
+			this.queryOffset = queryOffset;
+			this.samples = samples;
+			this.from = from;
+			this.to = to;
+			this.distances = distances;
+		}
+
+		@Override
+		public void run() {
+			this.samples.distances(this.query, this.queryOffset, this.from, this.to, this.distances);
+		}
+
+		@Override
+		public Integer call() throws Exception {
+			run();
+			return 0;
+		}
+	}
 }
@@ -19,9 +19,15 @@
  */
 package moa.classifiers.meta;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
+import moa.classifiers.Parallel;
+import moa.classifiers.ParallelUtils;
 import moa.classifiers.trees.HoeffdingTree;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
@@ -36,8 +42,12 @@ import com.yahoo.labs.samoa.instances.Instances;
  * The revised version of the Accuracy Updated Ensemble as proposed by
  * Brzezinski and Stefanowski in "Reacting to Different Types of Concept Drift:
  * The Accuracy Updated Ensemble Algorithm", IEEE Trans. Neural Netw, 2013.
+ *
+ * With more than one job, the members are evaluated and trained on a
+ * completed chunk in parallel, each member by a single thread. The model is
+ * the same as with a single job.
  */
-public class AccuracyUpdatedEnsemble extends AbstractClassifier implements MultiClassClassifier {
+public class AccuracyUpdatedEnsemble extends AbstractClassifier implements MultiClassClassifier, Parallel {
 
 	private static final long serialVersionUID = 1L;
 
@@ -65,6 +75,12 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 	public IntOption maxByteSizeOption = new IntOption("maxByteSize", 'm', "Maximum memory consumed by ensemble.",
 			33554432, 0, Integer.MAX_VALUE);
 
+	/**
+	 * Number of threads used to process a chunk.
+	 */
+	public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+			"Total number of concurrent jobs used for processing a chunk (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
 	/**
 	 * The weights of stored classifiers. 
 	 * weights[x][0] = weight
@@ -97,6 +113,11 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 	 */
 	protected Instances currentChunk;
 
+	/**
+	 * Threads processing the chunks, null without multithreading.
+	 */
+	protected transient ExecutorService executor;
+
 	@Override
 	public void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
 		this.candidate = (Classifier) getPreparedClassOption(this.learnerOption);
@@ -107,6 +128,8 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 
 	@Override
 	public void resetLearningImpl() {
+		shutdownExecutor();
+		this.executor = null;
 		this.currentChunk = null;
 		this.classDistributions = null;
 		this.processedInstances = 0;
@@ -181,9 +204,14 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 		// Compute weights
 		double candidateClassifierWeight = 1.0 / (mse_r + Double.MIN_VALUE);
 
+		List<ChunkRunnable> jobs = new ArrayList<ChunkRunnable>(this.learners.length);
+		for (int i = 0; i < this.learners.length; i++) {
+			jobs.add(new ChunkRunnable(this.learners[(int) this.weights[i][1]], false));
+		}
+		this.runJobs(jobs);
 		for (int i = 0; i < this.learners.length; i++) {
-			this.weights[i][0] = 1.0 / (mse_r + this.computeMse(this.learners[(int) this.weights[i][1]], this.currentChunk) + Double.MIN_VALUE);
-		}	
+			this.weights[i][0] = 1.0 / (mse_r + jobs.get(i).mse + Double.MIN_VALUE);
+		}
 
 		if (this.learners.length < this.memberCountOption.getValue()) {
 			// Train and add classifier
@@ -200,9 +228,11 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 		}
 
 		// train classifiers
+		jobs.clear();
 		for (int i = 0; i < this.learners.length; i++) {
-			this.trainOnChunk(this.learners[(int) this.weights[i][1]]);
+			jobs.add(new ChunkRunnable(this.learners[(int) this.weights[i][1]], true));
 		}
+		this.runJobs(jobs);
 
 		this.classDistributions = null;
 		this.currentChunk = null;
@@ -212,6 +242,27 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 		this.enforceMemoryLimit();
 	}
 
+	/**
+	 * Runs the jobs on the executor, or one after the other on the calling
+	 * thread when multithreading is not used.
+	 * 
+	 * @param jobs
+	 *            The jobs to run.
+	 */
+	protected <T extends Runnable & Callable<Integer>> void runJobs(List<T> jobs) {
+		if (this.executor == null) {
+			this.executor = ParallelUtils.newExecutor(this.numberOfJobsOption.getValue());
+		}
+		ParallelUtils.runJobs(this.executor, jobs);
+	}
+
+	@Override
+	public void shutdownExecutor() {
+		if (this.executor != null) {
+			this.executor.shutdown();
+		}
+	}
+
 	/**
 	 * Checks if the memory limit is exceeded and if so prunes the classifiers in the ensemble.
 	 */
@@ -373,4 +424,34 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 		}
 	}
 
+	/**
+	 * Computes the MSE of a member on the current chunk, or trains the member
+	 * on it.
+	 */
+	protected class ChunkRunnable implements Runnable, Callable<Integer> {
+		final private Classifier learner;
+		final private boolean train;
+		private double mse;
+
+		public ChunkRunnable(Classifier learner, boolean train) {
+			this.learner = learner;
+			this.train = train;
+		}
+
+		@Override
+		public void run() {
+			if (this.train) {
+				trainOnChunk(this.learner);
+			} else {
+				this.mse = computeMse(this.learner, currentChunk);
+			}
+		}
+
+		@Override
+		public Integer call() {
+			run();
+			return 0;
+		}
+	}
+
 }
@@ -19,10 +19,16 @@
  */
 package moa.classifiers.meta;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
+import moa.classifiers.Parallel;
+import moa.classifiers.ParallelUtils;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
@@ -37,8 +43,12 @@ import moa.core.Utils;
 /**
  * The Accuracy Weighted Ensemble classifier as proposed by Wang et al. in
  * "Mining concept-drifting data streams using ensemble classifiers", KDD 2003.
+ *
+ * With more than one job, the cross-validation folds of the candidate and the
+ * stored classifiers are evaluated in parallel when a chunk is complete. The
+ * weights are the same as with a single job.
  */
-public class AccuracyWeightedEnsemble extends AbstractClassifier implements MultiClassClassifier {
+public class AccuracyWeightedEnsemble extends AbstractClassifier implements MultiClassClassifier, Parallel {
 
     @Override
     public String getPurposeString() {
@@ -94,6 +104,11 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
      */
     public IntOption numFoldsOption = new IntOption("numFolds", 'f', "Number of cross-validation folds for candidate classifier testing.", 10, 1, Integer.MAX_VALUE);
 
+    /**
+     * Number of threads used to process a chunk.
+     */
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j', "Total number of concurrent jobs used for processing a chunk (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
     protected long[] classDistributions;
 
     protected Classifier[] ensemble;
@@ -122,6 +137,8 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
 
     protected Instances currentChunk;
 
+    protected transient ExecutorService executor;
+
     @Override
     public void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
         this.maxMemberCount = (int) memberCountOption.getValue();
@@ -141,6 +158,8 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
 
     @Override
     public void resetLearningImpl() {
+        shutdownExecutor();
+        this.executor = null;
         this.currentChunk = null;
         this.classDistributions = null;
         this.processedInstances = 0;
@@ -190,8 +209,13 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
         // Compute weights
         double candidateClassifierWeight = this.computeCandidateWeight(this.candidateClassifier, this.currentChunk, this.numFolds);
 
+        List<WeightRunnable> weightJobs = new ArrayList<WeightRunnable>(this.storedLearners.length);
         for (int i = 0; i < this.storedLearners.length; i++) {
-            this.storedWeights[i][0] = this.computeWeight(this.storedLearners[(int) this.storedWeights[i][1]], this.currentChunk);
+            weightJobs.add(new WeightRunnable(this.storedLearners[(int) this.storedWeights[i][1]], this.currentChunk));
+        }
+        this.runJobs(weightJobs);
+        for (int i = 0; i < this.storedLearners.length; i++) {
+            this.storedWeights[i][0] = weightJobs.get(i).weight;
         }
 
         if (this.storedLearners.length < this.maxStoredCount) {
@@ -253,17 +277,18 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
             randData.stratify(numFolds);
         }
 
+        // the folds are drawn in order, as they use the same random generator
+        List<WeightRunnable> folds = new ArrayList<WeightRunnable>(numFolds);
         for (int n = 0; n < numFolds; n++) {
             Instances train = randData.trainCV(numFolds, n, random);
             Instances test = randData.testCV(numFolds, n);
 
-            Classifier learner = candidate.copy();
-
-            for (int num = 0; num < train.numInstances(); num++) {
-                learner.trainOnInstance(train.instance(num));
-            }
+            folds.add(new WeightRunnable(candidate.copy(), train, test));
+        }
+        this.runJobs(folds);
 
-            candidateWeight += computeWeight(learner, test);
+        for (WeightRunnable fold : folds) {
+            candidateWeight += fold.weight;
         }
 
         double resultWeight = candidateWeight / numFolds;
@@ -314,6 +339,26 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
         return java.lang.Math.max(mse_r - mse_i, 0);
     }
 
+    /**
+     * Runs the jobs on the executor, or one after the other on the calling
+     * thread when multithreading is not used.
+     *
+     * @param jobs The jobs to run.
+     */
+    protected <T extends Runnable & Callable<Integer>> void runJobs(List<T> jobs) {
+        if (this.executor == null) {
+            this.executor = ParallelUtils.newExecutor(this.numberOfJobsOption.getValue());
+        }
+        ParallelUtils.runJobs(this.executor, jobs);
+    }
+
+    @Override
+    public void shutdownExecutor() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+
     /**
      * Computes the MSEr threshold.
      *
@@ -462,4 +507,41 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
         this.ensemble = newEnsemble;
         this.ensembleWeights = newEnsembleWeights;
     }
+
+    /**
+     * Computes the weight of a classifier on a chunk, after training it on
+     * another set of examples if one is given.
+     */
+    protected class WeightRunnable implements Runnable, Callable<Integer> {
+        final private Classifier learner;
+        final private Instances train;
+        final private Instances test;
+        private double weight;
+
+        public WeightRunnable(Classifier learner, Instances test) {
+            this(learner, null, test);
+        }
+
+        public WeightRunnable(Classifier learner, Instances train, Instances test) {
+            this.learner = learner;
+            this.train = train;
+            this.test = test;
+        }
+
+        @Override
+        public void run() {
+            if (this.train != null) {
+                for (int num = 0; num < this.train.numInstances(); num++) {
+                    this.learner.trainOnInstance(this.train.instance(num));
+                }
+            }
+            this.weight = computeWeight(this.learner, this.test);
+        }
+
+        @Override
+        public Integer call() {
+            run();
+            return 0;
+        }
+    }
 }
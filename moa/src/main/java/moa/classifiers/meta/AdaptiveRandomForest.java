@@ -27,6 +27,7 @@ import moa.core.DoubleVector;
 import moa.core.InstanceExample;
 import moa.core.Measurement;
 import moa.core.MiscUtils;
+import moa.core.ResourceMeter;
 import moa.options.ClassOption;
 
 import com.github.javacliparser.FloatOption;
@@ -43,6 +44,7 @@ import moa.evaluation.BasicClassificationPerformanceEvaluator;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import moa.AbstractMOAObject;
+import moa.classifiers.core.driftdetection.AbstractChangeDetector;
 import moa.classifiers.core.driftdetection.ChangeDetector;
 
 
@@ -158,7 +160,7 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         // SINGLE_THREAD and requesting for only 1 thread are equivalent. 
         // this.executor will be null and not used...
         if(numberOfJobs != AdaptiveRandomForest.SINGLE_THREAD && numberOfJobs != 1)
-            this.executor = Executors.newFixedThreadPool(numberOfJobs);
+            this.executor = Executors.newFixedThreadPool(numberOfJobs, ResourceMeter.threadFactory());
     }
 
     @Override
@@ -404,7 +406,7 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
                 // Check for warning only if useBkgLearner is active
                 if(this.useBkgLearner) {
                     // Update the warning detection method
-                    this.warningDetectionMethod.input(correctlyClassifies ? 0 : 1);
+                    AbstractChangeDetector.profiledInput(this.warningDetectionMethod, correctlyClassifies ? 0 : 1);
                     // Check if there was a change
                     if(this.warningDetectionMethod.getChange()) {
                         this.lastWarningOn = instancesSeen;
@@ -430,7 +432,7 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
                 /*********** drift detection ***********/
                 
                 // Update the DRIFT detection method
-                this.driftDetectionMethod.input(correctlyClassifies ? 0 : 1);
+                AbstractChangeDetector.profiledInput(this.driftDetectionMethod, correctlyClassifies ? 0 : 1);
                 // Check if there was a change
                 if(this.driftDetectionMethod.getChange()) {
                     this.lastDriftOn = instancesSeen;
@@ -27,12 +27,12 @@ import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import moa.classifiers.Regressor;
 import moa.core.Measurement;
+import moa.core.OrderStatisticTree;
 import moa.options.ClassOption;
 import moa.streams.ArffFileStream;
 
 import java.util.ArrayList;
 import java.lang.Math;
-import java.util.Arrays;
 
 public class ConformalRegressor extends AbstractClassifier implements Regressor{
   public ClassOption baseLearnerOption = new ClassOption("baseLearner", 'l',
@@ -51,7 +51,11 @@ public class ConformalRegressor extends AbstractClassifier implements Regressor{
 
   private ArrayList<Instance> calibrationSet;
 
-  double[] calibrationScores;
+  // Non-conformity score of each calibration instance, which finds the score of any rank in O(log n)
+  protected OrderStatisticTree calibrationScores;
+
+  // The scores are only updated when an interval is predicted after the model changed
+  private boolean calibrationScoresOutdated;
 
   private void readCalibrationSet() {
     ArffFileStream stream = new ArffFileStream(calibrationDataset.getValue(), -1);
@@ -67,12 +71,16 @@ public class ConformalRegressor extends AbstractClassifier implements Regressor{
     double[] scores = new double[trueValues.length];
     // TODO: Should be done in jBLAS or something
     for (int i = 0; i < trueValues.length; i++) {
-      scores[i] = Math.abs(predictions[i] - trueValues[i]);
+      scores[i] = errorFunction(predictions[i], trueValues[i]);
     }
 
     return scores;
   }
 
+  double errorFunction(double prediction, double trueValue) {
+    return Math.abs(prediction - trueValue);
+  }
+
   /**
    * Inverse of non-conformity function, i.e. calculates prediction interval (PI).
    * @param significance Interval confidenceOption. Example: If we want 90% PIs this should be 0.1
@@ -80,12 +88,14 @@ public class ConformalRegressor extends AbstractClassifier implements Regressor{
    */
   protected double inverseErrorFunction(double significance) {
     // tvas: Maybe this should be a class parameter to avoid re-calculation?
-    // tvas: We assume the calibration scores are up-to-date and sorted
-//    double[] calibrationScores = reverseArray(this.calibrationScores); // TODO: Not necessary if I just pass confidenceOption as significance?
-//    assert isSorted(calibrationScores); // TODO: Debug purposes, remove for testing
-    int border = (int) Math.floor(significance * (calibrationScores.length + 1)) - 1;
-    border = Math.min(Math.max(border, 0), calibrationScores.length - 1);
-    return calibrationScores[border];
+    // tvas: We assume the calibration scores are up-to-date
+    int numScores = calibrationScores.size();
+    if (numScores == 0) {
+      return 0.0;
+    }
+    int border = (int) Math.floor(significance * (numScores + 1)) - 1;
+    border = Math.min(Math.max(border, 0), numScores - 1);
+    return calibrationScores.select(border);
   }
 
 
@@ -99,19 +109,13 @@ public class ConformalRegressor extends AbstractClassifier implements Regressor{
   }
 
   protected void updateCalibrationScores() {
-    double[] predictions = new double[calibrationSet.size()];
-    double[] trueValues = new double[calibrationSet.size()];
-    // tvas: mah performance!
-    for (int i = 0; i < predictions.length; i++) {
+    // The model changes with every instance, so all the scores change
+    for (int i = 0; i < calibrationSet.size(); i++) {
       Instance calInstance = calibrationSet.get(i);
-      trueValues[i] = calInstance.classValue();
       double[] prediction = model.getVotesForInstance(calInstance);
       assert prediction.length == 1;
-      predictions[i] = prediction[0];
+      calibrationScores.put(i, errorFunction(prediction[0], calInstance.classValue()));
     }
-    double[] calScores = errorFunction(predictions, trueValues);
-    Arrays.sort(calScores);
-    calibrationScores = calScores;
   }
 
   @Override
@@ -119,6 +123,10 @@ public class ConformalRegressor extends AbstractClassifier implements Regressor{
     if (!model.trainingHasStarted()) {
       return new double[] {0, 0};
     }
+    if (calibrationScoresOutdated) {
+      updateCalibrationScores();
+      calibrationScoresOutdated = false;
+    }
     double[] modelPredictionArray = model.getVotesForInstance(inst);
     assert modelPredictionArray.length == 1;
     double modelPrediction = modelPredictionArray[0];
@@ -133,8 +141,8 @@ public class ConformalRegressor extends AbstractClassifier implements Regressor{
     model = (Classifier) getPreparedClassOption(baseLearnerOption);
     assert model instanceof Regressor; // Will this work?
     calibrationSet = new ArrayList<>();
-    calibrationScores = new double[maxCalibrationInstancesOption.getValue()];
-    Arrays.fill(calibrationScores, 0d);
+    calibrationScores = new OrderStatisticTree(maxCalibrationInstancesOption.getValue());
+    calibrationScoresOutdated = false;
 
     model.resetLearning();
     if (calibrationDataset.getValue().endsWith(".arff")) {
@@ -145,7 +153,7 @@ public class ConformalRegressor extends AbstractClassifier implements Regressor{
   @Override
   public void trainOnInstanceImpl(Instance inst) {
     model.trainOnInstance(inst);
-    updateCalibrationScores(); // tvas: This could happen async as well, just needs to complete before next prediction
+    calibrationScoresOutdated = true; // tvas: This could happen async as well, just needs to complete before next prediction
   }
 
   @Override
@@ -26,12 +26,17 @@ import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
+import moa.classifiers.Parallel;
+import moa.classifiers.ParallelUtils;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
+import moa.core.Utils;
 import moa.options.ClassOption;
 
 /**
@@ -48,12 +53,16 @@ import moa.options.ClassOption;
  * http://dx.doi.org/10.1109/TNN.2011.2160459
  * </p>
  *
+ * <p>With more than one job, the members classify the instances of a
+ * completed batch in parallel, each member on a single thread. The model is
+ * the same as with a single job.</p>
+ *
  * @author Paulo Gonçalves (paulogoncalves@recife.ifpe.edu.br)
  * @author Dariusz Brzezinski
  *
  *
  */
-public class LearnNSE extends AbstractClassifier implements MultiClassClassifier {
+public class LearnNSE extends AbstractClassifier implements MultiClassClassifier, Parallel {
 
     public ClassOption baseLearnerOption = new ClassOption("baseLearner", 'l',
             "Classifier to train.", Classifier.class, "bayes.NaiveBayes");
@@ -83,6 +92,9 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
             new String[]{"NO", "AGE", "ERROR"}, new String[]{
                 "Don't prune classifiers", "Age-based", "Error-based"}, 0);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing a batch (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
     protected List<Classifier> ensemble;
     protected List<Double> ensembleWeights;
     protected List<ArrayList<Double>> bkts, wkts;
@@ -90,9 +102,12 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
     protected long index;
     protected double slope, crossingPoint;
     protected int pruning, ensembleSize;
+    protected transient ExecutorService executor;
 
     @Override
     public void resetLearningImpl() {
+        shutdownExecutor();
+        this.executor = null;
         this.ensemble = new ArrayList<>();
         this.ensembleWeights = new ArrayList<>();
         this.bkts = new ArrayList<>();
@@ -121,12 +136,13 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
             classifier.resetLearning();
 
             if (this.ensemble.size() > 0) {
+                // Classify the data chunk with the existing ensemble
+                boolean[] votes = this.ensembleCorrectlyClassifies();
                 double et = 0;
                 // Reading all data chunk instances
                 for (int i = 0; i < mt; i++) {
                     // Compute error of the existing ensemble on new data
-                    boolean vote = this.correctlyClassifies(this.buffer
-                            .instance(i));
+                    boolean vote = votes[i];
                     if (!vote) {
                         et += 1.0 / mt;
                     }
@@ -137,7 +153,7 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
                 for (int i = 0; i < mt; i++) {
                     Instance instance = this.buffer.instance(i);
                     // Updating instance weights
-                    boolean vote = this.correctlyClassifies(instance);
+                    boolean vote = votes[i];
                     double error = (1.0 / mt) * (vote ? et : 1.0);
                     instance.setWeight(error);
                     weightSum += error;
@@ -175,16 +191,13 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
             double maxError = Double.NEGATIVE_INFINITY;
             int errorIndex = Integer.MIN_VALUE;
             // Evaluate all existing classifiers on new data set
+            List<MemberRunnable> evaluations = new ArrayList<>(t);
             for (int k = 1; k <= t; k++) {
-                double ekt = 0;
-                // Reading all data chunk instances
-                for (int i = 0; i < mt; i++) {
-                    Instance instance = this.buffer.instance(i);
-                    if (!this.ensemble.get(k - 1).correctlyClassifies(instance)) {
-                        // Ensemble incorrectly classifies this instance
-                        ekt += instance.weight();
-                    }
-                }
+                evaluations.add(new MemberRunnable(this.ensemble.get(k - 1), false));
+            }
+            this.runJobs(evaluations);
+            for (int k = 1; k <= t; k++) {
+                double ekt = evaluations.get(k - 1).error;
                 if (k == t && ekt > 0.5) {
                     // Generate a new classifier
                     Classifier c = (Classifier) getPreparedClassOption(this.baseLearnerOption);
@@ -238,6 +251,59 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
         }
     }
 
+    /**
+     * Checks which instances of the buffer are correctly classified by the
+     * ensemble, combining the votes of the members in the same way as
+     * getVotesForInstance.
+     */
+    protected boolean[] ensembleCorrectlyClassifies() {
+        List<MemberRunnable> jobs = new ArrayList<>(this.ensemble.size());
+        for (int j = 0; j < this.ensemble.size(); j++) {
+            if (this.ensembleWeights.get(j) > 0.0) {
+                jobs.add(new MemberRunnable(this.ensemble.get(j), true));
+            }
+        }
+        this.runJobs(jobs);
+        boolean[] correct = new boolean[this.buffer.numInstances()];
+        for (int i = 0; i < correct.length; i++) {
+            DoubleVector combinedVote = new DoubleVector();
+            if (this.trainingWeightSeenByModel > 0.0) {
+                int m = 0;
+                for (int j = 0; j < this.ensemble.size(); j++) {
+                    if (this.ensembleWeights.get(j) > 0.0) {
+                        DoubleVector vote = new DoubleVector(jobs.get(m++).votes[i]);
+                        if (vote.sumOfValues() > 0.0) {
+                            vote.normalize();
+                            vote.scaleValues(this.ensembleWeights.get(j));
+                            combinedVote.addValues(vote);
+                        }
+                    }
+                }
+            }
+            correct[i] = Utils.maxIndex(combinedVote.getArrayRef())
+                    == (int) this.buffer.instance(i).classValue();
+        }
+        return correct;
+    }
+
+    /**
+     * Runs the jobs on the executor, or one after the other on the calling
+     * thread when multithreading is not used.
+     */
+    protected <T extends Runnable & Callable<Integer>> void runJobs(List<T> jobs) {
+        if (this.executor == null) {
+            this.executor = ParallelUtils.newExecutor(this.numberOfJobsOption.getValue());
+        }
+        ParallelUtils.runJobs(this.executor, jobs);
+    }
+
+    @Override
+    public void shutdownExecutor() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+
     @Override
     public boolean isRandomizable() {
         return false;
@@ -278,4 +344,43 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
         }
         return measurements;
     }
+
+    /**
+     * Classifies the instances of the buffer with one member, keeping either
+     * the votes or the weight of the misclassified instances.
+     */
+    protected class MemberRunnable implements Runnable, Callable<Integer> {
+        final private Classifier learner;
+        final private boolean keepVotes;
+        private double[][] votes;
+        private double error;
+
+        public MemberRunnable(Classifier learner, boolean keepVotes) {
+            this.learner = learner;
+            this.keepVotes = keepVotes;
+        }
+
+        @Override
+        public void run() {
+            int mt = buffer.numInstances();
+            if (this.keepVotes) {
+                this.votes = new double[mt][];
+            }
+            for (int i = 0; i < mt; i++) {
+                Instance instance = buffer.instance(i);
+                if (this.keepVotes) {
+                    this.votes[i] = this.learner.getVotesForInstance(instance);
+                } else if (!this.learner.correctlyClassifies(instance)) {
+                    // Member incorrectly classifies this instance
+                    this.error += instance.weight();
+                }
+            }
+        }
+
+        @Override
+        public Integer call() {
+            run();
+            return 0;
+        }
+    }
 }
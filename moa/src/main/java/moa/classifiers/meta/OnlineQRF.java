@@ -19,8 +19,6 @@ package moa.classifiers.meta;
  * #L%
  */
 
-import com.bigml.histogram.Histogram;
-import com.bigml.histogram.MixedInsertException;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
@@ -33,13 +31,13 @@ import moa.classifiers.Regressor;
 import moa.classifiers.trees.FIMTQR;
 import moa.core.Measurement;
 import moa.core.MiscUtils;
+import moa.core.ResourceMeter;
+import moa.core.QuantileSketch;
 import moa.options.ClassOption;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.concurrent.*;
-import java.util.function.BinaryOperator;
 
 import static moa.classifiers.meta.AdaptiveRandomForest.calculateSubspaceSize;
 
@@ -55,9 +53,13 @@ public class OnlineQRF  extends AbstractClassifier implements Regressor, Paralle
   private int subspaceSize;
   long instancesSeen;
 
+  // Buffers reused by every prediction, the leaf histograms are merged without copying them
+  private QuantileSketch[] leafHistograms;
+  private QuantileSketch.Merger histogramMerger;
+  private double[] quantileProbabilities;
+  private double[] quantilePredictions;
+
   private ExecutorService executor;
-  private CompletionService<Histogram> ecs;
-  private ForkJoinPool forkJoinPool; // Needed because the streams interface will take all processors otherwise
 
   public ClassOption baseLearnerOption = new ClassOption("treeLearner", 'l',
       "Random Forest Tree.", Classifier.class,"trees.FIMTQR -e");
@@ -96,94 +98,21 @@ public class OnlineQRF  extends AbstractClassifier implements Regressor, Paralle
     if(this.ensemble == null)
       initEnsemble(inst);
 
-    // Gather and merge all histograms
-    Histogram combinedHist;
-    if (executor != null) {
-      combinedHist = multiThreadedPredict(inst);
-    } else {
-      combinedHist = singleThreadedPredict(inst);
-    }
-
-    // Get quantile from merged histograms
-    assert combinedHist != null;
-    HashMap quantilePredictions = combinedHist.percentiles(quantileLower, quantileUpper);
-    if (quantilePredictions.isEmpty()) {
-      return new double[]{0, 0};
-    }
-    double upperPred = (double) quantilePredictions.get(quantileUpper); // tvas: Not super happy about using a double as key, see https://stackoverflow.com/q/1074781/209882. Alt iterate over map?
-    double lowerPred = (double) quantilePredictions.get(quantileLower);
-    return new double[]{lowerPred, upperPred};
-  }
-
-  private Histogram singleThreadedPredict(Instance inst) {
-    Histogram prevHist = null;
-    // We iterate through all learners, and merge histograms as we go
+    // Gather the leaf histograms of all trees. Finding a leaf is cheap, so this is
+    // not worth doing in parallel.
+    int numHistograms = 0;
     for (FIMTQR member : ensemble) {
-      if (!member.trainingHasStarted()) {
-        continue;
-      }
-      if (prevHist == null) {
-        prevHist = member.getPredictionHistogram(inst);
-        continue;
-      }
-      Histogram curHist = member.getPredictionHistogram(inst);
-      try {
-        //This could be done async as well
-        prevHist.merge(curHist); // tvas: Modification should happen in place, check!
-      } catch (MixedInsertException e) {
-        e.printStackTrace();
+      if (member.trainingHasStarted()) {
+        leafHistograms[numHistograms++] = member.getPredictionHistogram(inst);
       }
     }
 
-    return prevHist == null ? new Histogram(numBins.getValue()) : prevHist;
-  }
-
-  private Histogram multiThreadedPredict(Instance inst) {
-    ArrayList<Future<Histogram>> histogramFutures = new ArrayList<>();
-    Histogram combinedHist = new Histogram(numBins.getValue());
-
-    for (FIMTQR member : ensemble) {
-      if (!member.trainingHasStarted()) {
-        return combinedHist;
-      }
-      if (this.executor != null) {
-        histogramFutures.add(ecs.submit(new HistogramPredictionRunnable(member, inst)));
-      }
-    }
-
-    // This will do the predictions in parallel
-    ArrayList<Histogram> histograms = new ArrayList<>(histogramFutures.size());
-    for (Future ignored : histogramFutures) {
-      try {
-        Histogram hist = ecs.take().get();
-//        combinedHist.merge(hist);
-        histograms.add(hist);
-      } catch (InterruptedException | ExecutionException e) {
-        e.printStackTrace();
-      }
-    }
-
-    // This operator merges two histograms into a new one
-    BinaryOperator<Histogram> merger = (h1, h2) -> {
-      try {
-        // Need to create new object because merge is in-place
-        Histogram retHist = new Histogram(numBins.getValue());
-        retHist.merge(h1);
-        return retHist.merge(h2);
-      } catch (MixedInsertException e) {
-        e.printStackTrace();
-        return new Histogram(numBins.getValue());
-      }
-    };
-    // This will do the merging in parallel
-    try {
-      combinedHist = forkJoinPool.submit(() -> histograms.parallelStream()
-          .reduce(new Histogram(numBins.getValue()), merger)).get();
-    } catch (InterruptedException | ExecutionException e) {
-      e.printStackTrace();
+    // Get quantiles from the merged histograms, only the two quantiles are evaluated
+    if (!histogramMerger.quantiles(leafHistograms, numHistograms,
+        quantileProbabilities, quantilePredictions)) {
+      return new double[]{0, 0};
     }
-
-    return combinedHist;
+    return new double[]{quantilePredictions[0], quantilePredictions[1]};
   }
 
   @Override
@@ -192,6 +121,9 @@ public class OnlineQRF  extends AbstractClassifier implements Regressor, Paralle
     double halfSignificance = (1.0 - confidenceLevel.getValue()) / 2.0; // We divide by two for each region (lower,upper)
     quantileLower = 0.0 + halfSignificance;
     quantileUpper = 1.0 - halfSignificance;
+    quantileProbabilities = new double[]{quantileLower, quantileUpper};
+    quantilePredictions = new double[2];
+    histogramMerger = new QuantileSketch.Merger();
 
     // Multi-threading
     int numberOfJobs;
@@ -201,9 +133,7 @@ public class OnlineQRF  extends AbstractClassifier implements Regressor, Paralle
       numberOfJobs = this.numberOfJobsOption.getValue();
 
     if(numberOfJobs != 1) {
-      executor = Executors.newFixedThreadPool(numberOfJobs);
-      ecs = new ExecutorCompletionService<>(executor);
-      forkJoinPool = new ForkJoinPool(numberOfJobsOption.getValue());
+      executor = Executors.newFixedThreadPool(numberOfJobs, ResourceMeter.threadFactory());
     }
   }
 
@@ -264,6 +194,7 @@ public class OnlineQRF  extends AbstractClassifier implements Regressor, Paralle
     // Init the ensemble.
     int ensembleSize = this.ensembleSize.getValue();
     ensemble = new FIMTQR[ensembleSize];
+    leafHistograms = new QuantileSketch[ensembleSize];
 
     subspaceSize = calculateSubspaceSize(
         mFeaturesPerTreeSizeOption.getValue(), mFeaturesModeOption.getChosenIndex(), instance);
@@ -301,7 +232,6 @@ public class OnlineQRF  extends AbstractClassifier implements Regressor, Paralle
   public void shutdownExecutor() {
     if (executor != null) {
       executor.shutdown();
-      forkJoinPool.shutdown();
     }
   }
 
@@ -310,26 +240,4 @@ public class OnlineQRF  extends AbstractClassifier implements Regressor, Paralle
     return this.ensemble;
   }
 
-  class HistogramPredictionRunnable implements Runnable, Callable<Histogram> {
-    final private FIMTQR learner;
-    final private Instance instance;
-    private Histogram histogram;
-
-    public HistogramPredictionRunnable(FIMTQR learner, Instance instance) {
-      this.learner = learner;
-      this.instance = instance;
-    }
-
-    @Override
-    public void run() {
-      histogram = learner.getPredictionHistogram(this.instance);
-    }
-
-    @Override
-    public Histogram call() {
-      run();
-      return histogram;
-    }
-  }
-
 }
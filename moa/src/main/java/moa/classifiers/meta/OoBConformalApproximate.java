@@ -19,34 +19,11 @@ package moa.classifiers.meta;
  * #L%
  */
 
-import com.yahoo.labs.samoa.instances.Instance;
-
-import java.lang.reflect.Array;
-import java.util.*;
-
 public class OoBConformalApproximate extends OoBConformalRegressor{
 
   @Override
   protected void updateCalibrationScores() {
-    // TODO: Optimize, not necessary to update all scores with every tree update
-    double[] predictions = new double[instanceToLearnerToPrediction.size()];
-    double[] trueValues = new double[instanceToLearnerToPrediction.size()];
-    int i = 0; // Used to keep track of which calibration instance we are checking
-    for (Map.Entry<Instance, HashMap<Integer, Double>> instancePredictionsMap : instanceToLearnerToPrediction.entrySet()) {
-      Instance curInstance = instancePredictionsMap.getKey();
-      HashMap<Integer, Double> predictorIndexPredictionMap = instancePredictionsMap.getValue();
-      double sum = 0;
-      for (Map.Entry<Integer, Double> predictorIndexPredictionEntry : predictorIndexPredictionMap.entrySet()) {
-        sum += predictorIndexPredictionEntry.getValue();
-      }
-      double prediction = sum / predictorIndexPredictionMap.size();
-      predictions[i] = prediction;
-      trueValues[i] = curInstance.classValue();
-      i++;
-    }
-
-    double[] calScores = errorFunction(predictions, trueValues);
-    Arrays.sort(calScores);
-    calibrationScores = calScores;
+    // The out-of-bag predictions are not updated, so the scores only change when calibration
+    // instances are added
   }
 }
@@ -28,6 +28,7 @@ import moa.classifiers.Parallel;
 import moa.classifiers.trees.FIMTDD;
 import moa.classifiers.trees.FIMTQR;
 import moa.core.MiscUtils;
+import moa.core.ResourceMeter;
 
 import java.util.*;
 import java.util.concurrent.*;
@@ -46,7 +47,17 @@ public class OoBConformalRegressor extends ConformalRegressor implements Paralle
   protected int subspaceSize;
   protected int maxCalibrationInstances;
 
-  protected HashMap<Instance, HashMap<Integer, Double>> instanceToLearnerToPrediction;
+  // Sliding window of calibration instances, where the oldest is replaced when it is full. The
+  // out-of-bag predictions are stored per instance and tree, at index slot * ensembleSize + tree.
+  protected Instance[] calibrationInstances;
+  protected double[] oobPredictions;
+  protected boolean[] isOutOfBag;
+  protected int numCalibrationInstances;
+  protected int nextCalibrationSlot;
+
+  // Out-of-bag predictions of the trees for the latest training instance
+  protected double[] latestOoBPredictions;
+  protected boolean[] latestOutOfBag;
 
   protected ExecutorService executor;
   protected CompletionService<double[]> ecs;
@@ -72,32 +83,26 @@ public class OoBConformalRegressor extends ConformalRegressor implements Paralle
   @Override
   public void trainOnInstanceImpl(Instance inst) {
 
-    HashMap<Integer, Double> oobTreeIndicesToPredictions = commonTraining(inst);
+    int numOutOfBag = commonTraining(inst);
     // TODO: Have a "burn-in" period for the algo, where we ensure the first x
     // data points end up as OoB for at least one learner. That way we fill up
     // the calibration set as soon as possible
-    if (!oobTreeIndicesToPredictions.isEmpty()) {
-      if (instanceToLearnerToPrediction.size() < maxCalibrationInstances) {
-        instanceToLearnerToPrediction.put(inst, oobTreeIndicesToPredictions);
-      } else { // this way we are removing a random (?) element from the map
-        Set<Instance> instanceSet = instanceToLearnerToPrediction.keySet();
-        Instance[] instances = instanceSet.toArray(new Instance[instanceSet.size()]);
-
-        instanceToLearnerToPrediction.remove(instances[0]);
-        instanceToLearnerToPrediction.put(inst, oobTreeIndicesToPredictions);
-      }
+    if (numOutOfBag > 0) {
+      addCalibrationInstance(inst);
     }
 
     updateCalibrationScores();
   }
 
-  protected HashMap<Integer, Double> commonTraining(Instance inst) {
+  /**
+   * Trains the trees that have the instance in bag, and stores the predictions of the others
+   * in latestOoBPredictions.
+   * @return The number of trees that have the instance out of bag
+   */
+  protected int commonTraining(Instance inst) {
     Arrays.fill(wasUpdatedLast, false);
-    HashMap<Integer, Double> oobTreeIndicesToPredictions = new HashMap<>();
+    Arrays.fill(latestOutOfBag, false);
 
-    // tvas: Alternative is to have a map from instance to a tuple (predictorIndexList, predictionList)
-    // That way I have access to the indices of the predictors and their corresponding predictions in a
-    // perhaps easier to iterate format. Guava matrix works as well here.
     if (this.ensemble == null)
       initEnsemble(inst);
     Collection<TrainingRunnable> inBag = new ArrayList<>();
@@ -124,13 +129,14 @@ public class OoBConformalRegressor extends ConformalRegressor implements Paralle
           } else {
             double[] curPred =  ensemble[i].getVotesForInstance(inst);
             assert curPred.length == 1;
-            oobTreeIndicesToPredictions.put(i, curPred[0]);
+            latestOoBPredictions[i] = curPred[0];
+            latestOutOfBag[i] = true;
           }
         }
       }
     }
 
-    List<Future<AbstractMap.Entry>> oobPredictionFutures;
+    List<Future<Integer>> oobPredictionFutures;
     if(executor != null) {
       try {
         executor.invokeAll(inBag);
@@ -144,57 +150,84 @@ public class OoBConformalRegressor extends ConformalRegressor implements Paralle
       // That way the oob predictions can happen async until they are needed to make the next interval prediction.
       // TODO: IMPORTANT: For that to work, we can't use invokeAll above, because it blocks until futures are ready
       // TODO: Collection service would be better here
-      for (Future<AbstractMap.Entry> future : oobPredictionFutures) {
+      // The predictions are stored by the runnables, this only reports their failures
+      for (Future<Integer> future : oobPredictionFutures) {
         try {
-          AbstractMap.Entry treeIndexToPred = future.get();
-          oobTreeIndicesToPredictions.put((Integer) treeIndexToPred.getKey(), (Double) treeIndexToPred.getValue());
+          future.get();
         } catch (InterruptedException | ExecutionException e) {
           e.printStackTrace();
         }
       }
     }
 
-    return oobTreeIndicesToPredictions;
+    int numOutOfBag = 0;
+    for (boolean isLatestOutOfBag : latestOutOfBag) {
+      if (isLatestOutOfBag) {
+        numOutOfBag++;
+      }
+    }
+    return numOutOfBag;
+  }
+
+  /**
+   * Adds the latest training instance and its out-of-bag predictions to the calibration window,
+   * replacing the oldest calibration instance if the window is full.
+   */
+  protected void addCalibrationInstance(Instance inst) {
+    int slot = nextCalibrationSlot;
+    nextCalibrationSlot = (slot + 1) % maxCalibrationInstances;
+    if (numCalibrationInstances < maxCalibrationInstances) {
+      numCalibrationInstances++;
+    }
+    calibrationInstances[slot] = inst;
+    int row = slot * ensembleSizeOption.getValue();
+    System.arraycopy(latestOoBPredictions, 0, oobPredictions, row, latestOoBPredictions.length);
+    System.arraycopy(latestOutOfBag, 0, isOutOfBag, row, latestOutOfBag.length);
+    scoreCalibrationInstance(slot);
+  }
+
+  /**
+   * Updates the score of a calibration instance from its stored out-of-bag predictions.
+   */
+  protected void scoreCalibrationInstance(int slot) {
+    int row = slot * ensembleSizeOption.getValue();
+    double sum = 0;
+    int count = 0;
+    for (int i = row; i < row + ensembleSizeOption.getValue(); i++) {
+      if (isOutOfBag[i]) {
+        sum += oobPredictions[i];
+        count++;
+      }
+    }
+    calibrationScores.put(slot, errorFunction(sum / count, calibrationInstances[slot].classValue()));
   }
 
   @Override
   protected void updateCalibrationScores() {
-    // TODO: Optimize, not necessary to update all scores with every tree update
-    double[] predictions = new double[instanceToLearnerToPrediction.size()];
-    double[] trueValues = new double[instanceToLearnerToPrediction.size()];
-    int i = 0; // Used to keep track of which calibration instance we are checking
-    for (Map.Entry<Instance, HashMap<Integer, Double>> instancePredictionsMap : instanceToLearnerToPrediction.entrySet()) {
-      Instance curInstance = instancePredictionsMap.getKey();
-      HashMap<Integer, Double> predictorIndexPredictionMap = instancePredictionsMap.getValue();
-      double sum = 0;
-      for (Map.Entry<Integer, Double> predictorIndexPredictionEntry : predictorIndexPredictionMap.entrySet()) {
-        int ensembleIndex = predictorIndexPredictionEntry.getKey();
-        double pred;
-        if (wasUpdatedLast[ensembleIndex]) {
-          pred = ensemble[predictorIndexPredictionEntry.getKey()].getVotesForInstance(curInstance)[0];
-          predictorIndexPredictionEntry.setValue(pred);
-        } else {
-          pred = predictorIndexPredictionEntry.getValue();
+    // Only the predictions of the trees trained on the latest instance change
+    int ensembleSize = ensembleSizeOption.getValue();
+    for (int slot = 0; slot < numCalibrationInstances; slot++) {
+      int row = slot * ensembleSize;
+      boolean changed = false;
+      for (int i = 0; i < ensembleSize; i++) {
+        if (wasUpdatedLast[i] && isOutOfBag[row + i]) {
+          double pred = ensemble[i].getVotesForInstance(calibrationInstances[slot])[0];
+          if (pred != oobPredictions[row + i]) {
+            oobPredictions[row + i] = pred;
+            changed = true;
+          }
         }
-        sum += pred;
       }
-      double prediction = sum / predictorIndexPredictionMap.size();
-      predictions[i] = prediction;
-      trueValues[i] = curInstance.classValue();
-      i++;
+      if (changed) {
+        scoreCalibrationInstance(slot);
+      }
     }
-
-    double[] calScores = errorFunction(predictions, trueValues);
-    // TODO: For the approximate version of the algorithm, find which sorting algo is best
-    // for almost sorted lists (binary search then simple insertion?)
-    Arrays.sort(calScores);
-    calibrationScores = calScores;
   }
 
   @Override
   public double[] getVotesForInstance(Instance inst) {
     MomentAggregate curAggegate = getMoments(inst);
-    if (calibrationScores.length < 2) {
+    if (calibrationScores.size() < 2) {
       // TODO: Predictive sd is a bad estimate, come up with something else
       // tvas: Depending on the lambda setting, it could be a while until we get 10 cal instances, careful!
       // One option: https://stats.stackexchange.com/a/255131/16052
@@ -313,8 +346,14 @@ public class OoBConformalRegressor extends ConformalRegressor implements Paralle
     quantileUpper = 1.0 - halfConfidence;
     ensemble = null;
     wasUpdatedLast = new boolean[ensembleSizeOption.getValue()];
-    instanceToLearnerToPrediction = new HashMap<>();
     maxCalibrationInstances = maxCalibrationInstancesOption.getValue();
+    calibrationInstances = new Instance[maxCalibrationInstances];
+    oobPredictions = new double[maxCalibrationInstances * ensembleSizeOption.getValue()];
+    isOutOfBag = new boolean[maxCalibrationInstances * ensembleSizeOption.getValue()];
+    numCalibrationInstances = 0;
+    nextCalibrationSlot = 0;
+    latestOoBPredictions = new double[ensembleSizeOption.getValue()];
+    latestOutOfBag = new boolean[ensembleSizeOption.getValue()];
 
     if (!calibrationDataset.getValue().equals("")) {
       System.out.println("WARNING: OoBCOnformalRegression should not take a calibration set! (-c option)");
@@ -348,7 +387,7 @@ public class OoBConformalRegressor extends ConformalRegressor implements Paralle
       numberOfJobs = this.numberOfJobsOption.getValue();
 
     if(numberOfJobs != 1) {
-      executor = Executors.newFixedThreadPool(numberOfJobs);
+      executor = Executors.newFixedThreadPool(numberOfJobs, ResourceMeter.threadFactory());
       ecs = new ExecutorCompletionService<>(executor);
     }
   }
@@ -365,10 +404,9 @@ public class OoBConformalRegressor extends ConformalRegressor implements Paralle
     return this.ensemble;
   }
 
-  class OoBPredictionRunnable implements Runnable, Callable<Map.Entry> {
+  class OoBPredictionRunnable implements Runnable, Callable<Integer> {
     final private Classifier learner;
     final private Instance instance;
-    private Double vote;
     int learnerIndex;
 
     public OoBPredictionRunnable(Classifier learner, Instance instance, int learnerIndex) {
@@ -381,13 +419,15 @@ public class OoBConformalRegressor extends ConformalRegressor implements Paralle
     public void run() {
       double[] votes = learner.getVotesForInstance(this.instance);
       assert votes.length == 1;
-      vote = votes[0];
+      // Each runnable writes the entries of its own tree
+      latestOoBPredictions[learnerIndex] = votes[0];
+      latestOutOfBag[learnerIndex] = true;
     }
 
     @Override
-    public Map.Entry call() {
+    public Integer call() {
       run();
-      return new AbstractMap.SimpleEntry<>(learnerIndex, vote);
+      return 0;
     }
 
   }
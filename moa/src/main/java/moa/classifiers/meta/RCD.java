@@ -33,9 +33,11 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import moa.classifiers.Classifier;
+import moa.classifiers.core.driftdetection.AbstractChangeDetector;
 import moa.classifiers.core.statisticaltests.StatisticalTest;
 import moa.classifiers.drift.SingleClassifierDrift;
 import moa.core.MiscUtils;
+import moa.core.ResourceMeter;
 import moa.options.ClassOption;
 
 /**
@@ -140,7 +142,7 @@ public class RCD extends SingleClassifierDrift {
         int trueClass = (int) inst.classValue();
         boolean prediction = MiscUtils.maxIndex(this.classifier
                 .getVotesForInstance(inst)) == trueClass;
-        this.driftDetectionMethod.input(prediction ? 0.0 : 1.0);
+        AbstractChangeDetector.profiledInput(this.driftDetectionMethod, prediction ? 0.0 : 1.0);
         this.ddmLevel = DDM_INCONTROL_LEVEL;
         if (this.driftDetectionMethod.getChange()) {
             this.ddmLevel = DDM_OUTCONTROL_LEVEL;
@@ -243,7 +245,8 @@ public class RCD extends SingleClassifierDrift {
      */
     private ClassifierKS getPreviousClassifier(Classifier classifier,
             List<Instance> instances) {
-        ExecutorService threadPool = Executors.newFixedThreadPool(this.threadSizeOption.getValue());
+        ExecutorService threadPool = Executors.newFixedThreadPool(this.threadSizeOption.getValue(),
+                ResourceMeter.threadFactory());
         int SIZE = this.classifiers.size();
         Map<Integer, Future<Double>> futures = new HashMap<>();
         for (int i = 0; i < SIZE; i++) {
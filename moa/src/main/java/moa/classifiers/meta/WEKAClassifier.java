@@ -20,9 +20,16 @@
  */
 package moa.classifiers.meta;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.MultiClassClassifier;
+import moa.classifiers.Parallel;
 import moa.core.Measurement;
+import moa.core.ResourceMeter;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import moa.options.WEKAClassOption;
 import weka.classifiers.Classifier;
@@ -34,12 +41,17 @@ import com.yahoo.labs.samoa.instances.SamoaToWekaInstanceConverter;
 /**
  * Class for using a classifier from WEKA.
  *
+ * Classifiers that are not updateable are rebuilt from a buffer of
+ * instances. With the backgroundTraining option the new model is built on a
+ * separate thread from a copy of the buffer, and the previous model keeps
+ * classifying until the new one is ready.
+ *
  * @author Albert Bifet (abifet at cs dot waikato dot ac dot nz)
  * @author FracPete (fracpete at waikato dot ac dot nz)
  * @version $Revision$
  */
 public class WEKAClassifier
-        extends AbstractClassifier implements MultiClassClassifier {
+        extends AbstractClassifier implements MultiClassClassifier, Parallel {
 
     private static final long serialVersionUID = 1L;
 
@@ -64,6 +76,13 @@ public class WEKAClassifier
             "How many instances between samples of the learning performance.",
             0, 0, Integer.MAX_VALUE);
 
+    public FlagOption backgroundTrainingOption = new FlagOption("backgroundTraining",
+            'b', "Build the models on a background thread, the current model keeps classifying until the new one is built.");
+
+    public IntOption maxBackgroundTrainingsOption = new IntOption("maxBackgroundTrainings",
+            'c', "Maximum number of models built at the same time in the background, further buffers are discarded.",
+            1, 1, Integer.MAX_VALUE);
+
     protected Classifier classifier;
 
     protected int numberInstances;
@@ -74,8 +93,32 @@ public class WEKAClassifier
 
     protected boolean isBufferStoring;
 
+    // Background training: the models are numbered in the order their
+    // buffers were completed, and a model is only installed if it is newer
+    // than the current one
+    protected transient ExecutorService trainingExecutor;
+
+    protected transient AtomicInteger runningTrainings;
+
+    protected long backgroundTrainings;
+
+    protected long skippedBackgroundTrainings;
+
+    protected transient volatile Classifier trainedClassifier;
+
+    protected transient long trainedClassifierNumber;
+
     @Override
     public void resetLearningImpl() {
+        shutdownExecutor();
+        synchronized (this) {
+            this.trainingExecutor = null;
+            this.runningTrainings = null;
+            this.trainedClassifier = null;
+            this.trainedClassifierNumber = 0;
+        }
+        this.backgroundTrainings = 0;
+        this.skippedBackgroundTrainings = 0;
 
         try {
             //System.out.println(baseLearnerOption.getValue());
@@ -92,6 +135,7 @@ public class WEKAClassifier
 
     @Override
     public void trainOnInstanceImpl(Instance samoaInstance) {
+        installTrainedClassifier();
         weka.core.Instance inst = this.instanceConverter.wekaInstance(samoaInstance);
         try {
             if (numberInstances == 0) {
@@ -113,7 +157,9 @@ public class WEKAClassifier
                 if (numberInstances == widthInitOption.getValue()) {
                     //Build first time Classifier
                     buildClassifier();
-                    isClassificationEnabled = true;
+                    if (!backgroundTrainingOption.isSet()) {
+                        isClassificationEnabled = true;
+                    }
                     //Continue to store instances
                     if (sampleFrequencyOption.getValue() != 0) {
                         isBufferStoring = true;
@@ -141,7 +187,9 @@ public class WEKAClassifier
                     if (numInstances == widthOption.getValue()) {
                         //Build Classifier
                         buildClassifier();
-                        isClassificationEnabled = true;
+                        if (!backgroundTrainingOption.isSet()) {
+                            isClassificationEnabled = true;
+                        }
                         this.instancesBuffer = new weka.core.Instances(inst.dataset());
                     }
                 }
@@ -155,8 +203,12 @@ public class WEKAClassifier
         try {
             if ((classifier instanceof UpdateableClassifier) == false) {
                 Classifier auxclassifier = weka.classifiers.AbstractClassifier.makeCopy(classifier);
-                auxclassifier.buildClassifier(instancesBuffer);
-                classifier = auxclassifier;
+                if (backgroundTrainingOption.isSet()) {
+                    startBackgroundTraining(auxclassifier, new weka.core.Instances(instancesBuffer));
+                } else {
+                    auxclassifier.buildClassifier(instancesBuffer);
+                    classifier = auxclassifier;
+                }
                 isBufferStoring = false;
             }
         } catch (Exception e) {
@@ -164,8 +216,61 @@ public class WEKAClassifier
         }
     }
 
+    /**
+     * Builds the model on a background thread, unless the maximum number of
+     * models is already being built.
+     */
+    protected void startBackgroundTraining(Classifier model, weka.core.Instances instances) {
+        if (this.trainingExecutor == null) {
+            this.runningTrainings = new AtomicInteger();
+            this.trainingExecutor = Executors.newFixedThreadPool(maxBackgroundTrainingsOption.getValue(),
+                    runnable -> ResourceMeter.newThread(runnable, "WEKAClassifier training"));
+        }
+        if (this.runningTrainings.get() >= maxBackgroundTrainingsOption.getValue()) {
+            this.skippedBackgroundTrainings++;
+            return;
+        }
+        this.runningTrainings.incrementAndGet();
+        this.backgroundTrainings++;
+        this.trainingExecutor.submit((Callable<Integer>) new TrainingRunnable(model, instances, this.backgroundTrainings, this.runningTrainings));
+    }
+
+    /**
+     * Called by the training threads with a built model. Models started
+     * before the last reset are ignored.
+     */
+    protected synchronized void finishBackgroundTraining(Classifier model, long number,
+            AtomicInteger trainings) {
+        if (trainings == this.runningTrainings && number > this.trainedClassifierNumber) {
+            this.trainedClassifier = model;
+            this.trainedClassifierNumber = number;
+        }
+    }
+
+    /**
+     * Replaces the current model by the newest model built in the background,
+     * if there is one.
+     */
+    protected void installTrainedClassifier() {
+        if (this.trainedClassifier != null) {
+            synchronized (this) {
+                this.classifier = this.trainedClassifier;
+                this.trainedClassifier = null;
+                this.isClassificationEnabled = true;
+            }
+        }
+    }
+
+    @Override
+    public void shutdownExecutor() {
+        if (this.trainingExecutor != null) {
+            this.trainingExecutor.shutdown();
+        }
+    }
+
     @Override
     public double[] getVotesForInstance(Instance samoaInstance) {
+        installTrainedClassifier();
         weka.core.Instance inst = this.instanceConverter.wekaInstance(samoaInstance);
         double[] votes = new double[inst.numClasses()];
         if (isClassificationEnabled == false) {
@@ -196,6 +301,11 @@ public class WEKAClassifier
 
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
+        if (backgroundTrainingOption.isSet()) {
+            return new Measurement[]{
+                new Measurement("background trainings", this.backgroundTrainings),
+                new Measurement("skipped background trainings", this.skippedBackgroundTrainings)};
+        }
         Measurement[] m = new Measurement[0];
         return m;
     }
@@ -206,4 +316,40 @@ public class WEKAClassifier
         newoptions[0] = "";
         this.classifier = weka.classifiers.AbstractClassifier.forName(classifierName, newoptions);
     }
+
+    /**
+     * Builds a model on a training thread.
+     */
+    protected class TrainingRunnable implements Runnable, Callable<Integer> {
+        final private Classifier model;
+        final private weka.core.Instances instances;
+        final private long number;
+        final private AtomicInteger trainings;
+
+        public TrainingRunnable(Classifier model, weka.core.Instances instances, long number,
+                AtomicInteger trainings) {
+            this.model = model;
+            this.instances = instances;
+            this.number = number;
+            this.trainings = trainings;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.model.buildClassifier(this.instances);
+                finishBackgroundTraining(this.model, this.number, this.trainings);
+            } catch (Exception e) {
+                System.err.println("Building WEKA Classifier: " + e.getMessage());
+            } finally {
+                this.trainings.decrementAndGet();
+            }
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            run();
+            return 0;
+        }
+    }
 }
@@ -122,7 +122,7 @@ public class ASHoeffdingTree extends HoeffdingTree {
                 double weightSeen = activeLearningNode.getWeightSeen();
                 if (weightSeen
                         - activeLearningNode.getWeightSeenAtLastSplitEvaluation() >= this.gracePeriodOption.getValue()) {
-                    attemptToSplit(activeLearningNode, foundNode.parent,
+                    profiledAttemptToSplit(activeLearningNode, foundNode.parent,
                             foundNode.parentBranch);
                     //EXTENSION TO ASHT
                     // if size too big, resize tree ONLY Split Nodes
@@ -21,11 +21,11 @@ package moa.classifiers.trees;
 
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
-import com.bigml.histogram.*;
 import com.yahoo.labs.samoa.instances.InstanceImpl;
 import moa.classifiers.core.attributeclassobservers.FIMTDDNumericAttributeClassObserver;
 import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
 import moa.core.Measurement;
+import moa.core.QuantileSketch;
 import moa.core.SizeOf;
 
 import java.util.ArrayList;
@@ -54,12 +54,13 @@ public class FIMTQR extends FIMTDD {
   // Thin interface to define common function for leaves
   // Idea stolen from Scala traits and here: https://stackoverflow.com/a/21824485/209882
   // tvas: We could generalize this and allow any tree regressor do this type of learning, I think.
+  // The histograms are kept compact as they are updated, so that they can be merged as they are.
   public interface withHistogram {
-    Histogram getPredictionHistogram(Instance instance);
+    QuantileSketch getPredictionHistogram(Instance instance);
   }
 
   public static class QRInactiveNode extends InactiveLearningNode implements withHistogram {
-    protected Histogram labelHistogram;
+    protected QuantileSketch labelHistogram;
 
     public QRInactiveNode(LeafNode leafNode) {
       super(leafNode);
@@ -78,15 +79,11 @@ public class FIMTQR extends FIMTDD {
       sumOfSquares += inst.weight() * inst.classValue() * inst.classValue();
       // sum of absolute errors
       sumOfAbsErrors += inst.weight() * Math.abs(tree.normalizeTargetValue(Math.abs(inst.classValue() - getPrediction(inst))));
-      try {
-        labelHistogram.insert(inst.classValue());
-      } catch (MixedInsertException e) {
-        e.printStackTrace();
-      }
+      labelHistogram.insert(inst.classValue());
     }
 
     @Override
-    public Histogram getPredictionHistogram(Instance instance) {
+    public QuantileSketch getPredictionHistogram(Instance instance) {
       return labelHistogram;
     }
 
@@ -94,7 +91,7 @@ public class FIMTQR extends FIMTDD {
 
   public static class QRLeafNode extends LeafNode implements withHistogram{
 
-    private Histogram labelHistogram;
+    private QuantileSketch labelHistogram;
 
     private int[] attributeIndexList;
 
@@ -107,7 +104,7 @@ public class FIMTQR extends FIMTDD {
      */
     public QRLeafNode(FIMTQR tree) {
       super(tree);
-      labelHistogram = new Histogram(tree.numBins.getValue());
+      labelHistogram = new QuantileSketch(tree.numBins.getValue());
       subspaceSize = tree.subspaceSizeOption.getValue();
     }
 
@@ -173,19 +170,15 @@ public class FIMTQR extends FIMTDD {
       if (tree.growthAllowed) {
         checkForSplit(tree);
       }
-      try {
-        labelHistogram.insert(inst.classValue());
-      } catch (MixedInsertException e) {
-        e.printStackTrace();
-      }
+      labelHistogram.insert(inst.classValue());
     }
 
     @Override
-    public Histogram getPredictionHistogram(Instance instance) {
+    public QuantileSketch getPredictionHistogram(Instance instance) {
       return labelHistogram;
     }
 
-    public Histogram getLabelHistogram() {
+    public QuantileSketch getLabelHistogram() {
       return labelHistogram;
     }
   }
@@ -202,7 +195,7 @@ public class FIMTQR extends FIMTDD {
       super(splitTest, tree);
     }
 
-    public Histogram getPredictionHistogram(Instance instance) {
+    public QuantileSketch getPredictionHistogram(Instance instance) {
       Node curNode = children.get(splitTest.branchForInstance(instance));
       assert curNode instanceof withHistogram : "Incorrect QRSplitNode class: " + curNode.getClass();
       return ((withHistogram) curNode).getPredictionHistogram(instance);
@@ -232,7 +225,7 @@ public class FIMTQR extends FIMTDD {
     return new QRInactiveNode(existingNode);
   }
 
-  public Histogram getPredictionHistogram(Instance instance) {
+  public QuantileSketch getPredictionHistogram(Instance instance) {
     return ((withHistogram)treeRoot).getPredictionHistogram(instance);
   }
 
@@ -241,7 +234,7 @@ public class FIMTQR extends FIMTDD {
     int sizeSum = 0;
     Instance dummy = new InstanceImpl(0);
     for (FoundNode learningNode : learningNodes) {
-      Histogram labelHistogram = ((withHistogram) learningNode.node).getPredictionHistogram(dummy);
+      QuantileSketch labelHistogram = ((withHistogram) learningNode.node).getPredictionHistogram(dummy);
       sizeSum += SizeOf.fullSizeOf(labelHistogram);
     }
 
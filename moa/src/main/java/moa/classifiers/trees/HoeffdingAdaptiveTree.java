@@ -19,10 +19,9 @@
  */
 package moa.classifiers.trees;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
-import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
 import moa.classifiers.core.driftdetection.ADWIN;
 import moa.core.DoubleVector;
@@ -83,6 +82,10 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
 
         public void filterInstanceToLeaves(Instance inst, SplitNode myparent, int parentBranch, List<FoundNode> foundNodes,
                 boolean updateSplitterCounts);
+
+        // Adds the votes of the leaves filterInstanceToLeaves would find, in the same order, without building the list
+        public void addVotesOfLeaves(Instance inst, SplitNode myparent, int parentBranch, DoubleVector votes,
+                HoeffdingAdaptiveTree ht);
     }
 
     public static class AdaSplitNode extends SplitNode implements NewNode {
@@ -170,15 +173,18 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
             int trueClass = (int) inst.classValue();
             //New option vore
             int k = MiscUtils.poisson(1.0, this.classifierRandom);
-            Instance weightedInst = (Instance) inst.copy();
+            // The weight is left untouched at split nodes, so the instance is
+            // passed on as it is: AdaLearningNode makes its own weighted copy
+            Instance weightedInst = inst;
             if (k > 0) {
                 //weightedInst.setWeight(inst.weight() * k);
             }
             //Compute ClassPrediction using filterInstanceToLeaf
             //int ClassPrediction = Utils.maxIndex(filterInstanceToLeaf(inst, null, -1).node.getClassVotes(inst, ht));
             int ClassPrediction = 0;
-            if (filterInstanceToLeaf(inst, parent, parentBranch).node != null) {
-                ClassPrediction = Utils.maxIndex(filterInstanceToLeaf(inst, parent, parentBranch).node.getClassVotes(inst, ht));
+            Node leafNode = leafForInstance(inst);
+            if (leafNode != null) {
+                ClassPrediction = Utils.maxIndex(leafNode.getClassVotes(inst, ht));
             }
 
             boolean blCorrect = (trueClass == ClassPrediction);
@@ -249,6 +255,20 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
             }
         }
 
+        // Same node as filterInstanceToLeaf(inst, ...).node, without allocating a FoundNode
+        protected Node leafForInstance(Instance inst) {
+            Node node = this;
+            while (node instanceof SplitNode) {
+                SplitNode splitNode = (SplitNode) node;
+                int childIndex = splitNode.instanceChildIndex(inst);
+                if (childIndex < 0) {
+                    return splitNode;
+                }
+                node = splitNode.getChild(childIndex);
+            }
+            return node;
+        }
+
         @Override
         public void killTreeChilds(HoeffdingAdaptiveTree ht) {
             for (Node child : this.children) {
@@ -296,6 +316,25 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
                         foundNodes, updateSplitterCounts);
             }
         }
+
+        @Override
+        public void addVotesOfLeaves(Instance inst, SplitNode myparent,
+                int parentBranch, DoubleVector votes, HoeffdingAdaptiveTree ht) {
+            int childIndex = instanceChildIndex(inst);
+            if (childIndex >= 0) {
+                Node child = getChild(childIndex);
+                if (child != null) {
+                    ((NewNode) child).addVotesOfLeaves(inst, this, childIndex,
+                            votes, ht);
+                } else {
+                    votes.addValues(getClassVotes(inst, ht));
+                }
+            }
+            if (this.alternateTree != null) {
+                ((NewNode) this.alternateTree).addVotesOfLeaves(inst, this, -999,
+                        votes, ht);
+            }
+        }
     }
 
     public static class AdaLearningNode extends LearningNodeNBAdaptive implements NewNode {
@@ -382,7 +421,7 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
             double weightSeen = this.getWeightSeen();
             if (weightSeen
                     - this.getWeightSeenAtLastSplitEvaluation() >= ht.gracePeriodOption.getValue()) {
-                ht.attemptToSplit(this, parent,
+                ht.profiledAttemptToSplit(this, parent,
                         parentBranch);
                 this.setWeightSeenAtLastSplitEvaluation(weightSeen);
             }
@@ -406,14 +445,12 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
             if (predictionOption == 0) { //MC
                 dist = this.observedClassDistribution.getArrayCopy();
             } else if (predictionOption == 1) { //NB
-                dist = NaiveBayes.doNaiveBayesPrediction(inst,
-                        this.observedClassDistribution, this.attributeObservers);
+                dist = doNaiveBayesPrediction(inst);
             } else { //NBAdaptive
                 if (this.mcCorrectWeight > this.nbCorrectWeight) {
                     dist = this.observedClassDistribution.getArrayCopy();
                 } else {
-                    dist = NaiveBayes.doNaiveBayesPrediction(inst,
-                            this.observedClassDistribution, this.attributeObservers);
+                    dist = doNaiveBayesPrediction(inst);
                 }
             }
             //New for option votes
@@ -431,6 +468,14 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
                 List<FoundNode> foundNodes, boolean updateSplitterCounts) {
             foundNodes.add(new FoundNode(this, splitparent, parentBranch));
         }
+
+        @Override
+        public void addVotesOfLeaves(Instance inst, SplitNode splitparent,
+                int parentBranch, DoubleVector votes, HoeffdingAdaptiveTree ht) {
+            if (parentBranch != -999) {
+                votes.addValues(getClassVotes(inst, ht));
+            }
+        }
     }
 
     protected int alternateTrees;
@@ -439,6 +484,9 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
 
     protected int switchedAlternateTrees;
 
+    // Reused between calls to filterInstanceToLeaves
+    protected transient List<FoundNode> foundNodesBuffer;
+
     @Override
     protected LearningNode newLearningNode(double[] initialClassObservations) {
         // IDEA: to choose different learning nodes depending on predictionOption
@@ -469,14 +517,32 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
     //New for options vote
     public FoundNode[] filterInstanceToLeaves(Instance inst,
             SplitNode parent, int parentBranch, boolean updateSplitterCounts) {
-        List<FoundNode> nodes = new LinkedList<FoundNode>();
+        if (this.foundNodesBuffer == null) {
+            this.foundNodesBuffer = new ArrayList<FoundNode>();
+        }
+        List<FoundNode> nodes = this.foundNodesBuffer;
+        nodes.clear();
         ((NewNode) this.treeRoot).filterInstanceToLeaves(inst, parent, parentBranch, nodes,
                 updateSplitterCounts);
-        return nodes.toArray(new FoundNode[nodes.size()]);
+        FoundNode[] foundNodes = nodes.toArray(new FoundNode[nodes.size()]);
+        nodes.clear();
+        return foundNodes;
     }
 
     @Override
     public double[] getVotesForInstance(Instance inst) {
+        if (this.treeRoot != null) {
+            // Single pass: the votes are added up while descending the tree,
+            // in the same order as getVotesForInstanceOfFoundNodes
+            DoubleVector result = new DoubleVector();
+            ((NewNode) this.treeRoot).addVotesOfLeaves(inst, null, -1, result, this);
+            return result.getArrayRef();
+        }
+        return new double[0];
+    }
+
+    //Votes of the leaves returned by filterInstanceToLeaves
+    public double[] getVotesForInstanceOfFoundNodes(Instance inst) {
         if (this.treeRoot != null) {
             FoundNode[] foundNodes = filterInstanceToLeaves(inst,
                     null, -1, false);
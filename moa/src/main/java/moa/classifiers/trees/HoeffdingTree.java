@@ -19,6 +19,7 @@
  */
 package moa.classifiers.trees;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -36,6 +37,8 @@ import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.DiscreteAttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.GaussianLeafStatistics;
+import moa.classifiers.core.attributeclassobservers.GaussianNumericAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NullAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NumericAttributeClassObserver;
 import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
@@ -43,6 +46,7 @@ import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.core.AutoExpandVector;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
+import moa.core.Profiler;
 import moa.core.SizeOf;
 import moa.core.StringUtils;
 import moa.core.Utils;
@@ -88,6 +92,8 @@ import com.yahoo.labs.samoa.instances.Instance;
  * adaptive (NBAdaptive).</li>
  *  <li> -q : The number of instances a leaf should observe before
  * permitting Naive Bayes</li>
+ *  <li> -x : Keep the statistics of the numeric attributes of a leaf in packed
+ * arrays, with the Gaussian numeric estimator</li>
  * </ul>
  *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
@@ -164,6 +170,10 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
     public FlagOption noPrePruneOption = new FlagOption("noPrePrune", 'p',
             "Disable pre-pruning.");
 
+    public FlagOption packedLeafStatisticsOption = new FlagOption(
+            "packedLeafStatistics", 'x',
+            "Keep the statistics of the numeric attributes of a leaf in packed arrays (only with GaussianNumericAttributeClassObserver).");
+
     public static class FoundNode {
 
         public Node node;
@@ -390,6 +400,9 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         protected double weightSeenAtLastSplitEvaluation;
 
         protected AutoExpandVector<AttributeClassObserver> attributeObservers = new AutoExpandVector<AttributeClassObserver>();
+
+        // Statistics of the numeric attributes without observer, null if every attribute has an observer
+        protected GaussianLeafStatistics numericStatistics;
         
         protected boolean isInitialized;
 
@@ -402,13 +415,15 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         @Override
         public int calcByteSize() {
             return super.calcByteSize()
-                    + (int) (SizeOf.fullSizeOf(this.attributeObservers));
+                    + (int) (SizeOf.fullSizeOf(this.attributeObservers))
+                    + (this.numericStatistics != null ? (int) SizeOf.fullSizeOf(this.numericStatistics) : 0);
         }
 
         @Override
         public void learnFromInstance(Instance inst, HoeffdingTree ht) {
             if (this.isInitialized == false) {
                 this.attributeObservers = new AutoExpandVector<AttributeClassObserver>(inst.numAttributes());
+                this.numericStatistics = ht.newNumericLeafStatistics(inst);
                 this.isInitialized = true;
             }
             this.observedClassDistribution.addToValue((int) inst.classValue(),
@@ -417,6 +432,10 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                 int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
                 AttributeClassObserver obs = this.attributeObservers.get(i);
                 if (obs == null) {
+                    if (this.numericStatistics != null && this.numericStatistics.contains(i)) {
+                        this.numericStatistics.observeAttributeClass(i, inst.value(instAttIndex), (int) inst.classValue(), inst.weight());
+                        continue;
+                    }
                     obs = inst.attribute(instAttIndex).isNominal() ? ht.newNominalClassObserver() : ht.newNumericClassObserver();
                     this.attributeObservers.set(i, obs);
                 }
@@ -447,19 +466,58 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                         preSplitDist,
                         new double[][]{preSplitDist})));
             }
-            for (int i = 0; i < this.attributeObservers.size(); i++) {
+            int numAttributes = this.attributeObservers.size();
+            if (this.numericStatistics != null) {
+                numAttributes = Math.max(numAttributes, this.numericStatistics.numAttributes());
+            }
+            for (int i = 0; i < numAttributes; i++) {
                 AttributeClassObserver obs = this.attributeObservers.get(i);
+                AttributeSplitSuggestion bestSuggestion = null;
                 if (obs != null) {
-                    AttributeSplitSuggestion bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion,
+                    bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion,
                             preSplitDist, i, ht.binarySplitsOption.isSet());
-                    if (bestSuggestion != null) {
-                        bestSuggestions.add(bestSuggestion);
-                    }
+                } else if (this.numericStatistics != null && this.numericStatistics.contains(i)) {
+                    bestSuggestion = this.numericStatistics.getBestEvaluatedSplitSuggestion(criterion,
+                            preSplitDist, i, ht.binarySplitsOption.isSet());
+                }
+                if (bestSuggestion != null) {
+                    bestSuggestions.add(bestSuggestion);
                 }
             }
             return bestSuggestions.toArray(new AttributeSplitSuggestion[bestSuggestions.size()]);
         }
 
+        /**
+         * Naive Bayes prediction from the observers and the packed numeric
+         * statistics of this node.
+         */
+        public double[] doNaiveBayesPrediction(Instance inst) {
+            if (this.numericStatistics == null) {
+                return NaiveBayes.doNaiveBayesPrediction(inst,
+                        this.observedClassDistribution, this.attributeObservers);
+            }
+            double[] votes = new double[this.observedClassDistribution.numValues()];
+            double observedClassSum = this.observedClassDistribution.sumOfValues();
+            for (int classIndex = 0; classIndex < votes.length; classIndex++) {
+                votes[classIndex] = this.observedClassDistribution.getValue(classIndex)
+                        / observedClassSum;
+                for (int attIndex = 0; attIndex < inst.numAttributes() - 1; attIndex++) {
+                    int instAttIndex = modelAttIndexToInstanceAttIndex(attIndex,
+                            inst);
+                    if (inst.isMissing(instAttIndex)) {
+                        continue;
+                    }
+                    AttributeClassObserver obs = this.attributeObservers.get(attIndex);
+                    if (obs != null) {
+                        votes[classIndex] *= obs.probabilityOfAttributeValueGivenClass(inst.value(instAttIndex), classIndex);
+                    } else if (this.numericStatistics.contains(attIndex)) {
+                        votes[classIndex] *= this.numericStatistics.probabilityOfAttributeValueGivenClass(attIndex, inst.value(instAttIndex), classIndex);
+                    }
+                }
+            }
+            return votes;
+        }
+
         public void disableAttribute(int attIndex) {
             this.attributeObservers.set(attIndex,
                     new NullAttributeClassObserver());
@@ -482,6 +540,8 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
     protected boolean growthAllowed;
 
+    protected transient Profiler.Counter splitProfilingCounter;
+
     public int calcByteSize() {
         int size = (int) SizeOf.sizeOf(this);
         if (this.treeRoot != null) {
@@ -532,7 +592,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                 double weightSeen = activeLearningNode.getWeightSeen();
                 if (weightSeen
                         - activeLearningNode.getWeightSeenAtLastSplitEvaluation() >= this.gracePeriodOption.getValue()) {
-                    attemptToSplit(activeLearningNode, foundNode.parent,
+                    profiledAttemptToSplit(activeLearningNode, foundNode.parent,
                             foundNode.parentBranch);
                     activeLearningNode.setWeightSeenAtLastSplitEvaluation(weightSeen);
                 }
@@ -562,7 +622,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
-        return new Measurement[]{
+        Measurement[] measurements = new Measurement[]{
                     new Measurement("tree size (nodes)", this.decisionNodeCount
                     + this.activeLeafNodeCount + this.inactiveLeafNodeCount),
                     new Measurement("tree size (leaves)", this.activeLeafNodeCount
@@ -576,6 +636,12 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                     this.inactiveLeafByteSizeEstimate),
                     new Measurement("byte size estimate overhead",
                     this.byteSizeEstimateOverheadFraction)};
+        if (Profiler.ENABLED) {
+            List<Measurement> measurementList = new ArrayList<Measurement>(Arrays.asList(measurements));
+            measurementList.addAll(Arrays.asList(getSplitProfilingCounter().getMeasurements()));
+            return measurementList.toArray(new Measurement[measurementList.size()]);
+        }
+        return measurements;
     }
 
     public int measureTreeDepth() {
@@ -623,6 +689,53 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         return (AttributeClassObserver) numericClassObserver.copy();
     }
 
+    /**
+     * Returns the packed statistics for the numeric attributes of a new leaf,
+     * or null if each numeric attribute gets its own observer.
+     */
+    protected GaussianLeafStatistics newNumericLeafStatistics(Instance inst) {
+        if (this.packedLeafStatisticsOption.isSet()) {
+            Object numericClassObserver = getPreparedClassOption(this.numericEstimatorOption);
+            if (numericClassObserver.getClass() == GaussianNumericAttributeClassObserver.class) {
+                int[] attributeSlots = new int[inst.numAttributes() - 1];
+                int numSlots = 0;
+                for (int i = 0; i < attributeSlots.length; i++) {
+                    int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
+                    attributeSlots[i] = inst.attribute(instAttIndex).isNominal() ? -1 : numSlots++;
+                }
+                if (numSlots > 0) {
+                    return new GaussianLeafStatistics(attributeSlots, numSlots,
+                            ((GaussianNumericAttributeClassObserver) numericClassObserver).numBinsOption.getValue());
+                }
+            }
+        }
+        return null;
+    }
+
+    protected Profiler.Counter getSplitProfilingCounter() {
+        if (this.splitProfilingCounter == null) {
+            this.splitProfilingCounter = new Profiler.Counter(
+                    getClass().getSimpleName() + " attemptToSplit");
+        }
+        return this.splitProfilingCounter;
+    }
+
+    /**
+     * Calls attemptToSplit, counting and timing the call when profiling is
+     * enabled.
+     */
+    protected void profiledAttemptToSplit(ActiveLearningNode node, SplitNode parent,
+            int parentIndex) {
+        if (Profiler.ENABLED) {
+            Profiler.Counter counter = getSplitProfilingCounter();
+            long startTime = counter.start();
+            attemptToSplit(node, parent, parentIndex);
+            counter.stop(startTime);
+        } else {
+            attemptToSplit(node, parent, parentIndex);
+        }
+    }
+
     protected void attemptToSplit(ActiveLearningNode node, SplitNode parent,
             int parentIndex) {
         if (!node.observedClassDistributionIsPure()) {
@@ -859,9 +972,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         @Override
         public double[] getClassVotes(Instance inst, HoeffdingTree ht) {
             if (getWeightSeen() >= ht.nbThresholdOption.getValue()) {
-                return NaiveBayes.doNaiveBayesPrediction(inst,
-                        this.observedClassDistribution,
-                        this.attributeObservers);
+                return doNaiveBayesPrediction(inst);
             }
             return super.getClassVotes(inst, ht);
         }
@@ -890,8 +1001,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             if (this.observedClassDistribution.maxIndex() == trueClass) {
                 this.mcCorrectWeight += inst.weight();
             }
-            if (Utils.maxIndex(NaiveBayes.doNaiveBayesPrediction(inst,
-                    this.observedClassDistribution, this.attributeObservers)) == trueClass) {
+            if (Utils.maxIndex(doNaiveBayesPrediction(inst)) == trueClass) {
                 this.nbCorrectWeight += inst.weight();
             }
             super.learnFromInstance(inst, ht);
@@ -902,8 +1012,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             if (this.mcCorrectWeight > this.nbCorrectWeight) {
                 return this.observedClassDistribution.getArrayCopy();
             }
-            return NaiveBayes.doNaiveBayesPrediction(inst,
-                    this.observedClassDistribution, this.attributeObservers);
+            return doNaiveBayesPrediction(inst);
         }
     }
 
@@ -20,7 +20,7 @@
 
 package moa.clusterers.clustream;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -28,6 +28,7 @@ import moa.cluster.Cluster;
 import moa.cluster.Clustering;
 import moa.cluster.SphereCluster;
 import moa.clusterers.AbstractClusterer;
+import moa.clusterers.kmeanspm.KMeansEngine;
 import moa.core.Measurement;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.DenseInstance;
@@ -244,74 +245,58 @@ public class Clustream extends AbstractClusterer{
 		assert (k > 0);
 
 		int dimensions = centers[0].getCenter().length;
+		int n = data.size();
 
-		ArrayList<ArrayList<Cluster>> clustering = new ArrayList<ArrayList<Cluster>>();
+		double[] points = new double[n * dimensions];
+		double[] weights = new double[n];
+		for ( int l = 0; l < n; l++ ) {
+			System.arraycopy( data.get( l ).getCenter(), 0, points, l * dimensions, dimensions );
+			weights[l] = 1.0;
+		}
+		KMeansEngine engine = new KMeansEngine( points, weights, n, dimensions );
+		engine.setPruning( true );
+
+		double[] centerValues = new double[k * dimensions];
 		for ( int i = 0; i < k; i++ ) {
-			clustering.add( new ArrayList<Cluster>() );
+			System.arraycopy( centers[i].getCenter(), 0, centerValues, i * dimensions, dimensions );
 		}
+		int[] closestCluster = new int[n];
+		double[] sums = new double[k * dimensions];
+		double[] sizes = new double[k];
 
 		int repetitions = 100;
 		while ( repetitions-- >= 0 ) {
 			// Assign points to clusters
-			for ( Cluster point : data ) {
-				double minDistance = distance( point.getCenter(), centers[0].getCenter() );
-				int closestCluster = 0;
-				for ( int i = 1; i < k; i++ ) {
-					double distance = distance( point.getCenter(), centers[i].getCenter() );
-					if ( distance < minDistance ) {
-						closestCluster = i;
-						minDistance = distance;
-					}
-				}
-
-				clustering.get( closestCluster ).add( point );
-			}
+			engine.assign( centerValues, k, closestCluster );
 
-			// Calculate new centers and clear clustering lists
-			SphereCluster[] newCenters = new SphereCluster[centers.length];
-			for ( int i = 0; i < k; i++ ) {
-				newCenters[i] = calculateCenter( clustering.get( i ), dimensions );
-				clustering.get( i ).clear();
+			// Calculate new centers, empty clusters move to the origin
+			engine.sumClusters( closestCluster, k, sums, sizes );
+			for ( int i = 0; i < k * dimensions; i++ ) {
+				double size = sizes[i / dimensions];
+				centerValues[i] = size == 0.0 ? 0.0 : sums[i] / size;
 			}
-			centers = newCenters;
-		}
-
-		return new Clustering( centers );
-	}
-
-	private static SphereCluster calculateCenter( ArrayList<Cluster> cluster, int dimensions ) {
-		double[] res = new double[dimensions];
-		for ( int i = 0; i < res.length; i++ ) {
-			res[i] = 0.0;
-		}
-
-		if ( cluster.size() == 0 ) {
-			return new SphereCluster( res, 0.0 );
 		}
 
-		for ( Cluster point : cluster ) {
-			double [] center = point.getCenter();
-			for (int i = 0; i < res.length; i++) {
-				res[i] += center[i];
+		// Calculate radii
+		double[] radii = new double[k];
+		for ( int l = 0; l < n; l++ ) {
+			int i = closestCluster[l];
+			double dist = distance( Arrays.copyOfRange( centerValues, i * dimensions, ( i + 1 ) * dimensions ),
+					data.get( l ).getCenter() );
+			if ( dist > radii[i] ) {
+				radii[i] = dist;
 			}
 		}
-
-		// Normalize
-		for ( int i = 0; i < res.length; i++ ) {
-			res[i] /= cluster.size();
-		}
-
-		// Calculate radius
-		double radius = 0.0;
-		for ( Cluster point : cluster ) {
-			double dist = distance( res, point.getCenter() );
-			if ( dist > radius ) {
-				radius = dist;
+		SphereCluster[] newCenters = new SphereCluster[k];
+		for ( int i = 0; i < k; i++ ) {
+			newCenters[i] = new SphereCluster(
+					Arrays.copyOfRange( centerValues, i * dimensions, ( i + 1 ) * dimensions ), radii[i] );
+			if ( sizes[i] != 0.0 ) {
+				newCenters[i].setWeight( sizes[i] );
 			}
 		}
-		SphereCluster sc = new SphereCluster( res, radius );
-		sc.setWeight(cluster.size());
-		return sc;
+
+		return new Clustering( newCenters );
 	}
 
 	@Override
@@ -25,12 +25,15 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
 
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
 
 import moa.cluster.Cluster;
 import moa.cluster.Clustering;
+import moa.classifiers.Parallel;
+import moa.classifiers.ParallelUtils;
 import moa.cluster.SphereCluster;
 import moa.clusterers.AbstractClusterer;
 import moa.core.AutoExpandVector;
@@ -46,7 +49,7 @@ import moa.core.Measurement;
  * http://ls2-www.cs.tu-dortmund.de/bico/
  *
  */
-public class BICO extends AbstractClusterer {
+public class BICO extends AbstractClusterer implements Parallel {
 
 	private static final long serialVersionUID = 1L;
 
@@ -65,6 +68,10 @@ public class BICO extends AbstractClusterer {
 			"Number of random projections used for the nearest neighbour search.",
 			10, 1, Integer.MAX_VALUE);
 
+	public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+			"Total number of concurrent jobs used for the k-means algorithm on large coresets (-1 = as much as possible, 0 = do not use multithreading)",
+			1, -1, Integer.MAX_VALUE);
+
 	protected int numClusters;
 	protected int numDimensions;
 	protected int maxNumClusterFeatures;
@@ -79,6 +86,8 @@ public class BICO extends AbstractClusterer {
 	private int rootCount;
 	private double T;
 
+	private transient ExecutorService executor;
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -89,6 +98,14 @@ public class BICO extends AbstractClusterer {
 		return true;
 	}
 
+	@Override
+	public void shutdownExecutor() {
+		if (this.executor != null) {
+			this.executor.shutdown();
+			this.executor = null;
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -185,15 +202,22 @@ public class BICO extends AbstractClusterer {
 					.addToClusteringCenters(new ArrayList<double[]>(this.rootCount));
 		}
 		// Runs the k-means algorithm five times on the micro clustering
+		KMeansEngine engine = KMeansEngine.fromWeightedPoints(microClustering);
+		if (this.executor == null) {
+			this.executor = ParallelUtils.newExecutor(this.numberOfJobsOption
+					.getValue());
+		}
+		engine.setExecutor(this.executor);
+		engine.setPruning(true);
 		List<double[]> result = null;
 		double minValue = Double.POSITIVE_INFINITY;
 		for (int i = 0; i < 5; i++) {
 			// Creates the starting centroids
 			List<double[]> newResult = CoresetKMeans
 					.generatekMeansPlusPlusCentroids(this.numClusters,
-							microClustering, this.clustererRandom);
+							engine, this.clustererRandom);
 			// Runs the k-means algorithm with changing the starting centroids
-			double newValue = CoresetKMeans.kMeans(newResult, microClustering);
+			double newValue = CoresetKMeans.kMeans(newResult, engine);
 			// Selects the result with minimum costs
 			if (newValue < minValue) {
 				result = newResult;
@@ -221,6 +245,7 @@ public class BICO extends AbstractClusterer {
 		this.numDimensions = this.numDimensionsOption.getValue();
 		this.maxNumClusterFeatures = this.maxNumClusterFeaturesOption.getValue();
 		this.numProjections = this.numProjectionsOption.getValue();
+		shutdownExecutor();
 
 		this.bufferPhase = true;
 		this.buffer = new ArrayList<double[]>(
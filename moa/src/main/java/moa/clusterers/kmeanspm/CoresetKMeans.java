@@ -20,6 +20,7 @@
 package moa.clusterers.kmeanspm;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
@@ -48,49 +49,34 @@ public class CoresetKMeans {
 	 */
 	public static List<double[]> generatekMeansPlusPlusCentroids(int k,
 			List<double[]> input, Random random) {
-		int n = input.size();
-		assert (n > 0);
-		int d = input.get(0).length - 1;
-		assert (k <= n);
-
-		List<double[]> centerValue = new ArrayList<double[]>(k);
-		// Selects and copies the first centroid
-		double[] lastCenter = new double[d];
-		System.arraycopy(input.get(random.nextInt(n)), 1, lastCenter, 0, d);
-		centerValue.add(lastCenter);
+		assert (input.size() > 0);
+		return generatekMeansPlusPlusCentroids(k,
+				KMeansEngine.fromWeightedPoints(input), random);
+	}
 
-		double[] distance = new double[n];
-		for (int j = 0; j < n; j++) {
-			distance[j] = Double.POSITIVE_INFINITY;
-		}
-		for (int i = 1; i < k; i++) {
-			// Selects the next centroid
-			double sum = 0.0;
-			Iterator<double[]> jIter = input.iterator();
-			for (int j = 0; j < n; j++) {
-				double[] point = jIter.next();
-				distance[j] = Math
-						.min(distance[j],
-								point[0]
-										* Metric.distanceSquared(lastCenter,
-												point, 1));
-				sum += distance[j];
+	/**
+	 * Generates the initial centroids like the k-means++ algorithm, on the
+	 * points of an engine that can be reused for several runs.
+	 *
+	 * @param k
+	 *            number of centroids
+	 * @param engine
+	 *            engine with the input clustering
+	 * @param random
+	 *            instance to generate a stream of pseudorandom numbers
+	 * @return the generated centroids
+	 */
+	public static List<double[]> generatekMeansPlusPlusCentroids(int k,
+			KMeansEngine engine, Random random) {
+		int d = engine.getNumDimensions();
+		assert (k <= engine.getNumPoints());
 
-			}
-			int candidate = 0;
-			if (sum > 0) {
-				double nextCenterValue = sum * random.nextDouble();
-				double currentValue = distance[0];
-				while (!(nextCenterValue < currentValue)) {
-					currentValue += distance[++candidate];
-				}
-			}
-			// Copies the selected centroid
-			lastCenter = new double[d];
-			System.arraycopy(input.get(candidate), 1, lastCenter, 0, d);
-			centerValue.add(lastCenter);
+		double[] centers = new double[k * d];
+		engine.kMeansPlusPlus(k, random, centers);
+		List<double[]> centerValue = new ArrayList<double[]>(k);
+		for (int i = 0; i < k; i++) {
+			centerValue.add(Arrays.copyOfRange(centers, i * d, (i + 1) * d));
 		}
-
 		return centerValue;
 	}
 
@@ -105,79 +91,38 @@ public class CoresetKMeans {
 	 * @return the k-means costs
 	 */
 	public static double kMeans(List<double[]> centroids, List<double[]> input) {
+		KMeansEngine engine = KMeansEngine.fromWeightedPoints(input);
+		engine.setPruning(true);
+		return kMeans(centroids, engine);
+	}
+
+	/**
+	 * Executes the k-means algorithm with the given initial centroids until the
+	 * costs converges, on the points of an engine that can be reused for
+	 * several runs.
+	 *
+	 * @param centroids
+	 *            initial centroids
+	 * @param engine
+	 *            engine with the input clustering
+	 * @return the k-means costs
+	 */
+	public static double kMeans(List<double[]> centroids, KMeansEngine engine) {
 		int k = centroids.size();
 		assert (k > 0);
 		int d = centroids.get(0).length;
-		int size = input.size();
+		assert (d == engine.getNumDimensions());
 
-		double[][] center = new double[k][];
+		double[] centers = new double[k * d];
 		Iterator<double[]> iIter = centroids.iterator();
 		for (int i = 0; i < k; i++) {
-			center[i] = iIter.next();
+			System.arraycopy(iIter.next(), 0, centers, i * d, d);
 		}
-
-		double[][] newCenter = new double[k][d];
-		double[] newCenterWeight = new double[k];
-		int[] nearestCluster = new int[size];
-		boolean converged;
-		do {
-			for (int i = 0; i < k; i++) {
-				for (int j = 0; j < d; j++) {
-					newCenter[i][j] = 0.0;
-				}
-				newCenterWeight[i] = 0.0;
-			}
-			Iterator<double[]> lIter = input.iterator();
-			for (int l = 0; l < size; l++) {
-				// Calculates the distance from all points to all centroids
-				double[] point = lIter.next();
-				assert (d == point.length - 1);
-				double minDistance = Double.POSITIVE_INFINITY;
-				int closestCluster = -1;
-				for (int i = 0; i < k; i++) {
-					double distance = Metric.distance(center[i], point, 1);
-					if (distance < minDistance) {
-						closestCluster = i;
-						minDistance = distance;
-					}
-				}
-
-				// Sums up all points for the new centroids
-				assert (closestCluster >= 0 && closestCluster < k);
-				for (int j = 0; j < d; j++) {
-					newCenter[closestCluster][j] += point[0] * point[j + 1];
-				}
-				newCenterWeight[closestCluster] += point[0];
-				nearestCluster[l] = closestCluster;
-			}
-
-			// Calculates the new centroids
-			converged = true;
-			for (int i = 0; i < k; i++) {
-				for (int j = 0; j < d; j++) {
-					if (newCenterWeight[i] != 0.0) {
-						double newValue = newCenter[i][j] / newCenterWeight[i];
-						if (newValue != center[i][j]) {
-							converged = false;
-						}
-						center[i][j] = newValue;
-					}
-				}
-			}
-		} while (!converged);
+		double costs = engine.lloyd(centers, k,
+				new int[engine.getNumPoints()]);
 		// Replaces the old centroids with the new ones
 		for (int i = 0; i < k; i++) {
-			centroids.set(i, center[i]);
-		}
-
-		// Calculates the costs of the solution
-		double costs = 0.0;
-		Iterator<double[]> lIter = input.iterator();
-		for (int l = 0; l < size; l++) {
-			double[] point = lIter.next();
-			costs += point[0]
-					* Metric.distanceSquared(center[nearestCluster[l]], point,
-							1);
+			centroids.set(i, Arrays.copyOfRange(centers, i * d, (i + 1) * d));
 		}
 		return costs;
 	}
@@ -0,0 +1,499 @@
+/*
+ *    KMeansEngine.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.clusterers.kmeanspm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import moa.classifiers.ParallelUtils;
+
+/**
+ * Executes the steps of the k-means and k-means++ algorithms on weighted
+ * points stored in a contiguous array, one row of numDimensions values per
+ * point. Centers are stored in the same way, one row per center.
+ *
+ * The distances between the points and the centers are computed in chunks
+ * of CHUNK_SIZE points, which are processed by the jobs of an executor if one
+ * is set. The sums over the points are then added up in the order of the
+ * points by the calling thread, so the results do not depend on the number of
+ * jobs and are the same as with a single loop over the points.
+ *
+ * The assignment of the points to their closest centers can skip the points
+ * whose center cannot have changed, using the triangle inequality with an
+ * upper bound of the distance to the closest center and a lower bound of the
+ * distance to the second closest center of each point, as in Hamerly's
+ * algorithm. The bounds are kept with a safety margin, so the pruning does
+ * not change the assignment.
+ *
+ * Citation: Greg Hamerly: Making k-means even faster. SDM 2010: 130-140
+ */
+public class KMeansEngine {
+
+	/**
+	 * Number of points processed together by a job.
+	 */
+	public static final int CHUNK_SIZE = 4096;
+
+	/**
+	 * Relative margin of the bounds used for pruning, well above the
+	 * rounding errors of the distances.
+	 */
+	protected static final double BOUND_MARGIN = 1e-10;
+
+	protected final double[] points;
+
+	protected final double[] weights;
+
+	protected final int numPoints;
+
+	protected final int numDimensions;
+
+	protected final int numChunks;
+
+	protected ExecutorService executor;
+
+	protected boolean pruning;
+
+	// Pruning state: bounds per point and the centers they refer to
+	protected double[] upperBounds;
+
+	protected double[] lowerBounds;
+
+	protected double[] boundCenters;
+
+	protected int boundNumCenters;
+
+	protected double[] centerDrifts;
+
+	protected double[] halfSeparations;
+
+	// Cost of each point, summed up in order
+	protected double[] pointCosts;
+
+	/**
+	 * Creates an engine for the given points, which are not copied.
+	 *
+	 * @param points
+	 *            coordinates of the points, numDimensions per point
+	 * @param weights
+	 *            weight of each point
+	 * @param numPoints
+	 *            number of points
+	 * @param numDimensions
+	 *            number of dimensions
+	 */
+	public KMeansEngine(double[] points, double[] weights, int numPoints,
+			int numDimensions) {
+		this.points = points;
+		this.weights = weights;
+		this.numPoints = numPoints;
+		this.numDimensions = numDimensions;
+		this.numChunks = Math.max(1, (numPoints + CHUNK_SIZE - 1) / CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates an engine for a list of points with the weight in the first
+	 * element, as used by CoresetKMeans.
+	 */
+	public static KMeansEngine fromWeightedPoints(List<double[]> input) {
+		int n = input.size();
+		int d = input.get(0).length - 1;
+		double[] points = new double[n * d];
+		double[] weights = new double[n];
+		Iterator<double[]> iter = input.iterator();
+		for (int i = 0; i < n; i++) {
+			double[] point = iter.next();
+			weights[i] = point[0];
+			System.arraycopy(point, 1, points, i * d, d);
+		}
+		return new KMeansEngine(points, weights, n, d);
+	}
+
+	/**
+	 * Sets the executor that processes the chunks of points, or null to
+	 * process them in the calling thread.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets whether assign skips the points whose closest center cannot have
+	 * changed since the previous call.
+	 */
+	public void setPruning(boolean pruning) {
+		this.pruning = pruning;
+		this.boundNumCenters = 0;
+	}
+
+	public int getNumPoints() {
+		return this.numPoints;
+	}
+
+	public int getNumDimensions() {
+		return this.numDimensions;
+	}
+
+	/**
+	 * Chooses k centers among the points like the k-means++ algorithm: the
+	 * first one uniformly, the others with probability proportional to the
+	 * weighted squared distance to the closest center chosen before.
+	 *
+	 * @param k
+	 *            number of centers
+	 * @param random
+	 *            instance to generate a stream of pseudorandom numbers
+	 * @param centers
+	 *            array of at least k * numDimensions values that receives
+	 *            the centers
+	 */
+	public void kMeansPlusPlus(int k, Random random, double[] centers) {
+		int d = this.numDimensions;
+		int candidate = random.nextInt(this.numPoints);
+		System.arraycopy(this.points, candidate * d, centers, 0, d);
+		double[] minDistances = new double[this.numPoints];
+		Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+		for (int i = 1; i < k; i++) {
+			double sum = updateMinDistances(candidate, minDistances);
+			candidate = 0;
+			if (sum > 0) {
+				candidate = sample(minDistances, sum * random.nextDouble());
+			}
+			System.arraycopy(this.points, candidate * d, centers, i * d, d);
+		}
+	}
+
+	/**
+	 * Updates the weighted squared distance of each point to its closest
+	 * center with a point as new center.
+	 *
+	 * @param center
+	 *            index of the point that is the new center
+	 * @param minDistances
+	 *            weighted squared distance of each point to its closest center
+	 * @return the sum of the updated distances
+	 */
+	public double updateMinDistances(int center, double[] minDistances) {
+		final int d = this.numDimensions;
+		final int offset = center * d;
+		forEachChunk((chunk, from, to) -> {
+			for (int i = from; i < to; i++) {
+				double distance = this.weights[i]
+						* distanceSquared(this.points, i * d, this.points, offset, d);
+				minDistances[i] = Math.min(minDistances[i], distance);
+			}
+		});
+		return sum(minDistances);
+	}
+
+	/**
+	 * Returns the first point at which the running sum of the distances
+	 * exceeds the threshold.
+	 */
+	protected int sample(double[] minDistances, double threshold) {
+		int candidate = 0;
+		double current = minDistances[0];
+		// Rounding may leave the threshold past the last point
+		while (!(threshold < current) && candidate < this.numPoints - 1) {
+			current += minDistances[++candidate];
+		}
+		return candidate;
+	}
+
+	/**
+	 * Executes the k-means algorithm with the given initial centers until
+	 * the centers do not change, as CoresetKMeans.kMeans does. Centers
+	 * without points keep their place.
+	 *
+	 * @param centers
+	 *            initial centers, replaced by the final ones
+	 * @param k
+	 *            number of centers
+	 * @param assignment
+	 *            array of at least numPoints values that receives the index
+	 *            of the closest center of each point
+	 * @return the k-means costs
+	 */
+	public double lloyd(double[] centers, int k, int[] assignment) {
+		int d = this.numDimensions;
+		double[] sums = new double[k * d];
+		double[] clusterWeights = new double[k];
+		// The bounds of a previous run do not match the new assignment
+		this.boundNumCenters = 0;
+		boolean converged;
+		do {
+			assign(centers, k, assignment);
+			sumClusters(assignment, k, sums, clusterWeights);
+			converged = true;
+			for (int i = 0; i < k; i++) {
+				if (clusterWeights[i] != 0.0) {
+					for (int j = 0; j < d; j++) {
+						double newValue = sums[i * d + j] / clusterWeights[i];
+						if (newValue != centers[i * d + j]) {
+							converged = false;
+						}
+						centers[i * d + j] = newValue;
+					}
+				}
+			}
+		} while (!converged);
+		return cost(centers, assignment);
+	}
+
+	/**
+	 * Assigns each point to its closest center, the first one in case of
+	 * ties. With pruning, the assignment of the previous call must be passed
+	 * again, as the bounds of the points refer to it.
+	 *
+	 * @param centers
+	 *            centers, numDimensions values per center
+	 * @param k
+	 *            number of centers
+	 * @param assignment
+	 *            array of at least numPoints values that receives the index
+	 *            of the closest center of each point
+	 */
+	public void assign(double[] centers, int k, int[] assignment) {
+		if (!this.pruning || k < 2) {
+			forEachChunk((chunk, from, to) -> {
+				for (int i = from; i < to; i++) {
+					assignment[i] = closestCenter(centers, k, i);
+				}
+			});
+			return;
+		}
+		final int d = this.numDimensions;
+		if (this.boundNumCenters != k) {
+			// No bounds for these centers yet
+			this.upperBounds = new double[this.numPoints];
+			this.lowerBounds = new double[this.numPoints];
+			this.boundCenters = new double[k * d];
+			this.centerDrifts = new double[k];
+			this.halfSeparations = new double[k];
+			forEachChunk((chunk, from, to) -> {
+				for (int i = from; i < to; i++) {
+					assignment[i] = closestCenterWithBounds(centers, k, i);
+				}
+			});
+		} else {
+			double maxDrift = 0.0;
+			for (int c = 0; c < k; c++) {
+				this.centerDrifts[c] = Math.sqrt(distanceSquared(centers, c * d,
+						this.boundCenters, c * d, d)) * (1 + BOUND_MARGIN);
+				maxDrift = Math.max(maxDrift, this.centerDrifts[c]);
+			}
+			for (int c = 0; c < k; c++) {
+				double minSeparation = Double.POSITIVE_INFINITY;
+				for (int other = 0; other < k; other++) {
+					if (other != c) {
+						minSeparation = Math.min(minSeparation, distanceSquared(
+								centers, c * d, centers, other * d, d));
+					}
+				}
+				this.halfSeparations[c] = 0.5 * Math.sqrt(minSeparation) * (1 - BOUND_MARGIN);
+			}
+			final double lowerBoundDecrease = maxDrift;
+			forEachChunk((chunk, from, to) -> {
+				for (int i = from; i < to; i++) {
+					int closest = assignment[i];
+					double upper = (this.upperBounds[i] + this.centerDrifts[closest]) * (1 + BOUND_MARGIN);
+					double lower = (this.lowerBounds[i] - lowerBoundDecrease) * (1 - BOUND_MARGIN);
+					this.upperBounds[i] = upper;
+					this.lowerBounds[i] = lower;
+					double bound = Math.max(this.halfSeparations[closest], lower);
+					if (upper < bound) {
+						continue;
+					}
+					// Tightens the upper bound before checking all centers
+					upper = Math.sqrt(distanceSquared(this.points, i * d, centers,
+							closest * d, d)) * (1 + BOUND_MARGIN);
+					this.upperBounds[i] = upper;
+					if (upper < bound) {
+						continue;
+					}
+					assignment[i] = closestCenterWithBounds(centers, k, i);
+				}
+			});
+		}
+		System.arraycopy(centers, 0, this.boundCenters, 0, k * d);
+		this.boundNumCenters = k;
+	}
+
+	protected int closestCenter(double[] centers, int k, int point) {
+		int d = this.numDimensions;
+		double minDistance = Double.POSITIVE_INFINITY;
+		int closest = 0;
+		for (int c = 0; c < k; c++) {
+			double distance = distanceSquared(this.points, point * d, centers, c * d, d);
+			if (distance < minDistance) {
+				closest = c;
+				minDistance = distance;
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Finds the closest center of a point and sets its bounds from the
+	 * distances to the closest and the second closest centers.
+	 */
+	protected int closestCenterWithBounds(double[] centers, int k, int point) {
+		int d = this.numDimensions;
+		double minDistance = Double.POSITIVE_INFINITY;
+		double secondDistance = Double.POSITIVE_INFINITY;
+		int closest = 0;
+		for (int c = 0; c < k; c++) {
+			double distance = distanceSquared(this.points, point * d, centers, c * d, d);
+			if (distance < minDistance) {
+				closest = c;
+				secondDistance = minDistance;
+				minDistance = distance;
+			} else if (distance < secondDistance) {
+				secondDistance = distance;
+			}
+		}
+		this.upperBounds[point] = Math.sqrt(minDistance) * (1 + BOUND_MARGIN);
+		this.lowerBounds[point] = Math.sqrt(secondDistance) * (1 - BOUND_MARGIN);
+		return closest;
+	}
+
+	/**
+	 * Sums up the weighted points of each cluster. The sums take a fraction
+	 * of the time of the assignment and are done by the calling thread.
+	 *
+	 * @param assignment
+	 *            cluster of each point
+	 * @param k
+	 *            number of clusters
+	 * @param sums
+	 *            array of at least k * numDimensions values that receives the
+	 *            sum of the weighted points of each cluster
+	 * @param clusterWeights
+	 *            array of at least k values that receives the weight of each
+	 *            cluster
+	 */
+	public void sumClusters(int[] assignment, int k, double[] sums,
+			double[] clusterWeights) {
+		sumClusters(this.points, true, assignment, k, sums, clusterWeights);
+	}
+
+	/**
+	 * Sums up the rows of the given values, one row of numDimensions values
+	 * per point, of each cluster, without weighting them.
+	 */
+	public void sumClusters(double[] rows, int[] assignment, int k,
+			double[] sums, double[] clusterWeights) {
+		sumClusters(rows, false, assignment, k, sums, clusterWeights);
+	}
+
+	protected void sumClusters(double[] rows, boolean weighted,
+			int[] assignment, int k, double[] sums, double[] clusterWeights) {
+		int d = this.numDimensions;
+		Arrays.fill(sums, 0, k * d, 0.0);
+		Arrays.fill(clusterWeights, 0, k, 0.0);
+		for (int i = 0; i < this.numPoints; i++) {
+			int cluster = assignment[i];
+			double weight = this.weights[i];
+			int row = i * d;
+			int sum = cluster * d;
+			if (weighted) {
+				for (int j = 0; j < d; j++) {
+					sums[sum + j] += weight * rows[row + j];
+				}
+			} else {
+				for (int j = 0; j < d; j++) {
+					sums[sum + j] += rows[row + j];
+				}
+			}
+			clusterWeights[cluster] += weight;
+		}
+	}
+
+	/**
+	 * Calculates the sum of the weighted squared distances of the points to
+	 * their assigned centers.
+	 */
+	public double cost(double[] centers, int[] assignment) {
+		final int d = this.numDimensions;
+		if (this.pointCosts == null) {
+			this.pointCosts = new double[this.numPoints];
+		}
+		forEachChunk((chunk, from, to) -> {
+			for (int i = from; i < to; i++) {
+				this.pointCosts[i] = this.weights[i] * distanceSquared(this.points,
+						i * d, centers, assignment[i] * d, d);
+			}
+		});
+		return sum(this.pointCosts);
+	}
+
+	protected double sum(double[] values) {
+		double sum = 0.0;
+		for (int i = 0; i < this.numPoints; i++) {
+			sum += values[i];
+		}
+		return sum;
+	}
+
+	protected static double distanceSquared(double[] a, int offsetA,
+			double[] b, int offsetB, int d) {
+		double distance = 0.0;
+		for (int j = 0; j < d; j++) {
+			double diff = a[offsetA + j] - b[offsetB + j];
+			distance += diff * diff;
+		}
+		return distance;
+	}
+
+	/**
+	 * Work on the points of a chunk.
+	 */
+	protected interface ChunkTask {
+		void run(int chunk, int from, int to);
+	}
+
+	/**
+	 * Runs a task on every chunk of points, with the jobs of the executor if
+	 * there is more than one chunk.
+	 */
+	protected void forEachChunk(ChunkTask task) {
+		if (this.executor == null || this.numChunks == 1) {
+			for (int chunk = 0; chunk < this.numChunks; chunk++) {
+				task.run(chunk, chunk * CHUNK_SIZE,
+						Math.min(this.numPoints, (chunk + 1) * CHUNK_SIZE));
+			}
+			return;
+		}
+		List<Callable<Void>> jobs = new ArrayList<Callable<Void>>(this.numChunks);
+		for (int c = 0; c < this.numChunks; c++) {
+			final int chunk = c;
+			jobs.add(() -> {
+				task.run(chunk, chunk * CHUNK_SIZE,
+						Math.min(this.numPoints, (chunk + 1) * CHUNK_SIZE));
+				return null;
+			});
+		}
+		ParallelUtils.runJobs(this.executor, jobs);
+	}
+}
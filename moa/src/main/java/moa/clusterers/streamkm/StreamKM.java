@@ -1,9 +1,15 @@
 package moa.clusterers.streamkm;
 
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
+import moa.classifiers.Parallel;
+import moa.classifiers.ParallelUtils;
 import moa.cluster.Clustering;
 import moa.clusterers.AbstractClusterer;
+import moa.clusterers.kmeanspm.KMeansEngine;
 import moa.core.Measurement;
 import com.yahoo.labs.samoa.instances.Instance;
 
@@ -19,7 +25,7 @@ Christoph Raupach, Christian Sohler, Kamil Swierkot: StreamKM++: A
 Clustering Algorithms for Data Streams. ALENEX 2010: 173-187
  */
 
-public class StreamKM extends AbstractClusterer {
+public class StreamKM extends AbstractClusterer implements Parallel {
 
 	public IntOption sizeCoresetOption = new IntOption("sizeCoreset",
 			's', "Size of the coreset (m).", 10000);
@@ -37,6 +43,10 @@ public class StreamKM extends AbstractClusterer {
 	public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
 			"Seed for random behaviour of the classifier.", 1);	
 
+	public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+			"Total number of concurrent jobs used for the k-means algorithm on large coresets (-1 = as much as possible, 0 = do not use multithreading)",
+			1, -1, Integer.MAX_VALUE);
+
 	protected MTRandom clustererRandom;
 	protected Point[] centresStreamingCoreset;
 
@@ -51,6 +61,8 @@ public class StreamKM extends AbstractClusterer {
 
 	protected boolean initialized = false;	
 
+	private transient ExecutorService executor;
+
 	private final static double THRESHOLD = 1.000;
 
 	@Override
@@ -63,6 +75,9 @@ public class StreamKM extends AbstractClusterer {
 
 		//initalize random generator with seed
 		this.clustererRandom = new MTRandom(this.randomSeedOption.getValue());
+
+		shutdownExecutor();
+		this.executor = ParallelUtils.newExecutor(this.numberOfJobsOption.getValue());
 	}
 
 	@Override
@@ -123,6 +138,14 @@ public class StreamKM extends AbstractClusterer {
 		return true;
 	}
 
+	@Override
+	public void shutdownExecutor() {
+		if (this.executor != null) {
+			this.executor.shutdown();
+			this.executor = null;
+		}
+	}
+
 	public double[] getVotesForInstance(Instance inst) {
 		throw new UnsupportedOperationException("Not supported yet.");
 	}
@@ -182,51 +205,64 @@ public class StreamKM extends AbstractClusterer {
 		CoresetCostTriple triple;
 		double[] radii = new double[k];
 
+		//centroids of the points for the distances, their coordinates for the centres of mass
+		double[] centroids = new double[n * d];
+		double[] coordinates = new double[n * d];
+		double[] weights = new double[n];
+		for(int i = 0; i < n; i++){
+			for(int l = 0; l < d; l++){
+				if(points[i].weight != 0.0){
+					centroids[i * d + l] = points[i].coordinates[l] / points[i].weight;
+					coordinates[i * d + l] = points[i].coordinates[l];
+				} else {
+					centroids[i * d + l] = points[i].coordinates[l];
+				}
+			}
+			weights[i] = points[i].weight;
+		}
+		KMeansEngine engine = new KMeansEngine(centroids, weights, n, d);
+		engine.setExecutor(this.executor);
+		engine.setPruning(true);
+
 		//choose random centres
-		Point[] centres = chooseRandomCentres(k, n, d, points);
-		double cost = targetFunctionValue(k, n, centres, points);
+		Point[] centres = chooseRandomCentres(k, n, d, points, engine);
+		double[] centroidsOfCentres = new double[k * d];
+		for(int i = 0; i < k; i++){
+			setCentroid(centres[i], centroidsOfCentres, i * d);
+		}
+		int[] nearestCentre = new int[n];
+		engine.assign(centroidsOfCentres, k, nearestCentre);
+		double cost = engine.cost(centroidsOfCentres, nearestCentre);
 		double newCost = cost;
 
 
-		Point[] massCentres = new Point[k];
+		double[] massCentres = new double[k * d];
 		double[] numberOfPoints = new double[k];
 
 		do{
 			cost = newCost;
-			//reset centres of mass
-			int i = 0;
-			for(i = 0; i < k; i++){	
-				massCentres[i] = new Point(d);
-				numberOfPoints[i] = 0.0;
-			}
 			//compute centres of mass
-			for(i = 0; i < n; i++){
-				int centre = points[i].determineClusterCentreKMeans(k,centres);
-				for(int l = 0; l < massCentres[centre].dimension; l++){
-					if(points[i].weight != 0.0)
-						massCentres[centre].coordinates[l] += points[i].coordinates[l];
-				}
-				numberOfPoints[centre] += points[i].weight;
-
-			}
+			engine.sumClusters(coordinates, nearestCentre, k, massCentres, numberOfPoints);
 
 			//move centres
-			for(i=0; i<k; i++){
+			for(int i=0; i<k; i++){
 				for(int l=0; l<centres[i].dimension; l++){
-					centres[i].coordinates[l] = massCentres[i].coordinates[l];
+					centres[i].coordinates[l] = massCentres[i * d + l];
 				}
 				centres[i].weight = numberOfPoints[i];
+				setCentroid(centres[i], centroidsOfCentres, i * d);
 			}
 
-			//calculate costs
-			newCost = targetFunctionValue(k, n, centres, points);
+			//calculate costs, keeping the nearest centres for the next iteration
+			engine.assign(centroidsOfCentres, k, nearestCentre);
+			newCost = engine.cost(centroidsOfCentres, nearestCentre);
 			//printf("old cost:%f, new cost:%f \n",cost,newCost);
 		} while (newCost < THRESHOLD * cost);
 
 		//compute radii
 		for (int i = 0 ; i < n ; i++)
 		{
-			int centre = points[i].determineClusterCentreKMeans(k,centres);
+			int centre = nearestCentre[i];
 			double radius = 0.0;
 			double distance;
 
@@ -243,25 +279,25 @@ public class StreamKM extends AbstractClusterer {
 			radii[i] = 2.0 * Math.sqrt(radii[i]/centres[i].weight);
 		}
 
-
-		/*printf("Centres: \n");
-		int i=0;
-		for(i=0;i<k;i++){
-			printf("(");
-			int l = 0;
-			for(l=0;l<centres[i].dimension;l++){
-				printf("%f,",centres[i].coordinates[l] / centres[i].weight);
-			}
-			printf(")\n");
-		}
-		printf("kMeans++ finished\n");
-		 */ 
 		triple = new CoresetCostTriple(centres, radii, newCost);
 
 		return triple; 
 	}
 
-	private Point[] chooseRandomCentres(int k, int n, int d, Point points[]){
+	/**
+	Stores the centroid coordinates of the centre centre in the array centroids at the given offset
+	 **/
+	private static void setCentroid(Point centre, double[] centroids, int offset){
+		for(int l = 0; l < centre.dimension; l++){
+			if(centre.weight != 0.0){
+				centroids[offset + l] = centre.coordinates[l] / centre.weight;
+			} else {
+				centroids[offset + l] = centre.coordinates[l];
+			}
+		}
+	}
+
+	private Point[] chooseRandomCentres(int k, int n, int d, Point points[], KMeansEngine engine){
 
 		//array to store the choosen centres
 		Point[] centres = new Point[k]; 
@@ -283,19 +319,17 @@ public class StreamKM extends AbstractClusterer {
 		centres[i] = points[j].clone();
 
 		//set the current centre for all points to the choosen centre
+		double[] curCost = new double[n];
+		Arrays.fill(curCost, Double.POSITIVE_INFINITY);
+		double cost = engine.updateMinDistances(j, curCost);
 		for(i = 0; i < n; i++){
 			points[i].centreIndex = 0;
-			points[i].curCost = points[i].costOfPointToCenter(centres[0]);
+			points[i].curCost = curCost[i];
 
 		}
 		//choose centre 1 to k-1 with the kMeans++ distribution
 		for(i = 1; i < k; i++){
 
-			double cost = 0.0;
-			for(j = 0; j < n; j++){
-				cost += points[j].curCost;
-			}
-
 			double random = 0;
 			double sum = 0.0;
 			int pos = -1;
@@ -306,7 +340,7 @@ public class StreamKM extends AbstractClusterer {
 				pos = -1;
 
 				for(j = 0; j < n; j++){
-					sum = sum + points[j].curCost;
+					sum = sum + curCost[j];
 					if(random <= sum/cost){
 						pos = j;
 						break;
@@ -317,26 +351,16 @@ public class StreamKM extends AbstractClusterer {
 			//copy the choosen centre
 			centres[i] = points[pos].clone();
 			//check which points are closest to the new centre
+			cost = engine.updateMinDistances(pos, curCost);
 			for(j = 0; j < n; j++){
-				double newCost = points[j].costOfPointToCenter(centres[i]);
-				if(points[j].curCost > newCost){
-					points[j].curCost = newCost;
+				if(points[j].curCost > curCost[j]){
+					points[j].curCost = curCost[j];
 					points[j].centreIndex = i;
 				}
 			}
 
 		}
 
-		/*printf("random centres: \n");
-		for(i = 0; i < k; i++){
-			//printf("%d: (",i);
-			int l = 0;
-			for(l = 0; l < centres[i].dimension; l++){
-				printf("%f,",centres[i].coordinates[l] / centres[i].weight);
-			}
-			printf(")\n");
-		}*/
-
 		return centres;
 	}
 
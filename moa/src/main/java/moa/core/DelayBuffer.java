@@ -0,0 +1,158 @@
+/*
+ *    DelayBuffer.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Ring of items waiting to be released at a given time, such as examples
+ * whose labels arrive with a delay. Times are consecutive integers, and each
+ * slot of the ring holds the items released at one time, in the order they
+ * were added. The ring starts with a few slots and doubles when two pending
+ * times fall in the same slot, up to one slot per time from the current time
+ * up to the maximum delay, so a large maximum delay costs memory only when
+ * items are actually delayed that long.
+ *
+ * The items released at a time must be polled before items are added for the
+ * time that is maxDelay + 1 later.
+ *
+ * @param <T> the type of the items
+ */
+public class DelayBuffer<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_SLOTS = 16;
+
+    protected int maxDelay;
+
+    protected Object[][] slotItems;
+
+    protected int[] slotSizes;
+
+    protected int[] slotPolled;
+
+    // Release time of the items of each slot that holds items
+    protected long[] slotTimes;
+
+    protected long size;
+
+    /**
+     * Creates a buffer for items released at most maxDelay time steps after
+     * they are added.
+     */
+    public DelayBuffer(int maxDelay) {
+        this.maxDelay = maxDelay;
+        allocate((int) Math.min(maxDelay + 1L, INITIAL_SLOTS));
+    }
+
+    public int getMaxDelay() {
+        return this.maxDelay;
+    }
+
+    /**
+     * Returns the number of items waiting to be released.
+     */
+    public long size() {
+        return this.size;
+    }
+
+    /**
+     * Adds an item to release at a time within maxDelay steps of the
+     * current time.
+     */
+    public void add(T item, long releaseTime) {
+        int slot = (int) (releaseTime % this.slotItems.length);
+        while (this.slotSizes[slot] > 0 && this.slotTimes[slot] != releaseTime) {
+            grow();
+            slot = (int) (releaseTime % this.slotItems.length);
+        }
+        this.slotTimes[slot] = releaseTime;
+        if (this.slotItems[slot] == null) {
+            this.slotItems[slot] = new Object[1];
+        } else if (this.slotSizes[slot] == this.slotItems[slot].length) {
+            this.slotItems[slot] = Arrays.copyOf(this.slotItems[slot], 2 * this.slotSizes[slot]);
+        }
+        this.slotItems[slot][this.slotSizes[slot]++] = item;
+        this.size++;
+    }
+
+    /**
+     * Removes and returns the next item released at the given time, or null
+     * if there are no more.
+     */
+    @SuppressWarnings("unchecked")
+    public T poll(long time) {
+        int slot = (int) (time % this.slotItems.length);
+        if (this.slotPolled[slot] == this.slotSizes[slot] || this.slotTimes[slot] != time) {
+            return null;
+        }
+        T item = (T) this.slotItems[slot][this.slotPolled[slot]];
+        this.slotItems[slot][this.slotPolled[slot]++] = null;
+        if (this.slotPolled[slot] == this.slotSizes[slot]) {
+            this.slotPolled[slot] = 0;
+            this.slotSizes[slot] = 0;
+        }
+        this.size--;
+        return item;
+    }
+
+    protected void allocate(int numSlots) {
+        this.slotItems = new Object[numSlots][];
+        this.slotSizes = new int[numSlots];
+        this.slotPolled = new int[numSlots];
+        this.slotTimes = new long[numSlots];
+    }
+
+    /**
+     * Doubles the number of slots until the pending times fall in different
+     * slots, and moves the pending items to their new slots.
+     */
+    protected void grow() {
+        Object[][] oldItems = this.slotItems;
+        int[] oldSizes = this.slotSizes;
+        int[] oldPolled = this.slotPolled;
+        long[] oldTimes = this.slotTimes;
+        int numSlots = oldItems.length;
+        boolean placed = false;
+        while (!placed) {
+            if (numSlots > this.maxDelay) {
+                throw new IllegalStateException("Items released more than "
+                        + this.maxDelay + " time steps apart.");
+            }
+            numSlots = (int) Math.min(2L * numSlots, this.maxDelay + 1L);
+            allocate(numSlots);
+            placed = true;
+            for (int i = 0; i < oldItems.length && placed; i++) {
+                if (oldSizes[i] > 0) {
+                    int slot = (int) (oldTimes[i] % numSlots);
+                    if (this.slotSizes[slot] > 0) {
+                        placed = false;
+                    } else {
+                        this.slotItems[slot] = oldItems[i];
+                        this.slotSizes[slot] = oldSizes[i];
+                        this.slotPolled[slot] = oldPolled[i];
+                        this.slotTimes[slot] = oldTimes[i];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -83,19 +83,36 @@ public class GaussianEstimator extends AbstractMOAObject {
     }
 
     public double getVariance() {
-        return this.weightSum > 1.0 ? this.varianceSum / (this.weightSum - 1.0)
-                : 0.0;
+        return getVariance(this.weightSum, this.varianceSum);
     }
 
     public double probabilityDensity(double value) {
-        if (this.weightSum > 0.0) {
-            double stdDev = getStdDev();
+        return probabilityDensity(this.weightSum, this.mean, this.varianceSum, value);
+    }
+
+    /**
+     * Returns the variance of an estimator with the given weight sum and
+     * variance sum.
+     */
+    public static double getVariance(double weightSum, double varianceSum) {
+        return weightSum > 1.0 ? varianceSum / (weightSum - 1.0)
+                : 0.0;
+    }
+
+    /**
+     * Returns the probability density of a value for an estimator with the
+     * given weight sum, mean and variance sum.
+     */
+    public static double probabilityDensity(double weightSum, double mean,
+            double varianceSum, double value) {
+        if (weightSum > 0.0) {
+            double stdDev = Math.sqrt(getVariance(weightSum, varianceSum));
             if (stdDev > 0.0) {
-                double diff = value - getMean();
+                double diff = value - mean;
                 return (1.0 / (NORMAL_CONSTANT * stdDev))
                         * Math.exp(-(diff * diff / (2.0 * stdDev * stdDev)));
             }
-            return value == getMean() ? 1.0 : 0.0;
+            return value == mean ? 1.0 : 0.0;
         }
         return 0.0;
     }
@@ -0,0 +1,224 @@
+/*
+ *    OrderStatisticTree.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Multiset of double values, each stored in a slot numbered from 0 to
+ * capacity - 1, that finds the value of a given rank. Setting or removing the
+ * value of a slot and finding a value by rank take O(log n) expected time.
+ *
+ * The values are kept in a treap whose nodes are the slots, stored in
+ * primitive arrays, so no memory is allocated after construction. Values are
+ * ordered as by Double.compare, with NaN above all others, and equal values
+ * are ordered by slot.
+ */
+public class OrderStatisticTree implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int NIL = -1;
+
+    protected double[] values;
+
+    protected int[] priorities;
+
+    protected int[] left;
+
+    protected int[] right;
+
+    protected int[] sizes;
+
+    protected boolean[] used;
+
+    protected int root = NIL;
+
+    public OrderStatisticTree(int capacity) {
+        this.values = new double[capacity];
+        this.priorities = new int[capacity];
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.sizes = new int[capacity];
+        this.used = new boolean[capacity];
+        Random random = new Random(1);
+        for (int i = 0; i < capacity; i++) {
+            this.priorities[i] = random.nextInt();
+        }
+    }
+
+    public int getCapacity() {
+        return this.values.length;
+    }
+
+    /**
+     * Returns the number of slots holding a value.
+     */
+    public int size() {
+        return size(this.root);
+    }
+
+    public boolean contains(int slot) {
+        return this.used[slot];
+    }
+
+    public double getValue(int slot) {
+        return this.values[slot];
+    }
+
+    /**
+     * Sets the value of a slot, replacing its previous value if any.
+     */
+    public void put(int slot, double value) {
+        if (this.used[slot]) {
+            if (Double.compare(this.values[slot], value) == 0) {
+                return;
+            }
+            remove(slot);
+        }
+        this.values[slot] = value;
+        this.left[slot] = NIL;
+        this.right[slot] = NIL;
+        this.sizes[slot] = 1;
+        this.used[slot] = true;
+        this.root = insert(this.root, slot);
+    }
+
+    /**
+     * Removes the value of a slot, if any.
+     */
+    public void remove(int slot) {
+        if (this.used[slot]) {
+            this.root = delete(this.root, slot);
+            this.used[slot] = false;
+        }
+    }
+
+    public void clear() {
+        this.root = NIL;
+        Arrays.fill(this.used, false);
+    }
+
+    /**
+     * Returns the value of the given rank, from 0 for the smallest value to
+     * size() - 1 for the largest.
+     */
+    public double select(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " of " + size() + " values");
+        }
+        int node = this.root;
+        while (true) {
+            int leftSize = size(this.left[node]);
+            if (rank < leftSize) {
+                node = this.left[node];
+            } else if (rank == leftSize) {
+                return this.values[node];
+            } else {
+                rank -= leftSize + 1;
+                node = this.right[node];
+            }
+        }
+    }
+
+    protected int size(int node) {
+        return node == NIL ? 0 : this.sizes[node];
+    }
+
+    protected boolean before(int a, int b) {
+        int cmp = Double.compare(this.values[a], this.values[b]);
+        return cmp < 0 || (cmp == 0 && a < b);
+    }
+
+    protected void updateSize(int node) {
+        this.sizes[node] = 1 + size(this.left[node]) + size(this.right[node]);
+    }
+
+    protected int insert(int node, int slot) {
+        if (node == NIL) {
+            return slot;
+        }
+        if (before(slot, node)) {
+            this.left[node] = insert(this.left[node], slot);
+            if (this.priorities[this.left[node]] > this.priorities[node]) {
+                node = rotateRight(node);
+            }
+        } else {
+            this.right[node] = insert(this.right[node], slot);
+            if (this.priorities[this.right[node]] > this.priorities[node]) {
+                node = rotateLeft(node);
+            }
+        }
+        updateSize(node);
+        return node;
+    }
+
+    protected int delete(int node, int slot) {
+        if (node == slot) {
+            return merge(this.left[node], this.right[node]);
+        }
+        if (before(slot, node)) {
+            this.left[node] = delete(this.left[node], slot);
+        } else {
+            this.right[node] = delete(this.right[node], slot);
+        }
+        updateSize(node);
+        return node;
+    }
+
+    /**
+     * Merges two treaps whose values are all in order.
+     */
+    protected int merge(int a, int b) {
+        if (a == NIL) {
+            return b;
+        }
+        if (b == NIL) {
+            return a;
+        }
+        if (this.priorities[a] > this.priorities[b]) {
+            this.right[a] = merge(this.right[a], b);
+            updateSize(a);
+            return a;
+        }
+        this.left[b] = merge(a, this.left[b]);
+        updateSize(b);
+        return b;
+    }
+
+    protected int rotateRight(int node) {
+        int child = this.left[node];
+        this.left[node] = this.right[child];
+        this.right[child] = node;
+        updateSize(node);
+        updateSize(child);
+        return child;
+    }
+
+    protected int rotateLeft(int node) {
+        int child = this.right[node];
+        this.right[node] = this.left[child];
+        this.left[child] = node;
+        updateSize(node);
+        updateSize(child);
+        return child;
+    }
+}
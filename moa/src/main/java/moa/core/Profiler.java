@@ -0,0 +1,190 @@
+/*
+ *    Profiler.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and sampled timers for the hot paths of learners, change
+ * detectors, streams and evaluators.
+ *
+ * Profiling is disabled unless the JVM is started with
+ * <code>-Dmoa.profiling=true</code>. Every instrumented call site tests the
+ * constant ENABLED first, so the JIT removes the instrumentation when
+ * profiling is disabled.
+ *
+ * Each counter counts all calls but only times one call out of
+ * SAMPLE_INTERVAL, and estimates the total time from the sampled calls.
+ * Counters can be owned by a model, and reported in its model measurements,
+ * or registered here by name and reported by the evaluation tasks in the
+ * learning curve.
+ */
+public class Profiler {
+
+    public static final boolean ENABLED = Boolean.getBoolean("moa.profiling");
+
+    public static final int SAMPLE_INTERVAL = 16;
+
+    protected static final Map<String, Counter> counters = new TreeMap<String, Counter>();
+
+    /**
+     * Returns the registered counter with the given name, creating it if
+     * needed.
+     */
+    public static synchronized Counter getCounter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = new Counter(name);
+            counters.put(name, counter);
+        }
+        return counter;
+    }
+
+    /**
+     * Resets the registered counters. Tasks running at the same time share
+     * these counters, so RunTasks runs its configurations one at a time when
+     * profiling is enabled.
+     */
+    public static synchronized void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Returns the measurements of the registered counters, or an empty array
+     * if profiling is disabled.
+     */
+    public static synchronized Measurement[] getMeasurements() {
+        List<Measurement> measurementList = new ArrayList<Measurement>();
+        if (ENABLED) {
+            for (Counter counter : counters.values()) {
+                measurementList.addAll(Arrays.asList(counter.getMeasurements()));
+            }
+        }
+        return measurementList.toArray(new Measurement[measurementList.size()]);
+    }
+
+    /**
+     * Counts calls to a code section and times a sample of them. Counters can
+     * be updated from several threads.
+     */
+    public static class Counter {
+
+        protected static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+        protected final String name;
+
+        protected final AtomicLong calls = new AtomicLong();
+
+        protected final AtomicLong sampledCalls = new AtomicLong();
+
+        protected final AtomicLong sampledNanoTime = new AtomicLong();
+
+        public Counter(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Counts a call, to be called before the profiled section.
+         *
+         * @return the start time to pass to stop
+         */
+        public long start() {
+            return start(1);
+        }
+
+        /**
+         * Counts several calls made at once, such as a batch of inputs, to be
+         * called before the profiled section. The batch is timed if it
+         * contains a call that would be timed.
+         *
+         * @param numCalls the number of calls
+         * @return the start time to pass to stop
+         */
+        public long start(int numCalls) {
+            long previous = this.calls.getAndAdd(numCalls);
+            if (previous % SAMPLE_INTERVAL == 0
+                    || previous / SAMPLE_INTERVAL != (previous + numCalls - 1) / SAMPLE_INTERVAL) {
+                return System.nanoTime();
+            }
+            return NOT_SAMPLED;
+        }
+
+        /**
+         * Ends a call, to be called after the profiled section.
+         *
+         * @param startTime the value returned by start
+         */
+        public void stop(long startTime) {
+            stop(startTime, 1);
+        }
+
+        /**
+         * Ends several calls made at once, to be called after the profiled
+         * section.
+         *
+         * @param startTime the value returned by start
+         * @param numCalls the number of calls passed to start
+         */
+        public void stop(long startTime, int numCalls) {
+            if (startTime != NOT_SAMPLED) {
+                this.sampledNanoTime.addAndGet(System.nanoTime() - startTime);
+                this.sampledCalls.addAndGet(numCalls);
+            }
+        }
+
+        public long getCalls() {
+            return this.calls.get();
+        }
+
+        /**
+         * Estimates the time spent in all calls from the sampled calls, in
+         * seconds.
+         */
+        public double getEstimatedSeconds() {
+            long sampled = this.sampledCalls.get();
+            if (sampled == 0) {
+                return 0.0;
+            }
+            return TimingUtils.nanoTimeToSeconds(this.sampledNanoTime.get())
+                    * this.calls.get() / sampled;
+        }
+
+        public void reset() {
+            this.calls.set(0);
+            this.sampledCalls.set(0);
+            this.sampledNanoTime.set(0);
+        }
+
+        public Measurement[] getMeasurements() {
+            return new Measurement[]{
+                        new Measurement("profiled " + this.name + " calls",
+                        getCalls()),
+                        new Measurement("profiled " + this.name + " time (seconds)",
+                        getEstimatedSeconds())
+                    };
+        }
+    }
+}
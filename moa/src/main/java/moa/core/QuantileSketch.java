@@ -0,0 +1,339 @@
+/*
+ *    QuantileSketch.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.Serializable;
+
+import moa.AbstractMOAObject;
+
+/**
+ * Mergeable streaming histogram for estimating quantiles, with at most
+ * maxBins bins stored in sorted primitive arrays. When an insertion exceeds
+ * maxBins, the two closest bins are merged, so the sketch is always compact.
+ *
+ * Several sketches are merged with a Merger, which walks their bins in order
+ * without copying them and only evaluates the requested quantiles.
+ *
+ * <p>Yael Ben-Haim and Elad Tom-Tov. A streaming parallel decision tree
+ * algorithm. Journal of Machine Learning Research 11, 849-872, 2010.</p>
+ */
+public class QuantileSketch extends AbstractMOAObject {
+
+    private static final long serialVersionUID = 1L;
+
+    protected double[] centroids;
+
+    protected double[] counts;
+
+    protected int numBins;
+
+    protected double totalCount;
+
+    protected double min = Double.POSITIVE_INFINITY;
+
+    protected double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch(int maxBins) {
+        this.centroids = new double[maxBins + 1];
+        this.counts = new double[maxBins + 1];
+    }
+
+    public void insert(double value) {
+        insert(value, 1.0);
+    }
+
+    public void insert(double value, double count) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        this.totalCount += count;
+        if (value < this.min) {
+            this.min = value;
+        }
+        if (value > this.max) {
+            this.max = value;
+        }
+        int lo = 0;
+        int hi = this.numBins;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.centroids[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo < this.numBins && this.centroids[lo] == value) {
+            this.counts[lo] += count;
+            return;
+        }
+        System.arraycopy(this.centroids, lo, this.centroids, lo + 1, this.numBins - lo);
+        System.arraycopy(this.counts, lo, this.counts, lo + 1, this.numBins - lo);
+        this.centroids[lo] = value;
+        this.counts[lo] = count;
+        this.numBins++;
+        if (this.numBins == this.centroids.length) {
+            mergeClosestBins();
+        }
+    }
+
+    protected void mergeClosestBins() {
+        int closest = 0;
+        double minGap = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < this.numBins - 1; i++) {
+            double gap = this.centroids[i + 1] - this.centroids[i];
+            if (gap < minGap) {
+                minGap = gap;
+                closest = i;
+            }
+        }
+        double count = this.counts[closest] + this.counts[closest + 1];
+        this.centroids[closest] = (this.centroids[closest] * this.counts[closest]
+                + this.centroids[closest + 1] * this.counts[closest + 1]) / count;
+        this.counts[closest] = count;
+        System.arraycopy(this.centroids, closest + 2, this.centroids, closest + 1, this.numBins - closest - 2);
+        System.arraycopy(this.counts, closest + 2, this.counts, closest + 1, this.numBins - closest - 2);
+        this.numBins--;
+    }
+
+    public int getMaxBins() {
+        return this.centroids.length - 1;
+    }
+
+    public int getNumBins() {
+        return this.numBins;
+    }
+
+    public double getCentroid(int bin) {
+        return this.centroids[bin];
+    }
+
+    public double getCount(int bin) {
+        return this.counts[bin];
+    }
+
+    public double getTotalCount() {
+        return this.totalCount;
+    }
+
+    public double getMin() {
+        return this.min;
+    }
+
+    public double getMax() {
+        return this.max;
+    }
+
+    /**
+     * Estimates the quantile of the given probability, or returns NaN if the
+     * sketch is empty.
+     */
+    public double quantile(double probability) {
+        double[] quantiles = new double[1];
+        if (!new Merger().quantiles(new QuantileSketch[]{this}, 1,
+                new double[]{probability}, quantiles)) {
+            return Double.NaN;
+        }
+        return quantiles[0];
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        // TODO Auto-generated method stub
+    }
+
+    /**
+     * Estimates quantiles of the union of several sketches. The bins of the
+     * sketches are visited in order with a heap of cursors, and the quantiles
+     * are interpolated as in the uniform procedure of Ben-Haim and Tom-Tov,
+     * taking the minimum and the maximum as bins with no count. Quantiles
+     * below the median are found walking up from the minimum, and the others
+     * walking down from the maximum, so the bins between the requested
+     * quantiles are not visited. The heap and the cursors are reused, so
+     * merging does not allocate memory once they are large enough for the
+     * number of sketches.
+     */
+    public static class Merger implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected int[] heap = new int[0];
+
+        protected int[] cursors = new int[0];
+
+        protected int heapSize;
+
+        protected boolean descending;
+
+        protected QuantileSketch[] sketches;
+
+        /**
+         * Estimates the quantiles of the given probabilities, sorted in
+         * ascending order, over the first numSketches sketches.
+         *
+         * @return false if the sketches are empty, leaving quantiles unchanged
+         */
+        public boolean quantiles(QuantileSketch[] sketches, int numSketches,
+                double[] probabilities, double[] quantiles) {
+            if (this.heap.length < numSketches) {
+                this.heap = new int[numSketches];
+                this.cursors = new int[numSketches];
+            }
+            double total = 0.0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < numSketches; i++) {
+                QuantileSketch sketch = sketches[i];
+                if (sketch.numBins > 0) {
+                    total += sketch.totalCount;
+                    min = Math.min(min, sketch.min);
+                    max = Math.max(max, sketch.max);
+                }
+            }
+            if (total <= 0.0) {
+                return false;
+            }
+            this.sketches = sketches;
+            int numLower = 0;
+            while (numLower < probabilities.length && probabilities[numLower] <= 0.5) {
+                numLower++;
+            }
+            if (numLower > 0) {
+                walk(numSketches, false, min, max, total, probabilities, 0, numLower, quantiles);
+            }
+            if (numLower < probabilities.length) {
+                walk(numSketches, true, max, min, total, probabilities, numLower,
+                        probabilities.length, quantiles);
+            }
+            this.sketches = null;
+            return true;
+        }
+
+        /**
+         * Walks the bins from one end, starting with the end as a bin with no
+         * count, until the quantiles from index from to index to - 1 are
+         * found.
+         */
+        protected void walk(int numSketches, boolean descending, double start,
+                double end, double total, double[] probabilities, int from,
+                int to, double[] quantiles) {
+            this.descending = descending;
+            this.heapSize = 0;
+            for (int i = 0; i < numSketches; i++) {
+                QuantileSketch sketch = this.sketches[i];
+                if (sketch.numBins > 0) {
+                    this.cursors[i] = descending ? sketch.numBins - 1 : 0;
+                    this.heap[this.heapSize++] = i;
+                }
+            }
+            for (int i = this.heapSize / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+            double prevCentroid = start;
+            double prevCount = 0.0;
+            double prevSum = 0.0;
+            boolean endVisited = false;
+            // Walking down, the quantiles are found from the largest one
+            int found = 0;
+            while (found < to - from && !endVisited) {
+                double centroid;
+                double count;
+                if (this.heapSize > 0) {
+                    int i = this.heap[0];
+                    QuantileSketch sketch = this.sketches[i];
+                    centroid = sketch.centroids[this.cursors[i]];
+                    count = sketch.counts[this.cursors[i]];
+                    this.cursors[i] += descending ? -1 : 1;
+                    if (this.cursors[i] < 0 || this.cursors[i] == sketch.numBins) {
+                        this.heap[0] = this.heap[--this.heapSize];
+                    }
+                    siftDown(0);
+                } else {
+                    centroid = end;
+                    count = 0.0;
+                    endVisited = true;
+                }
+                double sum = prevSum + (prevCount + count) / 2.0;
+                while (found < to - from) {
+                    int q = descending ? to - 1 - found : from + found;
+                    double target = (descending ? 1.0 - probabilities[q] : probabilities[q]) * total;
+                    if (target > sum) {
+                        break;
+                    }
+                    quantiles[q] = interpolate(prevCentroid, prevCount, centroid,
+                            count, target - prevSum);
+                    found++;
+                }
+                prevCentroid = centroid;
+                prevCount = count;
+                prevSum = sum;
+            }
+            // Rounding may leave the quantiles farthest from the start past the end
+            for (; found < to - from; found++) {
+                quantiles[descending ? to - 1 - found : from + found] = end;
+            }
+        }
+
+        protected void siftDown(int pos) {
+            int item = this.heap[pos];
+            while (2 * pos + 1 < this.heapSize) {
+                int child = 2 * pos + 1;
+                if (child + 1 < this.heapSize && before(this.heap[child + 1], this.heap[child])) {
+                    child++;
+                }
+                if (!before(this.heap[child], item)) {
+                    break;
+                }
+                this.heap[pos] = this.heap[child];
+                pos = child;
+            }
+            this.heap[pos] = item;
+        }
+
+        /**
+         * Returns whether the current bin of sketch i comes before the
+         * current bin of sketch j in the walk.
+         */
+        protected boolean before(int i, int j) {
+            double ci = this.sketches[i].centroids[this.cursors[i]];
+            double cj = this.sketches[j].centroids[this.cursors[j]];
+            if (this.descending) {
+                return ci > cj || (ci == cj && i < j);
+            }
+            return ci < cj || (ci == cj && i < j);
+        }
+
+        /**
+         * Finds the point between two bins below which the given count lies,
+         * assuming the density changes linearly between the bins.
+         */
+        protected static double interpolate(double centroid1, double count1,
+                double centroid2, double count2, double count) {
+            double a = count2 - count1;
+            double z;
+            if (a == 0.0) {
+                z = count1 > 0.0 ? count / count1 : 0.0;
+            } else {
+                z = (-count1 + Math.sqrt(Math.max(0.0, count1 * count1 + 2.0 * a * count))) / a;
+            }
+            z = Math.max(0.0, Math.min(1.0, z));
+            return centroid1 + (centroid2 - centroid1) * z;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ *    ResourceMeter.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.lang.ref.WeakReference;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Measures the CPU time, wall-clock time and allocated memory used since its
+ * creation by the thread that created it and by the threads it starts, such
+ * as the worker threads of parallel learners.
+ *
+ * Threads are measured only when they are created with newThread or
+ * threadFactory. Such a thread is measured by the meters in use that were
+ * created on the thread that starts it, like the meter of a TaskThread and
+ * the meter of the task it runs, and by all the meters that measure that
+ * thread. The threads of the threads started by a task are then measured
+ * too, while the threads of other tasks running in the same JVM are not. A
+ * meter stops measuring new threads once it is garbage collected.
+ *
+ * The usage of a running thread is read when one of the getters is called,
+ * and its final usage when it ends. To keep frequent calls cheap, the CPU
+ * time of the threads other than the creating thread is read at most once
+ * per millisecond.
+ *
+ * Without precise timing (see TimingUtils.enablePreciseTiming) the CPU time
+ * is the wall-clock time, as in TimingUtils.getNanoCPUTimeOfThread.
+ */
+public class ResourceMeter {
+
+    // Meters created on the current thread, until they are collected
+    private static final ThreadLocal<List<WeakReference<ResourceMeter>>> createdMeters =
+            ThreadLocal.withInitial(ArrayList::new);
+
+    // Meters that measure the current thread, set when it starts
+    private static final ThreadLocal<List<ResourceMeter>> threadMeters = new ThreadLocal<List<ResourceMeter>>();
+
+    protected long ownerThreadID;
+
+    protected long startWallClockTime;
+
+    protected long startCPUTime;
+
+    protected long startAllocatedBytes;
+
+    protected boolean allocatedBytesAvailable;
+
+    // Last CPU time read for each running measured thread other than the owner
+    protected Map<Long, Long> threadCPUTimes = new HashMap<Long, Long>();
+
+    protected long threadCPUTimesSum;
+
+    protected long threadCPUTimesReadTime;
+
+    // Last allocated bytes read for each running measured thread other than the owner
+    protected Map<Long, Long> threadAllocatedBytes = new HashMap<Long, Long>();
+
+    // Usage of the measured threads that ended
+    protected long endedThreadsCPUTime;
+
+    protected long endedThreadsAllocatedBytes;
+
+    /**
+     * Starts measuring the current thread and the threads it starts from now
+     * with newThread or threadFactory.
+     */
+    public ResourceMeter() {
+        this.ownerThreadID = Thread.currentThread().getId();
+        this.allocatedBytesAvailable = enableAllocatedBytes();
+        List<WeakReference<ResourceMeter>> meters = createdMeters.get();
+        meters.removeIf(reference -> reference.get() == null);
+        meters.add(new WeakReference<ResourceMeter>(this));
+        this.startWallClockTime = System.nanoTime();
+        this.threadCPUTimesReadTime = this.startWallClockTime - 1000000;
+        this.startCPUTime = TimingUtils.getNanoCPUTimeOfThread(this.ownerThreadID);
+        this.startAllocatedBytes = this.allocatedBytesAvailable
+                ? getThreadAllocatedBytes(new long[]{this.ownerThreadID})[0] : 0;
+    }
+
+    /**
+     * Returns the wall-clock time since the creation of the meter, in
+     * nanoseconds.
+     */
+    public long getNanoWallClockTime() {
+        return System.nanoTime() - this.startWallClockTime;
+    }
+
+    /**
+     * Returns the CPU time used by the measured threads since the creation of
+     * the meter, in nanoseconds.
+     */
+    public synchronized long getNanoCPUTime() {
+        long time = TimingUtils.getNanoCPUTimeOfThread(this.ownerThreadID) - this.startCPUTime;
+        if (TimingUtils.preciseThreadTimesAvailable) {
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            long now = System.nanoTime();
+            if (threadBean.isThreadCpuTimeSupported()
+                    && (now - this.threadCPUTimesReadTime >= 1000000)) {
+                for (Map.Entry<Long, Long> entry : this.threadCPUTimes.entrySet()) {
+                    long threadTime = threadBean.getThreadCpuTime(entry.getKey());
+                    if (threadTime >= 0) {
+                        entry.setValue(threadTime);
+                    }
+                }
+                sumThreadCPUTimes();
+                this.threadCPUTimesReadTime = now;
+            }
+            time += this.endedThreadsCPUTime + this.threadCPUTimesSum;
+        }
+        return time;
+    }
+
+    protected void sumThreadCPUTimes() {
+        this.threadCPUTimesSum = 0;
+        for (long threadTime : this.threadCPUTimes.values()) {
+            this.threadCPUTimesSum += threadTime;
+        }
+    }
+
+    /**
+     * Returns the memory allocated by the measured threads since the creation
+     * of the meter, in bytes, or -1 if the JVM does not measure it.
+     */
+    public synchronized long getAllocatedBytes() {
+        if (!this.allocatedBytesAvailable) {
+            return -1;
+        }
+        long[] ids = new long[this.threadAllocatedBytes.size()];
+        int n = 0;
+        for (long id : this.threadAllocatedBytes.keySet()) {
+            ids[n++] = id;
+        }
+        long[] bytes = getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) {
+                this.threadAllocatedBytes.put(ids[i], bytes[i]);
+            }
+        }
+        long allocated = getThreadAllocatedBytes(new long[]{this.ownerThreadID})[0]
+                - this.startAllocatedBytes + this.endedThreadsAllocatedBytes;
+        for (long threadBytes : this.threadAllocatedBytes.values()) {
+            allocated += threadBytes;
+        }
+        return allocated;
+    }
+
+    /**
+     * Starts measuring the current thread, called when it starts.
+     */
+    protected synchronized void threadStarted() {
+        long id = Thread.currentThread().getId();
+        this.threadCPUTimes.put(id, 0L);
+        this.threadAllocatedBytes.put(id, 0L);
+    }
+
+    /**
+     * Adds the final usage of the current thread, called when it ends.
+     */
+    protected synchronized void threadEnded(long cpuTime, long allocatedBytes) {
+        long id = Thread.currentThread().getId();
+        this.threadCPUTimes.remove(id);
+        this.threadAllocatedBytes.remove(id);
+        sumThreadCPUTimes();
+        if (cpuTime >= 0) {
+            this.endedThreadsCPUTime += cpuTime;
+        }
+        if (allocatedBytes >= 0) {
+            this.endedThreadsAllocatedBytes += allocatedBytes;
+        }
+    }
+
+    /**
+     * Returns the meters that measure the threads started by the current
+     * thread.
+     */
+    protected static List<ResourceMeter> getCurrentMeters() {
+        List<ResourceMeter> meters = new ArrayList<ResourceMeter>();
+        for (WeakReference<ResourceMeter> reference : createdMeters.get()) {
+            ResourceMeter meter = reference.get();
+            if (meter != null) {
+                meters.add(meter);
+            }
+        }
+        List<ResourceMeter> startMeters = threadMeters.get();
+        if (startMeters != null) {
+            for (ResourceMeter startMeter : startMeters) {
+                if (!meters.contains(startMeter)) {
+                    meters.add(startMeter);
+                }
+            }
+        }
+        return meters;
+    }
+
+    /**
+     * Creates a daemon thread measured by the meters of the current thread.
+     *
+     * @param runnable the code run by the thread
+     * @param name the name of the thread, or null for a default name
+     */
+    public static Thread newThread(final Runnable runnable, String name) {
+        final List<ResourceMeter> meters = Collections.unmodifiableList(getCurrentMeters());
+        Runnable measured = () -> {
+            threadMeters.set(meters);
+            for (ResourceMeter meter : meters) {
+                meter.threadStarted();
+            }
+            try {
+                runnable.run();
+            } finally {
+                long cpuTime = TimingUtils.preciseThreadTimesAvailable
+                        ? ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() : -1;
+                long allocatedBytes = enableAllocatedBytes()
+                        ? getThreadAllocatedBytes(new long[]{Thread.currentThread().getId()})[0] : -1;
+                for (ResourceMeter meter : meters) {
+                    meter.threadEnded(cpuTime, allocatedBytes);
+                }
+            }
+        };
+        Thread thread = name == null ? new Thread(measured) : new Thread(measured, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Returns a factory of daemon threads measured by the meters of the
+     * thread that creates them, for the executors of parallel learners.
+     */
+    public static ThreadFactory threadFactory() {
+        return runnable -> newThread(runnable, null);
+    }
+
+    protected static boolean enableAllocatedBytes() {
+        try {
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            if (threadBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+                if (sunThreadBean.isThreadAllocatedMemorySupported()) {
+                    sunThreadBean.setThreadAllocatedMemoryEnabled(true);
+                    return true;
+                }
+            }
+        } catch (Throwable e) {
+            // not a HotSpot JVM, allocated memory is not measured
+        }
+        return false;
+    }
+
+    protected static long[] getThreadAllocatedBytes(long[] ids) {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(ids);
+    }
+}
@@ -27,10 +27,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -42,6 +46,8 @@ import java.util.zip.GZIPOutputStream;
  */
 public class SerializeUtils {
 
+    protected static final int BUFFER_SIZE = 1 << 16;
+
     public static class ByteCountingOutputStream extends OutputStream {
 
         protected int numBytesWritten = 0;
@@ -75,13 +81,61 @@ public class SerializeUtils {
         out.close();
     }
 
+    /**
+     * Reads an object written by writeToFile or writeBytesToFile: files
+     * starting with the gzip magic number are decompressed.
+     */
     public static Object readFromFile(File file) throws IOException,
             ClassNotFoundException {
-        ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(
-                new BufferedInputStream(new FileInputStream(file))));
-        Object obj = in.readObject();
-        in.close();
-        return obj;
+        InputStream fileIn = new BufferedInputStream(new FileInputStream(file),
+                BUFFER_SIZE);
+        fileIn.mark(2);
+        boolean compressed = fileIn.read() == (GZIPInputStream.GZIP_MAGIC & 0xff)
+                && fileIn.read() == (GZIPInputStream.GZIP_MAGIC >>> 8);
+        fileIn.reset();
+        ObjectInputStream in = new ObjectInputStream(compressed
+                ? new GZIPInputStream(fileIn, BUFFER_SIZE) : fileIn);
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Serializes an object into a byte array, without compression. The array
+     * is a snapshot of the object that can be written to a file by another
+     * thread while the object keeps changing.
+     */
+    public static byte[] toByteArray(Serializable obj) throws IOException {
+        ByteArrayOutputStream baoStream = new ByteArrayOutputStream(BUFFER_SIZE);
+        ObjectOutputStream out = new ObjectOutputStream(baoStream);
+        out.writeObject(obj);
+        out.close();
+        return baoStream.toByteArray();
+    }
+
+    /**
+     * Writes bytes to a temporary file next to the given file, then renames
+     * it, so the file always holds either the previous or the new content.
+     */
+    public static void writeBytesToFile(File file, byte[] bytes)
+            throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(tempFile);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
     public static Object copyObject(Serializable obj) throws Exception {
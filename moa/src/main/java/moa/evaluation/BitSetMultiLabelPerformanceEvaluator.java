@@ -0,0 +1,324 @@
+/*
+ *    BitSetMultiLabelPerformanceEvaluator.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import moa.core.Example;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.evaluation.BasicClassificationPerformanceEvaluator.Estimator;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+import com.github.javacliparser.FloatOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.MultiLabelInstance;
+import com.yahoo.labs.samoa.instances.Prediction;
+
+/**
+ * Multi-label evaluator that encodes the true and the predicted labelsets of
+ * each example as bitsets, and computes the metrics from the number of bits
+ * set in their intersection, differences and symmetric difference.
+ *
+ * Reports example-based metrics (Hamming score and loss, subset accuracy,
+ * precision, recall, F1 and Jaccard index), micro-averaged metrics from the
+ * true positives, false positives and false negatives of all labels, and
+ * macro-averaged F1 and Jaccard index over the labels. When a metric is
+ * undefined because both labelsets are empty, or a label is neither relevant
+ * nor predicted, it counts as perfect.
+ *
+ * Predictions that are missing or have fewer labels than the example are
+ * ignored. Nothing is printed.
+ */
+public class BitSetMultiLabelPerformanceEvaluator extends AbstractOptionHandler
+        implements MultiTargetPerformanceEvaluator {
+
+    private static final long serialVersionUID = 1L;
+
+    public FloatOption thresholdOption = new FloatOption("threshold", 't',
+            "Vote above which a label is predicted as relevant.", 0.5);
+
+    protected int numLabels;
+
+    protected int numWords;
+
+    protected long numExamples;
+
+    // Bitsets of the current example
+    protected long[] trueLabels;
+
+    protected long[] predictedLabels;
+
+    protected long[] truePositiveLabels;
+
+    protected long[] falsePositiveLabels;
+
+    protected long[] falseNegativeLabels;
+
+    protected Estimator hammingLoss;
+
+    protected Estimator subsetAccuracy;
+
+    protected Estimator precision;
+
+    protected Estimator recall;
+
+    protected Estimator f1;
+
+    protected Estimator jaccard;
+
+    // Numbers of labels per example, for the micro-averaged metrics
+    protected Estimator truePositives;
+
+    protected Estimator falsePositives;
+
+    protected Estimator falseNegatives;
+
+    // Numbers of examples per label, for the macro-averaged metrics
+    protected LabelCounter labelTruePositives;
+
+    protected LabelCounter labelFalsePositives;
+
+    protected LabelCounter labelFalseNegatives;
+
+    @Override
+    public void reset() {
+        this.numLabels = 0;
+        this.numExamples = 0;
+    }
+
+    /**
+     * Prepares the estimators and bitsets for the given number of labels.
+     */
+    protected void reset(int numLabels) {
+        this.numLabels = numLabels;
+        this.numWords = (numLabels + 63) >>> 6;
+        this.trueLabels = new long[this.numWords];
+        this.predictedLabels = new long[this.numWords];
+        this.truePositiveLabels = new long[this.numWords];
+        this.falsePositiveLabels = new long[this.numWords];
+        this.falseNegativeLabels = new long[this.numWords];
+        this.hammingLoss = newEstimator();
+        this.subsetAccuracy = newEstimator();
+        this.precision = newEstimator();
+        this.recall = newEstimator();
+        this.f1 = newEstimator();
+        this.jaccard = newEstimator();
+        this.truePositives = newEstimator();
+        this.falsePositives = newEstimator();
+        this.falseNegatives = newEstimator();
+        this.labelTruePositives = newLabelCounter(numLabels);
+        this.labelFalsePositives = newLabelCounter(numLabels);
+        this.labelFalseNegatives = newLabelCounter(numLabels);
+    }
+
+    @Override
+    public void addResult(Example<Instance> example, Prediction prediction) {
+        MultiLabelInstance inst = (MultiLabelInstance) example.getData();
+        int numOutputs = inst.numOutputAttributes();
+        if (prediction == null || prediction.numOutputAttributes() < numOutputs) {
+            return;
+        }
+        if (this.numLabels == 0) {
+            reset(numOutputs);
+        }
+        double threshold = this.thresholdOption.getValue();
+        Arrays.fill(this.trueLabels, 0L);
+        Arrays.fill(this.predictedLabels, 0L);
+        for (int j = 0; j < this.numLabels; j++) {
+            if ((int) inst.classValue(j) == 1) {
+                this.trueLabels[j >>> 6] |= 1L << j;
+            }
+            if (prediction.getVote(j, 0) > threshold) {
+                this.predictedLabels[j >>> 6] |= 1L << j;
+            }
+        }
+        addLabelsets(this.trueLabels, this.predictedLabels);
+    }
+
+    /**
+     * Adds the result of an example given as bitsets of its true and
+     * predicted labels, with the bit (j % 64) of word (j / 64) for label j.
+     */
+    protected void addLabelsets(long[] trueLabels, long[] predictedLabels) {
+        int numTrue = 0;
+        int numPredicted = 0;
+        int numTruePositives = 0;
+        int numErrors = 0;
+        for (int w = 0; w < this.numWords; w++) {
+            long t = trueLabels[w];
+            long p = predictedLabels[w];
+            this.truePositiveLabels[w] = t & p;
+            this.falsePositiveLabels[w] = p & ~t;
+            this.falseNegativeLabels[w] = t & ~p;
+            numTrue += Long.bitCount(t);
+            numPredicted += Long.bitCount(p);
+            numTruePositives += Long.bitCount(t & p);
+            numErrors += Long.bitCount(t ^ p);
+        }
+        int numFalsePositives = numPredicted - numTruePositives;
+        int numFalseNegatives = numTrue - numTruePositives;
+        int numUnion = numTruePositives + numErrors;
+
+        this.numExamples++;
+        this.hammingLoss.add((double) numErrors / this.numLabels);
+        this.subsetAccuracy.add(numErrors == 0 ? 1.0 : 0.0);
+        this.precision.add(numPredicted == 0 ? (numTrue == 0 ? 1.0 : 0.0)
+                : (double) numTruePositives / numPredicted);
+        this.recall.add(numTrue == 0 ? (numPredicted == 0 ? 1.0 : 0.0)
+                : (double) numTruePositives / numTrue);
+        this.f1.add(numUnion == 0 ? 1.0
+                : 2.0 * numTruePositives / (numTrue + numPredicted));
+        this.jaccard.add(numUnion == 0 ? 1.0
+                : (double) numTruePositives / numUnion);
+        this.truePositives.add(numTruePositives);
+        this.falsePositives.add(numFalsePositives);
+        this.falseNegatives.add(numFalseNegatives);
+        this.labelTruePositives.add(this.truePositiveLabels);
+        this.labelFalsePositives.add(this.falsePositiveLabels);
+        this.labelFalseNegatives.add(this.falseNegativeLabels);
+    }
+
+    @Override
+    public void addResult(Example<Instance> example, double[] classVotes) {
+    }
+
+    @Override
+    public Measurement[] getPerformanceMeasurements() {
+        List<Measurement> measurements = new ArrayList<Measurement>();
+        measurements.add(new Measurement("classified instances", this.numExamples));
+        if (this.numLabels == 0) {
+            return measurements.toArray(new Measurement[measurements.size()]);
+        }
+        double hammingLoss = this.hammingLoss.estimation();
+        measurements.add(new Measurement("Hamming score", 1.0 - hammingLoss));
+        measurements.add(new Measurement("Hamming loss", hammingLoss));
+        measurements.add(new Measurement("Subset accuracy", this.subsetAccuracy.estimation()));
+        measurements.add(new Measurement("Example-based precision", this.precision.estimation()));
+        measurements.add(new Measurement("Example-based recall", this.recall.estimation()));
+        measurements.add(new Measurement("Example-based F1", this.f1.estimation()));
+        measurements.add(new Measurement("Example-based Jaccard index", this.jaccard.estimation()));
+
+        double tp = this.truePositives.estimation();
+        double fp = this.falsePositives.estimation();
+        double fn = this.falseNegatives.estimation();
+        measurements.add(new Measurement("Micro-averaged precision", ratio(tp, tp + fp)));
+        measurements.add(new Measurement("Micro-averaged recall", ratio(tp, tp + fn)));
+        measurements.add(new Measurement("Micro-averaged F1", ratio(2.0 * tp, 2.0 * tp + fp + fn)));
+        measurements.add(new Measurement("Micro-averaged Jaccard index", ratio(tp, tp + fp + fn)));
+
+        double sumF1 = 0.0;
+        double sumJaccard = 0.0;
+        for (int j = 0; j < this.numLabels; j++) {
+            double labelTp = this.labelTruePositives.count(j);
+            double labelErrors = this.labelFalsePositives.count(j)
+                    + this.labelFalseNegatives.count(j);
+            sumF1 += ratio(2.0 * labelTp, 2.0 * labelTp + labelErrors);
+            sumJaccard += ratio(labelTp, labelTp + labelErrors);
+        }
+        measurements.add(new Measurement("Macro-averaged F1", sumF1 / this.numLabels));
+        measurements.add(new Measurement("Macro-averaged Jaccard index", sumJaccard / this.numLabels));
+        return measurements.toArray(new Measurement[measurements.size()]);
+    }
+
+    private static double ratio(double numerator, double denominator) {
+        return denominator > 0.0 ? numerator / denominator : 1.0;
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        Measurement.getMeasurementsDescription(getPerformanceMeasurements(),
+                sb, indent);
+    }
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+    }
+
+    /**
+     * Counts the examples in which each label has its bit set.
+     */
+    public interface LabelCounter extends Serializable {
+
+        /**
+         * Adds an example, given as the bitset of the labels to count.
+         */
+        void add(long[] labels);
+
+        double count(int label);
+    }
+
+    public static class BasicEstimator implements Estimator {
+
+        private static final long serialVersionUID = 1L;
+
+        protected double len;
+
+        protected double sum;
+
+        @Override
+        public void add(double value) {
+            sum += value;
+            len++;
+        }
+
+        @Override
+        public double estimation() {
+            return sum / len;
+        }
+
+    }
+
+    public static class BasicLabelCounter implements LabelCounter {
+
+        private static final long serialVersionUID = 1L;
+
+        protected long[] counts;
+
+        public BasicLabelCounter(int numLabels) {
+            this.counts = new long[numLabels];
+        }
+
+        @Override
+        public void add(long[] labels) {
+            for (int w = 0; w < labels.length; w++) {
+                for (long bits = labels[w]; bits != 0L; bits &= bits - 1) {
+                    this.counts[(w << 6) + Long.numberOfTrailingZeros(bits)]++;
+                }
+            }
+        }
+
+        @Override
+        public double count(int label) {
+            return this.counts[label];
+        }
+    }
+
+    protected Estimator newEstimator() {
+        return new BasicEstimator();
+    }
+
+    protected LabelCounter newLabelCounter(int numLabels) {
+        return new BasicLabelCounter(numLabels);
+    }
+}
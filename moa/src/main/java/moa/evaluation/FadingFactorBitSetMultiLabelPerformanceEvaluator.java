@@ -0,0 +1,114 @@
+/*
+ *    FadingFactorBitSetMultiLabelPerformanceEvaluator.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import moa.evaluation.BasicClassificationPerformanceEvaluator.Estimator;
+
+import com.github.javacliparser.FloatOption;
+
+/**
+ * Bitset multi-label evaluator that updates the metrics using a fading
+ * factor. The count of a label is faded only when the label is set or read,
+ * by the power of the fading factor for the examples added in between, so
+ * adding an example costs time in the number of labels set, not in the total
+ * number of labels.
+ */
+public class FadingFactorBitSetMultiLabelPerformanceEvaluator extends BitSetMultiLabelPerformanceEvaluator {
+
+    private static final long serialVersionUID = 1L;
+
+    public FloatOption alphaOption = new FloatOption("alpha",
+            'a', "Fading factor or exponential smoothing factor", .999);
+
+    @Override
+    protected Estimator newEstimator() {
+        return new FadingFactorEstimator(this.alphaOption.getValue());
+    }
+
+    @Override
+    protected LabelCounter newLabelCounter(int numLabels) {
+        return new FadingFactorLabelCounter(numLabels, this.alphaOption.getValue());
+    }
+
+    public static class FadingFactorEstimator implements Estimator {
+
+        private static final long serialVersionUID = 1L;
+
+        protected double alpha;
+
+        protected double estimation;
+
+        protected double b;
+
+        public FadingFactorEstimator(double a) {
+            this.alpha = a;
+        }
+
+        @Override
+        public void add(double value) {
+            this.estimation = this.alpha * this.estimation + value;
+            this.b = this.alpha * this.b + 1.0;
+        }
+
+        @Override
+        public double estimation() {
+            return this.b > 0.0 ? this.estimation / this.b : 0;
+        }
+
+    }
+
+    public static class FadingFactorLabelCounter implements LabelCounter {
+
+        private static final long serialVersionUID = 1L;
+
+        protected double alpha;
+
+        protected double[] counts;
+
+        // Number of examples added when each count was last faded
+        protected long[] lastUpdates;
+
+        protected long numExamples;
+
+        public FadingFactorLabelCounter(int numLabels, double alpha) {
+            this.alpha = alpha;
+            this.counts = new double[numLabels];
+            this.lastUpdates = new long[numLabels];
+        }
+
+        @Override
+        public void add(long[] labels) {
+            this.numExamples++;
+            for (int w = 0; w < labels.length; w++) {
+                for (long bits = labels[w]; bits != 0L; bits &= bits - 1) {
+                    int label = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    this.counts[label] = count(label) + 1.0;
+                    this.lastUpdates[label] = this.numExamples;
+                }
+            }
+        }
+
+        @Override
+        public double count(int label) {
+            long age = this.numExamples - this.lastUpdates[label];
+            return age == 0 ? this.counts[label]
+                    : this.counts[label] * Math.pow(this.alpha, age);
+        }
+    }
+}
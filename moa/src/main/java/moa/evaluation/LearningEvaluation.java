@@ -28,6 +28,7 @@ import moa.classifiers.Classifier;
 import moa.clusterers.Clusterer;
 import moa.learners.Learner;
 import moa.core.Measurement;
+import moa.core.Profiler;
 
 /**
  * Class that stores an array of evaluation measurements.
@@ -53,6 +54,7 @@ public class LearningEvaluation extends AbstractMOAObject {
         }
         measurementList.addAll(Arrays.asList(cpe.getPerformanceMeasurements()));
         measurementList.addAll(Arrays.asList(model.getModelMeasurements()));
+        measurementList.addAll(Arrays.asList(Profiler.getMeasurements()));
         this.measurements = measurementList.toArray(new Measurement[measurementList.size()]);
     }
 
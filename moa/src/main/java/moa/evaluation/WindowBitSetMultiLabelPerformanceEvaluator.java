@@ -0,0 +1,113 @@
+/*
+ *    WindowBitSetMultiLabelPerformanceEvaluator.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import moa.evaluation.BasicClassificationPerformanceEvaluator.Estimator;
+
+import com.github.javacliparser.IntOption;
+
+/**
+ * Bitset multi-label evaluator that computes the metrics over a sliding
+ * window of the last examples. The label counts of an example are removed
+ * when it leaves the window, from its bitsets kept in a ring buffer.
+ */
+public class WindowBitSetMultiLabelPerformanceEvaluator extends BitSetMultiLabelPerformanceEvaluator {
+
+    private static final long serialVersionUID = 1L;
+
+    public IntOption widthOption = new IntOption("width",
+            'w', "Size of Window", 1000, 1, Integer.MAX_VALUE);
+
+    @Override
+    protected Estimator newEstimator() {
+        return new WindowEstimator(this.widthOption.getValue());
+    }
+
+    @Override
+    protected LabelCounter newLabelCounter(int numLabels) {
+        return new WindowLabelCounter(numLabels, this.widthOption.getValue());
+    }
+
+    public static class WindowEstimator implements Estimator {
+
+        private static final long serialVersionUID = 1L;
+
+        protected double[] window;
+
+        protected int posWindow;
+
+        protected int lenWindow;
+
+        protected double sum;
+
+        public WindowEstimator(int sizeWindow) {
+            this.window = new double[sizeWindow];
+        }
+
+        @Override
+        public void add(double value) {
+            this.sum -= this.window[this.posWindow];
+            this.sum += value;
+            this.window[this.posWindow] = value;
+            this.posWindow++;
+            if (this.posWindow == this.window.length) {
+                this.posWindow = 0;
+            }
+            if (this.lenWindow < this.window.length) {
+                this.lenWindow++;
+            }
+        }
+
+        @Override
+        public double estimation() {
+            return this.sum / this.lenWindow;
+        }
+
+    }
+
+    public static class WindowLabelCounter extends BasicLabelCounter {
+
+        private static final long serialVersionUID = 1L;
+
+        protected long[][] window;
+
+        protected int posWindow;
+
+        public WindowLabelCounter(int numLabels, int sizeWindow) {
+            super(numLabels);
+            this.window = new long[sizeWindow][(numLabels + 63) >>> 6];
+        }
+
+        @Override
+        public void add(long[] labels) {
+            long[] oldest = this.window[this.posWindow];
+            for (int w = 0; w < oldest.length; w++) {
+                for (long bits = oldest[w]; bits != 0L; bits &= bits - 1) {
+                    this.counts[(w << 6) + Long.numberOfTrailingZeros(bits)]--;
+                }
+            }
+            System.arraycopy(labels, 0, oldest, 0, oldest.length);
+            super.add(labels);
+            this.posWindow++;
+            if (this.posWindow == this.window.length) {
+                this.posWindow = 0;
+            }
+        }
+    }
+}
@@ -21,6 +21,8 @@ package moa.learners;
 import com.yahoo.labs.samoa.instances.Instance;
 import moa.classifiers.AbstractClassifier;
 import moa.core.Measurement;
+import moa.classifiers.core.driftdetection.AbstractChangeDetector;
+import moa.classifiers.core.driftdetection.ChangeDetectionBatch;
 import moa.classifiers.core.driftdetection.ChangeDetector;
 import moa.options.ClassOption;
 
@@ -52,10 +54,25 @@ public class ChangeDetectorLearner extends AbstractClassifier {
 
     @Override
     public void trainOnInstanceImpl(Instance inst) {
-        this.driftDetectionMethod.input(inst.value(0));
+        AbstractChangeDetector.profiledInput(this.driftDetectionMethod, inst.value(0));
 
     }
 
+    /**
+     * Trains on several instances of unit weight at once, passing their input
+     * values to the change detector in a single call. The model is the same as
+     * after training on each instance, and the output of the change detector
+     * after each value is recorded in the batch.
+     *
+     * @param inputValues the values of the first attribute of the instances
+     * @param numValues the number of instances
+     * @param batch the batch where the output of the change detector is recorded
+     */
+    public void trainOnInputValues(double[] inputValues, int numValues, ChangeDetectionBatch batch) {
+        this.trainingWeightSeenByModel += numValues;
+        AbstractChangeDetector.profiledInput(this.driftDetectionMethod, inputValues, numValues, batch);
+    }
+
     public double[] getVotesForInstance(Instance inst) {
         return this.driftDetectionMethod.getOutput();
     }
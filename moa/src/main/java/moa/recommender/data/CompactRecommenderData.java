@@ -0,0 +1,54 @@
+/*
+ *    CompactRecommenderData.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *    
+ *    
+ */
+
+package moa.recommender.data;
+
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Recommender data stored in primitive arrays instead of boxed maps,
+ * for large rating datasets.
+ */
+public class CompactRecommenderData extends AbstractOptionHandler implements RecommenderData {
+    
+    protected moa.recommender.rc.data.impl.CompactRecommenderData drm;
+    
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+        drm = new moa.recommender.rc.data.impl.CompactRecommenderData();
+    }
+
+    @Override
+    public String getPurposeString() {
+        return "In-memory recommender data with compact primitive rating storage.";
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public moa.recommender.rc.data.RecommenderData getData() {
+        return drm;
+    }
+    
+}
@@ -0,0 +1,482 @@
+/*
+ *    AbstractRatingFileDataset.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.recommender.dataset;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import moa.core.ObjectRepository;
+import moa.core.ResourceMeter;
+import moa.options.AbstractOptionHandler;
+import com.github.javacliparser.FlagOption;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Base class of the datasets that read one rating per line from a text file,
+ * as the first three numbers of the line: user ID, item ID and rating. Any
+ * other character separates the numbers, so "1::1193::5::978300760" and
+ * "1 1193 5" are read the same way. Lines with fewer than three numbers are
+ * skipped.
+ *
+ * Every line is parsed once, straight from a byte buffer into primitive
+ * fields, without creating strings. Optionally, parsing runs on a separate
+ * thread that hands over chunks of parsed ratings.
+ *
+ * A file that cannot be read or that contains malformed numbers makes next
+ * throw an UncheckedIOException, after the ratings read before the error.
+ */
+public abstract class AbstractRatingFileDataset extends AbstractOptionHandler implements Dataset {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final int NUM_CHUNKS = 4;
+
+    public FlagOption prefetchOption = new FlagOption("prefetch", 'p',
+            "Parse the file on a separate thread.");
+
+    protected int curUserID;
+
+    protected int curItemID;
+
+    protected double curRating;
+
+    protected transient RatingParser parser;
+
+    protected transient Prefetcher prefetcher;
+
+    /**
+     * Returns the file to read.
+     */
+    protected abstract File getFile();
+
+    /**
+     * Converts the rating read from the file to the rating of the dataset.
+     */
+    protected double transformRating(double rating) {
+        return rating;
+    }
+
+    public void init() {
+        try {
+            File file = getFile();
+            this.parser = new RatingParser(new FileInputStream(file), file.length());
+            if (this.prefetchOption.isSet()) {
+                this.prefetcher = new Prefetcher(this.parser);
+                this.prefetcher.start();
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(getClass().getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    @Override
+    public boolean next() {
+        if (this.prefetcher != null) {
+            return this.prefetcher.next();
+        }
+        if (this.parser == null) {
+            return false;
+        }
+        try {
+            if (this.parser.next()) {
+                this.curUserID = this.parser.userID;
+                this.curItemID = this.parser.itemID;
+                this.curRating = transformRating(this.parser.rating);
+                return true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return false;
+    }
+
+    @Override
+    public int curUserID() {
+        return this.curUserID;
+    }
+
+    @Override
+    public int curItemID() {
+        return this.curItemID;
+    }
+
+    @Override
+    public double curRating() {
+        return this.curRating;
+    }
+
+    @Override
+    public double getFractionRead() {
+        if (this.prefetcher != null) {
+            return this.prefetcher.fractionRead;
+        }
+        return (this.parser != null ? this.parser.getFractionRead() : -1.0);
+    }
+
+    public void close() {
+        if (this.prefetcher != null) {
+            this.prefetcher.stop();
+            this.prefetcher = null;
+        }
+        if (this.parser != null) {
+            try {
+                this.parser.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            this.parser = null;
+        }
+    }
+
+    @Override
+    public void reset() {
+        close();
+        init();
+    }
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+        close();
+        init();
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * Reads the user ID, item ID and rating of each line from a byte buffer.
+     */
+    protected static class RatingParser {
+
+        private final InputStream in;
+
+        private final long length;
+
+        private final byte[] buffer = new byte[1 << 16];
+
+        private int pos = 0;
+
+        private int limit = 0;
+
+        private long consumed = 0;
+
+        private boolean eof = false;
+
+        // Characters of the current number, for the rare numbers that the
+        // fast path does not handle
+        private final char[] token = new char[64];
+
+        public int userID;
+
+        public int itemID;
+
+        public double rating;
+
+        public RatingParser(InputStream in, long length) {
+            this.in = in;
+            this.length = length;
+        }
+
+        private int peek() throws IOException {
+            if (pos == limit) {
+                if (eof) {
+                    return -1;
+                }
+                consumed += limit;
+                pos = 0;
+                limit = in.read(buffer, 0, buffer.length);
+                if (limit <= 0) {
+                    limit = 0;
+                    eof = true;
+                    return -1;
+                }
+            }
+            return buffer[pos];
+        }
+
+        private static boolean isNumberStart(int c) {
+            return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+        }
+
+        /**
+         * Whether a character continues a number after the given previous
+         * character (-1 at the start). Signs are only allowed at the start
+         * and after the e or E of an exponent, as in 1.5e-3.
+         */
+        private static boolean isNumberPart(int c, int previous) {
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E') {
+                return true;
+            }
+            return (c == '-' || c == '+')
+                    && (previous < 0 || previous == 'e' || previous == 'E');
+        }
+
+        /**
+         * Parses the number at the current position. Integers and decimals
+         * with up to 15 digits are computed directly (as the correctly
+         * rounded quotient of two exact doubles, the same value as
+         * Double.parseDouble); anything else goes through Double.parseDouble.
+         * Malformed numbers, such as a lone sign, throw an IOException.
+         */
+        private double parseNumber() throws IOException {
+            int len = 0;
+            boolean negative = false;
+            boolean simple = true;
+            long mantissa = 0;
+            int digits = 0;
+            int decimals = -1;
+            int c = peek();
+            int previous = -1;
+            while (c >= 0 && isNumberPart(c, previous)) {
+                if (len == token.length) {
+                    throw new IOException("Number longer than " + token.length
+                            + " characters at offset " + (consumed + pos) + ".");
+                }
+                token[len] = (char) c;
+                ++len;
+                if (c >= '0' && c <= '9') {
+                    mantissa = mantissa * 10 + (c - '0');
+                    ++digits;
+                    if (decimals >= 0) {
+                        ++decimals;
+                    }
+                } else if ((c == '-' || c == '+') && len == 1) {
+                    negative = (c == '-');
+                } else if (c == '.' && decimals < 0) {
+                    decimals = 0;
+                } else {
+                    simple = false;
+                }
+                ++pos;
+                previous = c;
+                c = peek();
+            }
+            if (simple && digits > 0 && digits <= 15) {
+                double value = (double) mantissa;
+                if (decimals > 0) {
+                    value /= POWERS_OF_TEN[decimals];
+                }
+                return negative ? -value : value;
+            }
+            try {
+                return Double.parseDouble(new String(token, 0, len));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number " + new String(token, 0, len)
+                        + " at offset " + (consumed + pos - len) + ".", e);
+            }
+        }
+
+        private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4,
+            1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+        /**
+         * Parses the next line with at least three numbers. Returns false at
+         * the end of the file.
+         */
+        public boolean next() throws IOException {
+            while (true) {
+                int numbers = 0;
+                double user = 0, item = 0, rat = 0;
+                int c = peek();
+                if (c < 0) {
+                    return false;
+                }
+                while (c >= 0 && c != '\n') {
+                    if (isNumberStart(c)) {
+                        double value = parseNumber();
+                        if (numbers == 0) {
+                            user = value;
+                        } else if (numbers == 1) {
+                            item = value;
+                        } else if (numbers == 2) {
+                            rat = value;
+                        }
+                        ++numbers;
+                    } else {
+                        ++pos;
+                    }
+                    c = peek();
+                }
+                if (c == '\n') {
+                    ++pos;
+                }
+                if (numbers >= 3) {
+                    this.userID = (int) user;
+                    this.itemID = (int) item;
+                    this.rating = rat;
+                    return true;
+                }
+            }
+        }
+
+        public double getFractionRead() {
+            return length > 0 ? Math.min(1.0, (consumed + pos) / (double) length) : -1.0;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Ratings parsed by the prefetching thread.
+     */
+    protected static class Chunk {
+
+        final int[] userIDs = new int[CHUNK_SIZE];
+
+        final int[] itemIDs = new int[CHUNK_SIZE];
+
+        final double[] ratings = new double[CHUNK_SIZE];
+
+        int size;
+
+        double fractionRead;
+
+        // Error that stopped the parsing after the ratings of the chunk
+        IOException error;
+    }
+
+    /**
+     * Parses the file on a separate thread. Chunks circulate between a queue
+     * of free chunks and a queue of filled chunks, so the memory used is
+     * bounded and no objects are created per rating. An empty chunk marks the
+     * end of the file, and a chunk with an error the end of the parsing.
+     */
+    protected class Prefetcher implements Runnable {
+
+        private final RatingParser parser;
+
+        private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<Chunk>(NUM_CHUNKS);
+
+        private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<Chunk>(NUM_CHUNKS);
+
+        private Thread thread;
+
+        private Chunk current;
+
+        private int index;
+
+        private boolean finished = false;
+
+        volatile double fractionRead = 0;
+
+        Prefetcher(RatingParser parser) {
+            this.parser = parser;
+            for (int i = 0; i < NUM_CHUNKS; i++) {
+                this.free.add(new Chunk());
+            }
+        }
+
+        void start() {
+            this.thread = ResourceMeter.newThread(this, "Prefetch " + AbstractRatingFileDataset.this);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                boolean more = true;
+                while (more) {
+                    Chunk chunk = this.free.take();
+                    int n = 0;
+                    IOException error = null;
+                    try {
+                        while (n < CHUNK_SIZE && (more = this.parser.next())) {
+                            chunk.userIDs[n] = this.parser.userID;
+                            chunk.itemIDs[n] = this.parser.itemID;
+                            chunk.ratings[n] = transformRating(this.parser.rating);
+                            ++n;
+                        }
+                    } catch (IOException e) {
+                        error = e;
+                        more = false;
+                    }
+                    chunk.size = n;
+                    chunk.fractionRead = this.parser.getFractionRead();
+                    chunk.error = error;
+                    this.filled.put(chunk);
+                    if (!more && n > 0 && error == null) {
+                        chunk = this.free.take();
+                        chunk.size = 0;
+                        chunk.fractionRead = this.parser.getFractionRead();
+                        this.filled.put(chunk);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // stopped by reset or close
+            }
+        }
+
+        boolean next() {
+            if (this.finished) {
+                return false;
+            }
+            while (this.current == null || this.index == this.current.size) {
+                if (this.current != null) {
+                    IOException error = this.current.error;
+                    this.current.error = null;
+                    this.free.add(this.current);
+                    this.current = null;
+                    if (error != null) {
+                        this.finished = true;
+                        throw new UncheckedIOException(error);
+                    }
+                }
+                try {
+                    this.current = this.filled.take();
+                } catch (InterruptedException e) {
+                    this.finished = true;
+                    return false;
+                }
+                this.index = 0;
+                this.fractionRead = this.current.fractionRead;
+                if (this.current.size == 0 && this.current.error == null) {
+                    this.finished = true;
+                    return false;
+                }
+            }
+            curUserID = this.current.userIDs[this.index];
+            curItemID = this.current.itemIDs[this.index];
+            curRating = this.current.ratings[this.index];
+            ++this.index;
+            return true;
+        }
+
+        void stop() {
+            this.thread.interrupt();
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
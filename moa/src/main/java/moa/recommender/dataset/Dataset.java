@@ -26,4 +26,5 @@ public interface Dataset {
     public int curItemID();
     public double curRating();
     public void reset();
+    public double getFractionRead(); //approximate fraction of the dataset read by next(), -1 if unknown
 }
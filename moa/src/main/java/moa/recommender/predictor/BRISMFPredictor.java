@@ -21,6 +21,7 @@
 package moa.recommender.predictor;
 
 import java.util.List;
+import moa.core.Measurement;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import moa.options.ClassOption;
@@ -53,6 +54,10 @@ import moa.tasks.TaskMonitor;
  *      regularization</li>
  * <li> i: iterations - the number of iterations to be used when retraining
  *      user and item features (online training). </li>
+ * <li> j: number of jobs - the number of threads used in batch training</li>
+ * <li> b: blocks - the number of user and item blocks of the rating matrix
+ *      in batch training, 0 for one per job. The trained model only depends
+ *      on the number of blocks, not on the number of jobs.</li>
  * </lu>
  * 
  */
@@ -77,6 +82,16 @@ public class BRISMFPredictor extends AbstractOptionHandler implements RatingPred
             "How many iterations to use.",
             100, 0, Integer.MAX_VALUE);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs",
+            'j',
+            "Total number of concurrent jobs used for batch training (-1 = as much as possible, 0 = do not use multithreading)",
+            1, -1, Integer.MAX_VALUE);
+
+    public IntOption blocksOption = new IntOption("blocks",
+            'b',
+            "Number of user and item blocks of the rating matrix in batch training (0 = one per job).",
+            0, 0, Integer.MAX_VALUE);
+
     public ClassOption dataOption = new ClassOption("data", 'd',
             "Data", RecommenderData.class, "moa.recommender.data.MemRecommenderData");
      
@@ -86,6 +101,11 @@ public class BRISMFPredictor extends AbstractOptionHandler implements RatingPred
         RecommenderData data = (RecommenderData) getPreparedClassOption(this.dataOption);
         rp = new moa.recommender.rc.predictor.impl.BRISMFPredictor(featuresOption.getValue(), data.getData(), lRateOption.getValue(), rFactorOption.getValue(), false);
         rp.setNIterations(iterationsOption.getValue());
+        int numberOfJobs = numberOfJobsOption.getValue();
+        if (numberOfJobs == -1)
+            numberOfJobs = Runtime.getRuntime().availableProcessors();
+        rp.setNThreads(Math.max(numberOfJobs, 1));
+        rp.setNBlocks(blocksOption.getValue());
     }
 
     @Override
@@ -115,5 +135,22 @@ public class BRISMFPredictor extends AbstractOptionHandler implements RatingPred
     public void train() {
         rp.train();
     }
+
+    @Override
+    public int topN(int userID, int n, boolean excludeRated, int[] itemIDs, double[] ratings) {
+        return rp.topN(userID, n, excludeRated, itemIDs, ratings);
+    }
+
+    @Override
+    public Measurement[] getTrainingMeasurements() {
+        double seconds = rp.getLastTrainingTime()/1000.0;
+        return new Measurement[]{
+            new Measurement("batch training epochs", rp.getLastTrainingEpochs()),
+            new Measurement("batch training RMSE", rp.getLastTrainingRMSE()),
+            new Measurement("batch training time (seconds)", seconds),
+            new Measurement("batch training ratings/s",
+                    seconds > 0 ? rp.getLastTrainingUpdates()/seconds : 0)
+        };
+    }
     
 }
@@ -21,6 +21,7 @@
 package moa.recommender.predictor;
 
 import java.util.List;
+import moa.core.Measurement;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import moa.options.ClassOption;
@@ -73,4 +74,14 @@ public class BaselinePredictor extends AbstractOptionHandler implements moa.reco
         rp.train();
     }
 
+    @Override
+    public int topN(int userID, int n, boolean excludeRated, int[] itemIDs, double[] ratings) {
+        return rp.topN(userID, n, excludeRated, itemIDs, ratings);
+    }
+
+    @Override
+    public Measurement[] getTrainingMeasurements() {
+        return new Measurement[0];
+    }
+
 }
@@ -22,6 +22,7 @@ package moa.recommender.predictor;
 
 import java.io.Serializable;
 import java.util.List;
+import moa.core.Measurement;
 import moa.recommender.rc.data.RecommenderData;
 
 /**
@@ -36,4 +37,6 @@ public interface RatingPredictor extends Serializable {
 	public List<Double> predictRatings(int userID, List<Integer> itemIDS);
 	public RecommenderData getData();
 	public void train();
+	public Measurement[] getTrainingMeasurements(); //of the last call to train
+	public int topN(int userID, int n, boolean excludeRated, int[] itemIDs, double[] ratings); //returns the number of items copied, best first
 }
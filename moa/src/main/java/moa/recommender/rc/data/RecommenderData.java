@@ -39,6 +39,8 @@ public interface RecommenderData extends Serializable {
     public void removeRating(int userID, int itemID);
     public SparseVector getRatingsUser(int userID); //TODO:Iterator version for this?
     public SparseVector getRatingsItem(int itemID); //TODO:Iterator version for this?
+    public int getRatingsUser(int userID, int[] itemIDs, double[] ratings); //arrays of at least countRatingsUser(userID) values
+    public int getRatingsItem(int itemID, int[] userIDs, double[] ratings); //arrays of at least countRatingsItem(itemID) values
     public double getRating(int userID, int itemID);
     public int getNumItems();
     public int getNumUsers();
@@ -0,0 +1,285 @@
+/*
+ *    CompactRecommenderData.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.recommender.rc.data.impl;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import moa.recommender.rc.data.AbstractRecommenderData;
+import moa.recommender.rc.utils.IntIndex;
+import moa.recommender.rc.utils.Rating;
+import moa.recommender.rc.utils.SparseVector;
+
+/**
+ * In-memory recommender data kept in a RatingStore, with the same statistics
+ * as MemRecommenderData but without boxed maps per user and item. Intended
+ * for datasets with tens of millions of ratings.
+ */
+public class CompactRecommenderData extends AbstractRecommenderData {
+
+    private static final long serialVersionUID = -3520829806218738052L;
+
+    protected RatingStore store;
+
+    protected double minRating = 0;
+    protected double maxRating = 0;
+
+    protected class RatingIterator implements Iterator<Rating> {
+        private final IntIndex users = store.getUserIndex();
+        private int userIdx = -1;
+        private int pos = 0;
+
+        RatingIterator() {
+            advance();
+        }
+
+        private void advance() {
+            while (userIdx < users.getIndexBound()
+                    && (userIdx < 0 || !users.isUsed(userIdx)
+                    || pos >= store.countRatingsUserAt(userIdx))) {
+                ++userIdx;
+                pos = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return userIdx < users.getIndexBound();
+        }
+
+        @Override
+        public Rating next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Rating rat = new Rating(users.keyAt(userIdx),
+                    store.getUserItemsAt(userIdx)[pos],
+                    store.getUserRatingsAt(userIdx)[pos]);
+            ++pos;
+            advance();
+            return rat;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public CompactRecommenderData() {
+        super();
+        store = new RatingStore();
+    }
+
+    public RatingStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void addUser(int userID, List<Integer> ratedItems, List<Double> ratings) {
+        super.addUser(userID, ratedItems, ratings);
+        store.addUser(userID);
+        int n = ratedItems.size();
+        for (int i = 0; i < n; ++i)
+            auxSetRating(userID, ratedItems.get(i), ratings.get(i));
+    }
+
+    @Override
+    public void removeUser(int userID) {
+        super.removeUser(userID);
+        store.removeUser(userID);
+    }
+
+    @Override
+    public void addItem(int itemID, List<Integer> ratingUsers, List<Double> ratings) {
+        super.addItem(itemID, ratingUsers, ratings);
+        store.addItem(itemID);
+        int n = ratingUsers.size();
+        for (int i = 0; i < n; ++i)
+            auxSetRating(ratingUsers.get(i), itemID, ratings.get(i));
+    }
+
+    @Override
+    public void removeItem(int itemID) {
+        super.removeItem(itemID);
+        store.removeItem(itemID);
+    }
+
+    private void auxSetRating(int userID, int itemID, double rating) {
+        if (store.getNumRatings() == 0) {
+            minRating = rating;
+            maxRating = rating;
+        }
+        else {
+            minRating = Math.min(minRating, rating);
+            maxRating = Math.max(maxRating, rating);
+        }
+        store.setRating(userID, itemID, rating);
+    }
+
+    @Override
+    public void setRating(int userID, int itemID, double rating) {
+        super.setRating(userID, itemID, rating);
+        auxSetRating(userID, itemID, rating);
+    }
+
+    @Override
+    public void removeRating(int userID, int itemID) {
+        super.removeRating(userID, itemID);
+        store.removeRating(userID, itemID);
+    }
+
+    private static SparseVector toSparseVector(int n, int[] ids, double[] ratings) {
+        Map<Integer, Double> map = new HashMap<Integer, Double>();
+        for (int i = 0; i < n; ++i)
+            map.put(ids[i], ratings[i]);
+        return new SparseVector(map);
+    }
+
+    @Override
+    public SparseVector getRatingsUser(int userID) {
+        int count = store.countRatingsUser(userID);
+        int[] ids = new int[count];
+        double[] ratings = new double[count];
+        return toSparseVector(store.getRatingsUser(userID, ids, ratings), ids, ratings);
+    }
+
+    @Override
+    public SparseVector getRatingsItem(int itemID) {
+        int count = store.countRatingsItem(itemID);
+        int[] ids = new int[count];
+        double[] ratings = new double[count];
+        return toSparseVector(store.getRatingsItem(itemID, ids, ratings), ids, ratings);
+    }
+
+    @Override
+    public int getRatingsUser(int userID, int[] itemIDs, double[] ratings) {
+        return store.getRatingsUser(userID, itemIDs, ratings);
+    }
+
+    @Override
+    public int getRatingsItem(int itemID, int[] userIDs, double[] ratings) {
+        return store.getRatingsItem(itemID, userIDs, ratings);
+    }
+
+    @Override
+    public double getRating(int userID, int itemID) {
+        double rat = store.getRating(userID, itemID);
+        return (Double.isNaN(rat) ? 0 : rat);
+    }
+
+    @Override
+    public int getNumItems() {
+        return store.getNumItems();
+    }
+
+    @Override
+    public int getNumUsers() {
+        return store.getNumUsers();
+    }
+
+    @Override
+    public int getNumRatings() {
+        return store.getNumRatings();
+    }
+
+    @Override
+    public double getAvgRatingUser(int userID) {
+        double sum = store.sumRatingsUser(userID);
+        double num = store.countRatingsUser(userID);
+        return (getGlobalMean()*25 + sum)/(25 + num);
+    }
+
+    @Override
+    public double getAvgRatingItem(int itemID) {
+        double sum = store.sumRatingsItem(itemID);
+        double num = store.countRatingsItem(itemID);
+        return (getGlobalMean()*25 + sum)/(25 + num);
+    }
+
+    @Override
+    public double getMinRating() {
+        return minRating;
+    }
+
+    @Override
+    public double getMaxRating() {
+        return maxRating;
+    }
+
+    private static Set<Integer> keySet(IntIndex index) {
+        Set<Integer> keys = new HashSet<Integer>(index.size()*2);
+        int bound = index.getIndexBound();
+        for (int i = 0; i < bound; ++i)
+            if (index.isUsed(i))
+                keys.add(index.keyAt(i));
+        return keys;
+    }
+
+    @Override
+    public Set<Integer> getUsers() {
+        return keySet(store.getUserIndex());
+    }
+
+    @Override
+    public Set<Integer> getItems() {
+        return keySet(store.getItemIndex());
+    }
+
+    @Override
+    public double getGlobalMean() {
+        int nRatings = store.getNumRatings();
+        return (nRatings > 0 ? store.getSumRatings()/(double)nRatings : (minRating + maxRating)/2.0);
+    }
+
+    @Override
+    public int countRatingsUser(int userID) {
+        return store.countRatingsUser(userID);
+    }
+
+    @Override
+    public int countRatingsItem(int itemID) {
+        return store.countRatingsItem(itemID);
+    }
+
+    @Override
+    public Iterator<Rating> ratingIterator() {
+        return new RatingIterator();
+    }
+
+    @Override
+    public boolean userExists(int userID) {
+        return store.userExists(userID);
+    }
+
+    @Override
+    public boolean itemExists(int itemID) {
+        return store.itemExists(itemID);
+    }
+
+    @Override
+    public void clear() {
+        store.clear();
+        minRating = maxRating = 0;
+    }
+}
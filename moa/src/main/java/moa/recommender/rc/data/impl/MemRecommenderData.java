@@ -26,6 +26,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import moa.recommender.rc.data.AbstractRecommenderData;
 import moa.recommender.rc.utils.Rating;
@@ -60,7 +61,7 @@ public class MemRecommenderData extends AbstractRecommenderData {
         private boolean calculated = false;
         private boolean result = true;
         
-        RatingIterator() throws Exception {
+        RatingIterator() {
         }
         
         @Override
@@ -69,40 +70,25 @@ public class MemRecommenderData extends AbstractRecommenderData {
                 return result;
             
             calculated = true;
-            result = false;
-            if (ratsIt == null) {
-                if (!ratingsUser.isEmpty()) {
-                    userIt = ratingsUser.keySet().iterator();
-                    if (userIt.hasNext()) {
-                        Integer first = userIt.next();
-                        currentUser = first;
-                        ratsIt = ratingsUser.get(first).entrySet().iterator();
-                        if (ratsIt.hasNext()) {
-                            result = true;
-                        }
-                    }
-                }
-            }
-            else {
-                if (ratsIt.hasNext()) {
-                    result = true;
-                }
-                else if (userIt.hasNext()) {
-                    Integer first = userIt.next();
-                    currentUser = first;
-                    ratsIt = ratingsUser.get(first).entrySet().iterator();
-                    if (ratsIt.hasNext()) {
-                        result = true;
-                    }
+            if (userIt == null)
+                userIt = ratingsUser.keySet().iterator();
+            // Skips the users without ratings
+            while (ratsIt == null || !ratsIt.hasNext()) {
+                if (!userIt.hasNext()) {
+                    result = false;
+                    return result;
                 }
+                currentUser = userIt.next();
+                ratsIt = ratingsUser.get(currentUser).entrySet().iterator();
             }
+            result = true;
             return result;
         }
 
         @Override
         public Rating next() {
-            if (!calculated)
-                hasNext();
+            if (!hasNext())
+                throw new NoSuchElementException();
             calculated = false;
             Entry<Integer, Double> pair = ratsIt.next();
             
@@ -111,8 +97,7 @@ public class MemRecommenderData extends AbstractRecommenderData {
 
         @Override
         public void remove() {
-            // TODO Auto-generated method stub
-            
+            throw new UnsupportedOperationException();
         }
         
     }
@@ -325,8 +310,7 @@ public class MemRecommenderData extends AbstractRecommenderData {
 
     @Override
     public Iterator<Rating> ratingIterator() {
-        // TODO Auto-generated method stub
-        return null;
+        return new RatingIterator();
     }
 
     @Override
@@ -0,0 +1,453 @@
+/*
+ *    RatingStore.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.recommender.rc.data.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import moa.recommender.rc.utils.IntIndex;
+
+/**
+ * Rating matrix kept in primitive arrays. Users and items are mapped to dense
+ * indices by an IntIndex, and every user (item) has an adjacency row with
+ * the IDs of the items it rated (users that rated it) and the ratings, in
+ * insertion order. An open-addressing table maps each (user, item) pair to
+ * its position in both rows, so ratings are looked up, updated and removed
+ * in constant time. Per-user and per-item rating sums are maintained.
+ *
+ * Compared to maps of boxed maps, a rating takes about 40 bytes instead of
+ * several hundred, and no objects are created per rating.
+ */
+public class RatingStore implements Serializable {
+
+    private static final long serialVersionUID = 5061622395264717396L;
+
+    private static final long EMPTY = -1L;
+
+    private static final int INITIAL_ROW_LENGTH = 4;
+
+    protected IntIndex users;
+    protected IntIndex items;
+
+    // Rows indexed by the dense user index: item IDs, ratings, count, sum
+    protected int[][] userItems;
+    protected double[][] userRatings;
+    protected int[] userCount;
+    protected double[] userSum;
+
+    // Rows indexed by the dense item index: user IDs, ratings, count, sum
+    protected int[][] itemUsers;
+    protected double[][] itemRatings;
+    protected int[] itemCount;
+    protected double[] itemSum;
+
+    // (dense user index, dense item index) -> positions in the two rows
+    protected long[] pairKeys;
+    protected int[] pairUserPos;
+    protected int[] pairItemPos;
+    protected int nRatings = 0;
+
+    protected double sumRatings = 0;
+
+    public RatingStore() {
+        this.users = new IntIndex();
+        this.items = new IntIndex();
+        this.userItems = new int[16][];
+        this.userRatings = new double[16][];
+        this.userCount = new int[16];
+        this.userSum = new double[16];
+        this.itemUsers = new int[16][];
+        this.itemRatings = new double[16][];
+        this.itemCount = new int[16];
+        this.itemSum = new double[16];
+        this.pairKeys = new long[64];
+        Arrays.fill(this.pairKeys, EMPTY);
+        this.pairUserPos = new int[64];
+        this.pairItemPos = new int[64];
+    }
+
+    private static long pairKey(int userIdx, int itemIdx) {
+        return ((long) userIdx << 32) | (itemIdx & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int findPair(long key) {
+        int mask = pairKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (pairKeys[slot] != EMPTY) {
+            if (pairKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1 - slot;
+    }
+
+    private void removePairSlot(int slot) {
+        int mask = pairKeys.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (pairKeys[next] == EMPTY) {
+                break;
+            }
+            int ideal = hash(pairKeys[next]) & mask;
+            boolean reachable = (slot <= next)
+                    ? (slot < ideal && ideal <= next)
+                    : (slot < ideal || ideal <= next);
+            if (!reachable) {
+                pairKeys[slot] = pairKeys[next];
+                pairUserPos[slot] = pairUserPos[next];
+                pairItemPos[slot] = pairItemPos[next];
+                slot = next;
+            }
+        }
+        pairKeys[slot] = EMPTY;
+    }
+
+    private void rehashPairs(int capacity) {
+        long[] oldKeys = pairKeys;
+        int[] oldUserPos = pairUserPos;
+        int[] oldItemPos = pairItemPos;
+        pairKeys = new long[capacity];
+        Arrays.fill(pairKeys, EMPTY);
+        pairUserPos = new int[capacity];
+        pairItemPos = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (pairKeys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                pairKeys[slot] = oldKeys[i];
+                pairUserPos[slot] = oldUserPos[i];
+                pairItemPos[slot] = oldItemPos[i];
+            }
+        }
+    }
+
+    private void ensureUserCapacity(int idx) {
+        if (idx >= userCount.length) {
+            int n = Math.max(idx + 1, userCount.length + (userCount.length >> 1));
+            userItems = Arrays.copyOf(userItems, n);
+            userRatings = Arrays.copyOf(userRatings, n);
+            userCount = Arrays.copyOf(userCount, n);
+            userSum = Arrays.copyOf(userSum, n);
+        }
+    }
+
+    private void ensureItemCapacity(int idx) {
+        if (idx >= itemCount.length) {
+            int n = Math.max(idx + 1, itemCount.length + (itemCount.length >> 1));
+            itemUsers = Arrays.copyOf(itemUsers, n);
+            itemRatings = Arrays.copyOf(itemRatings, n);
+            itemCount = Arrays.copyOf(itemCount, n);
+            itemSum = Arrays.copyOf(itemSum, n);
+        }
+    }
+
+    /**
+     * Adds the user if it does not exist yet and returns its dense index.
+     */
+    public int addUser(int userID) {
+        int idx = users.getOrAdd(userID);
+        ensureUserCapacity(idx);
+        if (userItems[idx] == null) {
+            userItems[idx] = new int[INITIAL_ROW_LENGTH];
+            userRatings[idx] = new double[INITIAL_ROW_LENGTH];
+        }
+        return idx;
+    }
+
+    /**
+     * Adds the item if it does not exist yet and returns its dense index.
+     */
+    public int addItem(int itemID) {
+        int idx = items.getOrAdd(itemID);
+        ensureItemCapacity(idx);
+        if (itemUsers[idx] == null) {
+            itemUsers[idx] = new int[INITIAL_ROW_LENGTH];
+            itemRatings[idx] = new double[INITIAL_ROW_LENGTH];
+        }
+        return idx;
+    }
+
+    /**
+     * Sets the rating, adding the user and the item if needed. Returns the
+     * previous rating, or NaN if the user had not rated the item.
+     */
+    public double setRating(int userID, int itemID, double rating) {
+        int u = addUser(userID);
+        int i = addItem(itemID);
+        long key = pairKey(u, i);
+        int slot = findPair(key);
+        if (slot >= 0) {
+            double old = userRatings[u][pairUserPos[slot]];
+            userRatings[u][pairUserPos[slot]] = rating;
+            itemRatings[i][pairItemPos[slot]] = rating;
+            userSum[u] += rating - old;
+            itemSum[i] += rating - old;
+            sumRatings += rating - old;
+            return old;
+        }
+
+        if ((nRatings + 1) * 4 > pairKeys.length * 3) {
+            rehashPairs(pairKeys.length << 1);
+            slot = findPair(key);
+        }
+        slot = -1 - slot;
+
+        int userPos = userCount[u]++;
+        if (userPos == userItems[u].length) {
+            int n = userPos + (userPos >> 1) + 1;
+            userItems[u] = Arrays.copyOf(userItems[u], n);
+            userRatings[u] = Arrays.copyOf(userRatings[u], n);
+        }
+        userItems[u][userPos] = itemID;
+        userRatings[u][userPos] = rating;
+        userSum[u] += rating;
+
+        int itemPos = itemCount[i]++;
+        if (itemPos == itemUsers[i].length) {
+            int n = itemPos + (itemPos >> 1) + 1;
+            itemUsers[i] = Arrays.copyOf(itemUsers[i], n);
+            itemRatings[i] = Arrays.copyOf(itemRatings[i], n);
+        }
+        itemUsers[i][itemPos] = userID;
+        itemRatings[i][itemPos] = rating;
+        itemSum[i] += rating;
+
+        pairKeys[slot] = key;
+        pairUserPos[slot] = userPos;
+        pairItemPos[slot] = itemPos;
+        sumRatings += rating;
+        ++nRatings;
+        return Double.NaN;
+    }
+
+    /**
+     * Returns the rating, or NaN if the user has not rated the item.
+     */
+    public double getRating(int userID, int itemID) {
+        int u = users.get(userID);
+        int i = items.get(itemID);
+        if (u < 0 || i < 0) {
+            return Double.NaN;
+        }
+        int slot = findPair(pairKey(u, i));
+        return slot >= 0 ? userRatings[u][pairUserPos[slot]] : Double.NaN;
+    }
+
+    /**
+     * Removes the rating and returns it, or NaN if there was no rating.
+     * The user and the item are kept even if they have no ratings left.
+     */
+    public double removeRating(int userID, int itemID) {
+        int u = users.get(userID);
+        int i = items.get(itemID);
+        if (u < 0 || i < 0) {
+            return Double.NaN;
+        }
+        int slot = findPair(pairKey(u, i));
+        if (slot < 0) {
+            return Double.NaN;
+        }
+        int userPos = pairUserPos[slot];
+        int itemPos = pairItemPos[slot];
+        double rating = userRatings[u][userPos];
+        removePairSlot(slot);
+
+        // Move the last entry of each row to the freed position
+        int lastUserPos = --userCount[u];
+        if (userPos != lastUserPos) {
+            int movedItem = userItems[u][lastUserPos];
+            userItems[u][userPos] = movedItem;
+            userRatings[u][userPos] = userRatings[u][lastUserPos];
+            pairUserPos[findPair(pairKey(u, items.get(movedItem)))] = userPos;
+        }
+        int lastItemPos = --itemCount[i];
+        if (itemPos != lastItemPos) {
+            int movedUser = itemUsers[i][lastItemPos];
+            itemUsers[i][itemPos] = movedUser;
+            itemRatings[i][itemPos] = itemRatings[i][lastItemPos];
+            pairItemPos[findPair(pairKey(users.get(movedUser), i))] = itemPos;
+        }
+
+        userSum[u] -= rating;
+        itemSum[i] -= rating;
+        sumRatings -= rating;
+        --nRatings;
+        return rating;
+    }
+
+    /**
+     * Removes the user together with all its ratings.
+     */
+    public void removeUser(int userID) {
+        int u = users.get(userID);
+        if (u < 0) {
+            return;
+        }
+        while (userCount[u] > 0) {
+            removeRating(userID, userItems[u][userCount[u] - 1]);
+        }
+        users.remove(userID);
+        userItems[u] = null;
+        userRatings[u] = null;
+        userSum[u] = 0;
+    }
+
+    /**
+     * Removes the item together with all its ratings.
+     */
+    public void removeItem(int itemID) {
+        int i = items.get(itemID);
+        if (i < 0) {
+            return;
+        }
+        while (itemCount[i] > 0) {
+            removeRating(itemUsers[i][itemCount[i] - 1], itemID);
+        }
+        items.remove(itemID);
+        itemUsers[i] = null;
+        itemRatings[i] = null;
+        itemSum[i] = 0;
+    }
+
+    public boolean userExists(int userID) {
+        return users.contains(userID);
+    }
+
+    public boolean itemExists(int itemID) {
+        return items.contains(itemID);
+    }
+
+    public int countRatingsUser(int userID) {
+        int u = users.get(userID);
+        return u >= 0 ? userCount[u] : 0;
+    }
+
+    public int countRatingsItem(int itemID) {
+        int i = items.get(itemID);
+        return i >= 0 ? itemCount[i] : 0;
+    }
+
+    public double sumRatingsUser(int userID) {
+        int u = users.get(userID);
+        return u >= 0 ? userSum[u] : 0;
+    }
+
+    public double sumRatingsItem(int itemID) {
+        int i = items.get(itemID);
+        return i >= 0 ? itemSum[i] : 0;
+    }
+
+    /**
+     * Copies the IDs of the items rated by the user and the ratings into the
+     * arrays, which must hold at least countRatingsUser(userID) values.
+     * Returns the number of ratings copied.
+     */
+    public int getRatingsUser(int userID, int[] itemIDs, double[] ratings) {
+        int u = users.get(userID);
+        if (u < 0) {
+            return 0;
+        }
+        int n = userCount[u];
+        System.arraycopy(userItems[u], 0, itemIDs, 0, n);
+        System.arraycopy(userRatings[u], 0, ratings, 0, n);
+        return n;
+    }
+
+    /**
+     * Copies the IDs of the users that rated the item and the ratings into
+     * the arrays, which must hold at least countRatingsItem(itemID) values.
+     * Returns the number of ratings copied.
+     */
+    public int getRatingsItem(int itemID, int[] userIDs, double[] ratings) {
+        int i = items.get(itemID);
+        if (i < 0) {
+            return 0;
+        }
+        int n = itemCount[i];
+        System.arraycopy(itemUsers[i], 0, userIDs, 0, n);
+        System.arraycopy(itemRatings[i], 0, ratings, 0, n);
+        return n;
+    }
+
+    public IntIndex getUserIndex() {
+        return users;
+    }
+
+    public IntIndex getItemIndex() {
+        return items;
+    }
+
+    /**
+     * Row of item IDs of the user with the given dense index. Only the first
+     * countRatingsUserAt(userIdx) values are valid.
+     */
+    public int[] getUserItemsAt(int userIdx) {
+        return userItems[userIdx];
+    }
+
+    public double[] getUserRatingsAt(int userIdx) {
+        return userRatings[userIdx];
+    }
+
+    public int countRatingsUserAt(int userIdx) {
+        return userCount[userIdx];
+    }
+
+    public int getNumUsers() {
+        return users.size();
+    }
+
+    public int getNumItems() {
+        return items.size();
+    }
+
+    public int getNumRatings() {
+        return nRatings;
+    }
+
+    public double getSumRatings() {
+        return sumRatings;
+    }
+
+    public void clear() {
+        users.clear();
+        items.clear();
+        Arrays.fill(userItems, null);
+        Arrays.fill(userRatings, null);
+        Arrays.fill(userCount, 0);
+        Arrays.fill(userSum, 0);
+        Arrays.fill(itemUsers, null);
+        Arrays.fill(itemRatings, null);
+        Arrays.fill(itemCount, 0);
+        Arrays.fill(itemSum, 0);
+        Arrays.fill(pairKeys, EMPTY);
+        nRatings = 0;
+        sumRatings = 0;
+    }
+}
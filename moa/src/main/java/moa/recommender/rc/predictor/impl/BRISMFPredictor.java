@@ -21,14 +21,22 @@
 package moa.recommender.rc.predictor.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import moa.core.ResourceMeter;
 import moa.recommender.rc.data.RecommenderData;
-import moa.recommender.rc.utils.Pair;
+import moa.recommender.rc.utils.IntIndex;
+import moa.recommender.rc.utils.ItemFactorIndex;
 import moa.recommender.rc.utils.Rating;
-import moa.recommender.rc.utils.SparseVector;
 import moa.recommender.rc.utils.Updatable;
 
 /**
@@ -55,8 +63,18 @@ import moa.recommender.rc.utils.Updatable;
  *      regularization</li>
  * <li> iterations - the number of iterations to be used when retraining
  *      user and item features (online training). </li>
+ * <li> threads - the number of threads used in batch training </li>
+ * <li> blocks - the number of user and item blocks in which the rating
+ *      matrix is divided for parallel batch training. </li>
  * </lu>
  * 
+ * <p>With more than one block, batch training follows the stratified
+ * scheme of DSGD (Gemulla et al., Large-Scale Matrix Factorization with
+ * Distributed Stochastic Gradient Descent, KDD 2011): users and items are
+ * split into blocks, and every sub-epoch trains blocks that share no user
+ * and no item in parallel, so no locking is needed. The result only depends
+ * on the number of blocks, not on the number of threads.</p>
+ * 
  */
 
 public class BRISMFPredictor implements Updatable {
@@ -65,10 +83,19 @@ public class BRISMFPredictor implements Updatable {
     protected int nFeatures;
     protected HashMap<Integer, float[]> userFeature;
     protected HashMap<Integer, float[]> itemFeature;
+    protected ItemFactorIndex itemIndex;
     protected Random rnd;
     protected double lRate = 0.01;
     protected double rFactor = 0.02;
     protected int nIterations = 30;
+    protected int nThreads = 1;
+    protected int nBlocks = 0;
+    
+    // Statistics of the last call to train
+    protected int lastTrainingEpochs = 0;
+    protected double lastTrainingRMSE = 0;
+    protected long lastTrainingUpdates = 0;
+    protected long lastTrainingTime = 0;
     
     public void setLRate(double lRate) {
         this.lRate = lRate;
@@ -82,6 +109,19 @@ public class BRISMFPredictor implements Updatable {
         this.nIterations = nIterations; 
     }
     
+    public void setNThreads(int nThreads) {
+        this.nThreads = nThreads;
+    }
+    
+    /**
+     * Sets the number of blocks for batch training. 0 uses one block per
+     * thread, and with a single block and thread the ratings are visited
+     * in the order of the data rating iterator.
+     */
+    public void setNBlocks(int nBlocks) {
+        this.nBlocks = nBlocks;
+    }
+    
     public RecommenderData getData() {
     	return data;
     }
@@ -91,6 +131,7 @@ public class BRISMFPredictor implements Updatable {
         this.nFeatures = nFeatures;
         this.userFeature = new HashMap<Integer, float[]>();
         this.itemFeature = new HashMap<Integer, float[]>();
+        this.itemIndex = new ItemFactorIndex(nFeatures);
         this.rnd = new Random(12345);
         data.attachUpdatable(this);
         if (train) train();
@@ -101,6 +142,7 @@ public class BRISMFPredictor implements Updatable {
         this.nFeatures = nFeatures;
         this.userFeature = new HashMap<Integer, float[]>();
         this.itemFeature = new HashMap<Integer, float[]>();
+        this.itemIndex = new ItemFactorIndex(nFeatures);
         this.rnd = new Random(12345);
         this.lRate = lRate;
         this.rFactor = rFactor;
@@ -135,15 +177,22 @@ public class BRISMFPredictor implements Updatable {
     }
     
     public float[] trainUserFeats(List<Integer> itm, List<Double> rat, int nIts) {
+        int n = itm.size();
+        int[] itmArr = new int[n];
+        double[] ratArr = new double[n];
+        toArrays(itm, rat, itmArr, ratArr);
+        return trainUserFeats(itmArr, ratArr, n, nIts);
+    }
+    
+    public float[] trainUserFeats(int[] itm, double[] rat, int n, int nIts) {
         float[] userFeats = new float[nFeatures];
         resetFeatures(userFeats, true);
         
-        int n = itm.size();
         for (int k = 0; k < nIts; ++k) {
             for (int i = 0; i < n; ++i) {
-                int itemID = itm.get(i);
+                int itemID = itm[i];
                 float[] itemFeats = itemFeature.get(itemID);
-                double rating = rat.get(i);
+                double rating = rat[i];
                 double pred = predictRating(userFeats, itemFeats);
                 double err = rating - pred;
                 
@@ -157,15 +206,22 @@ public class BRISMFPredictor implements Updatable {
     }
     
     public float[] trainItemFeats(int itemID, List<Integer> usr, List<Double> rat, int nIts) {
+        int n = usr.size();
+        int[] usrArr = new int[n];
+        double[] ratArr = new double[n];
+        toArrays(usr, rat, usrArr, ratArr);
+        return trainItemFeats(itemID, usrArr, ratArr, n, nIts);
+    }
+    
+    public float[] trainItemFeats(int itemID, int[] usr, double[] rat, int n, int nIts) {
         float[] itemFeats = new float[nFeatures];
         resetFeatures(itemFeats, false);
         
-        int n = usr.size();
         for (int k = 0; k < nIts; ++k) {
             for (int i = 0; i < n; ++i) {
-                int userID = usr.get(i);
+                int userID = usr[i];
                 float[] userFeats = userFeature.get(userID);
-                double rating = rat.get(i);
+                double rating = rat[i];
                 double pred = predictRating(userFeats, itemFeats);
                 double err = rating - pred;
                 
@@ -180,22 +236,52 @@ public class BRISMFPredictor implements Updatable {
         return itemFeats;
     }
     
+    private static void toArrays(List<Integer> ids, List<Double> rat, int[] idArr, double[] ratArr) {
+        int n = ids.size();
+        for (int i = 0; i < n; ++i) {
+            idArr[i] = ids.get(i);
+            ratArr[i] = rat.get(i);
+        }
+    }
+    
+    // Reused by the methods reading the ratings of a user or item from data;
+    // one slot more than the ratings for updateSetRating
+    private int[] idBuffer = new int[16];
+    private double[] ratingBuffer = new double[16];
+    
+    private void ensureBuffers(int n) {
+        if (idBuffer.length < n) {
+            int length = Math.max(n, idBuffer.length + (idBuffer.length >> 1));
+            idBuffer = new int[length];
+            ratingBuffer = new double[length];
+        }
+    }
+    
+    private int readRatingsUser(int userID) {
+        ensureBuffers(data.countRatingsUser(userID) + 1);
+        return data.getRatingsUser(userID, idBuffer, ratingBuffer);
+    }
+    
+    private int readRatingsItem(int itemID) {
+        ensureBuffers(data.countRatingsItem(itemID) + 1);
+        return data.getRatingsItem(itemID, idBuffer, ratingBuffer);
+    }
+    
     public void trainUser(int userID, List<Integer> itm, List<Double> rat, int nIts) {
         userFeature.put(userID, trainUserFeats(itm, rat, nIts));
     }
     
+    public void trainUser(int userID, int[] itm, double[] rat, int n, int nIts) {
+        userFeature.put(userID, trainUserFeats(itm, rat, n, nIts));
+    }
+    
+    public void trainUser(int userID, int[] itm, double[] rat, int n) {
+        userFeature.put(userID, trainUserFeats(itm, rat, n, nIterations));
+    }
+    
     public void trainUser(int userID, int nIts) {
-        SparseVector usrRats = data.getRatingsUser(userID);
-        ArrayList<Integer> itm = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = usrRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            itm.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainUser(userID, itm, rat, nIts);
+        int n = readRatingsUser(userID);
+        trainUser(userID, idBuffer, ratingBuffer, n, nIts);
     }
     
     public void trainUser(int userID, List<Integer> itm, List<Double> rat) {
@@ -203,61 +289,51 @@ public class BRISMFPredictor implements Updatable {
     }
     
     public void trainItem(int itemID) {
-        SparseVector itmRats = data.getRatingsItem(itemID);
-        ArrayList<Integer> usr = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = itmRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            usr.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainItem(itemID, usr, rat);
+        int n = readRatingsItem(itemID);
+        trainItem(itemID, idBuffer, ratingBuffer, n);
     }
     
     public void trainItem(int itemID, int nIts) {
-        SparseVector itmRats = data.getRatingsItem(itemID);
-        ArrayList<Integer> usr = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = itmRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            usr.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainItem(itemID, usr, rat, nIts);
+        int n = readRatingsItem(itemID);
+        trainItem(itemID, idBuffer, ratingBuffer, n, nIts);
     }
     
     public void trainUser(int userID) {
-        SparseVector usrRats = data.getRatingsUser(userID);
-        ArrayList<Integer> itm = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = usrRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            itm.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainUser(userID, itm, rat);
+        int n = readRatingsUser(userID);
+        trainUser(userID, idBuffer, ratingBuffer, n);
     }
     
     public void trainItem(int itemID, List<Integer> usr, List<Double> rat) {
-        itemFeature.put(itemID, trainItemFeats(itemID, usr, rat, nIterations));
+        setItemFeatures(itemID, trainItemFeats(itemID, usr, rat, nIterations));
     }
     
     public void trainItem(int itemID, List<Integer> usr, List<Double> rat, int nIts) {
-        itemFeature.put(itemID, trainItemFeats(itemID, usr, rat, nIts));
+        setItemFeatures(itemID, trainItemFeats(itemID, usr, rat, nIts));
     }
     
-    public void train() {
+    public void trainItem(int itemID, int[] usr, double[] rat, int n) {
+        setItemFeatures(itemID, trainItemFeats(itemID, usr, rat, n, nIterations));
+    }
+    
+    public void trainItem(int itemID, int[] usr, double[] rat, int n, int nIts) {
+        setItemFeatures(itemID, trainItemFeats(itemID, usr, rat, n, nIts));
+    }
+    
+    private void setItemFeatures(int itemID, float[] feats) {
+        itemFeature.put(itemID, feats);
+        itemIndex.update(itemID, feats);
+    }
+    
+    private void rebuildItemIndex() {
+        itemIndex.clear();
+        for (Map.Entry<Integer, float[]> e : itemFeature.entrySet())
+            itemIndex.update(e.getKey(), e.getValue());
+    }
+    
+    private void initFeatures() {
         userFeature.clear();
         itemFeature.clear();
         
-        int n = data.getNumRatings();
-        
         Iterator<Integer> it = data.getUsers().iterator();
         while (it.hasNext()) {
             float[] feats = new float[nFeatures];
@@ -271,11 +347,37 @@ public class BRISMFPredictor implements Updatable {
             resetFeatures(feats, false);
             itemFeature.put(it.next(), feats);
         }
+    }
+    
+    private void sgdStep(float[] userFeats, float[] itemFeats, double rating) {
+        double pred = predictRating(userFeats, itemFeats);
+        double err = rating - pred;
+        
+        itemFeats[0] += lRate*(err*userFeats[0] - rFactor*itemFeats[0]);
+        userFeats[1] += lRate*(err*itemFeats[1] - rFactor*userFeats[1]);
+        for (int j = 2; j < nFeatures; ++j) {
+            double uv = userFeats[j];
+            userFeats[j] += lRate*(err*itemFeats[j] - rFactor*userFeats[j]);
+            itemFeats[j] += lRate*(err*uv - rFactor*itemFeats[j]);
+        }
+    }
+    
+    public void train() {
+        int blocks = (nBlocks > 0 ? nBlocks : nThreads);
+        if (blocks > 1) {
+            trainBlocks(blocks);
+            return;
+        }
+        long trainStart = System.currentTimeMillis();
+        initFeatures();
+        
+        int n = data.getNumRatings();
 
         int exit = 0;
         double lastRMSE = 1e20;
         
         int count = 0;
+        long updates = 0;
         int trainDiv = Math.max(20, n/1000000);
         ArrayList<Rating> ratTest = new ArrayList<Rating>(n/trainDiv);
         do {
@@ -289,22 +391,10 @@ public class BRISMFPredictor implements Updatable {
                     if (count == 0) ratTest.add(rat);
                 }
                 else {
-                    int userID = rat.userID;
-                    int itemID = rat.itemID;
-                    double rating = rat.rating;
-                    float[] userFeats = userFeature.get(userID);
-                    float[] itemFeats = itemFeature.get(itemID);
-                    
-                    double pred = predictRating(userFeats, itemFeats);
-                    double err = rating - pred;
-                    
-                    itemFeats[0] += lRate*(err*userFeats[0] - rFactor*itemFeats[0]);
-                    userFeats[1] += lRate*(err*itemFeats[1] - rFactor*userFeats[1]);
-                    for (int j = 2; j < nFeatures; ++j) {
-                        double uv = userFeats[j];
-                        userFeats[j] += lRate*(err*itemFeats[j] - rFactor*userFeats[j]);
-                        itemFeats[j] += lRate*(err*uv - rFactor*itemFeats[j]);
-                    }
+                    float[] userFeats = userFeature.get(rat.userID);
+                    float[] itemFeats = itemFeature.get(rat.itemID);
+                    sgdStep(userFeats, itemFeats, rat.rating);
+                    ++updates;
                 }
                 ++idx;
             }
@@ -328,6 +418,227 @@ public class BRISMFPredictor implements Updatable {
             ++count;
         }
         while (exit < 1);
+        
+        rebuildItemIndex();
+        lastTrainingEpochs = count;
+        lastTrainingRMSE = lastRMSE;
+        lastTrainingUpdates = updates;
+        lastTrainingTime = System.currentTimeMillis() - trainStart;
+    }
+    
+    /**
+     * Batch training on blocks x blocks strata of the rating matrix, see
+     * the class description. The held out ratings and the stopping criterion
+     * are the same as in the sequential training.
+     */
+    protected void trainBlocks(int blocks) {
+        long trainStart = System.currentTimeMillis();
+        initFeatures();
+        
+        int n = data.getNumRatings();
+        int trainDiv = Math.max(20, n/1000000);
+        
+        // Dense indices for the users and items, and their feature vectors
+        IntIndex users = new IntIndex(userFeature.size());
+        IntIndex items = new IntIndex(itemFeature.size());
+        float[][] userFeats = new float[userFeature.size()][];
+        float[][] itemFeats = new float[itemFeature.size()][];
+        for (Map.Entry<Integer, float[]> e : userFeature.entrySet())
+            userFeats[users.getOrAdd(e.getKey())] = e.getValue();
+        for (Map.Entry<Integer, float[]> e : itemFeature.entrySet())
+            itemFeats[items.getOrAdd(e.getKey())] = e.getValue();
+        
+        // Ratings split into training and test ratings, as dense indices
+        int[] trainUser = new int[n];
+        int[] trainItem = new int[n];
+        double[] trainRating = new double[n];
+        int nTrain = 0;
+        int[] testUser = new int[n/trainDiv + 1];
+        int[] testItem = new int[n/trainDiv + 1];
+        double[] testRating = new double[n/trainDiv + 1];
+        int nTest = 0;
+        Iterator<Rating> ratIt = data.ratingIterator();
+        int idx = 0;
+        while (ratIt.hasNext()) {
+            Rating rat = ratIt.next();
+            int u = users.get(rat.userID);
+            int i = items.get(rat.itemID);
+            if (idx%trainDiv == 0) {
+                if (nTest == testUser.length) {
+                    testUser = Arrays.copyOf(testUser, nTest*2);
+                    testItem = Arrays.copyOf(testItem, nTest*2);
+                    testRating = Arrays.copyOf(testRating, nTest*2);
+                }
+                testUser[nTest] = u;
+                testItem[nTest] = i;
+                testRating[nTest] = rat.rating;
+                ++nTest;
+            }
+            else {
+                if (nTrain == trainUser.length) {
+                    trainUser = Arrays.copyOf(trainUser, nTrain*2 + 1);
+                    trainItem = Arrays.copyOf(trainItem, nTrain*2 + 1);
+                    trainRating = Arrays.copyOf(trainRating, nTrain*2 + 1);
+                }
+                trainUser[nTrain] = u;
+                trainItem[nTrain] = i;
+                trainRating[nTrain] = rat.rating;
+                ++nTrain;
+            }
+            ++idx;
+        }
+        
+        // Counting sort of the training ratings by block, keeping the
+        // iterator order inside every block
+        int[] blockStart = new int[blocks*blocks + 1];
+        for (int k = 0; k < nTrain; ++k)
+            ++blockStart[(trainUser[k]%blocks)*blocks + trainItem[k]%blocks + 1];
+        for (int b = 0; b < blocks*blocks; ++b)
+            blockStart[b + 1] += blockStart[b];
+        int[] blockUser = new int[nTrain];
+        int[] blockItem = new int[nTrain];
+        double[] blockRating = new double[nTrain];
+        int[] next = Arrays.copyOf(blockStart, blocks*blocks);
+        for (int k = 0; k < nTrain; ++k) {
+            int pos = next[(trainUser[k]%blocks)*blocks + trainItem[k]%blocks]++;
+            blockUser[pos] = trainUser[k];
+            blockItem[pos] = trainItem[k];
+            blockRating[pos] = trainRating[k];
+        }
+        trainUser = trainItem = null;
+        trainRating = null;
+        
+        ExecutorService executor = (nThreads > 1 ? Executors.newFixedThreadPool(nThreads, ResourceMeter.threadFactory()) : null);
+        try {
+            int exit = 0;
+            double lastRMSE = 1e20;
+            int count = 0;
+            do {
+                for (int sub = 0; sub < blocks; ++sub) {
+                    List<BlockTrainer> strata = new ArrayList<BlockTrainer>(blocks);
+                    for (int ub = 0; ub < blocks; ++ub) {
+                        int b = ub*blocks + (ub + sub)%blocks;
+                        strata.add(new BlockTrainer(userFeats, itemFeats, blockUser,
+                                blockItem, blockRating, blockStart[b], blockStart[b + 1]));
+                    }
+                    if (executor != null) {
+                        try {
+                            for (Future<Integer> f : executor.invokeAll(strata))
+                                f.get();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException("Interrupted while training the rating blocks.", e);
+                        } catch (ExecutionException e) {
+                            throw new RuntimeException("Could not train the rating blocks.", e.getCause());
+                        }
+                    }
+                    else {
+                        for (BlockTrainer stratum : strata)
+                            stratum.run();
+                    }
+                }
+                
+                double sum = 0;
+                for (int k = 0; k < nTest; ++k) {
+                    double pred = predictRating(userFeats[testUser[k]], itemFeats[testItem[k]]);
+                    sum += Math.pow(testRating[k] - pred, 2);
+                }
+                
+                double curRMSE = Math.sqrt(sum/(double)nTest);
+                if (curRMSE + 0.0001 >= lastRMSE) {
+                    ++exit;
+                }
+                lastRMSE = curRMSE;
+                ++count;
+            }
+            while (exit < 1);
+            
+            rebuildItemIndex();
+            lastTrainingEpochs = count;
+            lastTrainingRMSE = lastRMSE;
+            lastTrainingUpdates = (long)count*nTrain;
+            lastTrainingTime = System.currentTimeMillis() - trainStart;
+        }
+        finally {
+            if (executor != null)
+                executor.shutdown();
+        }
+    }
+    
+    /**
+     * Runs one epoch of SGD over the ratings [from, to) of a block.
+     */
+    protected class BlockTrainer implements Runnable, Callable<Integer> {
+        private final float[][] userFeats;
+        private final float[][] itemFeats;
+        private final int[] users;
+        private final int[] items;
+        private final double[] ratings;
+        private final int from;
+        private final int to;
+        
+        public BlockTrainer(float[][] userFeats, float[][] itemFeats, int[] users,
+                int[] items, double[] ratings, int from, int to) {
+            this.userFeats = userFeats;
+            this.itemFeats = itemFeats;
+            this.users = users;
+            this.items = items;
+            this.ratings = ratings;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        public void run() {
+            for (int k = from; k < to; ++k)
+                sgdStep(userFeats[users[k]], itemFeats[items[k]], ratings[k]);
+        }
+        
+        @Override
+        public Integer call() {
+            run();
+            return 0;
+        }
+    }
+    
+    public int getLastTrainingEpochs() {
+        return lastTrainingEpochs;
+    }
+    
+    /**
+     * RMSE on the held out ratings after the last epoch of the last training.
+     */
+    public double getLastTrainingRMSE() {
+        return lastTrainingRMSE;
+    }
+    
+    /**
+     * Number of gradient steps in the last training.
+     */
+    public long getLastTrainingUpdates() {
+        return lastTrainingUpdates;
+    }
+    
+    /**
+     * Duration of the last training in milliseconds.
+     */
+    public long getLastTrainingTime() {
+        return lastTrainingTime;
+    }
+    
+    /**
+     * Finds the n items with the highest predicted rating for the user,
+     * optionally skipping the items the user has rated, using the index of
+     * the item features. Copies their IDs and predicted ratings into the
+     * arrays and returns how many were found.
+     */
+    public int topN(int userID, int n, boolean excludeRated, int[] itemIDs, double[] ratings) {
+        float[] userFeats = userFeature.get(userID);
+        float[] query = (userFeats != null ? userFeats : new float[nFeatures]);
+        int nExclude = (excludeRated ? readRatingsUser(userID) : 0);
+        int found = itemIndex.topN(query, n, idBuffer, nExclude, itemIDs, ratings);
+        for (int i = 0; i < found; ++i)
+            ratings[i] = predictRating(userFeats, itemFeature.get(itemIDs[i]));
+        return found;
     }
     
     public float[] getUserFeatures(int userID) {
@@ -366,6 +677,7 @@ public class BRISMFPredictor implements Updatable {
     @Override
     public void updateRemoveItem(int itemID) {
         itemFeature.remove(itemID);
+        itemIndex.remove(itemID);
     }
     
     //We retrain the user/item separately, depending on a probability
@@ -379,50 +691,39 @@ public class BRISMFPredictor implements Updatable {
         double prob2 = Math.pow(0.99, nItm);
 
         if (nUsr < 5 || rnd.nextDouble() < prob1) {
-            SparseVector usrRats = data.getRatingsUser(userID);
-            ArrayList<Integer> itm = new ArrayList<Integer>();
-            ArrayList<Double> rat = new ArrayList<Double>();
-            
             //Train user
+            int n = readRatingsUser(userID);
             boolean found = false;
-            Iterator<Pair<Integer, Double>> it = usrRats.iterator();
-            while (it.hasNext()) {
-                Pair<Integer, Double> p = it.next();
-                itm.add(p.getFirst());
-                if (p.getFirst() == itemID) {
+            for (int i = 0; i < n; ++i) {
+                if (idBuffer[i] == itemID) {
                     found = true;
-                    rat.add(rating);
+                    ratingBuffer[i] = rating;
                 }
-                else rat.add(p.getSecond());
             }
             if (!found) {
-                itm.add(itemID);
-                rat.add(rating);
+                idBuffer[n] = itemID;
+                ratingBuffer[n] = rating;
+                ++n;
             }
-            trainUser(userID, itm, rat);
+            trainUser(userID, idBuffer, ratingBuffer, n);
         }
         
         if (nItm < 5 || rnd.nextDouble() < prob2) {
-            SparseVector itmRats = data.getRatingsItem(itemID);
             //Train item
-            Iterator<Pair<Integer, Double>> it = itmRats.iterator();
+            int n = readRatingsItem(itemID);
             boolean found = false;
-            ArrayList<Integer> usr = new ArrayList<Integer>();
-            ArrayList<Double> rat = new ArrayList<Double>();
-            while (it.hasNext()) {
-                Pair<Integer, Double> p = it.next();
-                usr.add(p.getFirst());
-                if (p.getFirst() == userID) {
+            for (int i = 0; i < n; ++i) {
+                if (idBuffer[i] == userID) {
                     found = true;
-                    rat.add(rating);
+                    ratingBuffer[i] = rating;
                 }
-                else rat.add(p.getSecond());
             }
             if (!found) {
-                usr.add(itemID);
-                rat.add(rating);
+                idBuffer[n] = userID;
+                ratingBuffer[n] = rating;
+                ++n;
             }
-            trainItem(itemID, usr, rat);
+            trainItem(itemID, idBuffer, ratingBuffer, n);
         }
     }
 
@@ -21,9 +21,12 @@
 package moa.recommender.rc.predictor.impl;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import moa.recommender.rc.data.RecommenderData;
 import moa.recommender.rc.predictor.RatingPredictor;
+import moa.recommender.rc.utils.TopN;
 
 public class BaselinePredictor implements RatingPredictor {
     /**
@@ -57,6 +60,29 @@ public class BaselinePredictor implements RatingPredictor {
         return ret;
     }
 
+    /**
+     * Finds the n items with the highest predicted rating for the user,
+     * that is, the items with the highest mean rating, optionally skipping
+     * the items the user has rated. Copies their IDs and predicted ratings
+     * into the arrays and returns how many were found.
+     */
+    public int topN(int userID, int n, boolean excludeRated, int[] itemIDs, double[] ratings) {
+        Set<Integer> rated = (excludeRated ? data.getRatingsUser(userID).getIdxs() : null);
+        TopN best = new TopN(n);
+        Iterator<Integer> it = data.getItems().iterator();
+        while (it.hasNext()) {
+            Integer itemID = it.next();
+            if (rated == null || !rated.contains(itemID))
+                best.offer(itemID, data.getAvgRatingItem(itemID));
+        }
+        int found = best.drain(itemIDs, ratings);
+        double avg = data.getAvgRatingUser(userID) - data.getGlobalMean();
+        for (int i = 0; i < found; ++i)
+            ratings[i] = Math.min(Math.max(avg + ratings[i], data.getMinRating()),
+                    data.getMaxRating());
+        return found;
+    }
+
     @Override
     public RecommenderData getData() {
         return data;
@@ -0,0 +1,218 @@
+/*
+ *    IntIndex.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.recommender.rc.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Maps arbitrary int keys (user or item IDs) to dense indices in
+ * [0, getIndexBound()), so that per-key data can be kept in plain arrays.
+ * The keys are stored in an open-addressing hash table with linear probing,
+ * without boxing. Indices of removed keys are reused by later insertions.
+ */
+public class IntIndex implements Serializable {
+
+    private static final long serialVersionUID = -2335826120496893211L;
+
+    private static final int FREE = -1;
+
+    // Hash table: key and dense index per slot, FREE index for empty slots
+    protected int[] tableKeys;
+    protected int[] tableIndices;
+    protected int size = 0;
+
+    // Reverse mapping from dense index to key
+    protected int[] indexKeys;
+    protected boolean[] indexUsed;
+    protected int indexBound = 0;
+
+    // Indices released by remove, reused before growing indexBound
+    protected int[] freeIndices;
+    protected int nFree = 0;
+
+    public IntIndex() {
+        this(16);
+    }
+
+    public IntIndex(int expectedSize) {
+        int capacity = 16;
+        while (capacity * 3 < expectedSize * 4) {
+            capacity <<= 1;
+        }
+        this.tableKeys = new int[capacity];
+        this.tableIndices = new int[capacity];
+        Arrays.fill(this.tableIndices, FREE);
+        this.indexKeys = new int[Math.max(16, expectedSize)];
+        this.indexUsed = new boolean[this.indexKeys.length];
+        this.freeIndices = new int[16];
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int findSlot(int key) {
+        int mask = tableKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (tableIndices[slot] != FREE) {
+            if (tableKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1 - slot;
+    }
+
+    /**
+     * Returns the index of the key, or -1 if the key is not in the index.
+     */
+    public int get(int key) {
+        int slot = findSlot(key);
+        return slot >= 0 ? tableIndices[slot] : -1;
+    }
+
+    public boolean contains(int key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * Returns the index of the key, adding the key if it is not in the index.
+     */
+    public int getOrAdd(int key) {
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            return tableIndices[slot];
+        }
+        if ((size + 1) * 4 > tableKeys.length * 3) {
+            rehash(tableKeys.length << 1);
+            slot = findSlot(key);
+        }
+        slot = -1 - slot;
+        int index;
+        if (nFree > 0) {
+            index = freeIndices[--nFree];
+        } else {
+            index = indexBound++;
+            if (index == indexKeys.length) {
+                int newLength = indexKeys.length + (indexKeys.length >> 1);
+                indexKeys = Arrays.copyOf(indexKeys, newLength);
+                indexUsed = Arrays.copyOf(indexUsed, newLength);
+            }
+        }
+        tableKeys[slot] = key;
+        tableIndices[slot] = index;
+        indexKeys[index] = key;
+        indexUsed[index] = true;
+        ++size;
+        return index;
+    }
+
+    /**
+     * Removes the key and returns the index it had, or -1 if the key was not
+     * in the index.
+     */
+    public int remove(int key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return -1;
+        }
+        int index = tableIndices[slot];
+        // Backward shift deletion: move up the entries of the probe sequence
+        // that would not be found anymore once the slot is emptied
+        int mask = tableKeys.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (tableIndices[next] == FREE) {
+                break;
+            }
+            int ideal = hash(tableKeys[next]) & mask;
+            boolean reachable = (slot <= next)
+                    ? (slot < ideal && ideal <= next)
+                    : (slot < ideal || ideal <= next);
+            if (!reachable) {
+                tableKeys[slot] = tableKeys[next];
+                tableIndices[slot] = tableIndices[next];
+                slot = next;
+            }
+        }
+        tableIndices[slot] = FREE;
+        --size;
+
+        indexUsed[index] = false;
+        if (nFree == freeIndices.length) {
+            freeIndices = Arrays.copyOf(freeIndices, freeIndices.length << 1);
+        }
+        freeIndices[nFree++] = index;
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = tableKeys;
+        int[] oldIndices = tableIndices;
+        tableKeys = new int[capacity];
+        tableIndices = new int[capacity];
+        Arrays.fill(tableIndices, FREE);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldIndices[i] != FREE) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (tableIndices[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                tableKeys[slot] = oldKeys[i];
+                tableIndices[slot] = oldIndices[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the key stored at the index. Only meaningful if isUsed(index).
+     */
+    public int keyAt(int index) {
+        return indexKeys[index];
+    }
+
+    public boolean isUsed(int index) {
+        return index < indexBound && indexUsed[index];
+    }
+
+    /**
+     * Returns an upper bound (exclusive) of the indices in use, which is the
+     * length arrays indexed by this index need to have.
+     */
+    public int getIndexBound() {
+        return indexBound;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(tableIndices, FREE);
+        Arrays.fill(indexUsed, false);
+        size = 0;
+        indexBound = 0;
+        nFree = 0;
+    }
+}
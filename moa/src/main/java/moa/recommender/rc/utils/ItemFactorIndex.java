@@ -0,0 +1,122 @@
+/*
+ *    ItemFactorIndex.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.recommender.rc.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Copy of the latent feature vectors of all items in one contiguous
+ * row-major float matrix, for finding the items with the largest inner
+ * product with a user vector. Rows are scored a block at a time into a
+ * scratch buffer and the best ones are kept in a bounded heap. Items are
+ * updated one at a time, as their features change.
+ */
+public class ItemFactorIndex implements Serializable {
+
+    private static final long serialVersionUID = -6307545468203186131L;
+
+    private static final int BLOCK_ROWS = 256;
+
+    protected int nFeatures;
+    protected IntIndex items;
+    protected float[] factors;
+
+    // Scratch buffers of topN
+    protected double[] blockScores = new double[BLOCK_ROWS];
+    protected boolean[] excluded = new boolean[0];
+
+    public ItemFactorIndex(int nFeatures) {
+        this.nFeatures = nFeatures;
+        this.items = new IntIndex();
+        this.factors = new float[16*nFeatures];
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public boolean contains(int itemID) {
+        return items.contains(itemID);
+    }
+
+    /**
+     * Sets the feature vector of the item, adding the item if needed.
+     */
+    public void update(int itemID, float[] feats) {
+        int row = items.getOrAdd(itemID);
+        if ((row + 1)*nFeatures > factors.length)
+            factors = Arrays.copyOf(factors, Math.max((row + 1)*nFeatures, factors.length + (factors.length >> 1)));
+        System.arraycopy(feats, 0, factors, row*nFeatures, nFeatures);
+    }
+
+    public void remove(int itemID) {
+        items.remove(itemID);
+    }
+
+    public void clear() {
+        items.clear();
+    }
+
+    /**
+     * Finds the n items with the largest inner product with the query
+     * vector, skipping the first nExclude items of excludeIDs. Copies their
+     * IDs and inner products into the arrays, from the largest product to
+     * the smallest, and returns how many were found.
+     */
+    public int topN(float[] query, int n, int[] excludeIDs, int nExclude,
+            int[] itemIDs, double[] scores) {
+        int bound = items.getIndexBound();
+        if (excluded.length < bound)
+            excluded = new boolean[Math.max(bound, excluded.length + (excluded.length >> 1))];
+        for (int k = 0; k < nExclude; ++k) {
+            int row = items.get(excludeIDs[k]);
+            if (row >= 0)
+                excluded[row] = true;
+        }
+
+        TopN best = new TopN(n);
+        for (int start = 0; start < bound; start += BLOCK_ROWS) {
+            int end = Math.min(bound, start + BLOCK_ROWS);
+            for (int row = start; row < end; ++row) {
+                int offset = row*nFeatures;
+                double dot = 0;
+                for (int j = 0; j < nFeatures; ++j)
+                    dot += query[j]*factors[offset + j];
+                blockScores[row - start] = dot;
+            }
+            double min = best.minScore();
+            for (int row = start; row < end; ++row) {
+                double score = blockScores[row - start];
+                if (score > min && !excluded[row] && items.isUsed(row)) {
+                    best.offer(items.keyAt(row), score);
+                    min = best.minScore();
+                }
+            }
+        }
+
+        for (int k = 0; k < nExclude; ++k) {
+            int row = items.get(excludeIDs[k]);
+            if (row >= 0)
+                excluded[row] = false;
+        }
+        return best.drain(itemIDs, scores);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *    TopN.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.recommender.rc.utils;
+
+import java.io.Serializable;
+
+/**
+ * Keeps the n IDs with the highest scores offered so far, in a bounded
+ * min-heap of primitive arrays. Ties keep the ID offered first.
+ */
+public class TopN implements Serializable {
+
+    private static final long serialVersionUID = 4467310725417412096L;
+
+    protected int[] ids;
+    protected double[] scores;
+    protected int size = 0;
+
+    public TopN(int n) {
+        this.ids = new int[n];
+        this.scores = new double[n];
+    }
+
+    public int capacity() {
+        return ids.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Lowest score kept, the score to beat once the heap is full.
+     */
+    public double minScore() {
+        return size < ids.length ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void offer(int id, double score) {
+        if (size < ids.length) {
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (scores[parent] <= score)
+                    break;
+                ids[i] = ids[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            scores[i] = score;
+        }
+        else if (size > 0 && score > scores[0]) {
+            siftDown(id, score, size);
+        }
+    }
+
+    // Places (id, score) at the root and restores the heap of the first n entries
+    private void siftDown(int id, double score, int n) {
+        int i = 0;
+        while (true) {
+            int child = 2*i + 1;
+            if (child >= n)
+                break;
+            if (child + 1 < n && scores[child + 1] < scores[child])
+                ++child;
+            if (scores[child] >= score)
+                break;
+            ids[i] = ids[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        ids[i] = id;
+        scores[i] = score;
+    }
+
+    /**
+     * Copies the IDs and scores kept, from the highest to the lowest score,
+     * into the arrays and empties the heap. Returns the number copied.
+     */
+    public int drain(int[] outIDs, double[] outScores) {
+        int n = size;
+        for (int k = n - 1; k >= 0; --k) {
+            outIDs[k] = ids[0];
+            outScores[k] = scores[0];
+            if (k > 0)
+                siftDown(ids[k], scores[k], k);
+        }
+        size = 0;
+        return n;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *    PartitionableStream.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+/**
+ * Stream that can move forward without generating the instances it skips,
+ * so that copies of the stream can generate consecutive partitions of its
+ * sequence in parallel. Concatenating the partitions gives the same
+ * instances as reading the stream sequentially.
+ */
+public interface PartitionableStream extends InstanceStream {
+
+    /**
+     * Returns whether skipping instances is faster than reading them. When
+     * it is not, skipping still gives the right instances afterwards, but
+     * generates the skipped ones.
+     */
+    public boolean isPartitionable();
+
+    /**
+     * Moves the stream forward as if the given number of instances had been
+     * read.
+     */
+    public void skipInstances(long numInstances);
+}
@@ -0,0 +1,187 @@
+/*
+ *    PartitionedInstancesStream.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import moa.AbstractMOAObject;
+import moa.core.InstanceExample;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+/**
+ * Stream generator for representing a stream that is cached in binary files,
+ * one partition per file. The partitions are read one at a time, in order,
+ * and the instances of each partition are shuffled in memory with the seed of
+ * the partition, so restarting the stream gives the same order again.
+ * This generator is used with the task <code>CacheShuffledStream</code> to
+ * shuffle streams that do not fit in memory.
+ *
+ * Each instance is stored as its weight followed by the values of all its
+ * attributes, as doubles.
+ */
+public class PartitionedInstancesStream extends AbstractMOAObject implements
+		InstanceStream {
+
+	private static final long serialVersionUID = 1L;
+
+	protected InstancesHeader header;
+
+	protected File[] partitionFiles;
+
+	protected int[] partitionSizes;
+
+	protected long[] partitionSeeds;
+
+	protected long numInstances;
+
+	protected long streamPos;
+
+	protected int partitionIndex;
+
+	protected int partitionPos;
+
+	protected transient Instance[] partition;
+
+	protected transient int loadedPartitionIndex;
+
+	public PartitionedInstancesStream(InstancesHeader header,
+			File[] partitionFiles, int[] partitionSizes, long[] partitionSeeds) {
+		this.header = header;
+		this.partitionFiles = partitionFiles;
+		this.partitionSizes = partitionSizes;
+		this.partitionSeeds = partitionSeeds;
+		for (int size : partitionSizes) {
+			this.numInstances += size;
+		}
+	}
+
+    @Override
+	public InstancesHeader getHeader() {
+		return this.header;
+	}
+
+    @Override
+	public long estimatedRemainingInstances() {
+		return this.numInstances - this.streamPos;
+	}
+
+    @Override
+	public boolean hasMoreInstances() {
+		return this.streamPos < this.numInstances;
+	}
+
+    @Override
+	public InstanceExample nextInstance() {
+		while (this.partitionPos == this.partitionSizes[this.partitionIndex]) {
+			this.partitionIndex++;
+			this.partitionPos = 0;
+		}
+		if ((this.partition == null)
+				|| (this.loadedPartitionIndex != this.partitionIndex)) {
+			loadPartition(this.partitionIndex);
+		}
+		this.streamPos++;
+		return new InstanceExample(this.partition[this.partitionPos++]);
+	}
+
+	/**
+	 * Reads a partition and shuffles it in the same way as
+	 * Instances.randomize.
+	 */
+	protected void loadPartition(int index) {
+		Instance[] instances = new Instance[this.partitionSizes[index]];
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(this.partitionFiles[index]), 1 << 16));
+			try {
+				for (int i = 0; i < instances.length; i++) {
+					instances[i] = readInstance(in, this.header);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException("Failed reading partition file "
+					+ this.partitionFiles[index], ex);
+		}
+		Random random = new Random(this.partitionSeeds[index]);
+		for (int j = instances.length - 1; j > 0; j--) {
+			int k = random.nextInt(j + 1);
+			Instance swap = instances[j];
+			instances[j] = instances[k];
+			instances[k] = swap;
+		}
+		this.partition = instances;
+		this.loadedPartitionIndex = index;
+	}
+
+    @Override
+	public boolean isRestartable() {
+		return true;
+	}
+
+    @Override
+	public void restart() {
+		this.streamPos = 0;
+		this.partitionIndex = 0;
+		this.partitionPos = 0;
+	}
+
+	/**
+	 * Writes an instance in the format of the partition files.
+	 */
+	public static void writeInstance(DataOutputStream out, Instance inst)
+			throws IOException {
+		out.writeDouble(inst.weight());
+		int numAttributes = inst.numAttributes();
+		for (int i = 0; i < numAttributes; i++) {
+			out.writeDouble(inst.value(i));
+		}
+	}
+
+	/**
+	 * Reads an instance written by writeInstance.
+	 */
+	public static Instance readInstance(DataInputStream in,
+			InstancesHeader header) throws IOException {
+		double weight = in.readDouble();
+		double[] values = new double[header.numAttributes()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readDouble();
+		}
+		Instance inst = new DenseInstance(weight, values);
+		inst.setDataset(header);
+		return inst;
+	}
+
+    @Override
+	public void getDescription(StringBuilder sb, int indent) {
+		// TODO Auto-generated method stub
+
+	}
+
+}
@@ -0,0 +1,287 @@
+/*
+ *    PrefetchedStream.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.locks.LockSupport;
+
+import moa.core.Example;
+import moa.core.ObjectRepository;
+import moa.core.ResourceMeter;
+import moa.options.AbstractOptionHandler;
+import moa.options.ClassOption;
+import moa.tasks.TaskMonitor;
+
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+/**
+ * Stream that reads the instances of another stream in a producer thread,
+ * ahead of the thread that uses them, so that generating, parsing or
+ * filtering the instances runs in parallel with learning.
+ *
+ * The instances are passed in order through a ring buffer with one producer
+ * and one consumer, without locks: each side only writes its own position,
+ * and blocks only when the buffer is full or empty. The wrapped stream must
+ * not change an instance after returning it.
+ *
+ * Restarting stops the producer and restarts the wrapped stream, so the
+ * instances start again from the first one. Streams whose restart keeps part
+ * of their state, like the moving centroids of RandomRBFGeneratorDrift,
+ * continue from the state reached by the instances read ahead.
+ *
+ * The producer thread is started by the first read, and stopped by restart,
+ * by the end of the wrapped stream, and by the garbage collection of this
+ * stream when it is no longer used. It is a daemon thread, so it does not
+ * keep the program running either.
+ */
+public class PrefetchedStream extends AbstractOptionHandler implements
+        InstanceStream {
+
+    @Override
+    public String getPurposeString() {
+        return "Reads the instances of a stream ahead in another thread.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to prefetch.", InstanceStream.class,
+            "generators.RandomTreeGenerator");
+
+    public IntOption bufferSizeOption = new IntOption("bufferSize", 'b',
+            "Maximum number of instances read ahead.", 1024, 1, 1 << 24);
+
+    protected InstanceStream stream;
+
+    protected transient Prefetcher prefetcher;
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        stopProducer();
+        this.stream = (InstanceStream) getPreparedClassOption(this.streamOption);
+        this.prefetcher = new Prefetcher(this, this.bufferSizeOption.getValue());
+    }
+
+    protected void stopProducer() {
+        if (this.prefetcher != null) {
+            this.prefetcher.stop();
+        }
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return this.prefetcher.hasMoreInstances();
+    }
+
+    @Override
+    public Example<Instance> nextInstance() {
+        return this.prefetcher.nextInstance();
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return this.prefetcher.estimatedRemainingInstances();
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.stream.getHeader();
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return this.stream.isRestartable();
+    }
+
+    @Override
+    public void restart() {
+        stopProducer();
+        this.stream.restart();
+        this.prefetcher = new Prefetcher(this, this.bufferSizeOption.getValue());
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+    }
+
+    /**
+     * The ring buffer and the producer thread. The producer only keeps a weak
+     * reference to the PrefetchedStream, and stops once it has been collected,
+     * so a task that is aborted without reading its stream to the end does
+     * not leave the producer blocked forever on a full buffer.
+     */
+    protected static class Prefetcher {
+
+        // Time between two checks of the owner by a blocked producer
+        protected static final long OWNER_CHECK_NANOS = 100000000L;
+
+        protected final WeakReference<PrefetchedStream> owner;
+
+        protected final InstanceStream stream;
+
+        protected final Example<Instance>[] buffer;
+
+        // Index of the next instance to read, only written by the consumer
+        protected volatile long head;
+
+        // Index of the next instance to write, only written by the producer
+        protected volatile long tail;
+
+        // Set by the producer after it wrote the last instance
+        protected volatile boolean finished;
+
+        protected volatile Throwable failure;
+
+        protected volatile boolean stopRequested;
+
+        // Estimate of the wrapped stream, only written by the producer
+        protected volatile long streamRemainingInstances;
+
+        protected volatile Thread producer;
+
+        protected volatile Thread consumer;
+
+        protected volatile boolean producerWaiting;
+
+        protected volatile boolean consumerWaiting;
+
+        @SuppressWarnings("unchecked")
+        protected Prefetcher(PrefetchedStream owner, int bufferSize) {
+            this.owner = new WeakReference<PrefetchedStream>(owner);
+            this.stream = owner.stream;
+            this.buffer = new Example[bufferSize];
+        }
+
+        protected void start() {
+            // The wrapped stream is only used by the producer from now on
+            this.streamRemainingInstances = this.stream.estimatedRemainingInstances();
+            Thread thread = ResourceMeter.newThread(this::produce, "PrefetchedStream producer");
+            this.producer = thread;
+            thread.start();
+        }
+
+        protected void stop() {
+            Thread thread = this.producer;
+            if (thread == null) {
+                return;
+            }
+            this.stopRequested = true;
+            LockSupport.unpark(thread);
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        protected void produce() {
+            Example<Instance>[] buffer = this.buffer;
+            try {
+                while (!this.stopRequested && this.stream.hasMoreInstances()) {
+                    Example<Instance> example = this.stream.nextInstance();
+                    long t = this.tail;
+                    while (t - this.head == buffer.length) {
+                        this.producerWaiting = true;
+                        if (t - this.head == buffer.length && !this.stopRequested) {
+                            LockSupport.parkNanos(this, OWNER_CHECK_NANOS);
+                        }
+                        this.producerWaiting = false;
+                        if (this.stopRequested || this.owner.get() == null) {
+                            return;
+                        }
+                    }
+                    buffer[(int) (t % buffer.length)] = example;
+                    // Published before the tail, so the consumer never counts
+                    // an instance both in the buffer and in the estimate
+                    this.streamRemainingInstances = this.stream.estimatedRemainingInstances();
+                    this.tail = t + 1;
+                    if (this.consumerWaiting) {
+                        LockSupport.unpark(this.consumer);
+                    }
+                }
+            } catch (Throwable e) {
+                this.failure = e;
+            } finally {
+                this.finished = true;
+                if (this.consumerWaiting) {
+                    LockSupport.unpark(this.consumer);
+                }
+            }
+        }
+
+        protected boolean hasMoreInstances() {
+            if (this.producer == null) {
+                start();
+            }
+            long h = this.head;
+            while (h == this.tail) {
+                if (this.finished) {
+                    // The producer writes its last instance before finishing
+                    if (h != this.tail) {
+                        break;
+                    }
+                    if (this.failure != null) {
+                        throw new RuntimeException("Prefetched stream failed.", this.failure);
+                    }
+                    return false;
+                }
+                this.consumer = Thread.currentThread();
+                this.consumerWaiting = true;
+                if (h == this.tail && !this.finished) {
+                    LockSupport.park(this);
+                }
+                this.consumerWaiting = false;
+            }
+            return true;
+        }
+
+        protected Example<Instance> nextInstance() {
+            if (!hasMoreInstances()) {
+                return null;
+            }
+            long h = this.head;
+            int index = (int) (h % this.buffer.length);
+            Example<Instance> example = this.buffer[index];
+            this.buffer[index] = null;
+            this.head = h + 1;
+            if (this.producerWaiting) {
+                LockSupport.unpark(this.producer);
+            }
+            return example;
+        }
+
+        protected long estimatedRemainingInstances() {
+            if (this.producer == null) {
+                return this.stream.estimatedRemainingInstances();
+            }
+            long buffered = this.tail - this.head;
+            long remaining = this.streamRemainingInstances;
+            return remaining < 0 ? remaining : remaining + buffered;
+        }
+    }
+}
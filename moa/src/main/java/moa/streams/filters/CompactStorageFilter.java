@@ -0,0 +1,108 @@
+/*
+ *    CompactStorageFilter.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams.filters;
+
+import moa.core.InstanceExample;
+
+import com.github.javacliparser.MultiChoiceOption;
+import com.yahoo.labs.samoa.instances.ByteDenseInstanceData;
+import com.yahoo.labs.samoa.instances.FloatDenseInstanceData;
+import com.yahoo.labs.samoa.instances.FloatSparseInstanceData;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstanceData;
+import com.yahoo.labs.samoa.instances.InstanceImpl;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+/**
+ * Filter that stores the values of the instances of a stream in less memory,
+ * for learners and caches that keep many instances. Copies of the filtered
+ * instances keep the same storage. The filtered instances also share one
+ * header, instead of a copy per instance.
+ *
+ * Float storage rounds the values to single precision, halving the memory of
+ * dense instances. Byte storage keeps the values exactly, in one byte for
+ * nominal values and whole values up to ByteDenseInstanceData.MAX_CODE, and is
+ * meant for data with mostly nominal attributes. Sparse instances are stored
+ * as float sparse data with both storages.
+ */
+public class CompactStorageFilter extends AbstractStreamFilter {
+
+    @Override
+    public String getPurposeString() {
+        return "Stores the values of instances in single precision or in bytes to save memory.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public MultiChoiceOption storageOption = new MultiChoiceOption(
+            "storage", 's', "Storage of the attribute values.",
+            new String[]{"Float", "Byte"},
+            new String[]{"Single precision values, rounded",
+                "One byte per nominal value, other values kept exactly"},
+            0);
+
+    // Instance whose header is shared by the filtered instances
+    protected transient InstanceImpl headerInstance;
+
+    @Override
+    protected void restartImpl() {
+        this.headerInstance = null;
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.inputStream.getHeader();
+    }
+
+    @Override
+    public InstanceExample nextInstance() {
+        // The input instance is not changed, so it does not need to be copied
+        Instance inst = (Instance) this.inputStream.nextInstance().getData();
+        return new InstanceExample(filterInstance(inst));
+    }
+
+    @Override
+    public Instance filterInstance(Instance inst) {
+        InstanceData data;
+        int numValues = inst.numValues();
+        if (numValues < inst.numAttributes()) {
+            double[] values = new double[numValues];
+            int[] indices = new int[numValues];
+            for (int i = 0; i < numValues; i++) {
+                values[i] = inst.valueSparse(i);
+                indices[i] = inst.index(i);
+            }
+            data = new FloatSparseInstanceData(values, indices, inst.numAttributes());
+        } else if (this.storageOption.getChosenIndex() == 0) {
+            data = new FloatDenseInstanceData(inst.toDoubleArray());
+        } else {
+            data = new ByteDenseInstanceData(inst.toDoubleArray());
+        }
+        if (this.headerInstance == null) {
+            this.headerInstance = new InstanceImpl(inst.weight(), data);
+            this.headerInstance.setDataset(inst.dataset());
+            return this.headerInstance;
+        }
+        return new InstanceImpl(this.headerInstance, inst.weight(), data);
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+    }
+}
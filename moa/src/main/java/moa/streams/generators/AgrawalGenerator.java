@@ -37,6 +37,7 @@ import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
 import moa.streams.InstanceStream;
+import moa.streams.PartitionableStream;
 import moa.tasks.TaskMonitor;
 
 /**
@@ -60,7 +61,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class AgrawalGenerator extends AbstractOptionHandler implements
-        InstanceStream {
+        PartitionableStream {
 
     @Override
     public String getPurposeString() {
@@ -77,6 +78,10 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
             "instanceRandomSeed", 'i',
             "Seed for random generation of instances.", 1);
 
+    public IntOption seedBlockSizeOption = new IntOption("seedBlockSize", 'B',
+            "Number of consecutive instances generated from the same seed, so that partitions of the stream can be generated in parallel (0 = a single seed).",
+            0, 0, Integer.MAX_VALUE);
+
     public FloatOption peturbFractionOption = new FloatOption("peturbFraction",
             'p',
             "The amount of peturbation (noise) introduced to numeric values.",
@@ -274,6 +279,8 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
 
     protected Random instanceRandom;
 
+    protected SeedBlocks seedBlocks;
+
     protected boolean nextClassShouldBeZero;
 
     @Override
@@ -334,6 +341,7 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        this.seedBlocks.nextInstance(this.instanceRandom);
         double salary = 0, commission = 0, hvalue = 0, loan = 0;
         int age = 0, elevel = 0, car = 0, zipcode = 0, hyears = 0, group = 0;
         boolean desiredClassFound = false;
@@ -414,9 +422,27 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
     @Override
     public void restart() {
         this.instanceRandom = new Random(this.instanceRandomSeedOption.getValue());
+        this.seedBlocks = new SeedBlocks(this.instanceRandomSeedOption.getValue(),
+                this.seedBlockSizeOption.getValue());
         this.nextClassShouldBeZero = false;
     }
 
+    @Override
+    public boolean isPartitionable() {
+        return this.seedBlocks.isEnabled();
+    }
+
+    @Override
+    public void skipInstances(long numInstances) {
+        long remaining = this.seedBlocks.skip(numInstances);
+        if (this.balanceClassesOption.isSet() && (numInstances - remaining) % 2 == 1) {
+            this.nextClassShouldBeZero = !this.nextClassShouldBeZero;
+        }
+        for (long i = remaining; i > 0; i--) {
+            nextInstance();
+        }
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
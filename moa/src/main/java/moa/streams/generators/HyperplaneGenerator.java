@@ -27,6 +27,7 @@ import moa.core.InstanceExample;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import moa.streams.InstanceStream;
+import moa.streams.PartitionableStream;
 import moa.tasks.TaskMonitor;
 import com.yahoo.labs.samoa.instances.Attribute;
 import com.yahoo.labs.samoa.instances.DenseInstance;
@@ -41,7 +42,7 @@ import com.yahoo.labs.samoa.instances.InstancesHeader;
  * @version $Revision: 7 $
  */
 public class HyperplaneGenerator extends AbstractOptionHandler implements
-        InstanceStream {
+        PartitionableStream {
 
     @Override
     public String getPurposeString() {
@@ -54,6 +55,10 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
             "instanceRandomSeed", 'i',
             "Seed for random generation of instances.", 1);
 
+    public IntOption seedBlockSizeOption = new IntOption("seedBlockSize", 'B',
+            "Number of consecutive instances generated from the same seed, so that partitions of the stream can be generated in parallel (0 = a single seed).",
+            0, 0, Integer.MAX_VALUE);
+
     public IntOption numClassesOption = new IntOption("numClasses", 'c',
             "The number of classes to generate.", 2, 2, Integer.MAX_VALUE);
 
@@ -76,6 +81,8 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
 
     protected Random instanceRandom;
 
+    protected SeedBlocks seedBlocks;
+
     protected double[] weights;
 
     protected int[] sigma;
@@ -128,6 +135,7 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        this.seedBlocks.nextInstance(this.instanceRandom);
 
         int numAtts = this.numAttsOption.getValue();
         double[] attVals = new double[numAtts + 1];
@@ -169,6 +177,8 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
     @Override
     public void restart() {
         this.instanceRandom = new Random(this.instanceRandomSeedOption.getValue());
+        this.seedBlocks = new SeedBlocks(this.instanceRandomSeedOption.getValue(),
+                this.seedBlockSizeOption.getValue());
         this.weights = new double[this.numAttsOption.getValue()];
         this.sigma = new int[this.numAttsOption.getValue()];
         for (int i = 0; i < this.numAttsOption.getValue(); i++) {
@@ -177,6 +187,21 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
         }
     }
 
+    @Override
+    public boolean isPartitionable() {
+        // The drift of the weights depends on all the instances before
+        return this.seedBlocks.isEnabled() && (this.numDriftAttsOption.getValue() == 0
+                || this.magChangeOption.getValue() == 0.0);
+    }
+
+    @Override
+    public void skipInstances(long numInstances) {
+        long remaining = isPartitionable() ? this.seedBlocks.skip(numInstances) : numInstances;
+        for (long i = remaining; i > 0; i--) {
+            nextInstance();
+        }
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
@@ -34,6 +34,7 @@ import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.InstanceStream;
+import moa.streams.PartitionableStream;
 import moa.tasks.TaskMonitor;
 
 /**
@@ -43,7 +44,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class LEDGenerator extends AbstractOptionHandler implements
-        InstanceStream {
+        PartitionableStream {
 
     @Override
     public String getPurposeString() {
@@ -65,6 +66,10 @@ public class LEDGenerator extends AbstractOptionHandler implements
             "instanceRandomSeed", 'i',
             "Seed for random generation of instances.", 1);
 
+    public IntOption seedBlockSizeOption = new IntOption("seedBlockSize", 'B',
+            "Number of consecutive instances generated from the same seed, so that partitions of the stream can be generated in parallel (0 = a single seed).",
+            0, 0, Integer.MAX_VALUE);
+
     public IntOption noisePercentageOption = new IntOption("noisePercentage",
             'n', "Percentage of noise to add to the data.", 10, 0, 100);
 
@@ -76,6 +81,8 @@ public class LEDGenerator extends AbstractOptionHandler implements
 
     protected Random instanceRandom;
 
+    protected SeedBlocks seedBlocks;
+
     @Override
     protected void prepareForUseImpl(TaskMonitor monitor,
             ObjectRepository repository) {
@@ -124,6 +131,7 @@ public class LEDGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        this.seedBlocks.nextInstance(this.instanceRandom);
         InstancesHeader header = getHeader();
         Instance inst = new DenseInstance(header.numAttributes());
         inst.setDataset(header);
@@ -147,6 +155,20 @@ public class LEDGenerator extends AbstractOptionHandler implements
     @Override
     public void restart() {
         this.instanceRandom = new Random(this.instanceRandomSeedOption.getValue());
+        this.seedBlocks = new SeedBlocks(this.instanceRandomSeedOption.getValue(),
+                this.seedBlockSizeOption.getValue());
+    }
+
+    @Override
+    public boolean isPartitionable() {
+        return this.seedBlocks.isEnabled();
+    }
+
+    @Override
+    public void skipInstances(long numInstances) {
+        for (long i = this.seedBlocks.skip(numInstances); i > 0; i--) {
+            nextInstance();
+        }
     }
 
     @Override
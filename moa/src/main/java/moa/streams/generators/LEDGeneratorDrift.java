@@ -70,6 +70,7 @@ public class LEDGeneratorDrift extends LEDGenerator {
 
     @Override
     public InstanceExample nextInstance() {
+        this.seedBlocks.nextInstance(this.instanceRandom);
         InstancesHeader header = getHeader();
         Instance inst = new DenseInstance(header.numAttributes());
         inst.setDataset(header);
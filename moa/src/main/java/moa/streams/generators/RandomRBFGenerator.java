@@ -35,6 +35,7 @@ import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.IntOption;
 import moa.streams.InstanceStream;
+import moa.streams.PartitionableStream;
 import moa.tasks.TaskMonitor;
 
 /**
@@ -44,7 +45,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class RandomRBFGenerator extends AbstractOptionHandler implements
-        InstanceStream {
+        PartitionableStream {
 
     @Override
     public String getPurposeString() {
@@ -60,6 +61,10 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
             "instanceRandomSeed", 'i',
             "Seed for random generation of instances.", 1);
 
+    public IntOption seedBlockSizeOption = new IntOption("seedBlockSize", 'B',
+            "Number of consecutive instances generated from the same seed, so that partitions of the stream can be generated in parallel (0 = a single seed).",
+            0, 0, Integer.MAX_VALUE);
+
     public IntOption numClassesOption = new IntOption("numClasses", 'c',
             "The number of classes to generate.", 2, 2, Integer.MAX_VALUE);
 
@@ -88,6 +93,8 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
 
     protected Random instanceRandom;
 
+    protected SeedBlocks seedBlocks;
+
     @Override
     public void prepareForUseImpl(TaskMonitor monitor,
             ObjectRepository repository) {
@@ -120,10 +127,13 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
     @Override
     public void restart() {
         this.instanceRandom = new Random(this.instanceRandomSeedOption.getValue());
+        this.seedBlocks = new SeedBlocks(this.instanceRandomSeedOption.getValue(),
+                this.seedBlockSizeOption.getValue());
     }
 
     @Override
     public InstanceExample nextInstance() {
+        this.seedBlocks.nextInstance(this.instanceRandom);
         Centroid centroid = this.centroids[MiscUtils.chooseRandomIndexBasedOnWeights(this.centroidWeights,
                 this.instanceRandom)];
         int numAtts = this.numAttsOption.getValue();
@@ -180,6 +190,18 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
         }
     }
 
+    @Override
+    public boolean isPartitionable() {
+        return this.seedBlocks.isEnabled();
+    }
+
+    @Override
+    public void skipInstances(long numInstances) {
+        for (long i = this.seedBlocks.skip(numInstances); i > 0; i--) {
+            nextInstance();
+        }
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
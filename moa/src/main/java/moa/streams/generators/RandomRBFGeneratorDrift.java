@@ -72,6 +72,24 @@ public class RandomRBFGeneratorDrift extends RandomRBFGenerator {
         return super.nextInstance();
     }
 
+    @Override
+    public boolean isPartitionable() {
+        // The centroids move with each instance
+        return super.isPartitionable() && (this.numDriftCentroidsOption.getValue() == 0
+                || this.speedChangeOption.getValue() == 0.0);
+    }
+
+    @Override
+    public void skipInstances(long numInstances) {
+        if (isPartitionable()) {
+            super.skipInstances(numInstances);
+        } else {
+            for (long i = 0; i < numInstances; i++) {
+                nextInstance();
+            }
+        }
+    }
+
     @Override
     protected void generateCentroids() {
         super.generateCentroids();
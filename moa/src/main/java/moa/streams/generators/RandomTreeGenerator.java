@@ -36,6 +36,7 @@ import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.InstanceStream;
+import moa.streams.PartitionableStream;
 import moa.tasks.TaskMonitor;
 
 /**
@@ -45,7 +46,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class RandomTreeGenerator extends AbstractOptionHandler implements
-        InstanceStream {
+        PartitionableStream {
 
     @Override
     public String getPurposeString() {
@@ -61,6 +62,10 @@ public class RandomTreeGenerator extends AbstractOptionHandler implements
             "instanceRandomSeed", 'i',
             "Seed for random generation of instances.", 1);
 
+    public IntOption seedBlockSizeOption = new IntOption("seedBlockSize", 'B',
+            "Number of consecutive instances generated from the same seed, so that partitions of the stream can be generated in parallel (0 = a single seed).",
+            0, 0, Integer.MAX_VALUE);
+
     public IntOption numClassesOption = new IntOption("numClasses", 'c',
             "The number of classes to generate.", 2, 2, Integer.MAX_VALUE);
 
@@ -110,6 +115,8 @@ public class RandomTreeGenerator extends AbstractOptionHandler implements
 
     protected Random instanceRandom;
 
+    protected SeedBlocks seedBlocks;
+
     @Override
     public void prepareForUseImpl(TaskMonitor monitor,
             ObjectRepository repository) {
@@ -132,6 +139,8 @@ public class RandomTreeGenerator extends AbstractOptionHandler implements
     @Override
     public void restart() {
         this.instanceRandom = new Random(this.instanceRandomSeedOption.getValue());
+        this.seedBlocks = new SeedBlocks(this.instanceRandomSeedOption.getValue(),
+                this.seedBlockSizeOption.getValue());
     }
 
     @Override
@@ -146,6 +155,7 @@ public class RandomTreeGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        this.seedBlocks.nextInstance(this.instanceRandom);
         double[] attVals = new double[this.numNominalsOption.getValue()
                 + this.numNumericsOption.getValue()];
         InstancesHeader header = getHeader();
@@ -258,6 +268,18 @@ public class RandomTreeGenerator extends AbstractOptionHandler implements
         return node;
     }
 
+    @Override
+    public boolean isPartitionable() {
+        return this.seedBlocks.isEnabled();
+    }
+
+    @Override
+    public void skipInstances(long numInstances) {
+        for (long i = this.seedBlocks.skip(numInstances); i > 0; i--) {
+            nextInstance();
+        }
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
@@ -34,6 +34,7 @@ import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.InstanceStream;
+import moa.streams.PartitionableStream;
 import moa.tasks.TaskMonitor;
 
 /**
@@ -51,7 +52,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class SEAGenerator extends AbstractOptionHandler implements
-        InstanceStream {
+        PartitionableStream {
 
     @Override
     public String getPurposeString() {
@@ -68,6 +69,10 @@ public class SEAGenerator extends AbstractOptionHandler implements
             "instanceRandomSeed", 'i',
             "Seed for random generation of instances.", 1);
 
+    public IntOption seedBlockSizeOption = new IntOption("seedBlockSize", 'B',
+            "Number of consecutive instances generated from the same seed, so that partitions of the stream can be generated in parallel (0 = a single seed).",
+            0, 0, Integer.MAX_VALUE);
+
     public FlagOption balanceClassesOption = new FlagOption("balanceClasses",
             'b', "Balance the number of instances of each class.");
 
@@ -120,6 +125,8 @@ public class SEAGenerator extends AbstractOptionHandler implements
 
     protected Random instanceRandom;
 
+    protected SeedBlocks seedBlocks;
+
     protected boolean nextClassShouldBeZero;
 
     @Override
@@ -163,6 +170,7 @@ public class SEAGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        this.seedBlocks.nextInstance(this.instanceRandom);
         double attrib1 = 0, attrib2 = 0, attrib3 = 0;
         int group = 0;
         boolean desiredClassFound = false;
@@ -204,9 +212,27 @@ public class SEAGenerator extends AbstractOptionHandler implements
     @Override
     public void restart() {
         this.instanceRandom = new Random(this.instanceRandomSeedOption.getValue());
+        this.seedBlocks = new SeedBlocks(this.instanceRandomSeedOption.getValue(),
+                this.seedBlockSizeOption.getValue());
         this.nextClassShouldBeZero = false;
     }
 
+    @Override
+    public boolean isPartitionable() {
+        return this.seedBlocks.isEnabled();
+    }
+
+    @Override
+    public void skipInstances(long numInstances) {
+        long remaining = this.seedBlocks.skip(numInstances);
+        if (this.balanceClassesOption.isSet() && (numInstances - remaining) % 2 == 1) {
+            this.nextClassShouldBeZero = !this.nextClassShouldBeZero;
+        }
+        for (long i = remaining; i > 0; i--) {
+            nextInstance();
+        }
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
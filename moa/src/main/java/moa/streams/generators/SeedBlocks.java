@@ -0,0 +1,90 @@
+/*
+ *    SeedBlocks.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams.generators;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Splits the instances of a generator into blocks of consecutive instances,
+ * and reseeds the random generator of the instances at the start of each
+ * block with a seed derived from the instance seed and the block number.
+ * The instances of a block then only depend on its number, so the generator
+ * can jump to any block without generating the instances before it.
+ *
+ * With a block size of 0 the random generator is never reseeded, and the
+ * generator gives the same instances as without blocks.
+ */
+public class SeedBlocks implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected long seed;
+
+    protected int blockSize;
+
+    // Index of the next instance to generate
+    protected long index;
+
+    public SeedBlocks(long seed, int blockSize) {
+        this.seed = seed;
+        this.blockSize = blockSize;
+    }
+
+    public boolean isEnabled() {
+        return this.blockSize > 0;
+    }
+
+    /**
+     * Called before generating each instance, reseeds the random generator
+     * at the start of a block.
+     */
+    public void nextInstance(Random random) {
+        if (this.blockSize > 0 && this.index % this.blockSize == 0) {
+            random.setSeed(blockSeed(this.index / this.blockSize));
+        }
+        this.index++;
+    }
+
+    /**
+     * Moves forward to the start of the last block before the instance
+     * numInstances ahead, and returns the number of instances that remain to
+     * be generated to reach it. Without blocks nothing is skipped.
+     */
+    public long skip(long numInstances) {
+        if (this.blockSize <= 0) {
+            return numInstances;
+        }
+        long target = this.index + numInstances;
+        long blockStart = target - target % this.blockSize;
+        if (blockStart <= this.index) {
+            return numInstances;
+        }
+        this.index = blockStart;
+        return target - blockStart;
+    }
+
+    protected long blockSeed(long block) {
+        // SplitMix64 finalizer, so that consecutive blocks get unrelated seeds
+        long z = this.seed + (block + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -19,18 +19,38 @@
  */
 package moa.tasks;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
+import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
 import moa.core.ObjectRepository;
 import moa.options.ClassOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.CachedInstancesStream;
 import moa.streams.InstanceStream;
+import moa.streams.PartitionedInstancesStream;
 
 /**
  * Task for storing and shuffling examples in memory.
  *
+ * With the onDisk option the examples are shuffled in temporary files
+ * instead, for streams that do not fit in memory. Every example is written
+ * to a partition file chosen at random, partitions larger than the maximum
+ * cache size are split again in the same way, and the resulting stream reads
+ * the partitions one after the other, shuffling each one in memory.
+ *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
@@ -55,9 +75,28 @@ public class CacheShuffledStream extends AbstractTask {
             "shuffleRandomSeed", 'r',
             "Seed for random shuffling of instances.", 1);
 
+    public FlagOption onDiskOption = new FlagOption("onDisk", 'd',
+            "Shuffle in temporary files, keeping at most maximumCacheSize instances in memory.");
+
+    public IntOption maxInstancesOption = new IntOption("maxInstances", 'i',
+            "Maximum number of instances to shuffle on disk.", 10000000, 1,
+            Integer.MAX_VALUE);
+
+    /**
+     * Maximum number of partition files written at the same time.
+     */
+    protected static final int MAX_PARTITIONS = 256;
+
     @Override
     protected Object doTaskImpl(TaskMonitor monitor, ObjectRepository repository) {
         InstanceStream stream = (InstanceStream) getPreparedClassOption(this.streamOption);
+        if (this.onDiskOption.isSet()) {
+            try {
+                return shuffleOnDisk(stream, monitor);
+            } catch (IOException ex) {
+                throw new RuntimeException("Failed writing partition files", ex);
+            }
+        }
         Instances cache = new Instances(stream.getHeader(), 0);
         monitor.setCurrentActivity("Caching instances...", -1.0);
         while ((cache.numInstances() < this.maximumCacheSizeOption.getValue())
@@ -85,7 +124,142 @@ public class CacheShuffledStream extends AbstractTask {
         return new CachedInstancesStream(cache);
     }
 
+    /**
+     * Shuffles the stream in partition files of at most maximumCacheSize
+     * instances. Returns null if the task is aborted.
+     */
+    protected PartitionedInstancesStream shuffleOnDisk(InstanceStream stream,
+            TaskMonitor monitor) throws IOException {
+        InstancesHeader header = stream.getHeader();
+        Random random = new Random(this.shuffleRandomSeedOption.getValue());
+        long maxInstances = this.maxInstancesOption.getValue();
+        long estimatedInstances = stream.estimatedRemainingInstances();
+        if ((estimatedInstances < 0) || (estimatedInstances > maxInstances)) {
+            estimatedInstances = maxInstances;
+        }
+        monitor.setCurrentActivity("Writing instances to partitions...", -1.0);
+        Partitions partitions = new Partitions(numPartitions(estimatedInstances));
+        long numInstances = 0;
+        while ((numInstances < maxInstances) && stream.hasMoreInstances()) {
+            partitions.add(stream.nextInstance().getData(), random);
+            numInstances++;
+            if (numInstances % MainTask.INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                if (monitor.taskShouldAbort()) {
+                    partitions.delete();
+                    return null;
+                }
+                long estimatedRemainingInstances = stream.estimatedRemainingInstances();
+                long maxRemaining = maxInstances - numInstances;
+                if ((estimatedRemainingInstances < 0)
+                        || (maxRemaining < estimatedRemainingInstances)) {
+                    estimatedRemainingInstances = maxRemaining;
+                }
+                monitor.setCurrentActivityFractionComplete((double) numInstances
+                        / (double) (numInstances + estimatedRemainingInstances));
+            }
+        }
+        partitions.close();
+        monitor.setCurrentActivity("Splitting large partitions...", -1.0);
+        List<File> files = new ArrayList<File>();
+        List<Integer> sizes = new ArrayList<Integer>();
+        splitPartitions(partitions, header, random, files, sizes);
+        int[] partitionSizes = new int[sizes.size()];
+        long[] partitionSeeds = new long[sizes.size()];
+        for (int i = 0; i < partitionSizes.length; i++) {
+            partitionSizes[i] = sizes.get(i);
+            partitionSeeds[i] = random.nextLong();
+        }
+        return new PartitionedInstancesStream(header,
+                files.toArray(new File[files.size()]), partitionSizes,
+                partitionSeeds);
+    }
+
+    /**
+     * Collects the partitions that fit in the cache, in order, and splits
+     * the others into smaller partitions at their place.
+     */
+    protected void splitPartitions(Partitions partitions, InstancesHeader header,
+            Random random, List<File> files, List<Integer> sizes) throws IOException {
+        for (int p = 0; p < partitions.files.length; p++) {
+            int size = partitions.sizes[p];
+            if (size <= this.maximumCacheSizeOption.getValue()) {
+                files.add(partitions.files[p]);
+                sizes.add(size);
+                continue;
+            }
+            Partitions subPartitions = new Partitions(numPartitions(size));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(partitions.files[p]), 1 << 16));
+            try {
+                for (int i = 0; i < size; i++) {
+                    subPartitions.add(PartitionedInstancesStream.readInstance(in, header), random);
+                }
+            } finally {
+                in.close();
+            }
+            subPartitions.close();
+            partitions.files[p].delete();
+            splitPartitions(subPartitions, header, random, files, sizes);
+        }
+    }
+
+    /**
+     * Returns the number of partitions for the given number of instances, so
+     * that partitions are expected to fill half of the cache.
+     */
+    protected int numPartitions(long numInstances) {
+        long halfCache = Math.max(1, this.maximumCacheSizeOption.getValue() / 2);
+        long numPartitions = (numInstances + halfCache - 1) / halfCache;
+        return (int) Math.max(2, Math.min(MAX_PARTITIONS, numPartitions));
+    }
+
+    /**
+     * Temporary partition files being written.
+     */
+    protected static class Partitions {
+
+        protected File[] files;
+
+        protected DataOutputStream[] outputs;
+
+        protected int[] sizes;
+
+        public Partitions(int numPartitions) throws IOException {
+            this.files = new File[numPartitions];
+            this.outputs = new DataOutputStream[numPartitions];
+            this.sizes = new int[numPartitions];
+            for (int p = 0; p < numPartitions; p++) {
+                this.files[p] = File.createTempFile("moa-shuffle", ".bin");
+                this.files[p].deleteOnExit();
+                this.outputs[p] = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(this.files[p]), 1 << 15));
+            }
+        }
+
+        /**
+         * Writes the instance to a partition chosen at random.
+         */
+        public void add(Instance inst, Random random) throws IOException {
+            int p = random.nextInt(this.files.length);
+            PartitionedInstancesStream.writeInstance(this.outputs[p], inst);
+            this.sizes[p]++;
+        }
+
+        public void close() throws IOException {
+            for (DataOutputStream out : this.outputs) {
+                out.close();
+            }
+        }
+
+        public void delete() throws IOException {
+            close();
+            for (File file : this.files) {
+                file.delete();
+            }
+        }
+    }
+
     public Class<?> getTaskResultType() {
-        return CachedInstancesStream.class;
+        return InstanceStream.class;
     }
 }
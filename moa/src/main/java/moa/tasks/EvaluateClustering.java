@@ -8,6 +8,7 @@
  */
 package moa.tasks;
 
+import moa.classifiers.Parallel;
 import moa.clusterers.AbstractClusterer;
 import moa.core.ObjectRepository;
 import moa.evaluation.LearningCurve;
@@ -120,11 +121,15 @@ public class EvaluateClustering extends AuxiliarMainTask {
     	measureCollection[6] = this.silhouetteOption.isSet();
     	measureCollection[7] = this.statisticalOption.isSet();
     	
+        AbstractClusterer learner = (AbstractClusterer) getPreparedClassOption(this.learnerOption);
         BatchCmd.runBatch((ClusteringStream) getPreparedClassOption(this.streamOption),
-                (AbstractClusterer) getPreparedClassOption(this.learnerOption),
+                learner,
                 measureCollection,
                 (int) this.instanceLimitOption.getValue(),
                 (String) dumpFileOption.getValue());
+        if (learner instanceof Parallel) {
+            ((Parallel) learner).shutdownExecutor();
+        }
 
         LearningCurve learningCurve = new LearningCurve("EvaluateClustering does not support custom output file (> [filename]).\n" +
         												"Check out the dump file to see the results (if you haven't specified, dumpClustering.csv by default).");
@@ -26,6 +26,7 @@ import com.yahoo.labs.samoa.instances.Instance;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
+import moa.classifiers.core.driftdetection.ChangeDetectionBatch;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
@@ -82,6 +83,10 @@ public class EvaluateConceptDrift extends ConceptDriftMainTask{
             "How many instances between samples of the learning performance.",
             10, 0, Integer.MAX_VALUE);
 
+    public IntOption batchSizeOption = new IntOption("batchSize", 'b',
+            "Maximum number of input values passed to the change detector at once.",
+            1000, 1, Integer.MAX_VALUE);
+
     /*public IntOption memCheckFrequencyOption = new IntOption(
             "memCheckFrequency", 'q',
             "How many instances between memory bound checks.", 100000, 0,
@@ -153,25 +158,50 @@ public class EvaluateConceptDrift extends ConceptDriftMainTask{
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
+        int batchSize = this.batchSizeOption.getValue();
+        Example[] batchExamples = new Example[batchSize];
+        double[] batchInputValues = new double[batchSize];
+        ChangeDetectionBatch batch = new ChangeDetectionBatch(true);
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))
                 && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
-            Example trainInst = (Example) stream.nextInstance();
-            Example testInst = trainInst; 
-            int trueClass = (int) ((Instance)trainInst.getData()).classValue();
-            //testInst.setClassMissing();
-            double[] prediction = learner.getVotesForInstance(testInst);
-            if (prediction[0] ==1 ){ //Change detected
-                this.getEventsList().add(new ClusterEvent(this, instancesProcessed, "Detected Change", "Drift"));
+            // Batches end where the learning curve is sampled or the monitor is updated
+            long maxBatchSize = Math.min(batchSize, Math.min(
+                    this.sampleFrequencyOption.getValue() - instancesProcessed % this.sampleFrequencyOption.getValue(),
+                    INSTANCES_BETWEEN_MONITOR_UPDATES - instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES));
+            if (maxInstances >= 0) {
+                maxBatchSize = Math.min(maxBatchSize, maxInstances - instancesProcessed);
+            }
+            int numExamples = 0;
+            Example trainInst = null;
+            while (numExamples < maxBatchSize && stream.hasMoreInstances()) {
+                trainInst = (Example) stream.nextInstance();
+                Instance inst = (Instance) trainInst.getData();
+                if (inst.weight() != 1.0 || inst.classIsMissing()) {
+                    // Only instances of unit weight are trained in a batch
+                    break;
+                }
+                batchExamples[numExamples] = trainInst;
+                batchInputValues[numExamples] = inst.value(0);
+                numExamples++;
+                trainInst = null;
+            }
+            if (numExamples > 0) {
+                testThenTrain(learner, evaluator, batchExamples, batchInputValues,
+                        numExamples, batch, instancesProcessed);
+                instancesProcessed += numExamples;
+            }
+            if (trainInst != null) {
+                Example testInst = trainInst; 
+                //testInst.setClassMissing();
+                double[] prediction = learner.getVotesForInstance(testInst);
+                if (prediction[0] ==1 ){ //Change detected
+                    this.getEventsList().add(new ClusterEvent(this, instancesProcessed, "Detected Change", "Drift"));
+                }
+                evaluator.addResult(testInst, prediction);
+                learner.trainOnInstance(trainInst);
+                instancesProcessed++;
             }
-            // Output prediction
-           /* if (outputPredictionFile != null) {
-                outputPredictionResultStream.println(Utils.maxIndex(prediction) + "," + trueClass);
-            }*/
-
-            evaluator.addResult(testInst, prediction);
-            learner.trainOnInstance(trainInst);
-            instancesProcessed++;
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                     || stream.hasMoreInstances() == false) {
                 long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
@@ -236,4 +266,42 @@ public class EvaluateConceptDrift extends ConceptDriftMainTask{
         }*/
         return learningCurve;
     }
+
+    /**
+     * Tests then trains on a batch of instances of unit weight. The input
+     * values of the instances are passed to the change detector at once, and
+     * the output of the change detector before each instance is rebuilt from
+     * the batch, so the evaluation is the same as testing then training on
+     * each instance in sequence.
+     */
+    protected void testThenTrain(ChangeDetectorLearner learner,
+            LearningPerformanceEvaluator evaluator, Example[] examples,
+            double[] inputValues, int numExamples, ChangeDetectionBatch batch,
+            long instancesProcessed) {
+        double[] prediction = learner.getVotesForInstance(examples[0]);
+        learner.trainOnInputValues(inputValues, numExamples, batch);
+        int change = 0;
+        int warning = 0;
+        for (int i = 0; i < numExamples; i++) {
+            if (i > 0) {
+                // The output of the change detector after the previous value
+                prediction[0] = 0;
+                prediction[1] = 0;
+                if (change < batch.getNumChanges() && batch.getChangeIndex(change) == i - 1) {
+                    prediction[0] = 1;
+                    change++;
+                }
+                if (warning < batch.getNumWarnings() && batch.getWarningIndex(warning) == i - 1) {
+                    prediction[1] = 1;
+                    warning++;
+                }
+                prediction[2] = batch.getDelay(i - 1);
+                prediction[3] = batch.getEstimation(i - 1);
+            }
+            if (prediction[0] == 1) { //Change detected
+                this.getEventsList().add(new ClusterEvent(this, instancesProcessed + i, "Detected Change", "Drift"));
+            }
+            evaluator.addResult(examples[i], prediction);
+        }
+    }
 }
\ No newline at end of file
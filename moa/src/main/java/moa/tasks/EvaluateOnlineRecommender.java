@@ -24,7 +24,9 @@ import moa.core.ObjectRepository;
 import moa.evaluation.LearningCurve;
 import moa.evaluation.LearningEvaluation;
 import moa.options.ClassOption;
+import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
+import moa.recommender.dataset.AbstractRatingFileDataset;
 import moa.recommender.dataset.Dataset;
 import moa.recommender.predictor.RatingPredictor;
 import moa.recommender.rc.data.RecommenderData;
@@ -38,6 +40,13 @@ import moa.recommender.rc.data.RecommenderData;
  * <ul>  
  * <li> d: dataset - the dataset to be used to train/test the rating predictor.</li>
  * <li> f: sample frequency - the frequency in which a rating from the dataset will be used to test the model </li>
+ * <li> b: batch train size - the number of ratings at the start of the dataset used to batch train the
+ *      rating predictor before the online evaluation. The convergence and throughput of the batch training
+ *      are added to the learning curve. </li>
+ * <li> n: top-N - the length of the recommendation lists to evaluate, 0 to evaluate only rating predictions.
+ *      Before a rating at least as high as the relevance threshold is learnt, the top-N items not rated by the
+ *      user are computed, and the hit rate is the fraction of these ratings whose item is in the list. </li>
+ * <li> t: relevance threshold - the lowest rating of the items relevant to a user in the top-N evaluation </li>
  * </ul>
  *
  * @author Alex Catarineu (a.catarineu@gmail.com)
@@ -64,6 +73,21 @@ public class EvaluateOnlineRecommender extends AuxiliarMainTask {
             "How many instances between samples of the learning performance.",
             100, 0, Integer.MAX_VALUE);
 
+    public IntOption batchTrainSizeOption = new IntOption("batchTrainSize",
+            'b',
+            "How many ratings at the start of the dataset are used to batch train the predictor before the online evaluation.",
+            0, 0, Integer.MAX_VALUE);
+
+    public IntOption topNOption = new IntOption("topN",
+            'n',
+            "Length of the recommendation lists to evaluate (0 = no top-N evaluation).",
+            0, 0, Integer.MAX_VALUE);
+
+    public FloatOption relevanceThresholdOption = new FloatOption("relevanceThreshold",
+            't',
+            "Lowest rating of the items relevant to a user in the top-N evaluation.",
+            4.0);
+
     public EvaluateOnlineRecommender() {
     }
 
@@ -76,68 +100,115 @@ public class EvaluateOnlineRecommender extends AuxiliarMainTask {
     public Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
         
         Dataset d = (Dataset) getPreparedClassOption(this.datasetOption);
-        RatingPredictor rp = (RatingPredictor)getPreparedClassOption(this.ratingPredictorOption);
-        LearningCurve learningCurve = new LearningCurve("n");
-        RecommenderData data = rp.getData();
-        data.clear();
-        data.disableUpdates(false);
-        long start = System.currentTimeMillis();
-        long evalTime = 0;
-        double sum = 0;
-        int n = 0;
-        //ArrayList<TestMetric> metrics = new ArrayList<TestMetric>();
-        int sampleFrequency = this.sampleFrequencyOption.getValue();
-        int count = 0;
-        while (d.next())
-          ++count;
-        d.reset();
-        while (d.next()) {
-            Integer user = d.curUserID();
-            Integer item = d.curItemID();
-            Double rating = d.curRating();
-            long startPredTime = System.currentTimeMillis();
-            double pred = rp.predictRating(user, item);
-            sum += Math.pow(pred - rating, 2);
-            evalTime += System.currentTimeMillis() - startPredTime;
-            data.setRating(user, item, rating);
-            //System.out.println(data.countRatingsItem(item) + " " + data.countRatingsUser(user));
-            //if (n++%100 == 99) metrics.add(new TestMetric("RMSE (" + n +")", Math.sqrt(sum/(double)n)));
-            n++;
-            if (n%sampleFrequency == sampleFrequency-1) {
-               if (monitor.taskShouldAbort()) {
-                    return null;
+        try {
+            RatingPredictor rp = (RatingPredictor)getPreparedClassOption(this.ratingPredictorOption);
+            LearningCurve learningCurve = new LearningCurve("n");
+            RecommenderData data = rp.getData();
+            data.clear();
+            data.disableUpdates(false);
+            long start = System.currentTimeMillis();
+            long evalTime = 0;
+            double sum = 0;
+            int n = 0;
+            //ArrayList<TestMetric> metrics = new ArrayList<TestMetric>();
+            int sampleFrequency = this.sampleFrequencyOption.getValue();
+            Measurement[] trainingMeasurements = new Measurement[0];
+            int batchTrainSize = this.batchTrainSizeOption.getValue();
+            int nBatch = 0;
+            if (batchTrainSize > 0) {
+                monitor.setCurrentActivityDescription("Batch training...");
+                data.disableUpdates(true);
+                while (nBatch < batchTrainSize && d.next()) {
+                    data.setRating(d.curUserID(), d.curItemID(), d.curRating());
+                    ++nBatch;
                 }
-                monitor.setCurrentActivityFractionComplete((double)n/(double)count);
-                learningCurve.insertEntry(new LearningEvaluation(
-                        new Measurement[]{
-                            new Measurement(
-                            "n",
-                            n),
-                            new Measurement(
-                            "RMSE",
-                            Math.sqrt(sum/(double)n)),
-                            new Measurement(
-                            "trainingTime",
-                            (int)((System.currentTimeMillis() - start - evalTime)/1000)),
-                            new Measurement(
-                            "evalTime",
-                            (int)(evalTime/1000))
+                data.disableUpdates(false);
+                rp.train();
+                trainingMeasurements = rp.getTrainingMeasurements();
+                monitor.setCurrentActivityDescription("Evaluating...");
+                start = System.currentTimeMillis();
+            }
+            int topN = this.topNOption.getValue();
+            double relevanceThreshold = this.relevanceThresholdOption.getValue();
+            int[] topNItems = new int[topN];
+            double[] topNRatings = new double[topN];
+            int topNTests = 0;
+            int topNHits = 0;
+            while (d.next()) {
+                int user = d.curUserID();
+                int item = d.curItemID();
+                double rating = d.curRating();
+                long startPredTime = System.currentTimeMillis();
+                double pred = rp.predictRating(user, item);
+                sum += Math.pow(pred - rating, 2);
+                if (topN > 0 && rating >= relevanceThreshold) {
+                    int found = rp.topN(user, topN, true, topNItems, topNRatings);
+                    for (int i = 0; i < found; ++i) {
+                        if (topNItems[i] == item) {
+                            ++topNHits;
+                            break;
                         }
-                         ));
-                if (monitor.resultPreviewRequested()) {
-                    monitor.setLatestResultPreview(learningCurve.headerToString() + "\n" +
-                      learningCurve.entryToString(learningCurve.numEntries() - 1));
+                    }
+                    ++topNTests;
+                }
+                evalTime += System.currentTimeMillis() - startPredTime;
+                data.setRating(user, item, rating);
+                //System.out.println(data.countRatingsItem(item) + " " + data.countRatingsUser(user));
+                //if (n++%100 == 99) metrics.add(new TestMetric("RMSE (" + n +")", Math.sqrt(sum/(double)n)));
+                n++;
+                if (n%sampleFrequency == sampleFrequency-1) {
+                   if (monitor.taskShouldAbort()) {
+                        return null;
+                    }
+                    monitor.setCurrentActivityFractionComplete(d.getFractionRead());
+                    Measurement[] measurements = new Measurement[]{
+                                new Measurement(
+                                "n",
+                                n),
+                                new Measurement(
+                                "RMSE",
+                                Math.sqrt(sum/(double)n)),
+                                new Measurement(
+                                "trainingTime",
+                                (int)((System.currentTimeMillis() - start - evalTime)/1000)),
+                                new Measurement(
+                                "evalTime",
+                                (int)(evalTime/1000))
+                            };
+                    if (topN > 0) {
+                        Measurement[] all = new Measurement[measurements.length + 1];
+                        System.arraycopy(measurements, 0, all, 0, measurements.length);
+                        all[measurements.length] = new Measurement("top-" + topN + " hit rate",
+                                topNTests > 0 ? (double)topNHits/(double)topNTests : 0);
+                        measurements = all;
+                    }
+                    if (trainingMeasurements.length > 0) {
+                        Measurement[] all = new Measurement[measurements.length + trainingMeasurements.length];
+                        System.arraycopy(measurements, 0, all, 0, measurements.length);
+                        System.arraycopy(trainingMeasurements, 0, all, measurements.length, trainingMeasurements.length);
+                        measurements = all;
+                    }
+                    learningCurve.insertEntry(new LearningEvaluation(measurements));
+                    if (monitor.resultPreviewRequested()) {
+                        monitor.setLatestResultPreview(learningCurve.headerToString() + "\n" +
+                          learningCurve.entryToString(learningCurve.numEntries() - 1));
+                    }
                 }
             }
-        }
-        //System.out.println(n + " " + Math.sqrt(sum/(double)n));
-        //metrics.add(new TestMetric("RMSE (" + n +")", Math.sqrt(sum/(double)n)));
-       // long trainingTime = System.currentTimeMillis() - start - evalTime;
-        //return new TestStatistics((int)(trainingTime/1000),
-        //        (int)(evalTime/1000),
-        //        metrics.toArray(new TestMetric[metrics.size()]));
+            //System.out.println(n + " " + Math.sqrt(sum/(double)n));
+            //metrics.add(new TestMetric("RMSE (" + n +")", Math.sqrt(sum/(double)n)));
+           // long trainingTime = System.currentTimeMillis() - start - evalTime;
+            //return new TestStatistics((int)(trainingTime/1000),
+            //        (int)(evalTime/1000),
+            //        metrics.toArray(new TestMetric[metrics.size()]));
         
        
-        return learningCurve;
+            return learningCurve;
+        } finally {
+            // Stops the prefetching thread of the dataset, also when aborted
+            if (d instanceof AbstractRatingFileDataset) {
+                ((AbstractRatingFileDataset) d).close();
+            }
+        }
     }
 }
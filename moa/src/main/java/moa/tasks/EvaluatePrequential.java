@@ -29,6 +29,8 @@ import moa.classifiers.MultiClassClassifier;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.Profiler;
+import moa.core.ResourceMeter;
 import moa.core.TimingUtils;
 import moa.evaluation.WindowClassificationPerformanceEvaluator;
 import moa.evaluation.EWMAClassificationPerformanceEvaluator;
@@ -40,6 +42,7 @@ import moa.learners.Learner;
 import moa.options.ClassOption;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
@@ -96,6 +99,17 @@ public class EvaluatePrequential extends ClassificationMainTask {
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv results to.", null, "csv", true);
 
+    public FileOption checkpointFileOption = new FileOption("checkpointFile", 'c',
+            "File to save the state of the evaluation to, and to resume it from.", null, "ckpt", true);
+
+    public IntOption checkpointFrequencyOption = new IntOption("checkpointFrequency",
+            'k',
+            "How many instances between checkpoints (0 = only at the end).",
+            1000000, 0, Integer.MAX_VALUE);
+
+    public FlagOption resumeOption = new FlagOption("resume", 'R',
+            "Resume the evaluation from the checkpoint file if it exists.");
+
     public FileOption outputPredictionFileOption = new FileOption("outputPredictionFile", 'o',
             "File to append output predictions to.", null, "pred", true);
 
@@ -144,9 +158,23 @@ public class EvaluatePrequential extends ClassificationMainTask {
         }
         //End New for prequential methods
 
-        learner.setModelContext(stream.getHeader());
+        String configuration = this.learnerOption.getValueAsCLIString() + " "
+                + this.streamOption.getValueAsCLIString() + " "
+                + this.evaluatorOption.getValueAsCLIString();
+        EvaluationCheckpoint checkpoint = this.resumeOption.isSet()
+                ? EvaluationCheckpoint.resume(this.checkpointFileOption.getFile(), configuration)
+                : null;
+        if (checkpoint != null) {
+            learner = checkpoint.learner;
+            evaluator = checkpoint.evaluator;
+            learningCurve = checkpoint.learningCurve;
+            monitor.setCurrentActivity("Skipping processed instances...", -1.0);
+            checkpoint.skipProcessedInstances(stream);
+        } else {
+            learner.setModelContext(stream.getHeader());
+        }
         int maxInstances = this.instanceLimitOption.getValue();
-        long instancesProcessed = 0;
+        long instancesProcessed = checkpoint != null ? checkpoint.instancesProcessed : 0;
         int maxSeconds = this.timeLimitOption.getValue();
         int secondsElapsed = 0;
         monitor.setCurrentActivity("Evaluating learner...", -1.0);
@@ -184,18 +212,47 @@ public class EvaluatePrequential extends ClassificationMainTask {
                         "Unable to open prediction result file: " + outputPredictionFile, ex);
             }
         }
-        boolean firstDump = true;
+        // The header was written before the checkpoint
+        boolean firstDump = checkpoint == null || dumpFile == null || !dumpFile.exists()
+                || dumpFile.length() == 0;
+        File checkpointFile = this.checkpointFileOption.getFile();
+        EvaluationCheckpoint.Writer checkpointWriter = checkpointFile != null
+                ? new EvaluationCheckpoint.Writer(checkpointFile) : null;
+        int checkpointFrequency = this.checkpointFrequencyOption.getValue();
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
-        long lastEvaluateStartTime = evaluateStartTime;
+        ResourceMeter resourceMeter = new ResourceMeter();
+        long lastEvaluateStartTime = resourceMeter.getNanoCPUTime();
+        long evaluateStartTime = lastEvaluateStartTime;
+        long wallClockTimeBeforeResume = 0;
         double RAMHours = 0.0;
+        if (checkpoint != null) {
+            // Times continue from the checkpoint
+            evaluateStartTime -= checkpoint.cpuTime;
+            wallClockTimeBeforeResume = checkpoint.wallClockTime;
+            RAMHours = checkpoint.RAMHours;
+        }
+        Profiler.reset();
+        Profiler.Counter streamProfilingCounter = Profiler.getCounter("stream nextInstance");
+        Profiler.Counter votesProfilingCounter = Profiler.getCounter("learner getVotesForInstance");
+        Profiler.Counter evaluatorProfilingCounter = Profiler.getCounter("evaluator addResult");
+        long profilingStartTime = 0;
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))
                 && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
+            if (Profiler.ENABLED) {
+                profilingStartTime = streamProfilingCounter.start();
+            }
             Example trainInst = stream.nextInstance();
+            if (Profiler.ENABLED) {
+                streamProfilingCounter.stop(profilingStartTime);
+                profilingStartTime = votesProfilingCounter.start();
+            }
             Example testInst = (Example) trainInst; //.copy();
             //testInst.setClassMissing();
             double[] prediction = learner.getVotesForInstance(testInst);
+            if (Profiler.ENABLED) {
+                votesProfilingCounter.stop(profilingStartTime);
+            }
             // Output prediction
             if (outputPredictionFile != null) {
                 int trueClass = (int) ((Instance) trainInst.getData()).classValue();
@@ -204,13 +261,21 @@ public class EvaluatePrequential extends ClassificationMainTask {
             }
 
             //evaluator.addClassificationAttempt(trueClass, prediction, testInst.weight());
+            if (Profiler.ENABLED) {
+                profilingStartTime = evaluatorProfilingCounter.start();
+            }
             evaluator.addResult(testInst, prediction);
+            if (Profiler.ENABLED) {
+                evaluatorProfilingCounter.stop(profilingStartTime);
+            }
             learner.trainOnInstance(trainInst);
             instancesProcessed++;
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                     || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                long evaluateTime = resourceMeter.getNanoCPUTime();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                double wallClockTime = TimingUtils.nanoTimeToSeconds(resourceMeter.getNanoWallClockTime()
+                        + wallClockTimeBeforeResume);
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
                 double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
                 RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
@@ -228,7 +293,16 @@ public class EvaluatePrequential extends ClassificationMainTask {
                             time),
                             new Measurement(
                             "model cost (RAM-Hours)",
-                            RAMHours)
+                            RAMHours),
+                            new Measurement(
+                            "evaluation time (wall-clock seconds)",
+                            wallClockTime),
+                            new Measurement(
+                            "allocated bytes",
+                            resourceMeter.getAllocatedBytes()),
+                            new Measurement(
+                            "throughput (instances per second)",
+                            instancesProcessed / wallClockTime)
                         },
                         evaluator, learner));
 
@@ -241,8 +315,18 @@ public class EvaluatePrequential extends ClassificationMainTask {
                     immediateResultStream.flush();
                 }
             }
+            if (checkpointWriter != null && checkpointFrequency > 0
+                    && instancesProcessed % checkpointFrequency == 0) {
+                checkpointWriter.write(new EvaluationCheckpoint(configuration,
+                        learner, evaluator, learningCurve, instancesProcessed,
+                        RAMHours, resourceMeter.getNanoCPUTime() - evaluateStartTime,
+                        resourceMeter.getNanoWallClockTime() + wallClockTimeBeforeResume));
+            }
             if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                 if (monitor.taskShouldAbort()) {
+                    if (checkpointWriter != null) {
+                        checkpointWriter.close();
+                    }
                     return null;
                 }
                 long estimatedRemainingInstances = stream.estimatedRemainingInstances();
@@ -259,10 +343,17 @@ public class EvaluatePrequential extends ClassificationMainTask {
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(resourceMeter.getNanoCPUTime()
                         - evaluateStartTime);
             }
         }
+        if (checkpointWriter != null) {
+            checkpointWriter.write(new EvaluationCheckpoint(configuration,
+                    learner, evaluator, learningCurve, instancesProcessed,
+                    RAMHours, resourceMeter.getNanoCPUTime() - evaluateStartTime,
+                    resourceMeter.getNanoWallClockTime() + wallClockTimeBeforeResume));
+            checkpointWriter.close();
+        }
         if (immediateResultStream != null) {
             immediateResultStream.close();
         }
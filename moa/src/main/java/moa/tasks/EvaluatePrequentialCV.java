@@ -158,7 +158,8 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
 
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ResourceMeter resourceMeter = new ResourceMeter();
+        long evaluateStartTime = resourceMeter.getNanoCPUTime();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
         while (stream.hasMoreInstances()
@@ -195,8 +196,9 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
             instancesProcessed++;
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                     || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                long evaluateTime = resourceMeter.getNanoCPUTime();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                double wallClockTime = TimingUtils.nanoTimeToSeconds(resourceMeter.getNanoWallClockTime());
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
 
                 for (int i = 0; i < learners.length; i++) {
@@ -219,7 +221,16 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
                                         time),
                                 new Measurement(
                                         "model cost (RAM-Hours)",
-                                        RAMHours)
+                                        RAMHours),
+                                new Measurement(
+                                        "evaluation time (wall-clock seconds)",
+                                        wallClockTime),
+                                new Measurement(
+                                        "allocated bytes",
+                                        resourceMeter.getAllocatedBytes()),
+                                new Measurement(
+                                        "throughput (instances per second)",
+                                        instancesProcessed / wallClockTime)
                         }, evaluators)));
 
                 if (immediateResultStream != null) {
@@ -249,7 +260,7 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(resourceMeter.getNanoCPUTime()
                         - evaluateStartTime);
             }
         }
@@ -27,9 +27,11 @@ import java.io.PrintStream;
 
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
+import moa.core.DelayBuffer;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.ResourceMeter;
 import moa.core.TimingUtils;
 import moa.evaluation.WindowClassificationPerformanceEvaluator;
 import moa.evaluation.EWMAClassificationPerformanceEvaluator;
@@ -46,8 +48,7 @@ import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
 import com.yahoo.labs.samoa.instances.Instance;
-import java.util.LinkedList;
-import moa.core.InstanceExample;
+import java.util.Random;
 import moa.core.Utils;
 
 /**
@@ -89,6 +90,14 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
             "Number of instances before test instance is used for training",
             1000, 1, Integer.MAX_VALUE);
     
+    public IntOption delayVariationOption = new IntOption("delayVariation", 'v',
+            "Maximum random variation of the delay of each instance, "
+            + "delays are uniform between k-v and k+v and at least 1 (0 = fixed delay).",
+            0, 0, Integer.MAX_VALUE);
+    
+    public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
+            "Seed for random delays.", 1);
+    
     public IntOption initialWindowSizeOption = new IntOption("initialTrainingWindow", 'p',
         "Number of instances used for training in the beginning of the stream.",
         1000, 0, Integer.MAX_VALUE);
@@ -130,8 +139,8 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
     public FloatOption alphaOption = new FloatOption("alpha",
             'a', "Fading factor or exponential smoothing factor", .01);
 
-    // Buffer of instances to use for training. 
-    protected LinkedList<Example> trainInstances;
+    // Instances to use for training, by the time their label is released. 
+    protected DelayBuffer<Example> trainInstances;
     
     @Override
     public Class<?> getTaskResultType() {
@@ -146,7 +155,16 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
         LearningCurve learningCurve = new LearningCurve(
                 "learning evaluation instances");
 
-        this.trainInstances = new LinkedList<Example>();
+        int delay = this.delayLengthOption.getValue();
+        int delayVariation = this.delayVariationOption.getValue();
+        int initialWindowSize = this.initialWindowSizeOption.getValue();
+        int maxDelay = (int) Math.min((long) delay + delayVariation, Integer.MAX_VALUE - 1);
+        if (this.instanceLimitOption.getValue() >= 0) {
+            // labels released after the last instance are never used
+            maxDelay = Math.min(maxDelay, this.instanceLimitOption.getValue());
+        }
+        this.trainInstances = new DelayBuffer<Example>(maxDelay);
+        Random delayRandom = new Random(this.randomSeedOption.getValue());
         
         //New for prequential methods
         if (evaluator instanceof WindowClassificationPerformanceEvaluator) {
@@ -213,7 +231,8 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
         }
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ResourceMeter resourceMeter = new ResourceMeter();
+        long evaluateStartTime = resourceMeter.getNanoCPUTime();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
         
@@ -224,55 +243,66 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
             instancesProcessed++;
             Example currentInst = stream.nextInstance();
             
-            if(instancesProcessed <= this.initialWindowSizeOption.getValue()) {
+            long releaseTime = instancesProcessed + delay;
+            if (delayVariation > 0) {
+                releaseTime = instancesProcessed + Math.max(1, delay
+                        - delayVariation + delayRandom.nextInt(2 * delayVariation + 1));
+            }
+            
+            if(instancesProcessed <= initialWindowSize) {
                 if(this.trainOnInitialWindowOption.isSet()) {
                     learner.trainOnInstance(currentInst);
                 }
-                else if((this.initialWindowSizeOption.getValue() - instancesProcessed) < this.delayLengthOption.getValue()) {
-                    this.trainInstances.addLast(currentInst);
+                else if(releaseTime > initialWindowSize
+                        && releaseTime - instancesProcessed <= maxDelay) {
+                    this.trainInstances.add(currentInst, releaseTime);
                 }
             }
             else {
-                this.trainInstances.addLast(currentInst);
-
-                if(this.delayLengthOption.getValue() < this.trainInstances.size()) {
+                Example trainInst = this.trainInstances.poll(instancesProcessed);
+                if(trainInst != null) {
+                    learner.trainOnInstance(trainInst);
                     if(this.trainInBatches.isSet()) {
-                        // Do not train on the latest instance, otherwise
-                        // it would train on k+1 instances
-                        while(this.trainInstances.size() > 1) {
-                            Example trainInst = this.trainInstances.removeFirst();
-                            learner.trainOnInstance(trainInst);
+                        // Train on all the pending instances, but not on the
+                        // latest instance, otherwise it would train on k+1 instances
+                        for(long time = instancesProcessed; this.trainInstances.size() > 0
+                                && time <= instancesProcessed + maxDelay; time++) {
+                            while((trainInst = this.trainInstances.poll(time)) != null) {
+                                learner.trainOnInstance(trainInst);
+                            }
                         }
                     }
                     else {
-                        Example trainInst = this.trainInstances.removeFirst();
-                        learner.trainOnInstance(trainInst);
+                        while((trainInst = this.trainInstances.poll(instancesProcessed)) != null) {
+                            learner.trainOnInstance(trainInst);
+                        }
                     }
                 }
+                if(releaseTime - instancesProcessed <= maxDelay) {
+                    this.trainInstances.add(currentInst, releaseTime);
+                }
 
-                // Remove class label from test instances. 
-                Instance testInstance = ((Instance) currentInst.getData()).copy();
-                Example testInst = new InstanceExample(testInstance);
-                testInstance.setMissing(testInstance.classAttribute());
+                // Remove class label from the test instance while predicting,
+                // and reinstate it as it is used in evaluator.addResult
+                Instance testInstance = (Instance) currentInst.getData();
+                double classValue = testInstance.classValue();
                 testInstance.setClassValue(0.0);
-          
-                double[] prediction = learner.getVotesForInstance(testInst);
-    //          reinstate the testInstance as it is used in evaluator.addResult
-                testInstance = ((Instance) currentInst.getData()).copy();
-                testInst = new InstanceExample(testInstance);
+                double[] prediction = learner.getVotesForInstance(currentInst);
+                testInstance.setClassValue(classValue);
 
                 // Output prediction
                 if (outputPredictionFile != null) {
-                    int trueClass = (int) ((Instance) currentInst.getData()).classValue();
+                    int trueClass = (int) testInstance.classValue();
                     outputPredictionResultStream.println(Utils.maxIndex(prediction) + "," + (
-                     ((Instance) testInst.getData()).classIsMissing() == true ? " ? " : trueClass));
+                     testInstance.classIsMissing() == true ? " ? " : trueClass));
                 }
-                evaluator.addResult(testInst, prediction);
+                evaluator.addResult(currentInst, prediction);
                 
                 if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                         || stream.hasMoreInstances() == false) {
-                    long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                    long evaluateTime = resourceMeter.getNanoCPUTime();
                     double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                    double wallClockTime = TimingUtils.nanoTimeToSeconds(resourceMeter.getNanoWallClockTime());
                     double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
                     double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
                     RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
@@ -290,7 +320,16 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
                                 time),
                                 new Measurement(
                                 "model cost (RAM-Hours)",
-                                RAMHours)
+                                RAMHours),
+                                new Measurement(
+                                "evaluation time (wall-clock seconds)",
+                                wallClockTime),
+                                new Measurement(
+                                "allocated bytes",
+                                resourceMeter.getAllocatedBytes()),
+                                new Measurement(
+                                "throughput (instances per second)",
+                                instancesProcessed / wallClockTime)
                             },
                             evaluator, learner));
                     if (immediateResultStream != null) {
@@ -320,7 +359,7 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
                     if (monitor.resultPreviewRequested()) {
                         monitor.setLatestResultPreview(learningCurve.copy());
                     }
-                    secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                    secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(resourceMeter.getNanoCPUTime()
                             - evaluateStartTime);
                 }
             }
@@ -35,6 +35,7 @@ import moa.streams.ExampleStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -120,9 +121,11 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
             "Seed for random behaviour of the task.", 1);
 
     // Buffer of instances to use for training. 
-    // Note: It is a list of lists because it stores instances per learner, e.g.
-    // CV of 10, would be 10 lists of buffered instances for delayed training. 
-    protected LinkedList<LinkedList<Example>> trainInstances;
+    // Note: It is an array of queues because it stores instances per learner, e.g.
+    // CV of 10, would be 10 queues of buffered instances for delayed training. 
+    // The queues share the instances of the stream, and reuse their arrays
+    // once they hold k instances.
+    protected ArrayDeque<Example>[] trainInstances;
     
     @Override
     public Class<?> getTaskResultType() {
@@ -155,10 +158,12 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
         int secondsElapsed = 0;
         monitor.setCurrentActivity("Evaluating learner...", -1.0);
 
-        this.trainInstances = new LinkedList<LinkedList<Example>>();
+        @SuppressWarnings("unchecked")
+        ArrayDeque<Example>[] queues = new ArrayDeque[learners.length];
+        this.trainInstances = queues;
         
         for(int i = 0; i < learners.length; i++) {
-            this.trainInstances.add(new LinkedList<Example>());
+            this.trainInstances[i] = new ArrayDeque<Example>();
         }
         File dumpFile = this.dumpFileOption.getFile();
         PrintStream immediateResultStream = null;
@@ -179,7 +184,8 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
 
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ResourceMeter resourceMeter = new ResourceMeter();
+        long evaluateStartTime = resourceMeter.getNanoCPUTime();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
         
@@ -210,18 +216,19 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
                         break;
                 }
                 if (k > 0) {
-                    this.trainInstances.get(i).addLast(trainInst);
+                    this.trainInstances[i].addLast(trainInst);
                 }
-                if(this.delayLengthOption.getValue() < this.trainInstances.get(i).size()) {
-                    Example trainInstI = this.trainInstances.get(i).removeFirst();
+                if(this.delayLengthOption.getValue() < this.trainInstances[i].size()) {
+                    Example trainInstI = this.trainInstances[i].removeFirst();
                     learners[i].trainOnInstance(trainInstI);
                 }
             }
             
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                     || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                long evaluateTime = resourceMeter.getNanoCPUTime();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                double wallClockTime = TimingUtils.nanoTimeToSeconds(resourceMeter.getNanoWallClockTime());
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
 
                 for (int i = 0; i < learners.length; i++) {
@@ -244,7 +251,16 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
                                         time),
                                 new Measurement(
                                         "model cost (RAM-Hours)",
-                                        RAMHours)
+                                        RAMHours),
+                                new Measurement(
+                                        "evaluation time (wall-clock seconds)",
+                                        wallClockTime),
+                                new Measurement(
+                                        "allocated bytes",
+                                        resourceMeter.getAllocatedBytes()),
+                                new Measurement(
+                                        "throughput (instances per second)",
+                                        instancesProcessed / wallClockTime)
                         }, evaluators)));
 
                 if (immediateResultStream != null) {
@@ -274,7 +290,7 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(resourceMeter.getNanoCPUTime()
                         - evaluateStartTime);
             }
         }
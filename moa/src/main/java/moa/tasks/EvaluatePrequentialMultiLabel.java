@@ -32,6 +32,7 @@ import moa.classifiers.rules.multilabel.functions.MultiLabelNaiveBayes;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.ResourceMeter;
 import moa.core.TimingUtils;
 import moa.evaluation.*;
 import moa.learners.Learner;
@@ -189,7 +190,8 @@ public class EvaluatePrequentialMultiLabel extends MultiLabelMainTask {
         }
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ResourceMeter resourceMeter = new ResourceMeter();
+        long evaluateStartTime = resourceMeter.getNanoCPUTime();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
         while (stream.hasMoreInstances()
@@ -225,8 +227,9 @@ public class EvaluatePrequentialMultiLabel extends MultiLabelMainTask {
             instancesProcessed++;
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                     || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                long evaluateTime = resourceMeter.getNanoCPUTime();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                double wallClockTime = TimingUtils.nanoTimeToSeconds(resourceMeter.getNanoWallClockTime());
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
                 double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
                 RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
@@ -244,7 +247,16 @@ public class EvaluatePrequentialMultiLabel extends MultiLabelMainTask {
                             time),
                             new Measurement(
                             "model cost (RAM-Hours)",
-                            RAMHours)
+                            RAMHours),
+                            new Measurement(
+                            "evaluation time (wall-clock seconds)",
+                            wallClockTime),
+                            new Measurement(
+                            "allocated bytes",
+                            resourceMeter.getAllocatedBytes()),
+                            new Measurement(
+                            "throughput (instances per second)",
+                            instancesProcessed / wallClockTime)
                         },
                         evaluator, learner));
 
@@ -275,7 +287,7 @@ public class EvaluatePrequentialMultiLabel extends MultiLabelMainTask {
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(resourceMeter.getNanoCPUTime()
                         - evaluateStartTime);
             }
         }
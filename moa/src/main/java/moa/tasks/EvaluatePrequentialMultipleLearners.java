@@ -0,0 +1,591 @@
+/*
+ *    EvaluatePrequentialMultipleLearners.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import moa.classifiers.MultiClassClassifier;
+import moa.core.Example;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.core.ResourceMeter;
+import moa.core.TimingUtils;
+import moa.evaluation.LearningCurve;
+import moa.evaluation.LearningEvaluation;
+import moa.evaluation.LearningPerformanceEvaluator;
+import moa.learners.Learner;
+import moa.options.ClassOption;
+import moa.streams.ExampleStream;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.ListOption;
+import com.github.javacliparser.Option;
+
+/**
+ * Task for evaluating several classifiers on the same stream by testing then
+ * training with each example in sequence, reading the stream only once.
+ *
+ * The examples are read in blocks into a bounded ring buffer, from which
+ * every worker thread reads all the blocks. Each learner is trained by one
+ * worker thread and has its own copy of the evaluator, its own learning curve
+ * and its own dump file. The learners receive the same example objects, so
+ * they must not modify them.
+ *
+ * The result is one learning curve with the measurements of all the learners,
+ * prefixed by the number of the learner.
+ */
+public class EvaluatePrequentialMultipleLearners extends ClassificationMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Evaluates several classifiers on the same stream by testing then training with each example in sequence, reading the stream once.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ListOption learnersOption = new ListOption("learners", 'l',
+            "Learners to train.",
+            new ClassOption("learner", ' ', "", MultiClassClassifier.class,
+            "trees.HoeffdingTree"),
+            new Option[]{
+                new ClassOption("", ' ', "", MultiClassClassifier.class,
+                "bayes.NaiveBayes"),
+                new ClassOption("", ' ', "", MultiClassClassifier.class,
+                "trees.HoeffdingTree")},
+            ',');
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to learn from.", ExampleStream.class,
+            "generators.RandomTreeGenerator");
+
+    public ClassOption evaluatorOption = new ClassOption("evaluator", 'e',
+            "Classification performance evaluation method, copied for each learner.",
+            LearningPerformanceEvaluator.class,
+            "WindowClassificationPerformanceEvaluator");
+
+    public IntOption instanceLimitOption = new IntOption("instanceLimit", 'i',
+            "Maximum number of instances to test/train on  (-1 = no limit).",
+            100000000, -1, Integer.MAX_VALUE);
+
+    public IntOption sampleFrequencyOption = new IntOption("sampleFrequency",
+            'f',
+            "How many instances between samples of the learning performance.",
+            100000, 1, Integer.MAX_VALUE);
+
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Number of worker threads training the learners (-1 = one per learner, 0 = do not use multithreading)",
+            -1, -1, Integer.MAX_VALUE);
+
+    public IntOption bufferSizeOption = new IntOption("bufferSize", 'b',
+            "Number of instances read ahead of the slowest learner.",
+            4096, 1, Integer.MAX_VALUE);
+
+    public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
+            "File to append intermediate csv results to, the number of the learner being added to its name.",
+            null, "csv", true);
+
+    /**
+     * Number of examples per block of the buffer.
+     */
+    protected static final int BLOCK_SIZE = 256;
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return LearningCurve.class;
+    }
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        ExampleStream stream = (ExampleStream) getPreparedClassOption(this.streamOption);
+        LearningPerformanceEvaluator evaluator = (LearningPerformanceEvaluator) getPreparedClassOption(this.evaluatorOption);
+        Option[] learnerOptions = this.learnersOption.getList();
+        LearnerEvaluation[] evaluations = new LearnerEvaluation[learnerOptions.length];
+        File dumpFile = this.dumpFileOption.getFile();
+        for (int i = 0; i < learnerOptions.length; i++) {
+            monitor.setCurrentActivity("Materializing learner " + (i + 1)
+                    + "...", -1.0);
+            Learner learner = (Learner) ((ClassOption) learnerOptions[i]).materializeObject(monitor, repository);
+            if (monitor.taskShouldAbort()) {
+                return null;
+            }
+            monitor.setCurrentActivity("Preparing learner " + (i + 1) + "...",
+                    -1.0);
+            learner.prepareForUse(monitor, repository);
+            if (monitor.taskShouldAbort()) {
+                return null;
+            }
+            learner.setModelContext(stream.getHeader());
+            evaluations[i] = new LearnerEvaluation(learner,
+                    (LearningPerformanceEvaluator) evaluator.copy(),
+                    this.sampleFrequencyOption.getValue(),
+                    dumpFile == null ? null : getLearnerDumpFile(dumpFile, i + 1));
+        }
+        int numberOfJobs = this.numberOfJobsOption.getValue();
+        if ((numberOfJobs == -1) || (numberOfJobs > evaluations.length)) {
+            numberOfJobs = evaluations.length;
+        }
+        TimingUtils.enablePreciseTiming();
+        monitor.setCurrentActivity("Evaluating learners...", -1.0);
+        try {
+            boolean completed;
+            if (numberOfJobs == 0) {
+                completed = evaluateSequentially(stream, evaluations, monitor);
+            } else {
+                completed = evaluateInParallel(stream, evaluations, numberOfJobs, monitor);
+            }
+            if (!completed) {
+                return null;
+            }
+        } finally {
+            for (LearnerEvaluation evaluation : evaluations) {
+                evaluation.closeDumpFile();
+            }
+        }
+        return getCombinedLearningCurve(evaluations);
+    }
+
+    /**
+     * Reads the stream and trains all the learners in the current thread.
+     * Returns false if the task is aborted.
+     */
+    protected boolean evaluateSequentially(ExampleStream stream,
+            LearnerEvaluation[] evaluations, TaskMonitor monitor) {
+        int maxInstances = this.instanceLimitOption.getValue();
+        long instancesRead = 0;
+        Example[] block = new Example[BLOCK_SIZE];
+        while (stream.hasMoreInstances()
+                && ((maxInstances < 0) || (instancesRead < maxInstances))) {
+            int size = 0;
+            while ((size < BLOCK_SIZE) && stream.hasMoreInstances()
+                    && ((maxInstances < 0) || (instancesRead < maxInstances))) {
+                block[size++] = stream.nextInstance();
+                instancesRead++;
+            }
+            for (LearnerEvaluation evaluation : evaluations) {
+                evaluation.processBlock(block, size);
+            }
+            if (!updateMonitor(stream, evaluations, instancesRead, size, monitor)) {
+                return false;
+            }
+        }
+        boolean streamEnded = !stream.hasMoreInstances();
+        for (LearnerEvaluation evaluation : evaluations) {
+            evaluation.finish(streamEnded);
+        }
+        return true;
+    }
+
+    /**
+     * Reads the stream in the current thread and trains the learners in
+     * worker threads. Returns false if the task is aborted.
+     */
+    protected boolean evaluateInParallel(ExampleStream stream,
+            LearnerEvaluation[] evaluations, int numberOfJobs, TaskMonitor monitor) {
+        int maxInstances = this.instanceLimitOption.getValue();
+        int numBlocks = Math.max(1, this.bufferSizeOption.getValue() / BLOCK_SIZE);
+        BroadcastBuffer buffer = new BroadcastBuffer(numBlocks, numberOfJobs);
+        List<Worker> workers = new ArrayList<Worker>();
+        for (int j = 0; j < numberOfJobs; j++) {
+            List<LearnerEvaluation> workerEvaluations = new ArrayList<LearnerEvaluation>();
+            for (int i = j; i < evaluations.length; i += numberOfJobs) {
+                workerEvaluations.add(evaluations[i]);
+            }
+            workers.add(new Worker(buffer, j, workerEvaluations));
+        }
+        // daemon threads, workers of an aborted task do not keep the JVM alive
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfJobs, ResourceMeter.threadFactory());
+        boolean completed = false;
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (Worker worker : workers) {
+                futures.add(executor.submit(worker));
+            }
+            long instancesRead = 0;
+            while (!buffer.isFailed() && stream.hasMoreInstances()
+                    && ((maxInstances < 0) || (instancesRead < maxInstances))) {
+                Example[] block = new Example[BLOCK_SIZE];
+                int size = 0;
+                while ((size < BLOCK_SIZE) && stream.hasMoreInstances()
+                        && ((maxInstances < 0) || (instancesRead < maxInstances))) {
+                    block[size++] = stream.nextInstance();
+                    instancesRead++;
+                }
+                buffer.publish(block, size);
+                if (!updateMonitor(stream, evaluations, instancesRead, size, monitor)) {
+                    buffer.fail();
+                    return false;
+                }
+            }
+            buffer.close(!stream.hasMoreInstances());
+            for (Future<Integer> future : futures) {
+                future.get();
+            }
+            completed = true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while evaluating the learners.", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            if (!completed) {
+                buffer.fail();
+            }
+            executor.shutdown();
+        }
+        return true;
+    }
+
+    /**
+     * Updates the monitor after reading a block. Returns false if the task
+     * is aborted.
+     */
+    protected boolean updateMonitor(ExampleStream stream, LearnerEvaluation[] evaluations,
+            long instancesRead, int blockSize, TaskMonitor monitor) {
+        if ((instancesRead / INSTANCES_BETWEEN_MONITOR_UPDATES)
+                == ((instancesRead - blockSize) / INSTANCES_BETWEEN_MONITOR_UPDATES)) {
+            return true;
+        }
+        if (monitor.taskShouldAbort()) {
+            return false;
+        }
+        int maxInstances = this.instanceLimitOption.getValue();
+        long estimatedRemainingInstances = stream.estimatedRemainingInstances();
+        if (maxInstances > 0) {
+            long maxRemaining = maxInstances - instancesRead;
+            if ((estimatedRemainingInstances < 0)
+                    || (maxRemaining < estimatedRemainingInstances)) {
+                estimatedRemainingInstances = maxRemaining;
+            }
+        }
+        monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
+                : (double) instancesRead
+                / (double) (instancesRead + estimatedRemainingInstances));
+        if (monitor.resultPreviewRequested()) {
+            monitor.setLatestResultPreview(getCombinedLearningCurve(evaluations));
+        }
+        return true;
+    }
+
+    /**
+     * Returns a learning curve with the samples taken by all the learners.
+     */
+    protected static LearningCurve getCombinedLearningCurve(LearnerEvaluation[] evaluations) {
+        LearningCurve learningCurve = new LearningCurve(
+                "learning evaluation instances");
+        List<List<Measurement[]>> samples = new ArrayList<List<Measurement[]>>();
+        int numSamples = Integer.MAX_VALUE;
+        for (LearnerEvaluation evaluation : evaluations) {
+            List<Measurement[]> learnerSamples = evaluation.getSamples();
+            samples.add(learnerSamples);
+            numSamples = Math.min(numSamples, learnerSamples.size());
+        }
+        for (int k = 0; k < numSamples; k++) {
+            List<Measurement> measurementList = new ArrayList<Measurement>();
+            for (int i = 0; i < samples.size(); i++) {
+                Measurement[] measurements = samples.get(i).get(k);
+                if (i == 0) {
+                    measurementList.add(measurements[0]);
+                }
+                for (int m = 1; m < measurements.length; m++) {
+                    measurementList.add(new Measurement("learner " + (i + 1)
+                            + ": " + measurements[m].getName(), measurements[m].getValue()));
+                }
+            }
+            learningCurve.insertEntry(new LearningEvaluation(
+                    measurementList.toArray(new Measurement[measurementList.size()])));
+        }
+        return learningCurve;
+    }
+
+    protected static File getLearnerDumpFile(File dumpFile, int learnerNumber) {
+        String name = dumpFile.getName();
+        int extension = name.lastIndexOf('.');
+        if (extension < 0) {
+            extension = name.length();
+        }
+        return new File(dumpFile.getParentFile(), name.substring(0, extension)
+                + "_" + learnerNumber + name.substring(extension));
+    }
+
+    /**
+     * Learner with its evaluator, learning curve and dump file.
+     */
+    protected static class LearnerEvaluation {
+
+        protected final Learner learner;
+
+        protected final LearningPerformanceEvaluator evaluator;
+
+        protected final int sampleFrequency;
+
+        protected final LearningCurve learningCurve = new LearningCurve(
+                "learning evaluation instances");
+
+        // Measurements of the samples taken, guarded by this
+        protected final List<Measurement[]> samples = new ArrayList<Measurement[]>();
+
+        protected File dumpFile;
+
+        protected PrintStream immediateResultStream;
+
+        protected long instancesProcessed;
+
+        protected long nanoCPUTime;
+
+        protected long lastSampleNanoCPUTime;
+
+        protected double RAMHours;
+
+        public LearnerEvaluation(Learner learner, LearningPerformanceEvaluator evaluator,
+                int sampleFrequency, File dumpFile) {
+            this.learner = learner;
+            this.evaluator = evaluator;
+            this.sampleFrequency = sampleFrequency;
+            this.dumpFile = dumpFile;
+        }
+
+        /**
+         * Tests then trains the learner on a block of examples.
+         */
+        @SuppressWarnings("unchecked")
+        public void processBlock(Example[] block, int size) {
+            long startTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+            for (int i = 0; i < size; i++) {
+                Example example = block[i];
+                double[] prediction = this.learner.getVotesForInstance(example);
+                this.evaluator.addResult(example, prediction);
+                this.learner.trainOnInstance(example);
+                this.instancesProcessed++;
+                if (this.instancesProcessed % this.sampleFrequency == 0) {
+                    this.nanoCPUTime += TimingUtils.getNanoCPUTimeOfCurrentThread() - startTime;
+                    takeSample();
+                    startTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                }
+            }
+            this.nanoCPUTime += TimingUtils.getNanoCPUTimeOfCurrentThread() - startTime;
+        }
+
+        /**
+         * Takes the last sample when the stream has ended, as
+         * EvaluatePrequential does.
+         */
+        public void finish(boolean streamEnded) {
+            if (streamEnded && (this.instancesProcessed % this.sampleFrequency != 0)) {
+                takeSample();
+            }
+        }
+
+        protected void takeSample() {
+            double timeIncrement = TimingUtils.nanoTimeToSeconds(this.nanoCPUTime - this.lastSampleNanoCPUTime);
+            double RAMHoursIncrement = this.learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+            RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
+            this.RAMHours += RAMHoursIncrement;
+            this.lastSampleNanoCPUTime = this.nanoCPUTime;
+            LearningEvaluation learningEvaluation = new LearningEvaluation(
+                    new Measurement[]{
+                        new Measurement(
+                        "learning evaluation instances",
+                        this.instancesProcessed),
+                        new Measurement(
+                        "evaluation time (cpu seconds)",
+                        TimingUtils.nanoTimeToSeconds(this.nanoCPUTime)),
+                        new Measurement(
+                        "model cost (RAM-Hours)",
+                        this.RAMHours)
+                    },
+                    this.evaluator, this.learner);
+            synchronized (this) {
+                this.samples.add(learningEvaluation.getMeasurements());
+            }
+            this.learningCurve.insertEntry(learningEvaluation);
+            if (this.dumpFile != null) {
+                if (this.learningCurve.numEntries() == 1) {
+                    try {
+                        this.immediateResultStream = new PrintStream(
+                                new FileOutputStream(this.dumpFile, this.dumpFile.exists()), true);
+                    } catch (Exception ex) {
+                        throw new RuntimeException(
+                                "Unable to open immediate result file: " + this.dumpFile, ex);
+                    }
+                    this.immediateResultStream.println(this.learningCurve.headerToString());
+                }
+                this.immediateResultStream.println(this.learningCurve.entryToString(this.learningCurve.numEntries() - 1));
+                this.immediateResultStream.flush();
+            }
+        }
+
+        public synchronized List<Measurement[]> getSamples() {
+            return new ArrayList<Measurement[]>(this.samples);
+        }
+
+        public void closeDumpFile() {
+            if (this.immediateResultStream != null) {
+                this.immediateResultStream.close();
+            }
+        }
+    }
+
+    /**
+     * Bounded ring of blocks of examples written by one thread and read
+     * entirely by each of several readers. A block is overwritten only after
+     * all the readers have released it.
+     */
+    protected static class BroadcastBuffer {
+
+        protected final Example[][] blocks;
+
+        protected final int[] blockSizes;
+
+        protected final long[] released;
+
+        protected long published;
+
+        protected boolean closed;
+
+        protected boolean streamEnded;
+
+        protected boolean failed;
+
+        public BroadcastBuffer(int numBlocks, int numReaders) {
+            this.blocks = new Example[numBlocks][];
+            this.blockSizes = new int[numBlocks];
+            this.released = new long[numReaders];
+        }
+
+        protected long minReleased() {
+            long min = Long.MAX_VALUE;
+            for (long count : this.released) {
+                min = Math.min(min, count);
+            }
+            return min;
+        }
+
+        /**
+         * Adds a block, waiting until there is room for it. Does nothing if
+         * the buffer failed.
+         */
+        public synchronized void publish(Example[] block, int size) throws InterruptedException {
+            while (!this.failed && (this.published - minReleased() >= this.blocks.length)) {
+                wait();
+            }
+            if (this.failed) {
+                return;
+            }
+            int slot = (int) (this.published % this.blocks.length);
+            this.blocks[slot] = block;
+            this.blockSizes[slot] = size;
+            this.published++;
+            notifyAll();
+        }
+
+        /**
+         * Returns the slot of the next block of a reader, waiting until it is
+         * published, or -1 if there are no more blocks.
+         */
+        public synchronized int take(int reader) throws InterruptedException {
+            while (!this.failed && !this.closed && (this.released[reader] == this.published)) {
+                wait();
+            }
+            if (this.failed || (this.released[reader] == this.published)) {
+                return -1;
+            }
+            return (int) (this.released[reader] % this.blocks.length);
+        }
+
+        public synchronized void release(int reader) {
+            this.released[reader]++;
+            notifyAll();
+        }
+
+        public synchronized void close(boolean streamEnded) {
+            this.closed = true;
+            this.streamEnded = streamEnded;
+            notifyAll();
+        }
+
+        public synchronized void fail() {
+            this.failed = true;
+            notifyAll();
+        }
+
+        public synchronized boolean isFailed() {
+            return this.failed;
+        }
+
+        public synchronized boolean isStreamEnded() {
+            return this.streamEnded;
+        }
+    }
+
+    /**
+     * Reads all the blocks of the buffer and trains its learners on them.
+     */
+    protected static class Worker implements Callable<Integer> {
+
+        private final BroadcastBuffer buffer;
+
+        private final int reader;
+
+        private final List<LearnerEvaluation> evaluations;
+
+        public Worker(BroadcastBuffer buffer, int reader, List<LearnerEvaluation> evaluations) {
+            this.buffer = buffer;
+            this.reader = reader;
+            this.evaluations = evaluations;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            boolean completed = false;
+            try {
+                int slot;
+                while ((slot = this.buffer.take(this.reader)) >= 0) {
+                    Example[] block = this.buffer.blocks[slot];
+                    int size = this.buffer.blockSizes[slot];
+                    for (LearnerEvaluation evaluation : this.evaluations) {
+                        evaluation.processBlock(block, size);
+                    }
+                    this.buffer.release(this.reader);
+                }
+                if (!this.buffer.isFailed()) {
+                    for (LearnerEvaluation evaluation : this.evaluations) {
+                        evaluation.finish(this.buffer.isStreamEnded());
+                    }
+                }
+                completed = true;
+            } finally {
+                if (!completed) {
+                    // stop the reader and the other workers
+                    this.buffer.fail();
+                }
+            }
+            return 0;
+        }
+    }
+}
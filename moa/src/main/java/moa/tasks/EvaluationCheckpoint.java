@@ -0,0 +1,174 @@
+/*
+ *    EvaluationCheckpoint.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import moa.core.ResourceMeter;
+import moa.core.SerializeUtils;
+import moa.evaluation.LearningCurve;
+import moa.evaluation.LearningPerformanceEvaluator;
+import moa.learners.Learner;
+import moa.streams.ExampleStream;
+
+/**
+ * State of an evaluation task that is saved periodically, so that the task
+ * can be resumed after it was stopped: the learner, the evaluator, the
+ * learning curve and the number of instances read from the stream.
+ *
+ * The stream itself is not saved. On resume, it is prepared again from its
+ * options and the instances already processed are skipped, so resuming
+ * gives the same results as an uninterrupted run for streams that replay
+ * the same instances, like generators with a fixed seed and files.
+ */
+public class EvaluationCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Options of the learner, stream and evaluator, to detect resuming another evaluation */
+    public String configuration;
+
+    public Learner learner;
+
+    public LearningPerformanceEvaluator evaluator;
+
+    public LearningCurve learningCurve;
+
+    public long instancesProcessed;
+
+    public double RAMHours;
+
+    public long cpuTime;
+
+    public long wallClockTime;
+
+    public EvaluationCheckpoint(String configuration, Learner learner,
+            LearningPerformanceEvaluator evaluator, LearningCurve learningCurve,
+            long instancesProcessed, double RAMHours, long cpuTime,
+            long wallClockTime) {
+        this.configuration = configuration;
+        this.learner = learner;
+        this.evaluator = evaluator;
+        this.learningCurve = learningCurve;
+        this.instancesProcessed = instancesProcessed;
+        this.RAMHours = RAMHours;
+        this.cpuTime = cpuTime;
+        this.wallClockTime = wallClockTime;
+    }
+
+    public static EvaluationCheckpoint readFromFile(File file) {
+        try {
+            return (EvaluationCheckpoint) SerializeUtils.readFromFile(file);
+        } catch (Exception ex) {
+            throw new RuntimeException("Unable to read checkpoint file: " + file, ex);
+        }
+    }
+
+    /**
+     * Reads the checkpoint to resume from, or returns null if the file does
+     * not exist.
+     */
+    public static EvaluationCheckpoint resume(File file, String configuration) {
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        EvaluationCheckpoint checkpoint = readFromFile(file);
+        if (!checkpoint.configuration.equals(configuration)) {
+            throw new RuntimeException("Checkpoint file " + file
+                    + " was saved by another evaluation: " + checkpoint.configuration);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Skips the instances of a new stream that were processed before the
+     * checkpoint.
+     */
+    public void skipProcessedInstances(ExampleStream stream) {
+        for (long i = 0; i < this.instancesProcessed && stream.hasMoreInstances(); i++) {
+            stream.nextInstance();
+        }
+    }
+
+    /**
+     * Writes checkpoints to a file with a background thread. The checkpoint
+     * is serialized to memory by the task thread, which then goes on while
+     * the bytes are written to disk. A checkpoint waits for the previous one
+     * to be written, so at most one is kept in memory.
+     */
+    public static class Writer {
+
+        protected File file;
+
+        protected ExecutorService executor;
+
+        protected Future<?> lastWrite;
+
+        public Writer(File file) {
+            this.file = file;
+            this.executor = Executors.newSingleThreadExecutor(
+                    runnable -> ResourceMeter.newThread(runnable, "Checkpoint writer"));
+        }
+
+        public void write(EvaluationCheckpoint checkpoint) {
+            waitForLastWrite();
+            final byte[] bytes;
+            try {
+                bytes = SerializeUtils.toByteArray(checkpoint);
+            } catch (IOException ex) {
+                throw new RuntimeException("Unable to serialize checkpoint.", ex);
+            }
+            this.lastWrite = this.executor.submit(() -> {
+                SerializeUtils.writeBytesToFile(this.file, bytes);
+                return null;
+            });
+        }
+
+        protected void waitForLastWrite() {
+            if (this.lastWrite == null) {
+                return;
+            }
+            try {
+                this.lastWrite.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                throw new RuntimeException("Unable to write checkpoint file: " + this.file, ex.getCause());
+            }
+            this.lastWrite = null;
+        }
+
+        /**
+         * Waits for the last checkpoint to be written and stops the thread.
+         */
+        public void close() {
+            try {
+                waitForLastWrite();
+            } finally {
+                this.executor.shutdown();
+            }
+        }
+    }
+}
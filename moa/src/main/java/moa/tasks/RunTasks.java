@@ -20,14 +20,40 @@
  */
 package moa.tasks;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import moa.core.ObjectRepository;
+import moa.core.Profiler;
+import moa.core.ResourceMeter;
 import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.CachedInstancesStream;
+import moa.streams.ExampleStream;
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
+import com.github.javacliparser.IntOption;
 import com.github.javacliparser.StringOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
 
 /**
  * Task for running several experiments modifying values of parameters.
  *
+ * The configurations are the values of the classifier parameter, or the
+ * combinations of values of all the parameters when grid parameters are
+ * given. They can be run at the same time, each one with its own copy of the
+ * task. With a shared stream, the stream is read once into memory and all the
+ * configurations read the same instances, which must not be modified by the
+ * learners.
+ *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @author Albert Bifet (abifet at cs dot waikato dot ac dot nz)
  * @version $Revision: 7 $
@@ -56,6 +82,21 @@ public class RunTasks extends AuxiliarMainTask {
     public FloatOption incrementValueOption = new FloatOption("incrementValue",
             'i', "Increment value", 0.1);
 
+    public StringOption gridParametersOption = new StringOption("gridParameters", 'g',
+            "Other classifier parameters to vary, as parameter:first:last:increment separated by commas.", "");
+
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Number of configurations to run at the same time (-1 = as much as possible, 0 = do not use multithreading). Ignored when profiling is enabled, since the tasks share the profiling counters.", 1, -1, Integer.MAX_VALUE);
+
+    public IntOption memoryBudgetOption = new IntOption("memoryBudget", 'm',
+            "Do not start a configuration while the used memory is above this number of megabytes and another configuration is running (0 = no limit).", 0, 0, Integer.MAX_VALUE);
+
+    public FlagOption sharedStreamOption = new FlagOption("sharedStream", 's',
+            "Read the stream of the task once into memory, up to its instance limit, and share it among all the configurations.");
+
+    public FlagOption separateDumpFilesOption = new FlagOption("separateDumpFiles", 'e',
+            "Write the results of each configuration to a dump file of its own, named after the parameter values. Always done when running several configurations at the same time.");
+
     @Override
     public Class<?> getTaskResultType() {
         return this.task.getTaskResultType();
@@ -65,27 +106,320 @@ public class RunTasks extends AuxiliarMainTask {
 
     @Override
     protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        Task template = (Task) getPreparedClassOption(this.taskOption);
+        this.task = template;
+        List<String[]> configurations = getConfigurations();
+        Instances sharedInstances = null;
+        if (this.sharedStreamOption.isSet()) {
+            sharedInstances = readSharedStream(template, monitor, repository);
+            if (sharedInstances == null) {
+                return null;
+            }
+        }
+        int numberOfJobs = this.numberOfJobsOption.getValue();
+        if (numberOfJobs == -1) {
+            numberOfJobs = Runtime.getRuntime().availableProcessors();
+        }
+        numberOfJobs = Math.min(numberOfJobs, configurations.size());
+        if (Profiler.ENABLED && numberOfJobs > 1) {
+            // Each task resets and reports the shared profiling counters
+            System.err.println("RunTasks: profiling is enabled, running the configurations one at a time.");
+            numberOfJobs = 1;
+        }
+        boolean separateDumpFiles = this.separateDumpFilesOption.isSet() || (numberOfJobs > 1);
         Object result = null;
+        if (numberOfJobs <= 1) {
+            for (String[] configuration : configurations) {
+                this.task = createTask(configuration, sharedInstances, separateDumpFiles);
+                //Run task
+                result = this.task.doTask(monitor, repository);
+                if (monitor.taskShouldAbort()) {
+                    return null;
+                }
+            }
+            return result;
+        }
+        // daemon threads, configurations still stopping after an abort do not keep the JVM alive
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfJobs, ResourceMeter.threadFactory());
+        try {
+            CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(executor);
+            Object[] results = new Object[configurations.size()];
+            int running = 0;
+            int completed = 0;
+            for (int i = 0; i < configurations.size(); i++) {
+                while ((running > 0) && ((running >= numberOfJobs) || isOverMemoryBudget())) {
+                    waitForConfiguration(completionService);
+                    running--;
+                    completed++;
+                    monitor.setCurrentActivity("Running configurations (" + completed
+                            + " of " + configurations.size() + " completed)...",
+                            (double) completed / configurations.size());
+                    if (monitor.taskShouldAbort()) {
+                        return null;
+                    }
+                }
+                Task configurationTask = createTask(configurations.get(i), sharedInstances, separateDumpFiles);
+                completionService.submit(new ConfigurationCallable(configurationTask, i, results,
+                        new ConfigurationMonitor(monitor), repository));
+                running++;
+            }
+            while (running > 0) {
+                waitForConfiguration(completionService);
+                running--;
+                completed++;
+                monitor.setCurrentActivity("Running configurations (" + completed
+                        + " of " + configurations.size() + " completed)...",
+                        (double) completed / configurations.size());
+            }
+            if (monitor.taskShouldAbort()) {
+                return null;
+            }
+            result = results[results.length - 1];
+        } finally {
+            executor.shutdown();
+        }
+        return result;
+    }
 
-        String commandString = this.taskOption.getValueAsCLIString();
+    /**
+     * Returns the parameter names and values of all the configurations, in
+     * the order of the nested loops over the parameters, the classifier
+     * parameter being the outermost loop.
+     */
+    protected List<String[]> getConfigurations() {
+        List<String> names = new ArrayList<String>();
+        List<List<Double>> values = new ArrayList<List<Double>>();
+        names.add(this.classifierParameterOption.getValue());
+        values.add(getValues(this.firstValueOption.getValue(),
+                this.lastValueOption.getValue(), this.incrementValueOption.getValue()));
+        String grid = this.gridParametersOption.getValue().trim();
+        if (grid.length() > 0) {
+            for (String parameter : grid.split(",")) {
+                String[] fields = parameter.trim().split(":");
+                if (fields.length != 4) {
+                    throw new IllegalArgumentException("Grid parameter " + parameter
+                            + " is not of the form parameter:first:last:increment");
+                }
+                names.add(fields[0]);
+                values.add(getValues(Double.parseDouble(fields[1]),
+                        Double.parseDouble(fields[2]), Double.parseDouble(fields[3])));
+            }
+        }
+        List<String[]> configurations = new ArrayList<String[]>();
+        configurations.add(new String[0]);
+        for (int p = 0; p < names.size(); p++) {
+            List<String[]> expanded = new ArrayList<String[]>();
+            for (String[] configuration : configurations) {
+                for (double value : values.get(p)) {
+                    String[] parameters = new String[configuration.length + 2];
+                    System.arraycopy(configuration, 0, parameters, 0, configuration.length);
+                    parameters[configuration.length] = names.get(p);
+                    parameters[configuration.length + 1] = formatValue(value);
+                    expanded.add(parameters);
+                }
+            }
+            configurations = expanded;
+        }
+        return configurations;
+    }
+
+    /**
+     * Formats whole numbers without decimals, so that they can be values of
+     * integer options.
+     */
+    protected static String formatValue(double value) {
+        if ((value == Math.rint(value)) && (Math.abs(value) < Integer.MAX_VALUE)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    protected static List<Double> getValues(double first, double last, double increment) {
+        if (increment <= 0.0) {
+            throw new IllegalArgumentException("The increment value must be positive.");
+        }
+        List<Double> values = new ArrayList<Double>();
         //for each possible value of the parameter
-        for (double valueParameter = this.firstValueOption.getValue();
-                valueParameter <= this.lastValueOption.getValue();
-                valueParameter += this.incrementValueOption.getValue()) {
-            //Add parameter
-            this.task = (Task) getPreparedClassOption(this.taskOption);
-            if (this.task instanceof EvaluatePrequential) {
-                String classifier = ((EvaluatePrequential) this.task).learnerOption.getValueAsCLIString();
-                ((EvaluatePrequential) this.task).learnerOption.setValueViaCLIString(classifier + " -" + classifierParameterOption.getValue() + " " + valueParameter);
+        for (double valueParameter = first; valueParameter <= last;
+                valueParameter += increment) {
+            values.add(valueParameter);
+        }
+        return values;
+    }
+
+    /**
+     * Creates a new task from the task option and sets the classifier
+     * parameters, the dump file and the shared stream of a configuration.
+     *
+     * @param parameters the parameter names and values, alternating
+     * @param sharedInstances the instances of the shared stream, or null
+     * @param separateDumpFile whether to add the parameter values to the name
+     * of the dump file
+     */
+    protected Task createTask(String[] parameters, Instances sharedInstances,
+            boolean separateDumpFile) {
+        Task task;
+        try {
+            task = (Task) ClassOption.cliStringToObject(
+                    this.taskOption.getValueAsCLIString(), Task.class, null);
+        } catch (Exception ex) {
+            throw new RuntimeException("Problem creating task: "
+                    + this.taskOption.getValueAsCLIString(), ex);
+        }
+        StringBuilder learnerParameters = new StringBuilder();
+        StringBuilder fileSuffix = new StringBuilder();
+        for (int i = 0; i < parameters.length; i += 2) {
+            learnerParameters.append(" -").append(parameters[i]).append(" ").append(parameters[i + 1]);
+            fileSuffix.append("_").append(parameters[i]).append(parameters[i + 1]);
+        }
+        //Add parameter
+        if (task instanceof EvaluatePrequential) {
+            EvaluatePrequential evaluation = (EvaluatePrequential) task;
+            String classifier = evaluation.learnerOption.getValueAsCLIString();
+            evaluation.learnerOption.setValueViaCLIString(classifier + learnerParameters);
+            if (sharedInstances != null) {
+                evaluation.streamOption.setCurrentObject(new CachedInstancesStream(sharedInstances));
             }
-            if (this.task instanceof EvaluateInterleavedTestThenTrain) {
-                String classifier = ((EvaluateInterleavedTestThenTrain) this.task).learnerOption.getValueAsCLIString();
-                ((EvaluateInterleavedTestThenTrain) this.task).learnerOption.setValueViaCLIString(classifier + " -" + classifierParameterOption.getValue() + " " + valueParameter);
+            if (separateDumpFile) {
+                setDumpFileSuffix(evaluation.dumpFileOption, fileSuffix.toString());
             }
-            //Run task
-            result = this.task.doTask(monitor, repository);
-            //System.out.println(((AbstractOptionHandler) this.task).getCLICreationString(Task.class));
         }
-        return result;
+        if (task instanceof EvaluateInterleavedTestThenTrain) {
+            EvaluateInterleavedTestThenTrain evaluation = (EvaluateInterleavedTestThenTrain) task;
+            String classifier = evaluation.learnerOption.getValueAsCLIString();
+            evaluation.learnerOption.setValueViaCLIString(classifier + learnerParameters);
+            if (sharedInstances != null) {
+                evaluation.streamOption.setCurrentObject(new CachedInstancesStream(sharedInstances));
+            }
+            if (separateDumpFile) {
+                setDumpFileSuffix(evaluation.dumpFileOption, fileSuffix.toString());
+            }
+        }
+        return task;
+    }
+
+    protected static void setDumpFileSuffix(FileOption dumpFileOption, String suffix) {
+        String fileName = dumpFileOption.getValue();
+        if ((fileName == null) || (fileName.length() == 0)) {
+            return;
+        }
+        int extension = fileName.lastIndexOf('.');
+        if (extension <= Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\'))) {
+            extension = fileName.length();
+        }
+        dumpFileOption.setValue(fileName.substring(0, extension) + suffix
+                + fileName.substring(extension));
+    }
+
+    /**
+     * Reads the stream of the task into memory, up to the instance limit of
+     * the task. Returns null if the task is aborted.
+     */
+    protected Instances readSharedStream(Task template, TaskMonitor monitor,
+            ObjectRepository repository) {
+        ClassOption streamOption;
+        int instanceLimit;
+        if (template instanceof EvaluatePrequential) {
+            streamOption = ((EvaluatePrequential) template).streamOption;
+            instanceLimit = ((EvaluatePrequential) template).instanceLimitOption.getValue();
+        } else if (template instanceof EvaluateInterleavedTestThenTrain) {
+            streamOption = ((EvaluateInterleavedTestThenTrain) template).streamOption;
+            instanceLimit = ((EvaluateInterleavedTestThenTrain) template).instanceLimitOption.getValue();
+        } else {
+            throw new IllegalArgumentException("A shared stream needs an EvaluatePrequential or EvaluateInterleavedTestThenTrain task.");
+        }
+        ExampleStream stream = (ExampleStream) ((ClassOption) streamOption.copy()).materializeObject(monitor, repository);
+        if (stream instanceof OptionHandler) {
+            ((OptionHandler) stream).prepareForUse(monitor, repository);
+        }
+        if ((instanceLimit < 0) && (stream.estimatedRemainingInstances() < 0)) {
+            throw new IllegalArgumentException("A shared stream needs an instance limit for streams of unknown length.");
+        }
+        Instances instances = new Instances(stream.getHeader(), 0);
+        monitor.setCurrentActivity("Reading shared stream...", -1.0);
+        while (((instanceLimit < 0) || (instances.numInstances() < instanceLimit))
+                && stream.hasMoreInstances()) {
+            instances.add((Instance) stream.nextInstance().getData());
+            if (instances.numInstances() % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                if (monitor.taskShouldAbort()) {
+                    return null;
+                }
+            }
+        }
+        return instances;
+    }
+
+    protected boolean isOverMemoryBudget() {
+        long budget = this.memoryBudgetOption.getValue() * 1024L * 1024L;
+        if (budget == 0) {
+            return false;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        if (runtime.totalMemory() - runtime.freeMemory() <= budget) {
+            return false;
+        }
+        // the used memory includes garbage, check again after collecting it
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory() > budget;
+    }
+
+    protected static void waitForConfiguration(CompletionService<Integer> completionService) {
+        try {
+            completionService.take().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a configuration.", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Runs the task of a configuration and stores its result.
+     */
+    protected static class ConfigurationCallable implements Callable<Integer> {
+
+        private final Task task;
+
+        private final int index;
+
+        private final Object[] results;
+
+        private final TaskMonitor monitor;
+
+        private final ObjectRepository repository;
+
+        public ConfigurationCallable(Task task, int index, Object[] results,
+                TaskMonitor monitor, ObjectRepository repository) {
+            this.task = task;
+            this.index = index;
+            this.results = results;
+            this.monitor = monitor;
+            this.repository = repository;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            this.results[this.index] = this.task.doTask(this.monitor, this.repository);
+            return 0;
+        }
+    }
+
+    /**
+     * Monitor of a configuration run at the same time as others, which only
+     * passes on the requests to abort the task.
+     */
+    protected static class ConfigurationMonitor extends NullMonitor {
+
+        protected final TaskMonitor parent;
+
+        public ConfigurationMonitor(TaskMonitor parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public boolean taskShouldAbort() {
+            return this.parent.taskShouldAbort();
+        }
     }
 }
@@ -22,6 +22,7 @@ package moa.tasks;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import moa.core.ObjectRepository;
+import moa.core.ResourceMeter;
 import moa.core.TimingUtils;
 
 /**
@@ -51,6 +52,10 @@ public class TaskThread extends Thread {
 
     protected long taskEndTime;
 
+    // Measures the task thread and the threads it starts, such as the worker
+    // threads of parallel learners
+    protected volatile ResourceMeter resourceMeter;
+
     protected double latestPreviewGrabTime = 0.0;
 
     CopyOnWriteArraySet<TaskCompletionListener> completionListeners = new CopyOnWriteArraySet<TaskCompletionListener>();
@@ -70,7 +75,8 @@ public class TaskThread extends Thread {
     @Override
     public void run() {
         TimingUtils.enablePreciseTiming();
-        this.taskStartTime = TimingUtils.getNanoCPUTimeOfThread(getId());
+        this.resourceMeter = new ResourceMeter();
+        this.taskStartTime = this.resourceMeter.getNanoCPUTime();
         try {
             this.currentStatus = Status.RUNNING;
             this.finalResult = this.runningTask.doTask(this.taskMonitor,
@@ -81,7 +87,7 @@ public class TaskThread extends Thread {
             this.currentStatus = Status.FAILED;
             this.finalResult = new FailedTaskReport(ex);
         }
-        this.taskEndTime = TimingUtils.getNanoCPUTimeOfThread(getId());
+        this.taskEndTime = this.resourceMeter.getNanoCPUTime();
         fireTaskCompleted();
         this.taskMonitor.setLatestResultPreview(null); // free preview memory
     }
@@ -116,8 +122,12 @@ public class TaskThread extends Thread {
             secondsElapsed = TimingUtils.nanoTimeToSeconds(this.taskEndTime
                     - this.taskStartTime);
         } else {
-            secondsElapsed = TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfThread(getId())
-                    - this.taskStartTime);
+            // Not set yet when the task is paused or cancelled before it runs
+            ResourceMeter meter = this.resourceMeter;
+            if (meter != null) {
+                secondsElapsed = TimingUtils.nanoTimeToSeconds(meter.getNanoCPUTime()
+                        - this.taskStartTime);
+            }
         }
         return secondsElapsed > 0.0 ? secondsElapsed : 0.0;
     }
@@ -23,7 +23,12 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import moa.classifiers.ParallelUtils;
 import moa.core.ObjectRepository;
 import moa.options.ClassOption;
 import com.github.javacliparser.FileOption;
@@ -32,6 +37,7 @@ import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.InstanceImpl;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import moa.streams.InstanceStream;
+import moa.streams.PartitionableStream;
 
 /**
  * Task to output a stream to an ARFF file
@@ -62,6 +68,14 @@ public class WriteStreamToARFFFile extends AuxiliarMainTask {
     public FlagOption suppressHeaderOption = new FlagOption("suppressHeader",
             'h', "Suppress header from output.");
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Number of threads generating partitions of the stream, for streams that can be partitioned (-1 = number of processors).",
+            1, -1, Integer.MAX_VALUE);
+
+    public IntOption partitionSizeOption = new IntOption("partitionSize", 'p',
+            "Number of instances in each partition generated by a thread.",
+            100000, 1, Integer.MAX_VALUE);
+
     @Override
     protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
         InstanceStream stream = (InstanceStream) getPreparedClassOption(this.streamOption);
@@ -74,12 +88,18 @@ public class WriteStreamToARFFFile extends AuxiliarMainTask {
                     w.write(stream.getHeader().toString());
                     w.write("\n");
                 }
-                int numWritten = 0;
-                while ((numWritten < this.maxInstancesOption.getValue())
-                        && stream.hasMoreInstances()) {
-                    w.write(stream.nextInstance().getData().toString());
-                    w.write("\n");
-                    numWritten++;
+                int numberOfJobs = ParallelUtils.numberOfJobs(this.numberOfJobsOption.getValue());
+                if (numberOfJobs > 1 && stream instanceof PartitionableStream
+                        && ((PartitionableStream) stream).isPartitionable()) {
+                    writePartitions((PartitionableStream) stream, w, numberOfJobs);
+                } else {
+                    int numWritten = 0;
+                    while ((numWritten < this.maxInstancesOption.getValue())
+                            && stream.hasMoreInstances()) {
+                        w.write(stream.nextInstance().getData().toString());
+                        w.write("\n");
+                        numWritten++;
+                    }
                 }
                 w.close();
             } catch (Exception ex) {
@@ -91,6 +111,63 @@ public class WriteStreamToARFFFile extends AuxiliarMainTask {
         throw new IllegalArgumentException("No destination file to write to.");
     }
 
+    /**
+     * Generates consecutive partitions of the stream in parallel, each thread
+     * skipping its copy of the stream to the start of its partitions, and
+     * writes them in order. At most two partitions per thread are kept in
+     * memory.
+     */
+    protected void writePartitions(final PartitionableStream stream, Writer w,
+            int numberOfJobs) throws Exception {
+        final ThreadLocal<PartitionGenerator> generators = ThreadLocal.withInitial(
+                () -> new PartitionGenerator((PartitionableStream) stream.copy()));
+        ExecutorService executor = ParallelUtils.newExecutor(numberOfJobs);
+        try {
+            long numInstances = this.maxInstancesOption.getValue();
+            int partitionSize = this.partitionSizeOption.getValue();
+            Deque<Future<String>> partitions = new ArrayDeque<Future<String>>();
+            long next = 0;
+            while (next < numInstances || !partitions.isEmpty()) {
+                // Partitions are taken in order, so each thread only skips forward
+                while (next < numInstances && partitions.size() < 2 * numberOfJobs) {
+                    final long start = next;
+                    final int size = (int) Math.min(partitionSize, numInstances - next);
+                    partitions.add(executor.submit(() -> generators.get().generate(start, size)));
+                    next += size;
+                }
+                String partition = partitions.poll().get();
+                w.write(partition);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected static class PartitionGenerator {
+
+        protected PartitionableStream stream;
+
+        // Index of the next instance of the stream
+        protected long position;
+
+        public PartitionGenerator(PartitionableStream stream) {
+            this.stream = stream;
+        }
+
+        public String generate(long start, int size) {
+            this.stream.skipInstances(start - this.position);
+            StringBuilder sb = new StringBuilder();
+            int numGenerated = 0;
+            while (numGenerated < size && this.stream.hasMoreInstances()) {
+                sb.append(this.stream.nextInstance().getData().toString());
+                sb.append('\n');
+                numGenerated++;
+            }
+            this.position = start + numGenerated;
+            return sb.toString();
+        }
+    }
+
     @Override
     public Class<?> getTaskResultType() {
         return String.class;
@@ -0,0 +1,142 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+
+package com.yahoo.labs.samoa.instances;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the compact instance data with DenseInstanceData on random
+ * sequences of setValue, deleteAttributeAt, insertAttributeAt and copy.
+ */
+public class CompactInstanceDataTest {
+
+	// Codes, their limits, and values stored outside the codes
+	private static final double[] VALUES = {0, 1, 2, 3, 7, 253, 254, 255, -1, 0.5,
+		Double.NaN, -0.0, 1e10, 0.1};
+
+	private static final int NUM_SEQUENCES = 2000;
+
+	private static final int NUM_OPERATIONS = 20;
+
+	private interface Factory {
+		InstanceData create(double[] values, Random random);
+	}
+
+	private static void assertSameData(String message, InstanceData expected,
+			InstanceData actual, boolean rounded) {
+		assertEquals(message, expected.numAttributes(), actual.numAttributes());
+		double[] array = actual.toDoubleArray();
+		double[] sparse = new double[actual.numAttributes()];
+		for (int k = 0; k < actual.numValues(); k++) {
+			sparse[actual.index(k)] = actual.valueSparse(k);
+			assertEquals(message, Double.isNaN(actual.valueSparse(k)), actual.isMissingSparse(k));
+		}
+		for (int i = 0; i < expected.numAttributes(); i++) {
+			double value = rounded ? (float) expected.value(i) : expected.value(i);
+			assertEquals(message + " value " + i, value, actual.value(i), 0.0);
+			assertEquals(message + " array " + i, value, array[i], 0.0);
+			assertEquals(message + " sparse " + i, value, sparse[i], 0.0);
+			assertEquals(message + " missing " + i, expected.isMissing(i), actual.isMissing(i));
+		}
+	}
+
+	private static void checkRandomOperations(Factory factory, boolean rounded) {
+		Random random = new Random(1);
+		for (int sequence = 0; sequence < NUM_SEQUENCES; sequence++) {
+			int numAttributes = 1 + random.nextInt(12);
+			double[] values = new double[numAttributes];
+			for (int i = 0; i < numAttributes; i++) {
+				values[i] = random.nextInt(3) == 0 ? 0 : VALUES[random.nextInt(VALUES.length)];
+			}
+			InstanceData expected = new DenseInstanceData(values.clone());
+			InstanceData actual = factory.create(values.clone(), random);
+			assertSameData("sequence " + sequence, expected, actual, rounded);
+			for (int operation = 0; operation < NUM_OPERATIONS; operation++) {
+				String message = "sequence " + sequence + " operation " + operation;
+				int type = random.nextInt(4);
+				if (type < 2) {
+					int index = random.nextInt(expected.numAttributes());
+					double value = VALUES[random.nextInt(VALUES.length)];
+					expected.setValue(index, value);
+					actual.setValue(index, value);
+				} else if (type == 2 && expected.numAttributes() > 1) {
+					int index = random.nextInt(expected.numAttributes());
+					expected.deleteAttributeAt(index);
+					actual.deleteAttributeAt(index);
+				} else if (type == 3) {
+					int index = random.nextInt(expected.numAttributes() + 1);
+					expected.insertAttributeAt(index);
+					actual.insertAttributeAt(index);
+				}
+				InstanceData copy = actual.copy();
+				assertSameData(message, expected, actual, rounded);
+				assertSameData(message + " copy", expected, copy, rounded);
+				// Later operations run on copies too
+				actual = random.nextBoolean() ? copy : actual;
+			}
+		}
+	}
+
+	@Test
+	public void testByteDenseInstanceData() {
+		checkRandomOperations(new Factory() {
+			@Override
+			public InstanceData create(double[] values, Random random) {
+				return new ByteDenseInstanceData(values);
+			}
+		}, false);
+	}
+
+	@Test
+	public void testFloatDenseInstanceData() {
+		checkRandomOperations(new Factory() {
+			@Override
+			public InstanceData create(double[] values, Random random) {
+				return new FloatDenseInstanceData(values);
+			}
+		}, true);
+	}
+
+	@Test
+	public void testFloatSparseInstanceData() {
+		checkRandomOperations(new Factory() {
+			@Override
+			public InstanceData create(double[] values, Random random) {
+				// Non-zero values, and some explicit zeros
+				List<Integer> indices = new ArrayList<Integer>();
+				for (int i = 0; i < values.length; i++) {
+					if (values[i] != 0 || random.nextInt(4) == 0) {
+						indices.add(i);
+					}
+				}
+				int[] indexValues = new int[indices.size()];
+				double[] attributeValues = new double[indices.size()];
+				for (int k = 0; k < indexValues.length; k++) {
+					indexValues[k] = indices.get(k);
+					attributeValues[k] = values[indexValues[k]];
+				}
+				return new FloatSparseInstanceData(attributeValues, indexValues, values.length);
+			}
+		}, true);
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ *    ChangeDetectorPoolTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.driftdetection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that a ChangeDetectorPool gives the same output as one change
+ * detector per key, while keys are added, removed, added again and evicted.
+ */
+public class ChangeDetectorPoolTest {
+
+	private static final int NUM_KEYS = 20;
+
+	private static final int NUM_INPUTS = 40000;
+
+	/**
+	 * Records the keys reported by a pool.
+	 */
+	private static class RecordingListener implements ChangeDetectorPool.Listener {
+
+		List<Long> changes = new ArrayList<Long>();
+
+		List<Long> warnings = new ArrayList<Long>();
+
+		@Override
+		public void changeDetected(long key) {
+			this.changes.add(key);
+		}
+
+		@Override
+		public void warningDetected(long key) {
+			this.warnings.add(key);
+		}
+	}
+
+	private static ChangeDetector newDetector(ChangeDetector prototype) {
+		ChangeDetector detector = prototype.copy();
+		detector.resetLearning();
+		return detector;
+	}
+
+	/**
+	 * Error indicators whose rate rises from 0.1 to 0.6 halfway through the
+	 * stream, so that every detector detects change.
+	 */
+	private static double nextValue(Random random, int i) {
+		double rate = i < NUM_INPUTS / 2 ? 0.1 : 0.6;
+		return random.nextDouble() < rate ? 1.0 : 0.0;
+	}
+
+	/**
+	 * Feeds the same random values to a pool and to one detector per key,
+	 * removing random keys from both now and then, and compares their
+	 * outputs. With untilFirstChange, a key is only compared until the first
+	 * change of its detector.
+	 *
+	 * @return the number of changes detected
+	 */
+	private static int compareWithDetectorPerKey(ChangeDetector prototype, boolean untilFirstChange) {
+		ChangeDetectorPool pool = ChangeDetectorPool.newPool(prototype);
+		RecordingListener listener = new RecordingListener();
+		pool.setListener(listener);
+		Map<Long, ChangeDetector> detectors = new HashMap<Long, ChangeDetector>();
+		Map<Long, Boolean> changed = new HashMap<Long, Boolean>();
+		Random random = new Random(1);
+		int numChanges = 0;
+		for (int i = 0; i < NUM_INPUTS; i++) {
+			long key = random.nextInt(NUM_KEYS) * 1000003L;
+			if (random.nextInt(500) == 0) {
+				assertEquals(detectors.containsKey(key), pool.remove(key));
+				detectors.remove(key);
+				changed.remove(key);
+				assertFalse(pool.contains(key));
+				assertEquals(detectors.size(), pool.size());
+				continue;
+			}
+			double value = nextValue(random, i);
+			ChangeDetector detector = detectors.get(key);
+			if (detector == null) {
+				detector = newDetector(prototype);
+				detectors.put(key, detector);
+				changed.put(key, false);
+			}
+			boolean wasWarningZone = detector.getWarningZone();
+			detector.input(value);
+			listener.changes.clear();
+			listener.warnings.clear();
+			boolean poolChange = pool.input(key, value);
+			if (untilFirstChange && changed.get(key)) {
+				continue;
+			}
+			String message = prototype.getClass().getSimpleName() + " input " + i;
+			assertEquals(message, detector.getChange(), poolChange);
+			assertEquals(message, detector.getChange() ? 1 : 0, listener.changes.size());
+			boolean warning = !detector.getChange() && detector.getWarningZone() && !wasWarningZone;
+			assertEquals(message, warning ? 1 : 0, listener.warnings.size());
+			assertEquals(message, detector.getEstimation(), pool.getEstimation(key), 0.0);
+			if (poolChange) {
+				numChanges++;
+				changed.put(key, true);
+			}
+		}
+		assertEquals(detectors.size(), pool.size());
+		return numChanges;
+	}
+
+	@Test
+	public void testArrayPoolsMatchDetectorPerKey() {
+		assertTrue(compareWithDetectorPerKey(new DDM(), false) > 0);
+		assertTrue(compareWithDetectorPerKey(new PageHinkleyDM(), false) > 0);
+		assertTrue(compareWithDetectorPerKey(new CusumDM(), false) > 0);
+	}
+
+	@Test
+	public void testCopyPoolMatchesDetectorPerKey() {
+		assertTrue(compareWithDetectorPerKey(new EDDM(), false) > 0);
+	}
+
+	/**
+	 * ADWINChangeDetector keeps its change flag set after its first change,
+	 * while the pool reports each change of the window once, like the
+	 * detector does for its first change. Keys are therefore compared until
+	 * their first change; the estimations are compared throughout in
+	 * testADWINEstimations.
+	 */
+	@Test
+	public void testADWINPoolMatchesDetectorPerKey() {
+		assertTrue(compareWithDetectorPerKey(new ADWINChangeDetector(), true) > 0);
+	}
+
+	@Test
+	public void testADWINEstimations() {
+		ChangeDetector prototype = new ADWINChangeDetector();
+		ChangeDetectorPool pool = ChangeDetectorPool.newPool(prototype);
+		Map<Long, ChangeDetector> detectors = new HashMap<Long, ChangeDetector>();
+		Random random = new Random(2);
+		for (int i = 0; i < NUM_INPUTS; i++) {
+			long key = random.nextInt(NUM_KEYS);
+			double value = nextValue(random, i);
+			ChangeDetector detector = detectors.get(key);
+			if (detector == null) {
+				detector = newDetector(prototype);
+				detectors.put(key, detector);
+			}
+			detector.input(value);
+			pool.input(key, value);
+			assertEquals(detector.getEstimation(), pool.getEstimation(key), 0.0);
+		}
+	}
+
+	@Test
+	public void testRemoveThenReinsert() {
+		ChangeDetectorPool pool = ChangeDetectorPool.newPool(new PageHinkleyDM());
+		for (int i = 0; i < 100; i++) {
+			pool.input(7, 5.0);
+			pool.input(8, 1.0);
+		}
+		assertEquals(5.0, pool.getEstimation(7), 1e-9);
+		assertTrue(pool.remove(7));
+		assertFalse(pool.remove(7));
+		assertFalse(pool.contains(7));
+		assertTrue(Double.isNaN(pool.getEstimation(7)));
+		assertEquals(1, pool.size());
+		// The key starts again from a new detector
+		pool.input(7, 2.0);
+		assertTrue(pool.contains(7));
+		assertEquals(2, pool.size());
+		ChangeDetector detector = newDetector(new PageHinkleyDM());
+		detector.input(2.0);
+		assertEquals(detector.getEstimation(), pool.getEstimation(7), 0.0);
+		assertEquals(1.0, pool.getEstimation(8), 1e-9);
+	}
+
+	@Test
+	public void testTableGrowth() {
+		ChangeDetectorPool pool = ChangeDetectorPool.newPool(new CusumDM());
+		int numKeys = 10000;
+		for (int k = 0; k < numKeys; k++) {
+			// Keys with the same low bits, so that they share hash slots
+			pool.input((long) k << 20, k);
+			pool.input((long) k << 20, k);
+		}
+		assertEquals(numKeys, pool.size());
+		for (int k = 0; k < numKeys; k++) {
+			assertEquals(k, pool.getEstimation((long) k << 20), 0.0);
+		}
+		// Remove every other key and check that the others are still found
+		for (int k = 0; k < numKeys; k += 2) {
+			assertTrue(pool.remove((long) k << 20));
+		}
+		assertEquals(numKeys / 2, pool.size());
+		for (int k = 0; k < numKeys; k++) {
+			assertEquals(k % 2 == 1, pool.contains((long) k << 20));
+		}
+		for (int k = 1; k < numKeys; k += 2) {
+			assertEquals(k, pool.getEstimation((long) k << 20), 0.0);
+		}
+		assertEquals(2L * numKeys, pool.getNumInputs());
+	}
+
+	@Test
+	public void testIdleKeyEviction() {
+		ChangeDetectorPool pool = ChangeDetectorPool.newPool(new DDM());
+		pool.setMaxIdleInputs(100);
+		pool.input(1, 0.0);
+		for (int i = 0; i < 199; i++) {
+			pool.input(2, 0.0);
+			assertTrue(pool.contains(2));
+		}
+		// At most twice maxIdleInputs after its last input
+		assertFalse(pool.contains(1));
+		assertEquals(1, pool.size());
+		pool.setMaxIdleInputs(0);
+		for (int i = 0; i < 1000; i++) {
+			pool.input(3, 0.0);
+		}
+		assertTrue(pool.contains(2));
+		assertEquals(1, pool.evictIdleKeys(100));
+		assertFalse(pool.contains(2));
+		assertTrue(pool.contains(3));
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * SAMkNNTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers.lazy;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import moa.classifiers.AbstractClassifierTestCase;
+import moa.classifiers.Classifier;
+import moa.core.Example;
+import moa.evaluation.BasicClassificationPerformanceEvaluator;
+import moa.evaluation.LearningPerformanceEvaluator;
+import static moa.test.MoaTestCase.runTest;
+
+/**
+ * Tests the SAMkNN classifier. The data has concept drift and the memories
+ * are small, so that the short-term memory shrinks and the long-term memory
+ * is cleaned and clustered. The reference was created with the implementation
+ * that kept the memories in Instances, before they were stored in primitive
+ * buffers.
+ */
+public class SAMkNNTest
+  extends AbstractClassifierTestCase {
+
+  protected static final String DATA = "rbf_drift.arff";
+
+  /**
+   * Constructs the test case. Called by subclasses.
+   *
+   * @param name 	the name of the test
+   */
+  public SAMkNNTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    m_TestHelper.copyResourceToTmp(DATA);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    m_TestHelper.deleteFileFromTmp(DATA);
+
+    super.tearDown();
+  }
+
+  /**
+   * Returns the classifier setups to use in the regression test.
+   *
+   * @return		the setups
+   */
+  @Override
+  protected Classifier[] getRegressionClassifierSetups() {
+    SAMkNN recalculate = new SAMkNN();
+    recalculate.limitOption.setValue(300);
+    recalculate.minSTMSizeOption.setValue(30);
+    recalculate.recalculateSTMErrorOption.set();
+    SAMkNN smallLTM = new SAMkNN();
+    smallLTM.kOption.setValue(3);
+    smallLTM.limitOption.setValue(500);
+    smallLTM.relativeLTMSizeOption.setValue(0.2);
+    return new Classifier[]{
+	new SAMkNN(),
+	recalculate,
+	smallLTM,
+    };
+  }
+
+  @Override
+  protected String[] getRegressionInputFiles() {
+    return new String[]{DATA, DATA, DATA};
+  }
+
+  @Override
+  protected int[] getRegressionInputClassIndex() {
+    return new int[]{4, 4, 4};
+  }
+
+  @Override
+  protected int[][] getRegressionInspectionPoints() {
+    int[] points = new int[]{250, 500, 750, 1000, 1250, 1500, 1750, 2000};
+    return new int[][]{points, points.clone(), points.clone()};
+  }
+
+  @Override
+  protected LearningPerformanceEvaluator<Example<Instance>>[] getRegressionEvaluatorSetups() {
+    return new BasicClassificationPerformanceEvaluator[]{
+	new BasicClassificationPerformanceEvaluator(),
+	new BasicClassificationPerformanceEvaluator(),
+	new BasicClassificationPerformanceEvaluator(),
+    };
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return		the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(SAMkNNTest.class);
+  }
+
+  /**
+   * Runs the test from commandline.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args) {
+    runTest(suite());
+  }
+}
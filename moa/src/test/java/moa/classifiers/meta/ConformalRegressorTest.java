@@ -0,0 +1,104 @@
+/*
+ *    ConformalRegressorTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import moa.classifiers.trees.FIMTDD;
+import moa.streams.ArffFileStream;
+
+import org.junit.Test;
+
+/**
+ * Tests that the calibration scores that ConformalRegressor keeps in an
+ * OrderStatisticTree give the same intervals as sorting all the scores
+ * again after every training instance.
+ */
+public class ConformalRegressorTest {
+
+	private static final int NUM_CALIBRATION = 100;
+
+	private static String getDataFile() {
+		return ClassLoader.getSystemResource("moa/classifiers/data/regression.arff").getPath();
+	}
+
+	private static List<Instance> readInstances(int numInstances) {
+		ArffFileStream stream = new ArffFileStream(getDataFile(), -1);
+		stream.prepareForUse();
+		List<Instance> instances = new ArrayList<Instance>();
+		while (stream.hasMoreInstances() && instances.size() < numInstances) {
+			instances.add(stream.nextInstance().getData());
+		}
+		return instances;
+	}
+
+	/**
+	 * Half width of the interval from all the scores sorted, as the
+	 * regressor computed it before keeping them in a tree.
+	 */
+	private static double referenceInterval(FIMTDD model, List<Instance> calibration, double confidence) {
+		double[] scores = new double[calibration.size()];
+		for (int i = 0; i < scores.length; i++) {
+			Instance instance = calibration.get(i);
+			scores[i] = Math.abs(model.getVotesForInstance(instance)[0] - instance.classValue());
+		}
+		Arrays.sort(scores);
+		int border = (int) Math.floor(confidence * (scores.length + 1)) - 1;
+		border = Math.min(Math.max(border, 0), scores.length - 1);
+		return scores[border];
+	}
+
+	@Test
+	public void testIntervalsMatchSortedScores() {
+		List<Instance> instances = readInstances(1000);
+		List<Instance> calibration = instances.subList(0, NUM_CALIBRATION);
+		for (double confidence : new double[]{0.5, 0.9}) {
+			ConformalRegressor regressor = new ConformalRegressor();
+			regressor.calibrationDataset.setValue(getDataFile());
+			regressor.maxCalibrationInstancesOption.setValue(NUM_CALIBRATION);
+			regressor.confidenceOption.setValue(confidence);
+			regressor.prepareForUse();
+			// The base learner of the regressor, trained on the same instances
+			FIMTDD model = new FIMTDD();
+			model.regressionTreeOption.set();
+			model.prepareForUse();
+			for (int i = NUM_CALIBRATION; i < instances.size(); i++) {
+				Instance instance = instances.get(i);
+				regressor.trainOnInstance(instance);
+				model.trainOnInstance(instance);
+				if (i % 7 == 0) {
+					double prediction = model.getVotesForInstance(instance)[0];
+					double interval = referenceInterval(model, calibration, confidence);
+					double[] expected = {prediction - interval, prediction + interval};
+					assertArrayEquals("instance " + i, expected, regressor.getVotesForInstance(instance), 0.0);
+					// Predicting again without training uses the same scores
+					assertArrayEquals(expected, regressor.getVotesForInstance(instance), 0.0);
+				}
+			}
+			assertEquals(NUM_CALIBRATION, regressor.calibrationScores.size());
+		}
+	}
+}
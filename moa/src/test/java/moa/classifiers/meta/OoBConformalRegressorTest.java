@@ -0,0 +1,114 @@
+/*
+ *    OoBConformalRegressorTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import moa.streams.ArffFileStream;
+
+import org.junit.Test;
+
+/**
+ * Tests that the calibration scores that OoBConformalRegressor updates for
+ * the trees trained on the latest instance only are the scores computed
+ * again from the out-of-bag predictions of all the trees.
+ */
+public class OoBConformalRegressorTest {
+
+	private static final int NUM_CALIBRATION = 50;
+
+	private static String getDataFile() {
+		return ClassLoader.getSystemResource("moa/classifiers/data/regression.arff").getPath();
+	}
+
+	/**
+	 * Scores of the calibration instances, computed from the current
+	 * predictions of the trees that have them out of bag.
+	 */
+	private static double[] referenceScores(OoBConformalRegressor regressor) {
+		int ensembleSize = regressor.ensembleSizeOption.getValue();
+		double[] scores = new double[regressor.numCalibrationInstances];
+		for (int slot = 0; slot < scores.length; slot++) {
+			Instance instance = regressor.calibrationInstances[slot];
+			double sum = 0;
+			int count = 0;
+			for (int i = 0; i < ensembleSize; i++) {
+				if (regressor.isOutOfBag[slot * ensembleSize + i]) {
+					sum += regressor.ensemble[i].getVotesForInstance(instance)[0];
+					count++;
+				}
+			}
+			scores[slot] = Math.abs(sum / count - instance.classValue());
+		}
+		return scores;
+	}
+
+	private static void testScores(int numberOfJobs) {
+		double confidence = 0.9;
+		OoBConformalRegressor regressor = new OoBConformalRegressor();
+		regressor.maxCalibrationInstancesOption.setValue(NUM_CALIBRATION);
+		regressor.confidenceOption.setValue(confidence);
+		regressor.numberOfJobsOption.setValue(numberOfJobs);
+		regressor.prepareForUse();
+		ArffFileStream stream = new ArffFileStream(getDataFile(), -1);
+		stream.prepareForUse();
+		try {
+			for (int n = 0; n < 1000 && stream.hasMoreInstances(); n++) {
+				Instance instance = stream.nextInstance().getData();
+				regressor.trainOnInstance(instance);
+				if (regressor.numCalibrationInstances < 2) {
+					continue;
+				}
+				double[] scores = referenceScores(regressor);
+				for (int slot = 0; slot < scores.length; slot++) {
+					assertEquals("instance " + n + " slot " + slot,
+							scores[slot], regressor.calibrationScores.getValue(slot), 0.0);
+				}
+				Arrays.sort(scores);
+				for (int rank = 0; rank < scores.length; rank++) {
+					assertEquals(scores[rank], regressor.calibrationScores.select(rank), 0.0);
+				}
+				int border = (int) Math.floor(confidence * (scores.length + 1)) - 1;
+				border = Math.min(Math.max(border, 0), scores.length - 1);
+				// In parallel the mean depends on the order in which the votes are summed
+				double mean = regressor.getMoments(instance).mean;
+				double[] expected = {mean - scores[border], mean + scores[border]};
+				assertArrayEquals("instance " + n, expected, regressor.getVotesForInstance(instance), 1e-6);
+			}
+			assertEquals(NUM_CALIBRATION, regressor.numCalibrationInstances);
+		} finally {
+			regressor.shutdownExecutor();
+		}
+	}
+
+	@Test
+	public void testScoresMatchRecomputed() {
+		testScores(1);
+	}
+
+	@Test
+	public void testScoresMatchRecomputedInParallel() {
+		testScores(2);
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ *    ParallelChunkEnsemblesTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import moa.classifiers.Classifier;
+import moa.classifiers.Parallel;
+import moa.options.ClassOption;
+import moa.streams.InstanceStream;
+import moa.streams.generators.RandomRBFGeneratorDrift;
+
+import org.junit.Test;
+
+/**
+ * Tests that the chunk-based ensembles give the same votes when the
+ * completed chunks are processed by several jobs as when they are processed
+ * sequentially by a single job.
+ */
+public class ParallelChunkEnsemblesTest {
+
+	private static final int NUM_INSTANCES = 3000;
+
+	private static Classifier newClassifier(String cliString) throws Exception {
+		Classifier classifier = (Classifier) ClassOption.cliStringToObject(cliString, Classifier.class, null);
+		classifier.prepareForUse();
+		return classifier;
+	}
+
+	private static void assertSameVotes(String cliString) throws Exception {
+		Classifier sequential = newClassifier(cliString + " -j 1");
+		Classifier parallel = newClassifier(cliString + " -j 3");
+		RandomRBFGeneratorDrift stream = new RandomRBFGeneratorDrift();
+		stream.speedChangeOption.setValue(0.001);
+		stream.prepareForUse();
+		sequential.setModelContext(stream.getHeader());
+		parallel.setModelContext(stream.getHeader());
+		try {
+			for (int i = 0; i < NUM_INSTANCES; i++) {
+				Instance instance = stream.nextInstance().getData();
+				assertArrayEquals(cliString + " instance " + i, sequential.getVotesForInstance(instance),
+						parallel.getVotesForInstance(instance), 0.0);
+				sequential.trainOnInstance(instance);
+				parallel.trainOnInstance(instance);
+			}
+		} finally {
+			((Parallel) parallel).shutdownExecutor();
+		}
+	}
+
+	@Test
+	public void testAccuracyWeightedEnsemble() throws Exception {
+		assertSameVotes("meta.AccuracyWeightedEnsemble -c 250 -l trees.HoeffdingTree");
+	}
+
+	@Test
+	public void testAccuracyUpdatedEnsemble() throws Exception {
+		assertSameVotes("meta.AccuracyUpdatedEnsemble -c 250");
+	}
+
+	@Test
+	public void testLearnNSE() throws Exception {
+		assertSameVotes("meta.LearnNSE -p 250");
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ *    WEKAClassifierBackgroundTrainingTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import moa.classifiers.Classifier;
+import moa.core.Measurement;
+import moa.options.ClassOption;
+import moa.streams.generators.RandomRBFGenerator;
+
+import org.junit.Test;
+
+/**
+ * Tests that the models of WEKAClassifier built in the background give the
+ * same votes as the models built on the stream thread, once their builds
+ * have finished.
+ */
+public class WEKAClassifierBackgroundTrainingTest {
+
+	private static final int NUM_INSTANCES = 3000;
+
+	private static WEKAClassifier newClassifier(String cliString) throws Exception {
+		WEKAClassifier classifier = (WEKAClassifier) ClassOption.cliStringToObject(
+				"meta.WEKAClassifier -l weka.classifiers.trees.J48 " + cliString, Classifier.class, null);
+		classifier.prepareForUse();
+		return classifier;
+	}
+
+	private static RandomRBFGenerator newStream() {
+		RandomRBFGenerator stream = new RandomRBFGenerator();
+		stream.prepareForUse();
+		return stream;
+	}
+
+	private static void waitForBackgroundTrainings(WEKAClassifier classifier) throws InterruptedException {
+		while (classifier.runningTrainings != null && classifier.runningTrainings.get() > 0) {
+			Thread.sleep(1);
+		}
+	}
+
+	private static double getMeasurement(WEKAClassifier classifier, String name) {
+		for (Measurement measurement : classifier.getModelMeasurements()) {
+			if (measurement.getName().equals(name)) {
+				return measurement.getValue();
+			}
+		}
+		throw new AssertionError("no measurement " + name);
+	}
+
+	@Test
+	public void testPeriodicRebuilds() throws Exception {
+		String cliString = "-i 500 -w 250 -f 500";
+		WEKAClassifier foreground = newClassifier(cliString);
+		WEKAClassifier background = newClassifier(cliString + " -b");
+		RandomRBFGenerator stream = newStream();
+		foreground.setModelContext(stream.getHeader());
+		background.setModelContext(stream.getHeader());
+		try {
+			for (int i = 0; i < NUM_INSTANCES; i++) {
+				Instance instance = stream.nextInstance().getData();
+				assertArrayEquals("instance " + i, foreground.getVotesForInstance(instance),
+						background.getVotesForInstance(instance), 0.0);
+				foreground.trainOnInstance(instance);
+				background.trainOnInstance(instance);
+				waitForBackgroundTrainings(background);
+			}
+		} finally {
+			background.shutdownExecutor();
+		}
+		assertTrue(getMeasurement(background, "background trainings") > 1);
+		assertEquals(0.0, getMeasurement(background, "skipped background trainings"), 0.0);
+	}
+
+	@Test
+	public void testModelInstalledAfterBuild() throws Exception {
+		WEKAClassifier foreground = newClassifier("-i 500");
+		WEKAClassifier background = newClassifier("-i 500 -b");
+		RandomRBFGenerator stream = newStream();
+		foreground.setModelContext(stream.getHeader());
+		background.setModelContext(stream.getHeader());
+		for (int i = 0; i < 1000; i++) {
+			Instance instance = stream.nextInstance().getData();
+			foreground.trainOnInstance(instance);
+			background.trainOnInstance(instance);
+		}
+		background.trainingExecutor.shutdown();
+		assertTrue(background.trainingExecutor.awaitTermination(60, TimeUnit.SECONDS));
+		for (int i = 0; i < 500; i++) {
+			Instance instance = stream.nextInstance().getData();
+			assertArrayEquals("instance " + i, foreground.getVotesForInstance(instance),
+					background.getVotesForInstance(instance), 0.0);
+		}
+		assertEquals(1.0, getMeasurement(background, "background trainings"), 0.0);
+	}
+}
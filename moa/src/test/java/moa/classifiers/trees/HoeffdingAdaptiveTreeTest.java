@@ -19,10 +19,15 @@
  */
 package moa.classifiers.trees;
 
+import java.util.Arrays;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import moa.classifiers.AbstractMultipleClassifierTestCase;
 import moa.classifiers.Classifier;
+import moa.streams.generators.RandomRBFGeneratorDrift;
+
+import com.yahoo.labs.samoa.instances.Instance;
 import static moa.test.MoaTestCase.runTest;
 
 /**
@@ -56,6 +61,26 @@ public class HoeffdingAdaptiveTreeTest
     };
   }
   
+  /**
+   * Checks that the single-pass votes are identical to the votes obtained
+   * from the leaves returned by filterInstanceToLeaves.
+   */
+  public void testSinglePassVotes() {
+    RandomRBFGeneratorDrift stream = new RandomRBFGeneratorDrift();
+    stream.speedChangeOption.setValue(0.001);
+    stream.prepareForUse();
+    HoeffdingAdaptiveTree tree = new HoeffdingAdaptiveTree();
+    tree.gracePeriodOption.setValue(50);
+    tree.setModelContext(stream.getHeader());
+    tree.prepareForUse();
+    for (int i = 0; i < 20000; i++) {
+      Instance inst = stream.nextInstance().getData();
+      assertTrue("Votes differ at instance " + i, Arrays.equals(
+	  tree.getVotesForInstanceOfFoundNodes(inst), tree.getVotesForInstance(inst)));
+      tree.trainOnInstance(inst);
+    }
+  }
+
   /**
    * Returns a test suite.
    *
@@ -0,0 +1,110 @@
+/*
+ *    PackedLeafStatisticsTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.trees;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import moa.classifiers.Classifier;
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.InstanceStream;
+
+import org.junit.Test;
+
+/**
+ * Tests that Hoeffding trees give the same votes and grow the same model
+ * with the packed Gaussian leaf statistics (-x) as with the Gaussian
+ * observers of the attributes.
+ */
+public class PackedLeafStatisticsTest {
+
+	private static final int NUM_INSTANCES = 5000;
+
+	private static final String[] STREAMS = {
+		"generators.RandomRBFGenerator -r 2 -i 3",
+		"generators.WaveformGenerator -i 4",
+		"generators.HyperplaneGenerator -i 5 -t 0.01",
+		"generators.RandomTreeGenerator -r 6 -i 7 -o 3 -u 5",
+		"generators.LEDGenerator -i 8"};
+
+	private static HoeffdingTree newTree(String learner) throws Exception {
+		return (HoeffdingTree) ClassOption.cliStringToObject(learner, Classifier.class, null);
+	}
+
+	private static InstanceStream newStream(String stream) throws Exception {
+		InstanceStream result = (InstanceStream) ClassOption.cliStringToObject(stream, InstanceStream.class, null);
+		((OptionHandler) result).prepareForUse();
+		return result;
+	}
+
+	private static String describe(HoeffdingTree tree) {
+		StringBuilder sb = new StringBuilder();
+		tree.getModelDescription(sb, 0);
+		return sb.toString();
+	}
+
+	private static void assertSameTrees(String learner) throws Exception {
+		for (String stream : STREAMS) {
+			String message = learner + " on " + stream;
+			HoeffdingTree observers = newTree(learner);
+			HoeffdingTree packed = newTree(learner + " -x");
+			observers.prepareForUse();
+			packed.prepareForUse();
+			InstanceStream instances = newStream(stream);
+			observers.setModelContext(instances.getHeader());
+			packed.setModelContext(instances.getHeader());
+			for (int i = 0; i < NUM_INSTANCES; i++) {
+				Instance instance = instances.nextInstance().getData();
+				assertArrayEquals(message + " instance " + i, observers.getVotesForInstance(instance),
+						packed.getVotesForInstance(instance), 0.0);
+				observers.trainOnInstance(instance);
+				packed.trainOnInstance(instance);
+			}
+			assertEquals(message, describe(observers), describe(packed));
+		}
+	}
+
+	@Test
+	public void testMajorityClassLeaves() throws Exception {
+		assertSameTrees("trees.HoeffdingTree -l MC -g 50");
+	}
+
+	@Test
+	public void testNaiveBayesLeaves() throws Exception {
+		assertSameTrees("trees.HoeffdingTree -l NB -g 50");
+	}
+
+	@Test
+	public void testNaiveBayesAdaptiveLeaves() throws Exception {
+		assertSameTrees("trees.HoeffdingTree -g 50");
+	}
+
+	@Test
+	public void testBinarySplitsAndPoorAttributeRemoval() throws Exception {
+		assertSameTrees("trees.HoeffdingTree -g 50 -b -r");
+	}
+
+	@Test
+	public void testAdaptiveTree() throws Exception {
+		assertSameTrees("trees.HoeffdingAdaptiveTree -g 50");
+	}
+}
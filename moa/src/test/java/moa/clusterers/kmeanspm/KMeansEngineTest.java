@@ -0,0 +1,226 @@
+/*
+ *    KMeansEngineTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.clusterers.kmeanspm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+/**
+ * Tests that KMeansEngine gives the same centers and costs with and without
+ * pruning and whatever the number of threads, and the same results through
+ * CoresetKMeans as a plain k-means++ and Lloyd implementation.
+ */
+public class KMeansEngineTest {
+
+	private static final int NUM_POINTS = 5 * KMeansEngine.CHUNK_SIZE + 123;
+
+	private static final int NUM_DIMENSIONS = 4;
+
+	private static final int K = 8;
+
+	/**
+	 * Weighted points around K random centers, with the weight in the first
+	 * element as used by CoresetKMeans.
+	 */
+	private static List<double[]> generatePoints(long seed) {
+		Random random = new Random(seed);
+		double[][] means = new double[K][NUM_DIMENSIONS];
+		for (double[] mean : means) {
+			for (int j = 0; j < NUM_DIMENSIONS; j++) {
+				mean[j] = 10 * random.nextDouble();
+			}
+		}
+		List<double[]> points = new ArrayList<double[]>(NUM_POINTS);
+		for (int i = 0; i < NUM_POINTS; i++) {
+			double[] mean = means[random.nextInt(K)];
+			double[] point = new double[NUM_DIMENSIONS + 1];
+			point[0] = 1 + random.nextInt(3);
+			for (int j = 0; j < NUM_DIMENSIONS; j++) {
+				point[j + 1] = mean[j] + random.nextGaussian();
+			}
+			points.add(point);
+		}
+		return points;
+	}
+
+	/**
+	 * Runs k-means++ and Lloyd on an engine and returns the final centers
+	 * followed by the cost.
+	 */
+	private static double[] run(List<double[]> points, boolean pruning, ExecutorService executor, int[] assignment) {
+		KMeansEngine engine = KMeansEngine.fromWeightedPoints(points);
+		engine.setPruning(pruning);
+		engine.setExecutor(executor);
+		double[] centers = new double[K * NUM_DIMENSIONS + 1];
+		engine.kMeansPlusPlus(K, new Random(7), centers);
+		centers[K * NUM_DIMENSIONS] = engine.lloyd(centers, K, assignment);
+		return centers;
+	}
+
+	@Test
+	public void testSameResultsWithPruningAndThreads() {
+		List<double[]> points = generatePoints(1);
+		int[] expectedAssignment = new int[NUM_POINTS];
+		double[] expected = run(points, false, null, expectedAssignment);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (boolean pruning : new boolean[]{false, true}) {
+				for (ExecutorService service : new ExecutorService[]{null, executor}) {
+					int[] assignment = new int[NUM_POINTS];
+					double[] result = run(points, pruning, service, assignment);
+					String message = "pruning " + pruning + ", threads " + (service == null ? 1 : 4);
+					assertArrayEquals(message, expected, result, 0.0);
+					for (int i = 0; i < NUM_POINTS; i++) {
+						assertEquals(message, expectedAssignment[i], assignment[i]);
+					}
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testRepeatedAssignWithPruning() {
+		List<double[]> points = generatePoints(2);
+		KMeansEngine pruned = KMeansEngine.fromWeightedPoints(points);
+		pruned.setPruning(true);
+		KMeansEngine plain = KMeansEngine.fromWeightedPoints(points);
+		double[] centers = new double[K * NUM_DIMENSIONS];
+		plain.kMeansPlusPlus(K, new Random(3), centers);
+		int[] prunedAssignment = new int[NUM_POINTS];
+		int[] plainAssignment = new int[NUM_POINTS];
+		Random random = new Random(4);
+		for (int step = 0; step < 20; step++) {
+			pruned.assign(centers, K, prunedAssignment);
+			plain.assign(centers, K, plainAssignment);
+			for (int i = 0; i < NUM_POINTS; i++) {
+				assertEquals("step " + step, plainAssignment[i], prunedAssignment[i]);
+			}
+			assertEquals(plain.cost(centers, plainAssignment), pruned.cost(centers, prunedAssignment), 0.0);
+			// Moves the centers by varying amounts, as Lloyd iterations do
+			for (int j = 0; j < centers.length; j++) {
+				centers[j] += random.nextGaussian() * (step % 3 == 0 ? 1.0 : 0.01);
+			}
+		}
+	}
+
+	/**
+	 * Plain k-means++ seeding on the weighted points.
+	 */
+	private static List<double[]> referenceSeeding(List<double[]> points, Random random) {
+		int n = points.size();
+		List<double[]> centers = new ArrayList<double[]>();
+		double[] last = Arrays.copyOfRange(points.get(random.nextInt(n)), 1, NUM_DIMENSIONS + 1);
+		centers.add(last);
+		double[] distances = new double[n];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		for (int i = 1; i < K; i++) {
+			double sum = 0.0;
+			for (int j = 0; j < n; j++) {
+				double[] point = points.get(j);
+				distances[j] = Math.min(distances[j], point[0] * Metric.distanceSquared(last, point, 1));
+				sum += distances[j];
+			}
+			int candidate = 0;
+			double threshold = sum * random.nextDouble();
+			double current = distances[0];
+			while (!(threshold < current)) {
+				current += distances[++candidate];
+			}
+			last = Arrays.copyOfRange(points.get(candidate), 1, NUM_DIMENSIONS + 1);
+			centers.add(last);
+		}
+		return centers;
+	}
+
+	/**
+	 * Plain Lloyd iterations until the centers do not change.
+	 */
+	private static double referenceLloyd(List<double[]> centers, List<double[]> points) {
+		int n = points.size();
+		int[] nearest = new int[n];
+		boolean converged;
+		do {
+			double[][] sums = new double[K][NUM_DIMENSIONS];
+			double[] weights = new double[K];
+			for (int l = 0; l < n; l++) {
+				double[] point = points.get(l);
+				double minDistance = Double.POSITIVE_INFINITY;
+				for (int i = 0; i < K; i++) {
+					double distance = Metric.distanceSquared(centers.get(i), point, 1);
+					if (distance < minDistance) {
+						minDistance = distance;
+						nearest[l] = i;
+					}
+				}
+				for (int j = 0; j < NUM_DIMENSIONS; j++) {
+					sums[nearest[l]][j] += point[0] * point[j + 1];
+				}
+				weights[nearest[l]] += point[0];
+			}
+			converged = true;
+			for (int i = 0; i < K; i++) {
+				if (weights[i] != 0.0) {
+					double[] center = centers.get(i);
+					for (int j = 0; j < NUM_DIMENSIONS; j++) {
+						double value = sums[i][j] / weights[i];
+						if (value != center[j]) {
+							converged = false;
+						}
+						center[j] = value;
+					}
+				}
+			}
+		} while (!converged);
+		double cost = 0.0;
+		for (int l = 0; l < n; l++) {
+			double[] point = points.get(l);
+			cost += point[0] * Metric.distanceSquared(centers.get(nearest[l]), point, 1);
+		}
+		return cost;
+	}
+
+	@Test
+	public void testCoresetKMeansMatchesReference() {
+		List<double[]> points = generatePoints(5);
+		for (int seed = 0; seed < 3; seed++) {
+			List<double[]> expectedCenters = referenceSeeding(points, new Random(seed));
+			List<double[]> centers = CoresetKMeans.generatekMeansPlusPlusCentroids(K, points, new Random(seed));
+			for (int i = 0; i < K; i++) {
+				assertArrayEquals(expectedCenters.get(i), centers.get(i), 0.0);
+			}
+			double expectedCost = referenceLloyd(expectedCenters, points);
+			double cost = CoresetKMeans.kMeans(centers, points);
+			assertEquals(expectedCost, cost, 0.0);
+			for (int i = 0; i < K; i++) {
+				assertArrayEquals(expectedCenters.get(i), centers.get(i), 0.0);
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ *    DelayBufferTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that a DelayBuffer releases its items at their release time, in the
+ * order they were added, while its ring grows.
+ */
+public class DelayBufferTest {
+
+	/**
+	 * Adds one item per time with a random delay, polls the items of every
+	 * time and compares them with a queue per release time.
+	 */
+	private static void checkReleaseOrder(DelayBuffer<Long> buffer, int maxDelay, int numTimes) {
+		Map<Long, ArrayDeque<Long>> expected = new HashMap<Long, ArrayDeque<Long>>();
+		Random random = new Random(1);
+		long pending = 0;
+		for (long time = 1; time <= numTimes; time++) {
+			ArrayDeque<Long> released = expected.remove(time);
+			if (released != null) {
+				for (Long item : released) {
+					assertEquals(item, buffer.poll(time));
+					pending--;
+				}
+			}
+			assertNull(buffer.poll(time));
+			assertEquals(pending, buffer.size());
+			for (int i = random.nextInt(3); i > 0; i--) {
+				long releaseTime = time + 1 + random.nextInt(maxDelay);
+				Long item = time * 10 + i;
+				buffer.add(item, releaseTime);
+				ArrayDeque<Long> items = expected.get(releaseTime);
+				if (items == null) {
+					items = new ArrayDeque<Long>();
+					expected.put(releaseTime, items);
+				}
+				items.add(item);
+				pending++;
+			}
+		}
+	}
+
+	@Test
+	public void testReleaseOrder() {
+		DelayBuffer<Long> buffer = new DelayBuffer<Long>(100);
+		checkReleaseOrder(buffer, 100, 20000);
+		assertEquals(101, buffer.slotItems.length);
+	}
+
+	@Test
+	public void testLargeMaxDelayGrowsWithDelays() {
+		DelayBuffer<Long> buffer = new DelayBuffer<Long>(Integer.MAX_VALUE - 1);
+		assertEquals(Integer.MAX_VALUE - 1, buffer.getMaxDelay());
+		assertTrue(buffer.slotItems.length <= 16);
+		checkReleaseOrder(buffer, 100, 20000);
+		assertTrue(buffer.slotItems.length <= 256);
+	}
+
+	@Test
+	public void testZeroMaxDelay() {
+		DelayBuffer<Long> buffer = new DelayBuffer<Long>(0);
+		for (long time = 1; time <= 10; time++) {
+			buffer.add(time, time);
+			buffer.add(-time, time);
+			assertEquals(Long.valueOf(time), buffer.poll(time));
+			assertEquals(Long.valueOf(-time), buffer.poll(time));
+			assertNull(buffer.poll(time));
+		}
+		assertEquals(0, buffer.size());
+	}
+}
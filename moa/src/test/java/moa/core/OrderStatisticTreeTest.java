@@ -0,0 +1,122 @@
+/*
+ *    OrderStatisticTreeTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that OrderStatisticTree selects the same values by rank as a sorted
+ * list, while values are set, replaced and removed.
+ */
+public class OrderStatisticTreeTest {
+
+	private static void checkRanks(OrderStatisticTree tree, Double[] slots) {
+		List<Double> sorted = new ArrayList<Double>();
+		for (int slot = 0; slot < slots.length; slot++) {
+			assertEquals(slots[slot] != null, tree.contains(slot));
+			if (slots[slot] != null) {
+				sorted.add(slots[slot]);
+				assertEquals(slots[slot], tree.getValue(slot), 0.0);
+			}
+		}
+		// Double.compareTo orders as Double.compare, NaN last
+		Collections.sort(sorted);
+		assertEquals(sorted.size(), tree.size());
+		for (int rank = 0; rank < sorted.size(); rank++) {
+			assertEquals("rank " + rank, sorted.get(rank), tree.select(rank), 0.0);
+		}
+	}
+
+	@Test
+	public void testRandomUpdates() {
+		int capacity = 200;
+		OrderStatisticTree tree = new OrderStatisticTree(capacity);
+		Double[] slots = new Double[capacity];
+		Random random = new Random(1);
+		for (int step = 0; step < 5000; step++) {
+			int slot = random.nextInt(capacity);
+			if (random.nextInt(4) == 0) {
+				tree.remove(slot);
+				slots[slot] = null;
+			} else {
+				// Few distinct values, so that many values are equal
+				double value = random.nextInt(3) == 0 ? random.nextInt(10) : random.nextGaussian();
+				if (random.nextInt(50) == 0) {
+					value = Double.NaN;
+				}
+				tree.put(slot, value);
+				slots[slot] = value;
+			}
+			if (step % 50 == 0) {
+				checkRanks(tree, slots);
+			}
+		}
+		checkRanks(tree, slots);
+	}
+
+	@Test
+	public void testFillRemoveAndClear() {
+		int capacity = 100;
+		OrderStatisticTree tree = new OrderStatisticTree(capacity);
+		Double[] slots = new Double[capacity];
+		for (int slot = 0; slot < capacity; slot++) {
+			// Inserted in decreasing order
+			tree.put(slot, capacity - slot);
+			slots[slot] = (double) (capacity - slot);
+		}
+		checkRanks(tree, slots);
+		for (int slot = 0; slot < capacity; slot += 3) {
+			tree.remove(slot);
+			slots[slot] = null;
+		}
+		// Removing an empty slot does nothing
+		tree.remove(0);
+		checkRanks(tree, slots);
+		tree.clear();
+		assertEquals(0, tree.size());
+		assertFalse(tree.contains(1));
+		tree.put(1, 5.0);
+		assertTrue(tree.contains(1));
+		assertEquals(5.0, tree.select(0), 0.0);
+	}
+
+	@Test
+	public void testSelectOutOfRange() {
+		OrderStatisticTree tree = new OrderStatisticTree(4);
+		tree.put(2, 1.0);
+		for (int rank : new int[]{-1, 1}) {
+			try {
+				tree.select(rank);
+				fail("Rank " + rank + " of one value");
+			} catch (IndexOutOfBoundsException e) {
+				// expected
+			}
+		}
+	}
+}
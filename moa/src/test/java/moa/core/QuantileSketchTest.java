@@ -0,0 +1,164 @@
+/*
+ *    QuantileSketchTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the quantiles estimated by QuantileSketch, alone and merged, against
+ * the exact quantiles of the inserted values.
+ */
+public class QuantileSketchTest {
+
+	private static final double[] PROBABILITIES = {0.01, 0.05, 0.1, 0.25, 0.5,
+		0.75, 0.9, 0.95, 0.99};
+
+	/**
+	 * Returns the fraction of the sorted values below an estimate, the
+	 * probability of the estimate among the values.
+	 */
+	private static double rank(double[] sorted, double estimate) {
+		int index = Arrays.binarySearch(sorted, estimate);
+		if (index < 0) {
+			index = -1 - index;
+		}
+		return index / (double) sorted.length;
+	}
+
+	/**
+	 * Inserts 100000 values in a sketch of 100 bins and checks the rank of
+	 * the estimated quantiles.
+	 */
+	private static void checkErrorBounds(boolean skewed, double maxRankError) {
+		Random random = new Random(1);
+		QuantileSketch sketch = new QuantileSketch(100);
+		double[] values = new double[100000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = skewed ? Math.exp(random.nextGaussian()) : random.nextGaussian();
+			sketch.insert(values[i]);
+		}
+		assertEquals(100, sketch.getNumBins());
+		assertEquals(values.length, sketch.getTotalCount(), 0.0);
+		Arrays.sort(values);
+		assertEquals(values[0], sketch.getMin(), 0.0);
+		assertEquals(values[values.length - 1], sketch.getMax(), 0.0);
+		for (double probability : PROBABILITIES) {
+			double estimate = sketch.quantile(probability);
+			assertEquals("quantile " + probability, probability, rank(values, estimate), maxRankError);
+		}
+		assertEquals(values[0], sketch.quantile(0.0), 0.0);
+		assertEquals(values[values.length - 1], sketch.quantile(1.0), 0.0);
+	}
+
+	@Test
+	public void testErrorBounds() {
+		checkErrorBounds(false, 0.005);
+	}
+
+	/**
+	 * Bins are merged where the values are closest, so the dense low tail of
+	 * a log-normal distribution gets coarse bins and larger errors.
+	 */
+	@Test
+	public void testErrorBoundsSkewed() {
+		checkErrorBounds(true, 0.03);
+	}
+
+	@Test
+	public void testMerging() {
+		Random random = new Random(2);
+		int numSketches = 10;
+		int valuesPerSketch = 5000;
+		QuantileSketch[] sketches = new QuantileSketch[numSketches];
+		double[] values = new double[numSketches * valuesPerSketch];
+		for (int i = 0; i < numSketches; i++) {
+			sketches[i] = new QuantileSketch(50);
+			for (int j = 0; j < valuesPerSketch; j++) {
+				// Sketches of overlapping ranges with different spreads
+				double value = i + (1 + i % 3) * random.nextGaussian();
+				sketches[i].insert(value);
+				values[i * valuesPerSketch + j] = value;
+			}
+		}
+		Arrays.sort(values);
+		QuantileSketch.Merger merger = new QuantileSketch.Merger();
+		double[] quantiles = new double[PROBABILITIES.length];
+		assertTrue(merger.quantiles(sketches, numSketches, PROBABILITIES, quantiles));
+		for (int q = 0; q < PROBABILITIES.length; q++) {
+			assertEquals("quantile " + PROBABILITIES[q], PROBABILITIES[q], rank(values, quantiles[q]), 0.02);
+		}
+		// The merger gives the same estimates when it is reused with fewer
+		// sketches, and one sketch merged alone gives its own estimates
+		double[] reused = new double[PROBABILITIES.length];
+		double[] fresh = new double[PROBABILITIES.length];
+		assertTrue(merger.quantiles(sketches, 3, PROBABILITIES, reused));
+		assertTrue(new QuantileSketch.Merger().quantiles(sketches, 3, PROBABILITIES, fresh));
+		assertArrayEquals(fresh, reused, 0.0);
+		assertTrue(merger.quantiles(sketches, 1, PROBABILITIES, reused));
+		for (int q = 0; q < PROBABILITIES.length; q++) {
+			assertEquals(sketches[0].quantile(PROBABILITIES[q]), reused[q], 0.0);
+		}
+	}
+
+	@Test
+	public void testEmptySketch() {
+		QuantileSketch empty = new QuantileSketch(10);
+		assertEquals(0, empty.getNumBins());
+		assertEquals(0.0, empty.getTotalCount(), 0.0);
+		assertTrue(Double.isNaN(empty.quantile(0.5)));
+		empty.insert(Double.NaN);
+		assertEquals(0, empty.getNumBins());
+		double[] quantiles = {-1.0, -2.0};
+		QuantileSketch.Merger merger = new QuantileSketch.Merger();
+		assertFalse(merger.quantiles(new QuantileSketch[]{empty, new QuantileSketch(10)}, 2,
+				new double[]{0.25, 0.75}, quantiles));
+		assertArrayEquals(new double[]{-1.0, -2.0}, quantiles, 0.0);
+		// Empty sketches do not change the estimates of the others
+		QuantileSketch sketch = new QuantileSketch(10);
+		for (int i = 0; i < 100; i++) {
+			sketch.insert(i);
+		}
+		assertTrue(merger.quantiles(new QuantileSketch[]{empty, sketch}, 2,
+				new double[]{0.25, 0.75}, quantiles));
+		assertEquals(sketch.quantile(0.25), quantiles[0], 0.0);
+		assertEquals(sketch.quantile(0.75), quantiles[1], 0.0);
+	}
+
+	@Test
+	public void testOneValue() {
+		QuantileSketch sketch = new QuantileSketch(10);
+		sketch.insert(3.5);
+		sketch.insert(3.5, 2.0);
+		assertEquals(1, sketch.getNumBins());
+		assertEquals(3.0, sketch.getTotalCount(), 0.0);
+		assertEquals(3.5, sketch.getMin(), 0.0);
+		assertEquals(3.5, sketch.getMax(), 0.0);
+		for (double probability : new double[]{0.0, 0.1, 0.5, 0.9, 1.0}) {
+			assertEquals(3.5, sketch.quantile(probability), 0.0);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ *    SerializeUtilsTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests that SerializeUtils reads compressed and uncompressed files, and
+ * that writing bytes to a file never leaves it partly written.
+ */
+public class SerializeUtilsTest {
+
+	private static File newFile() throws IOException {
+		File file = File.createTempFile("serialize", ".bin");
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void testReadsCompressedAndUncompressed() throws Exception {
+		ArrayList<Integer> list = new ArrayList<Integer>(Arrays.asList(3, 1, 2));
+		File compressed = newFile();
+		SerializeUtils.writeToFile(compressed, list);
+		assertEquals(list, SerializeUtils.readFromFile(compressed));
+		File uncompressed = newFile();
+		SerializeUtils.writeBytesToFile(uncompressed, SerializeUtils.toByteArray(list));
+		assertEquals(list, SerializeUtils.readFromFile(uncompressed));
+		assertFalse(new File(uncompressed.getPath() + ".tmp").exists());
+	}
+
+	@Test
+	public void testByteArrayIsSnapshot() throws Exception {
+		ArrayList<Integer> list = new ArrayList<Integer>(Arrays.asList(3, 1, 2));
+		byte[] bytes = SerializeUtils.toByteArray(list);
+		list.add(4);
+		File file = newFile();
+		SerializeUtils.writeBytesToFile(file, bytes);
+		assertEquals(Arrays.asList(3, 1, 2), SerializeUtils.readFromFile(file));
+	}
+
+	/**
+	 * A write that fails before the rename, like one interrupted by a crash,
+	 * leaves the previous content of the file.
+	 */
+	@Test
+	public void testFailedWriteKeepsPreviousFile() throws Exception {
+		File file = newFile();
+		SerializeUtils.writeBytesToFile(file, SerializeUtils.toByteArray("previous"));
+		// A directory in place of the temporary file makes the write fail
+		File tempFile = new File(file.getPath() + ".tmp");
+		tempFile.mkdir();
+		tempFile.deleteOnExit();
+		try {
+			SerializeUtils.writeBytesToFile(file, SerializeUtils.toByteArray("next"));
+			fail("wrote over a directory");
+		} catch (IOException ex) {
+			// expected
+		}
+		assertEquals("previous", SerializeUtils.readFromFile(file));
+		tempFile.delete();
+		// A partly written temporary file left by a crash is replaced
+		byte[] bytes = SerializeUtils.toByteArray("next");
+		SerializeUtils.writeBytesToFile(tempFile, Arrays.copyOf(bytes, bytes.length / 2));
+		SerializeUtils.writeBytesToFile(file, bytes);
+		assertEquals("next", SerializeUtils.readFromFile(file));
+	}
+}
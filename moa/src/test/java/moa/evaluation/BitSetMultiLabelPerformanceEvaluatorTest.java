@@ -0,0 +1,281 @@
+/*
+ *    BitSetMultiLabelPerformanceEvaluatorTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.MultiLabelPrediction;
+import com.yahoo.labs.samoa.instances.Prediction;
+
+import moa.core.Example;
+import moa.core.Measurement;
+import moa.streams.MultiTargetArffFileStream;
+
+import org.junit.Test;
+
+/**
+ * Tests that the bitset multi-label evaluators give the same metrics as
+ * computing them label by label from all the examples, weighted by the
+ * window or the fading factor, on random labelsets.
+ */
+public class BitSetMultiLabelPerformanceEvaluatorTest {
+
+	private static final int NUM_EXAMPLES = 600;
+
+	private static final double EPS = 1e-9;
+
+	private static final String[] MEASUREMENTS = {"Hamming score", "Hamming loss",
+		"Subset accuracy", "Example-based precision", "Example-based recall",
+		"Example-based F1", "Example-based Jaccard index", "Micro-averaged precision",
+		"Micro-averaged recall", "Micro-averaged F1", "Micro-averaged Jaccard index",
+		"Macro-averaged F1", "Macro-averaged Jaccard index"};
+
+	/**
+	 * Random examples with their votes, read from an ARFF file with the
+	 * labels as the first attributes.
+	 */
+	private static class RandomResults {
+
+		List<Example<Instance>> examples = new ArrayList<Example<Instance>>();
+
+		List<Prediction> predictions = new ArrayList<Prediction>();
+
+		boolean[][] trueLabels;
+
+		boolean[][] predictedLabels;
+
+		RandomResults(int numLabels, boolean nonEmpty, long seed) throws IOException {
+			Random random = new Random(seed);
+			this.trueLabels = new boolean[NUM_EXAMPLES][numLabels];
+			this.predictedLabels = new boolean[NUM_EXAMPLES][numLabels];
+			File file = File.createTempFile("multilabel", ".arff");
+			file.deleteOnExit();
+			try (Writer writer = new FileWriter(file)) {
+				writer.write("@relation multilabel\n");
+				for (int j = 0; j < numLabels; j++) {
+					writer.write("@attribute label" + j + " {0,1}\n");
+				}
+				writer.write("@attribute x numeric\n@data\n");
+				for (int i = 0; i < NUM_EXAMPLES; i++) {
+					// Sparse, dense and empty labelsets
+					double density = i % 10 == 0 ? 0.0 : random.nextDouble() * random.nextDouble();
+					for (int j = 0; j < numLabels; j++) {
+						this.trueLabels[i][j] = random.nextDouble() < density;
+					}
+					if (nonEmpty) {
+						this.trueLabels[i][random.nextInt(numLabels)] = true;
+					}
+					MultiLabelPrediction prediction = new MultiLabelPrediction(numLabels);
+					for (int j = 0; j < numLabels; j++) {
+						writer.write(this.trueLabels[i][j] ? "1," : "0,");
+						// Mostly right, with some errors
+						double vote = random.nextDouble() < 0.8 == this.trueLabels[i][j]
+								? 0.5 + random.nextDouble() / 2 : random.nextDouble() / 2;
+						prediction.setVotes(j, new double[]{vote});
+						this.predictedLabels[i][j] = vote > 0.5;
+					}
+					writer.write(i + "\n");
+					this.predictions.add(prediction);
+				}
+			}
+			MultiTargetArffFileStream stream = new MultiTargetArffFileStream(file.getPath(), "1-" + numLabels);
+			stream.prepareForUse();
+			for (int i = 0; i < NUM_EXAMPLES; i++) {
+				this.examples.add(stream.nextInstance());
+			}
+		}
+	}
+
+	private static double ratio(double numerator, double denominator) {
+		return denominator > 0.0 ? numerator / denominator : 1.0;
+	}
+
+	/**
+	 * Computes the metrics label by label from the first numExamples
+	 * results, with the given weight for each example.
+	 */
+	private static double[] referenceMetrics(RandomResults results, int numExamples, double[] weights) {
+		int numLabels = results.trueLabels[0].length;
+		double[] sums = new double[7];
+		double sumWeights = 0.0;
+		double tp = 0.0;
+		double fp = 0.0;
+		double fn = 0.0;
+		double[] labelTp = new double[numLabels];
+		double[] labelErrors = new double[numLabels];
+		for (int i = 0; i < numExamples; i++) {
+			double weight = weights[i];
+			int numTrue = 0;
+			int numPredicted = 0;
+			int numBoth = 0;
+			int numErrors = 0;
+			for (int j = 0; j < numLabels; j++) {
+				boolean t = results.trueLabels[i][j];
+				boolean p = results.predictedLabels[i][j];
+				if (t) {
+					numTrue++;
+				}
+				if (p) {
+					numPredicted++;
+				}
+				if (t && p) {
+					numBoth++;
+					labelTp[j] += weight;
+				}
+				if (t != p) {
+					numErrors++;
+					labelErrors[j] += weight;
+				}
+			}
+			sumWeights += weight;
+			sums[1] += weight * numErrors / numLabels;
+			sums[2] += weight * (numErrors == 0 ? 1.0 : 0.0);
+			sums[3] += weight * (numPredicted == 0 ? (numTrue == 0 ? 1.0 : 0.0) : (double) numBoth / numPredicted);
+			sums[4] += weight * (numTrue == 0 ? (numPredicted == 0 ? 1.0 : 0.0) : (double) numBoth / numTrue);
+			sums[5] += weight * ratio(2.0 * numBoth, numTrue + numPredicted);
+			sums[6] += weight * ratio(numBoth, numTrue + numPredicted - numBoth);
+			tp += weight * numBoth;
+			fp += weight * (numPredicted - numBoth);
+			fn += weight * (numTrue - numBoth);
+		}
+		double macroF1 = 0.0;
+		double macroJaccard = 0.0;
+		for (int j = 0; j < numLabels; j++) {
+			macroF1 += ratio(2.0 * labelTp[j], 2.0 * labelTp[j] + labelErrors[j]);
+			macroJaccard += ratio(labelTp[j], labelTp[j] + labelErrors[j]);
+		}
+		return new double[]{1.0 - sums[1] / sumWeights, sums[1] / sumWeights,
+			sums[2] / sumWeights, sums[3] / sumWeights, sums[4] / sumWeights,
+			sums[5] / sumWeights, sums[6] / sumWeights,
+			ratio(tp, tp + fp), ratio(tp, tp + fn), ratio(2.0 * tp, 2.0 * tp + fp + fn),
+			ratio(tp, tp + fp + fn), macroF1 / numLabels, macroJaccard / numLabels};
+	}
+
+	private static double getMeasurement(Measurement[] measurements, String name) {
+		Measurement measurement = Measurement.getMeasurementNamed(name, measurements);
+		assertNotNull(name, measurement);
+		return measurement.getValue();
+	}
+
+	/**
+	 * Adds the results one by one and checks the metrics after each, with
+	 * the weights of the examples given by the weighting.
+	 */
+	private static void checkMetrics(BitSetMultiLabelPerformanceEvaluator evaluator,
+			RandomResults results, ExampleWeighting weighting) {
+		evaluator.prepareForUse();
+		evaluator.reset();
+		double[] weights = new double[NUM_EXAMPLES];
+		for (int n = 1; n <= NUM_EXAMPLES; n++) {
+			evaluator.addResult(results.examples.get(n - 1), results.predictions.get(n - 1));
+			if (n % 37 != 0 && n != 1 && n != NUM_EXAMPLES) {
+				continue;
+			}
+			for (int i = 0; i < n; i++) {
+				weights[i] = weighting.weight(n - 1 - i);
+			}
+			double[] expected = referenceMetrics(results, n, weights);
+			Measurement[] measurements = evaluator.getPerformanceMeasurements();
+			assertEquals(n, getMeasurement(measurements, "classified instances"), 0.0);
+			for (int m = 0; m < MEASUREMENTS.length; m++) {
+				assertEquals(MEASUREMENTS[m] + " after " + n, expected[m],
+						getMeasurement(measurements, MEASUREMENTS[m]), EPS);
+			}
+		}
+	}
+
+	private interface ExampleWeighting {
+
+		/**
+		 * Weight of an example followed by the given number of examples.
+		 */
+		double weight(int age);
+	}
+
+	@Test
+	public void testBasic() throws IOException {
+		for (int numLabels : new int[]{1, 6, 64, 100}) {
+			RandomResults results = new RandomResults(numLabels, false, numLabels);
+			checkMetrics(new BitSetMultiLabelPerformanceEvaluator(), results, age -> 1.0);
+		}
+	}
+
+	@Test
+	public void testWindow() throws IOException {
+		for (int numLabels : new int[]{6, 100}) {
+			RandomResults results = new RandomResults(numLabels, false, numLabels + 1);
+			for (int width : new int[]{1, 50, 1000}) {
+				WindowBitSetMultiLabelPerformanceEvaluator evaluator =
+						new WindowBitSetMultiLabelPerformanceEvaluator();
+				evaluator.widthOption.setValue(width);
+				checkMetrics(evaluator, results, age -> age < width ? 1.0 : 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testFadingFactor() throws IOException {
+		for (int numLabels : new int[]{6, 100}) {
+			RandomResults results = new RandomResults(numLabels, false, numLabels + 2);
+			for (double alpha : new double[]{1.0, 0.99, 0.9}) {
+				FadingFactorBitSetMultiLabelPerformanceEvaluator evaluator =
+						new FadingFactorBitSetMultiLabelPerformanceEvaluator();
+				evaluator.alphaOption.setValue(alpha);
+				checkMetrics(evaluator, results, age -> Math.pow(alpha, age));
+			}
+		}
+	}
+
+	/**
+	 * The F-measure of BasicMultiLabelPerformanceEvaluator is the
+	 * example-based F1 when no labelset is empty.
+	 */
+	@Test
+	public void testBasicMultiLabelFMeasure() throws IOException {
+		RandomResults results = new RandomResults(10, true, 3);
+		BitSetMultiLabelPerformanceEvaluator evaluator = new BitSetMultiLabelPerformanceEvaluator();
+		evaluator.prepareForUse();
+		BasicMultiLabelPerformanceEvaluator basic = new BasicMultiLabelPerformanceEvaluator();
+		// The basic evaluator prints the labelsets
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			for (int i = 0; i < NUM_EXAMPLES; i++) {
+				evaluator.addResult(results.examples.get(i), results.predictions.get(i));
+				basic.addResult(results.examples.get(i), results.predictions.get(i));
+			}
+		} finally {
+			System.setOut(out);
+		}
+		assertEquals(getMeasurement(basic.getPerformanceMeasurements(), "F-Measure"),
+				getMeasurement(evaluator.getPerformanceMeasurements(), "Example-based F1"), EPS);
+	}
+}
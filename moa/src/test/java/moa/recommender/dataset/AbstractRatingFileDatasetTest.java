@@ -0,0 +1,114 @@
+/*
+ *    AbstractRatingFileDatasetTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.recommender.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+import moa.recommender.dataset.impl.MovielensDataset;
+
+import org.junit.Test;
+
+/**
+ * Tests that the rating datasets read the same ratings with and without
+ * prefetching, and report malformed files instead of skipping them.
+ */
+public class AbstractRatingFileDatasetTest {
+
+	// More than two chunks of the prefetching thread
+	private static final int NUM_RATINGS = 10000;
+
+	private static File writeRatings(String last) throws IOException {
+		File file = File.createTempFile("ratings", ".dat");
+		file.deleteOnExit();
+		try (Writer writer = new FileWriter(file)) {
+			for (int i = 0; i < NUM_RATINGS; i++) {
+				writer.write(i % 97 + "::" + i % 89 + "::" + (1 + i % 5) + ".5::978300760\n");
+			}
+			writer.write(last);
+		}
+		return file;
+	}
+
+	private static MovielensDataset open(File file, boolean prefetch) {
+		MovielensDataset dataset = new MovielensDataset();
+		dataset.fileOption.setValue(file.getPath());
+		dataset.prefetchOption.setValue(prefetch);
+		dataset.prepareForUse();
+		return dataset;
+	}
+
+	private static void checkRatings(MovielensDataset dataset) {
+		for (int i = 0; i < NUM_RATINGS; i++) {
+			assertTrue(dataset.next());
+			assertEquals(i % 97, dataset.curUserID());
+			assertEquals(i % 89, dataset.curItemID());
+			assertEquals(1.5 + i % 5, dataset.curRating(), 0.0);
+		}
+	}
+
+	@Test
+	public void testReadsAllRatings() throws IOException {
+		File file = writeRatings("1::2::3e0\n");
+		for (boolean prefetch : new boolean[]{false, true}) {
+			MovielensDataset dataset = open(file, prefetch);
+			checkRatings(dataset);
+			assertTrue(dataset.next());
+			assertEquals(3.0, dataset.curRating(), 0.0);
+			assertFalse(dataset.next());
+			dataset.close();
+		}
+	}
+
+	@Test
+	public void testMalformedNumberThrows() throws IOException {
+		File file = writeRatings("1::2::-::978300760\n");
+		for (boolean prefetch : new boolean[]{false, true}) {
+			MovielensDataset dataset = open(file, prefetch);
+			checkRatings(dataset);
+			try {
+				dataset.next();
+				fail("A malformed rating should not be read as a rating");
+			} catch (UncheckedIOException e) {
+				// expected
+			}
+			dataset.close();
+		}
+	}
+
+	@Test
+	public void testCloseStopsPrefetching() throws IOException {
+		File file = writeRatings("");
+		MovielensDataset dataset = open(file, true);
+		assertTrue(dataset.next());
+		// The prefetching thread is blocked until a chunk is freed
+		dataset.close();
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			assertFalse(thread.getName().equals("Prefetch " + dataset));
+		}
+	}
+}
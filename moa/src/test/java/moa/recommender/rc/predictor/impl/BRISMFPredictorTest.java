@@ -0,0 +1,110 @@
+/*
+ *    BRISMFPredictorTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.recommender.rc.predictor.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import moa.recommender.rc.data.RecommenderData;
+import moa.recommender.rc.data.impl.CompactRecommenderData;
+import moa.recommender.rc.data.impl.MemRecommenderData;
+import moa.recommender.rc.utils.Rating;
+
+import org.junit.Test;
+
+/**
+ * Tests that the parallel block training of BRISMFPredictor does not depend
+ * on the number of its threads, with both rating stores.
+ */
+public class BRISMFPredictorTest {
+
+	private static final int NUM_USERS = 200;
+
+	private static final int NUM_ITEMS = 100;
+
+	private static RecommenderData fillData(RecommenderData data) {
+		Random random = new Random(1);
+		for (int k = 0; k < 5000; k++) {
+			int user = random.nextInt(NUM_USERS);
+			int item = random.nextInt(NUM_ITEMS);
+			data.setRating(user, item, 1 + (user + item) % 5);
+		}
+		return data;
+	}
+
+	/**
+	 * Trains on the ratings split into 4 x 4 blocks, so that only the
+	 * number of threads differs between runs.
+	 */
+	private static BRISMFPredictor train(RecommenderData data, int threads) {
+		BRISMFPredictor predictor = new BRISMFPredictor(10, data, false);
+		predictor.setNBlocks(4);
+		predictor.setNThreads(threads);
+		predictor.train();
+		return predictor;
+	}
+
+	private static void assertSameFactors(BRISMFPredictor expected, BRISMFPredictor actual) {
+		assertEquals(expected.getLastTrainingEpochs(), actual.getLastTrainingEpochs());
+		assertEquals(expected.getLastTrainingRMSE(), actual.getLastTrainingRMSE(), 0.0);
+		for (int user : expected.getData().getUsers()) {
+			assertNotNull(expected.getUserFeatures(user));
+			assertArrayEquals(expected.getUserFeatures(user), actual.getUserFeatures(user), 0.0f);
+		}
+		for (int item : expected.getData().getItems()) {
+			assertNotNull(expected.getItemFeatures(item));
+			assertArrayEquals(expected.getItemFeatures(item), actual.getItemFeatures(item), 0.0f);
+		}
+	}
+
+	@Test
+	public void testParallelTrainingMatchesOneThread() {
+		BRISMFPredictor sequential = train(fillData(new CompactRecommenderData()), 1);
+		BRISMFPredictor parallel = train(fillData(new CompactRecommenderData()), 4);
+		assertTrue(sequential.getLastTrainingEpochs() > 1);
+		assertSameFactors(sequential, parallel);
+	}
+
+	@Test
+	public void testMemRecommenderData() {
+		RecommenderData data = fillData(new MemRecommenderData());
+		int count = 0;
+		for (Iterator<Rating> it = data.ratingIterator(); it.hasNext(); it.next()) {
+			count++;
+		}
+		assertEquals(data.getNumRatings(), count);
+		BRISMFPredictor sequential = train(data, 1);
+		BRISMFPredictor parallel = train(fillData(new MemRecommenderData()), 4);
+		assertSameFactors(sequential, parallel);
+	}
+
+	@Test
+	public void testMemRecommenderDataSequentialTraining() {
+		BRISMFPredictor predictor = new BRISMFPredictor(10, fillData(new MemRecommenderData()), false);
+		predictor.train();
+		assertTrue(predictor.getLastTrainingEpochs() > 0);
+		assertFalse(Double.isNaN(predictor.getLastTrainingRMSE()));
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ *    PrefetchedStreamTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+/**
+ * Tests that PrefetchedStream returns the instances of the wrapped stream in
+ * order, and that its producer thread stops.
+ */
+public class PrefetchedStreamTest {
+
+	private static final String SOURCE = "generators.RandomTreeGenerator -r 3 -i 5";
+
+	private static InstanceStream newSource() {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.treeRandomSeedOption.setValue(3);
+		stream.instanceRandomSeedOption.setValue(5);
+		stream.prepareForUse();
+		return stream;
+	}
+
+	private static PrefetchedStream newPrefetchedStream(String source, int bufferSize) {
+		PrefetchedStream stream = new PrefetchedStream();
+		stream.streamOption.setValueViaCLIString(source);
+		stream.bufferSizeOption.setValue(bufferSize);
+		stream.prepareForUse();
+		return stream;
+	}
+
+	private static void assertSameInstances(InstanceStream expected, InstanceStream actual, int numInstances) {
+		for (int i = 0; i < numInstances; i++) {
+			assertTrue(actual.hasMoreInstances());
+			Instance expectedInstance = expected.nextInstance().getData();
+			Instance actualInstance = actual.nextInstance().getData();
+			assertArrayEquals("instance " + i, expectedInstance.toDoubleArray(),
+					actualInstance.toDoubleArray(), 0.0);
+		}
+	}
+
+	private static void waitForEnd(Thread thread) throws InterruptedException {
+		for (int i = 0; i < 100 && thread.isAlive(); i++) {
+			System.gc();
+			thread.join(100);
+		}
+		assertFalse(thread.isAlive());
+	}
+
+	@Test
+	public void testSourceOrder() {
+		for (int bufferSize : new int[]{1, 7, 1024}) {
+			PrefetchedStream stream = newPrefetchedStream(SOURCE, bufferSize);
+			assertSameInstances(newSource(), stream, 5000);
+			stream.restart();
+		}
+	}
+
+	@Test
+	public void testFiniteStream() throws InterruptedException {
+		String file = ClassLoader.getSystemResource("moa/classifiers/data/small_classification.arff").getPath();
+		ArffFileStream source = new ArffFileStream(file, -1);
+		source.prepareForUse();
+		int numInstances = 0;
+		while (source.hasMoreInstances()) {
+			source.nextInstance();
+			numInstances++;
+		}
+		source.restart();
+		PrefetchedStream stream = newPrefetchedStream("ArffFileStream -f " + file, 3);
+		assertSameInstances(source, stream, numInstances);
+		assertFalse(stream.hasMoreInstances());
+		assertNull(stream.nextInstance());
+		waitForEnd(stream.prefetcher.producer);
+	}
+
+	@Test
+	public void testRestart() throws InterruptedException {
+		PrefetchedStream stream = newPrefetchedStream(SOURCE, 16);
+		assertSameInstances(newSource(), stream, 100);
+		Thread producer = stream.prefetcher.producer;
+		stream.restart();
+		assertFalse(producer.isAlive());
+		assertSameInstances(newSource(), stream, 200);
+		producer = stream.prefetcher.producer;
+		stream.restart();
+		assertFalse(producer.isAlive());
+		// Restarting before the first read
+		stream.restart();
+		assertSameInstances(newSource(), stream, 100);
+		stream.restart();
+	}
+
+	/**
+	 * A producer blocked on a full buffer stops once the stream is no longer
+	 * referenced.
+	 */
+	@Test
+	public void testProducerStopsWhenUnreferenced() throws InterruptedException {
+		PrefetchedStream stream = newPrefetchedStream(SOURCE, 4);
+		stream.nextInstance();
+		Thread producer = stream.prefetcher.producer;
+		assertEquals("PrefetchedStream producer", producer.getName());
+		assertTrue(producer.isDaemon());
+		stream = null;
+		waitForEnd(producer);
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ *    PartitionableGeneratorsTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams.generators;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import moa.streams.PartitionableStream;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Tests that skipping instances of the partitionable generators gives the
+ * same instances as reading them one after the other, around the starts of
+ * the seed blocks.
+ */
+public class PartitionableGeneratorsTest {
+
+	private static final int BLOCK_SIZE = 100;
+
+	private static final long[] SKIPS = {0, 1, 2, 99, 100, 101, 199, 200, 201, 250, 1000};
+
+	private static final int COMPARED_INSTANCES = 5;
+
+	private static PartitionableStream createStream(PartitionableStream stream, String options) {
+		((moa.options.OptionHandler) stream).getOptions().setViaCLIString(options);
+		((moa.options.OptionHandler) stream).prepareForUse();
+		return stream;
+	}
+
+	/**
+	 * Compares skipInstances(n) followed by nextInstance with n + 1 calls to
+	 * nextInstance, from the start of the stream and after some instances
+	 * were already read.
+	 */
+	private static void checkSkips(PartitionableStream stream) {
+		assertTrue(stream.isPartitionable());
+		for (int alreadyRead : new int[]{0, 3, BLOCK_SIZE - 1}) {
+			for (long skip : SKIPS) {
+				String message = stream.getClass().getSimpleName() + " after " + alreadyRead
+						+ " instances, skipping " + skip;
+				PartitionableStream sequential = (PartitionableStream) stream.copy();
+				PartitionableStream skipping = (PartitionableStream) stream.copy();
+				sequential.restart();
+				skipping.restart();
+				for (int i = 0; i < alreadyRead; i++) {
+					sequential.nextInstance();
+					skipping.nextInstance();
+				}
+				for (long i = 0; i < skip; i++) {
+					sequential.nextInstance();
+				}
+				skipping.skipInstances(skip);
+				for (int i = 0; i < COMPARED_INSTANCES; i++) {
+					Instance expected = sequential.nextInstance().getData();
+					Instance actual = skipping.nextInstance().getData();
+					assertArrayEquals(message, expected.toDoubleArray(), actual.toDoubleArray(), 0.0);
+					assertEquals(message, expected.weight(), actual.weight(), 0.0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRandomTreeGenerator() {
+		checkSkips(createStream(new RandomTreeGenerator(), "-B " + BLOCK_SIZE));
+	}
+
+	@Test
+	public void testRandomRBFGenerator() {
+		checkSkips(createStream(new RandomRBFGenerator(), "-B " + BLOCK_SIZE));
+	}
+
+	@Test
+	public void testRandomRBFGeneratorDrift() {
+		checkSkips(createStream(new RandomRBFGeneratorDrift(), "-B " + BLOCK_SIZE + " -s 0.0"));
+	}
+
+	@Test
+	public void testRandomRBFGeneratorDriftNotPartitionable() {
+		PartitionableStream stream = createStream(new RandomRBFGeneratorDrift(), "-B " + BLOCK_SIZE + " -s 0.01 -k 5");
+		assertFalse(stream.isPartitionable());
+	}
+
+	@Test
+	public void testHyperplaneGenerator() {
+		checkSkips(createStream(new HyperplaneGenerator(), "-B " + BLOCK_SIZE + " -k 0"));
+	}
+
+	@Test
+	public void testHyperplaneGeneratorNotPartitionable() {
+		PartitionableStream stream = createStream(new HyperplaneGenerator(), "-B " + BLOCK_SIZE + " -k 2 -t 0.01");
+		assertFalse(stream.isPartitionable());
+	}
+
+	@Test
+	public void testAgrawalGenerator() {
+		checkSkips(createStream(new AgrawalGenerator(), "-B " + BLOCK_SIZE));
+	}
+
+	@Test
+	public void testAgrawalGeneratorBalanced() {
+		// Odd skips flip the class of the next instance
+		checkSkips(createStream(new AgrawalGenerator(), "-B " + BLOCK_SIZE + " -b"));
+	}
+
+	@Test
+	public void testSEAGenerator() {
+		checkSkips(createStream(new SEAGenerator(), "-B " + BLOCK_SIZE));
+	}
+
+	@Test
+	public void testSEAGeneratorBalanced() {
+		checkSkips(createStream(new SEAGenerator(), "-B " + BLOCK_SIZE + " -b"));
+	}
+
+	@Test
+	public void testLEDGenerator() {
+		checkSkips(createStream(new LEDGenerator(), "-B " + BLOCK_SIZE));
+	}
+
+	@Test
+	public void testLEDGeneratorDrift() {
+		checkSkips(createStream(new LEDGeneratorDrift(), "-B " + BLOCK_SIZE + " -d 3"));
+	}
+
+	@Test
+	public void testWithoutBlocks() {
+		PartitionableStream stream = createStream(new RandomTreeGenerator(), "");
+		assertFalse(stream.isPartitionable());
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ *    CacheShuffledStreamTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import moa.streams.InstanceStream;
+import moa.streams.PartitionedInstancesStream;
+import moa.streams.generators.RandomRBFGenerator;
+
+import org.junit.Test;
+
+/**
+ * Tests that shuffling on disk with CacheShuffledStream gives the instances
+ * shuffled in memory, in another order that is reproducible.
+ */
+public class CacheShuffledStreamTest {
+
+	private static final String SOURCE = "generators.RandomRBFGenerator -r 2 -i 3 -a 5";
+
+	private static final int NUM_INSTANCES = 5000;
+
+	private static InstanceStream shuffle(boolean onDisk, int cacheSize) {
+		CacheShuffledStream task = new CacheShuffledStream();
+		task.streamOption.setValueViaCLIString(SOURCE);
+		task.maximumCacheSizeOption.setValue(onDisk ? cacheSize : NUM_INSTANCES);
+		task.maxInstancesOption.setValue(NUM_INSTANCES);
+		if (onDisk) {
+			task.onDiskOption.set();
+		}
+		task.prepareForUse();
+		return (InstanceStream) task.doTask();
+	}
+
+	/**
+	 * Returns the instances as rows of the weight and the values.
+	 */
+	private static List<double[]> readAll(InstanceStream stream) {
+		return read(stream, Integer.MAX_VALUE);
+	}
+
+	private static List<double[]> read(InstanceStream stream, int numInstances) {
+		List<double[]> rows = new ArrayList<double[]>();
+		while (rows.size() < numInstances && stream.hasMoreInstances()) {
+			Instance inst = stream.nextInstance().getData();
+			double[] row = new double[inst.numAttributes() + 1];
+			row[0] = inst.weight();
+			for (int i = 0; i < inst.numAttributes(); i++) {
+				row[i + 1] = inst.value(i);
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	private static void assertSameRows(List<double[]> expected, List<double[]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertTrue("instance " + i, Arrays.equals(expected.get(i), actual.get(i)));
+		}
+	}
+
+	private static List<double[]> sorted(List<double[]> rows) {
+		List<double[]> result = new ArrayList<double[]>(rows);
+		result.sort((a, b) -> {
+			for (int i = 0; i < a.length; i++) {
+				int c = Double.compare(a[i], b[i]);
+				if (c != 0) {
+					return c;
+				}
+			}
+			return 0;
+		});
+		return result;
+	}
+
+	private static void testSameInstances(int cacheSize) {
+		List<double[]> inMemory = readAll(shuffle(false, 0));
+		InstanceStream stream = shuffle(true, cacheSize);
+		assertTrue(stream instanceof PartitionedInstancesStream);
+		assertEquals(NUM_INSTANCES, stream.estimatedRemainingInstances());
+		List<double[]> onDisk = readAll(stream);
+		assertEquals(0, stream.estimatedRemainingInstances());
+		assertSameRows(sorted(inMemory), sorted(onDisk));
+		// Shuffled, not in the order of the source
+		RandomRBFGenerator source = new RandomRBFGenerator();
+		source.getOptions().setViaCLIString(SOURCE.substring(SOURCE.indexOf(' ') + 1));
+		source.prepareForUse();
+		List<double[]> unshuffled = read(source, NUM_INSTANCES);
+		assertSameRows(sorted(unshuffled), sorted(onDisk));
+		int numMoved = 0;
+		for (int i = 0; i < NUM_INSTANCES; i++) {
+			if (!Arrays.equals(unshuffled.get(i), onDisk.get(i))) {
+				numMoved++;
+			}
+		}
+		assertTrue(numMoved > NUM_INSTANCES * 0.9);
+	}
+
+	@Test
+	public void testSameInstancesAsInMemory() {
+		testSameInstances(1000);
+	}
+
+	/**
+	 * With a small cache, most partitions are larger than the cache and are
+	 * split again.
+	 */
+	@Test
+	public void testSplitPartitions() {
+		testSameInstances(10);
+	}
+
+	@Test
+	public void testReproducible() {
+		InstanceStream stream = shuffle(true, 10);
+		List<double[]> first = readAll(stream);
+		assertFalse(stream.hasMoreInstances());
+		stream.restart();
+		assertSameRows(first, readAll(stream));
+		assertSameRows(first, readAll(shuffle(true, 10)));
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ *    EvaluateConceptDriftTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import moa.evaluation.LearningCurve;
+
+import org.junit.Test;
+
+/**
+ * Tests that passing the input values to the change detectors in batches
+ * gives the same learning curves as passing them one at a time.
+ */
+public class EvaluateConceptDriftTest {
+
+	private static final String[] DETECTORS = {"DDM", "PageHinkleyDM",
+		"CusumDM", "HDDM_A_Test", "SEEDChangeDetector", "ADWINChangeDetector",
+		"EDDM"};
+
+	private static LearningCurve evaluate(String detector, int batchSize) {
+		EvaluateConceptDrift task = new EvaluateConceptDrift();
+		task.learnerOption.setValueViaCLIString("ChangeDetectorLearner -d " + detector);
+		task.instanceLimitOption.setValue(20000);
+		task.sampleFrequencyOption.setValue(1000);
+		task.batchSizeOption.setValue(batchSize);
+		task.prepareForUse();
+		return (LearningCurve) task.doTask();
+	}
+
+	private static int measurementIndex(LearningCurve curve, String name) {
+		String[] names = curve.headerToString().split(",");
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+	@Test
+	public void testBatchesMatchSingleInputs() {
+		double detectedChanges = 0;
+		for (String detector : DETECTORS) {
+			LearningCurve single = evaluate(detector, 1);
+			LearningCurve batched = evaluate(detector, 1000);
+			String header = single.headerToString();
+			assertEquals(detector, header, batched.headerToString());
+			assertEquals(detector, single.numEntries(), batched.numEntries());
+			String[] names = header.split(",");
+			for (int entry = 0; entry < single.numEntries(); entry++) {
+				for (int i = 0; i < names.length; i++) {
+					if (names[i].startsWith("evaluation time") || names[i].startsWith("model cost")) {
+						continue;
+					}
+					assertEquals(detector + " " + names[i] + " at entry " + entry,
+							single.getMeasurement(entry, i), batched.getMeasurement(entry, i), 0.0);
+				}
+			}
+			detectedChanges += batched.getMeasurement(batched.numEntries() - 1,
+					measurementIndex(batched, "detected changes"));
+		}
+		assertTrue(detectedChanges > 0);
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ *    EvaluatePrequentialDelayedTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import moa.classifiers.AbstractClassifier;
+import moa.classifiers.MultiClassClassifier;
+import moa.core.Measurement;
+
+import org.junit.Test;
+
+/**
+ * Tests that EvaluatePrequentialDelayed trains on every instance once its
+ * delay has passed, in the order of the stream.
+ */
+public class EvaluatePrequentialDelayedTest {
+
+	private static final int NUM_INSTANCES = 500;
+
+	/**
+	 * Records the instances it is trained on, and how many there were when
+	 * each instance is tested. The task trains a copy of the learner, so the
+	 * copy used last is kept.
+	 */
+	public static class RecordingClassifier extends AbstractClassifier
+			implements MultiClassClassifier {
+
+		private static final long serialVersionUID = 1L;
+
+		static RecordingClassifier lastUsed;
+
+		List<Integer> trained = new ArrayList<Integer>();
+
+		List<Integer> trainedBeforeTest = new ArrayList<Integer>();
+
+		@Override
+		public void resetLearningImpl() {
+			this.trained.clear();
+			this.trainedBeforeTest.clear();
+		}
+
+		@Override
+		public void trainOnInstanceImpl(Instance inst) {
+			this.trained.add((int) inst.value(0));
+		}
+
+		@Override
+		public double[] getVotesForInstance(Instance inst) {
+			lastUsed = this;
+			this.trainedBeforeTest.add(this.trained.size());
+			return new double[]{1.0, 0.0};
+		}
+
+		@Override
+		protected Measurement[] getModelMeasurementsImpl() {
+			return new Measurement[0];
+		}
+
+		@Override
+		public void getModelDescription(StringBuilder out, int indent) {
+		}
+
+		@Override
+		public boolean isRandomizable() {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes instances numbered from 1, as a finite stream.
+	 */
+	private static File writeStream() throws IOException {
+		File file = File.createTempFile("delayed", ".arff");
+		file.deleteOnExit();
+		try (Writer writer = new FileWriter(file)) {
+			writer.write("@relation delayed\n@attribute n numeric\n@attribute class {a,b}\n@data\n");
+			for (int i = 1; i <= NUM_INSTANCES; i++) {
+				writer.write(i + "," + (i % 3 == 0 ? "a" : "b") + "\n");
+			}
+		}
+		return file;
+	}
+
+	private static RecordingClassifier evaluate(int delay) throws IOException {
+		EvaluatePrequentialDelayed task = new EvaluatePrequentialDelayed();
+		task.learnerOption.setCurrentObject(new RecordingClassifier());
+		task.streamOption.setValueViaCLIString("ArffFileStream -f " + writeStream().getPath());
+		task.delayLengthOption.setValue(delay);
+		task.initialWindowSizeOption.setValue(0);
+		task.instanceLimitOption.setValue(-1);
+		task.sampleFrequencyOption.setValue(100);
+		task.prepareForUse();
+		task.doTask();
+		return RecordingClassifier.lastUsed;
+	}
+
+	@Test
+	public void testTrainsAfterDelay() throws IOException {
+		int delay = 7;
+		RecordingClassifier learner = evaluate(delay);
+		assertEquals(NUM_INSTANCES - delay, learner.trained.size());
+		for (int i = 0; i < learner.trained.size(); i++) {
+			assertEquals(i + 1, (int) learner.trained.get(i));
+		}
+		assertEquals(NUM_INSTANCES, learner.trainedBeforeTest.size());
+		for (int t = 1; t <= NUM_INSTANCES; t++) {
+			assertEquals(Math.max(0, t - delay), (int) learner.trainedBeforeTest.get(t - 1));
+		}
+	}
+
+	/**
+	 * Without an instance limit, the delay sets the capacity of the buffer,
+	 * which must not be allocated up front.
+	 */
+	@Test
+	public void testLargeDelayWithoutInstanceLimit() throws IOException {
+		RecordingClassifier learner = evaluate(Integer.MAX_VALUE - 1);
+		assertEquals(0, learner.trained.size());
+		assertEquals(NUM_INSTANCES, learner.trainedBeforeTest.size());
+	}
+}
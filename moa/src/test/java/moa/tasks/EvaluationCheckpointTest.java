@@ -0,0 +1,130 @@
+/*
+ *    EvaluationCheckpointTest.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import moa.evaluation.LearningCurve;
+
+import org.junit.Test;
+
+/**
+ * Tests that an evaluation resumed from an EvaluationCheckpoint gives the
+ * same learning curve as an uninterrupted evaluation.
+ */
+public class EvaluationCheckpointTest {
+
+	private static final String OPTIONS = "-l trees.HoeffdingTree"
+			+ " -s (generators.RandomTreeGenerator -r 3 -i 5) -f 500 -k 700";
+
+	private static File newCheckpointFile() throws IOException {
+		File file = File.createTempFile("evaluation", ".ckpt");
+		file.delete();
+		file.deleteOnExit();
+		new File(file.getPath() + ".tmp").deleteOnExit();
+		return file;
+	}
+
+	private static LearningCurve evaluate(MainTask task, String options) {
+		task.getOptions().setViaCLIString(options);
+		task.prepareForUse();
+		return (LearningCurve) task.doTask();
+	}
+
+	/**
+	 * Resource measurements differ between runs, all the others must be
+	 * equal.
+	 */
+	private static void assertSameCurve(LearningCurve expected, LearningCurve actual) {
+		assertEquals(expected.headerToString(), actual.headerToString());
+		assertEquals(expected.numEntries(), actual.numEntries());
+		int numMeasurements = expected.headerToString().split(",").length;
+		for (int entry = 0; entry < expected.numEntries(); entry++) {
+			for (int i = 0; i < numMeasurements; i++) {
+				String name = expected.getMeasurementName(i);
+				if (name.contains("time") || name.contains("RAM-Hours")
+						|| name.equals("allocated bytes") || name.startsWith("throughput")) {
+					continue;
+				}
+				assertEquals("entry " + entry + " " + name,
+						expected.getMeasurement(entry, i), actual.getMeasurement(entry, i), 0.0);
+			}
+		}
+	}
+
+	/**
+	 * Stops the evaluation after 1500 instances, after a checkpoint at 1400
+	 * and the final one, then resumes it up to 3000 instances.
+	 */
+	private static void testResume(MainTask uninterrupted, MainTask stopped,
+			MainTask resumed) throws IOException {
+		File checkpointFile = newCheckpointFile();
+		LearningCurve expected = evaluate(uninterrupted, OPTIONS + " -i 3000");
+		evaluate(stopped, OPTIONS + " -i 1500 -c " + checkpointFile.getPath());
+		assertTrue(checkpointFile.exists());
+		assertEquals(1500, EvaluationCheckpoint.readFromFile(checkpointFile).instancesProcessed);
+		LearningCurve actual = evaluate(resumed, OPTIONS + " -i 3000 -R -c " + checkpointFile.getPath());
+		assertSameCurve(expected, actual);
+		assertEquals(3000, EvaluationCheckpoint.readFromFile(checkpointFile).instancesProcessed);
+	}
+
+	@Test
+	public void testResumePrequential() throws IOException {
+		testResume(new EvaluatePrequential(), new EvaluatePrequential(),
+				new EvaluatePrequential());
+	}
+
+	@Test
+	public void testResumeInterleavedTestThenTrain() throws IOException {
+		testResume(new EvaluateInterleavedTestThenTrain(),
+				new EvaluateInterleavedTestThenTrain(),
+				new EvaluateInterleavedTestThenTrain());
+	}
+
+	/**
+	 * Without a checkpoint file, resuming starts from the beginning.
+	 */
+	@Test
+	public void testResumeWithoutCheckpoint() throws IOException {
+		File checkpointFile = newCheckpointFile();
+		LearningCurve expected = evaluate(new EvaluatePrequential(), OPTIONS + " -i 1000");
+		LearningCurve actual = evaluate(new EvaluatePrequential(),
+				OPTIONS + " -i 1000 -R -c " + checkpointFile.getPath());
+		assertSameCurve(expected, actual);
+	}
+
+	@Test
+	public void testRejectsOtherEvaluation() throws IOException {
+		File checkpointFile = newCheckpointFile();
+		evaluate(new EvaluatePrequential(), OPTIONS + " -i 1000 -c " + checkpointFile.getPath());
+		try {
+			evaluate(new EvaluatePrequential(), "-l bayes.NaiveBayes"
+					+ " -s (generators.RandomTreeGenerator -r 3 -i 5) -i 2000 -R -c "
+					+ checkpointFile.getPath());
+			fail("resumed the checkpoint of another learner");
+		} catch (RuntimeException ex) {
+			assertTrue(ex.getMessage().contains("another evaluation"));
+		}
+	}
+}